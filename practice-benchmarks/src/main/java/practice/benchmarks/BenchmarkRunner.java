@@ -0,0 +1,66 @@
+package practice.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the usual JMH command line options, and writes
+ * the results as JSON to target/jmh-result.json unless a result format or file is given,
+ * so the runs of different commits can be compared.
+ * On JDK 9 and later the forked JVMs open java.lang to the Spring proxies, as the jdk16 profile
+ * of the application does.
+ * <p>
+ * Examples:
+ * <ul>
+ * <li>java -jar target/benchmarks.jar</li>
+ * <li>java -jar target/benchmarks.jar DateCodecBenchmark -t 8</li>
+ * <li>java -jar target/benchmarks.jar ProviderBenchmark -p tableSize=10000 -rff provider.json</li>
+ * <li>java -jar target/benchmarks.jar ExecutorBenchmark -p threads=platform,virtual</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Default file of the results.
+	 */
+	private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+	/**
+	 * Options of the forked JVMs on JDK 9 and later.
+	 */
+	private static final String[] ADD_OPENS = { "--add-opens", "java.base/java.lang=ALL-UNNAMED" };
+
+	public static void main(String[] args) throws Exception {
+
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(commandLine);
+
+		if (!commandLine.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+
+		if (!commandLine.getResult().hasValue()) {
+			new File(DEFAULT_RESULT).getParentFile().mkdirs();
+			builder.result(DEFAULT_RESULT);
+		}
+
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			List<String> jvmArgs = new ArrayList<>(commandLine.getJvmArgsAppend().orElse(Collections.emptyList()));
+			jvmArgs.addAll(Arrays.asList(ADD_OPENS));
+			builder.jvmArgsAppend(jvmArgs.toArray(new String[jvmArgs.size()]));
+		}
+
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+}
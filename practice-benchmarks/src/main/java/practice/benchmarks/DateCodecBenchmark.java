@@ -0,0 +1,106 @@
+package practice.benchmarks;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import practice.utils.Utils;
+
+/**
+ * Throughput of the date conversions of {@link Utils} under contention, run by all the
+ * available processors by default (override with -t).
+ * The synchronized formatter benchmarks reproduce the previous implementation as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class DateCodecBenchmark {
+
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Number of distinct dates converted, from a few repeated birth dates to a spread larger than the cache.
+	 */
+	@Param({ "16", "65536" })
+	public int distinctDates;
+
+	private LocalDate[] dates;
+
+	private String[] texts;
+
+	@Setup
+	public void setUp() {
+
+		Random random = new Random(42);
+		long first = LocalDate.of(1900, 1, 1).toEpochDay();
+		long last = LocalDate.of(2020, 1, 1).toEpochDay();
+
+		dates = new LocalDate[distinctDates];
+		texts = new String[distinctDates];
+
+		for (int i = 0; i < distinctDates; i++) {
+			dates[i] = LocalDate.ofEpochDay(first + (long) (random.nextDouble() * (last - first)));
+			texts[i] = dates[i].format(FORMATTER);
+		}
+	}
+
+	/**
+	 * Position of each thread in the dates.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		private int position = (int) Thread.currentThread().getId() * 7919;
+
+		int next(int size) {
+			position = (position + 1) & Integer.MAX_VALUE;
+			return position % size;
+		}
+	}
+
+	@Benchmark
+	public LocalDate parse(Cursor cursor) {
+		return Utils.stringToLocalDate(texts[cursor.next(distinctDates)]);
+	}
+
+	@Benchmark
+	public String format(Cursor cursor) {
+		return Utils.localDateToString(dates[cursor.next(distinctDates)]);
+	}
+
+	@Benchmark
+	public LocalDate synchronizedFormatterParse(Cursor cursor) {
+		String text = texts[cursor.next(distinctDates)];
+		synchronized (LOCK) {
+			return LocalDate.parse(text, FORMATTER);
+		}
+	}
+
+	@Benchmark
+	public String synchronizedFormatterFormat(Cursor cursor) {
+		LocalDate date = dates[cursor.next(distinctDates)];
+		synchronized (LOCK) {
+			return date.format(FORMATTER);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package practice.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import practice.App;
+import practice.executor.ControlledExecutor;
+import practice.executor.VirtualThreadTaskExecutor;
+import practice.model.User;
+import practice.model.UserPage;
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+import practice.service.UserService;
+
+/**
+ * Throughput and latency percentiles of the asynchronous service calls at high concurrency, with the
+ * executors on pools of platform threads or on a virtual thread per task (practice.threads).
+ * Many benchmark threads call the service at once and wait for the result, like the request threads do.
+ * The queue wait limit is raised so the platform pools queue the calls instead of shedding them, and the
+ * measure shows the waiting. The sample time mode reports the p99 of each call.
+ * The virtual mode needs JDK 21 or later, and fails on setup otherwise.
+ * <p>
+ * Example: java -jar target/benchmarks.jar ExecutorBenchmark -t 512
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(256)
+@Fork(1)
+public class ExecutorBenchmark {
+
+	/**
+	 * The threads running the tasks: platform or virtual.
+	 */
+	@Param({ "platform", "virtual" })
+	public String threads;
+
+	/**
+	 * The data access mode, see practice.datasource.mode.
+	 */
+	@Param({ "WAL" })
+	public String mode;
+
+	/**
+	 * Number of users in the table.
+	 */
+	@Param({ "10000" })
+	public int tableSize;
+
+	private Path database;
+
+	private ConfigurableApplicationContext context;
+
+	private UserService service;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		database = Files.createTempFile("practice-benchmark", ".db");
+
+		context = new SpringApplicationBuilder(App.class)
+				.web(false)
+				.run("--practice.datasource.url=jdbc:sqlite:" + database.toAbsolutePath(),
+						"--practice.datasource.mode=" + mode,
+						"--practice.threads=" + threads,
+						"--practice.async.max-queue-wait=" + TimeUnit.MINUTES.toMillis(1),
+						"--practice.async.read.queue-capacity=100000",
+						"--logging.level.root=WARN");
+
+		// the settings must win over application.properties, or both modes measure the platform pools
+		ControlledExecutor executor = context.getBean("readExecutor", ControlledExecutor.class);
+		if ((executor instanceof VirtualThreadTaskExecutor) != "virtual".equals(threads)) {
+			context.close();
+			throw new IllegalStateException("The benchmark runs the " + threads + " mode on " + executor.getClass().getSimpleName());
+		}
+
+		service = context.getBean(UserService.class);
+		IUserProvider provider = context.getBean(IUserProvider.class);
+
+		// the application seeds a few users on startup
+		int existing = provider.findAll().size();
+		LocalDate first = LocalDate.of(1900, 1, 1);
+		List<UserDb> chunk = new ArrayList<>();
+
+		for (int i = existing; i < tableSize; i++) {
+			chunk.add(new UserDb(0, "User " + i, first.plusDays(i % 40000).toEpochDay()));
+			if (chunk.size() == 1000 || i == tableSize - 1) {
+				provider.insertAll(chunk);
+				chunk.clear();
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		context.close();
+
+		Files.deleteIfExists(database);
+		Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-wal"));
+		Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-shm"));
+	}
+
+	@Benchmark
+	public UserPage findPage() {
+		return service.findPage(ThreadLocalRandom.current().nextInt(tableSize), 20).join();
+	}
+
+	@Benchmark
+	public List<User> findBornBetween() {
+
+		LocalDate after = LocalDate.of(1900, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(40000));
+		return service.findBornBetween(after, after.plusDays(30), 100).join();
+	}
+}
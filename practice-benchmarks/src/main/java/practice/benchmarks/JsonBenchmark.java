@@ -0,0 +1,87 @@
+package practice.benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.model.User;
+
+/**
+ * Cost of the Jackson serialization of a {@link User} and a list of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private User user;
+
+	private byte[] userJson;
+
+	@Setup
+	public void setUp() throws JsonProcessingException {
+
+		user = new User(2, "Aragorn", LocalDate.of(1958, 10, 20));
+		userJson = objectMapper.writeValueAsBytes(user);
+	}
+
+	/**
+	 * A list of users to serialize.
+	 */
+	@State(Scope.Benchmark)
+	public static class UserList {
+
+		/**
+		 * Number of users in the list.
+		 */
+		@Param({ "10", "1000" })
+		public int listSize;
+
+		private List<User> users;
+
+		@Setup
+		public void setUp() {
+
+			users = new ArrayList<>(listSize);
+			for (int i = 0; i < listSize; i++) {
+				users.add(new User(i + 1, "User " + i, LocalDate.of(1950, 1, 1).plusDays(i * 37L)));
+			}
+		}
+	}
+
+	@Benchmark
+	public byte[] serializeUser() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(user);
+	}
+
+	@Benchmark
+	public User deserializeUser() throws Exception {
+		return objectMapper.readValue(userJson, User.class);
+	}
+
+	@Benchmark
+	public byte[] serializeUserList(UserList list) throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(list.users);
+	}
+}
@@ -0,0 +1,135 @@
+package practice.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import practice.App;
+import practice.provider.DataAccess;
+import practice.provider.DataSourceSettings;
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+
+/**
+ * Cost of the {@link IUserProvider} queries against a scratch SQLite file, at several table sizes
+ * and in both data access modes. The application context is booted without the web layer,
+ * and the table is filled up to the requested size before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProviderBenchmark {
+
+	/**
+	 * Number of users in the table.
+	 */
+	@Param({ "1000", "10000", "100000" })
+	public int tableSize;
+
+	/**
+	 * The data access mode, see practice.datasource.mode.
+	 */
+	@Param({ "DEFAULT", "WAL" })
+	public String mode;
+
+	private Path database;
+
+	private ConfigurableApplicationContext context;
+
+	private IUserProvider provider;
+
+	private DataAccess dataAccess;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+
+		database = Files.createTempFile("practice-benchmark", ".db");
+
+		context = new SpringApplicationBuilder(App.class)
+				.web(false)
+				.run("--practice.datasource.url=jdbc:sqlite:" + database.toAbsolutePath(),
+						"--practice.datasource.mode=" + mode,
+						"--logging.level.root=WARN");
+
+		// the settings must win over application.properties, or every run measures ./practiceDB in default mode
+		DataSourceSettings settings = context.getBean(DataSourceSettings.class);
+		if (!settings.getUrl().endsWith(database.getFileName().toString()) || !settings.getMode().name().equals(mode)) {
+			context.close();
+			throw new IllegalStateException("The benchmark runs on " + settings.getUrl() + " in " + settings.getMode() + " mode");
+		}
+
+		provider = context.getBean(IUserProvider.class);
+		dataAccess = context.getBean(DataAccess.class);
+
+		// the application seeds a few users on startup
+		int existing = provider.findAll().size();
+		LocalDate first = LocalDate.of(1900, 1, 1);
+		List<UserDb> chunk = new ArrayList<>();
+
+		for (int i = existing; i < tableSize; i++) {
+			chunk.add(new UserDb(0, "User " + i, first.plusDays(i % 40000).toEpochDay()));
+			if (chunk.size() == 1000 || i == tableSize - 1) {
+				provider.insertAll(chunk);
+				chunk.clear();
+			}
+		}
+	}
+
+	/**
+	 * Removes the users inserted by the measured iteration, so the table keeps its size.
+	 */
+	@TearDown(Level.Iteration)
+	public void trim() {
+		dataAccess.write(jdbcTemplate -> jdbcTemplate.update("delete from users where id > ?", tableSize));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		context.close();
+
+		Files.deleteIfExists(database);
+		Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-wal"));
+		Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-shm"));
+	}
+
+	@Benchmark
+	public UserDb find() {
+		return provider.find(ThreadLocalRandom.current().nextInt(tableSize) + 1);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<UserDb> findAll() {
+		return provider.findAll();
+	}
+
+	@Benchmark
+	public UserDb insert() {
+		return provider.insert(new UserDb(0, "Boromir", LocalDate.of(1959, 4, 17).toEpochDay()));
+	}
+}
@@ -0,0 +1,56 @@
+package practice.benchmarks;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import practice.model.User;
+import practice.provider.UserDb;
+import practice.service.transformer.UserDbTransformer;
+import practice.service.transformer.UserTransformer;
+
+/**
+ * Throughput of the transformations between {@link User} and {@link UserDb}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerBenchmark {
+
+	private final UserDbTransformer userDbTransformer = new UserDbTransformer();
+
+	private final UserTransformer userTransformer = new UserTransformer();
+
+	private UserDb userDb;
+
+	private User user;
+
+	@Setup
+	public void setUp() {
+		user = new User(2, "Aragorn", LocalDate.of(1958, 10, 20));
+		userDb = userTransformer.transform(user);
+	}
+
+	@Benchmark
+	public User userDbToUser() {
+		return userDbTransformer.transform(userDb);
+	}
+
+	@Benchmark
+	public UserDb userToUserDb() {
+		return userTransformer.transform(user);
+	}
+}
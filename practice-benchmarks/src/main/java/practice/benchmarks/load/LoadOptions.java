@@ -0,0 +1,295 @@
+package practice.benchmarks.load;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of the load test, given as --name=value arguments. Any other argument with a dotted name,
+ * such as --practice.provider=memory, is passed to the application as a property.
+ */
+public class LoadOptions {
+
+	/**
+	 * Requests started per second, whatever the time the previous ones take.
+	 */
+	private double rate = 200;
+
+	/**
+	 * Seconds measured.
+	 */
+	private int duration = 30;
+
+	/**
+	 * Seconds run before measuring, not recorded.
+	 */
+	private int warmup = 5;
+
+	/**
+	 * Maximum number of requests in flight, the rest wait for a connection, and the wait is measured.
+	 */
+	private int concurrency = 64;
+
+	/**
+	 * Number of users in the table before the test starts.
+	 */
+	private int users = 1000;
+
+	/**
+	 * Relative weights of the operations.
+	 */
+	private final Map<Operation, Integer> mix = parseMix("getall=1,get=60,create=15,update=19,remove=5");
+
+	/**
+	 * Whether the requests arrive at random times (a Poisson process) or at a fixed interval.
+	 */
+	private boolean poisson = true;
+
+	/**
+	 * Highest p99 of all the requests allowed, in milliseconds, 0 for no threshold.
+	 */
+	private double maxP99;
+
+	/**
+	 * Lowest throughput allowed, in requests per second, 0 for no threshold.
+	 */
+	private double minThroughput;
+
+	/**
+	 * Highest ratio of failed requests allowed, 1 for no threshold.
+	 */
+	private double maxErrorRate = 1;
+
+	/**
+	 * Result of a previous run to compare with, null for none.
+	 */
+	private String baseline;
+
+	/**
+	 * Ratio the p99 may grow and the throughput may fall from the baseline.
+	 */
+	private double tolerance = 0.1;
+
+	/**
+	 * File the results are written to, in JSON.
+	 */
+	private String result = "target/load-result.json";
+
+	/**
+	 * Properties of the application.
+	 */
+	private final Map<String, String> properties = new LinkedHashMap<>();
+
+	/**
+	 * Parses the command line.
+	 * @param args The arguments, as --name=value.
+	 * @return The options.
+	 * @throws IllegalArgumentException If an argument is not valid.
+	 */
+	public static LoadOptions parse(String[] args) {
+
+		LoadOptions options = new LoadOptions();
+
+		for (String arg : args) {
+
+			int equals = arg.indexOf('=');
+			if (!arg.startsWith("--") || equals < 0) {
+				throw new IllegalArgumentException("Expected --name=value: " + arg);
+			}
+
+			String name = arg.substring(2, equals);
+			String value = arg.substring(equals + 1);
+
+			try {
+				switch (name) {
+				case "rate":
+					options.rate = Double.parseDouble(value);
+					break;
+				case "duration":
+					options.duration = Integer.parseInt(value);
+					break;
+				case "warmup":
+					options.warmup = Integer.parseInt(value);
+					break;
+				case "concurrency":
+					options.concurrency = Integer.parseInt(value);
+					break;
+				case "users":
+					options.users = Integer.parseInt(value);
+					break;
+				case "mix":
+					options.mix.clear();
+					options.mix.putAll(parseMix(value));
+					break;
+				case "arrivals":
+					if (!value.equals("poisson") && !value.equals("uniform")) {
+						throw new IllegalArgumentException("Expected poisson or uniform arrivals: " + value);
+					}
+					options.poisson = value.equals("poisson");
+					break;
+				case "max-p99":
+					options.maxP99 = Double.parseDouble(value);
+					break;
+				case "min-throughput":
+					options.minThroughput = Double.parseDouble(value);
+					break;
+				case "max-error-rate":
+					options.maxErrorRate = Double.parseDouble(value);
+					break;
+				case "baseline":
+					options.baseline = value;
+					break;
+				case "tolerance":
+					options.tolerance = Double.parseDouble(value);
+					break;
+				case "result":
+					options.result = value;
+					break;
+				default:
+					if (name.indexOf('.') < 0) {
+						throw new IllegalArgumentException("Unknown option: " + arg);
+					}
+					options.properties.put(name, value);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Expected a number: " + arg, e);
+			}
+		}
+
+		if (options.rate <= 0 || options.duration <= 0 || options.warmup < 0 || options.concurrency <= 0 || options.users < 1) {
+			throw new IllegalArgumentException("The rate, duration, concurrency and users should be positive");
+		}
+
+		return options;
+	}
+
+	/**
+	 * Parses a mix of operations, as name=weight pairs separated by commas.
+	 */
+	private static Map<Operation, Integer> parseMix(String value) {
+
+		Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+		for (String pair : value.split(",")) {
+
+			String[] parts = pair.trim().split("=");
+			Operation operation = Operation.forName(parts[0]);
+			if (operation == null || parts.length != 2) {
+				throw new IllegalArgumentException("Expected operation=weight with the operations "
+						+ Operation.names() + ": " + pair);
+			}
+
+			int weight = Integer.parseInt(parts[1].trim());
+			if (weight < 0) {
+				throw new IllegalArgumentException("The weights cannot be negative: " + pair);
+			}
+			if (weight > 0) {
+				mix.put(operation, weight);
+			}
+		}
+
+		if (mix.isEmpty()) {
+			throw new IllegalArgumentException("The mix has no operations: " + value);
+		}
+
+		return mix;
+	}
+
+	/**
+	 * @return the requests started per second
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @return the seconds measured
+	 */
+	public int getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return the seconds run before measuring
+	 */
+	public int getWarmup() {
+		return warmup;
+	}
+
+	/**
+	 * @return the maximum number of requests in flight
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * @return the number of users in the table before the test starts
+	 */
+	public int getUsers() {
+		return users;
+	}
+
+	/**
+	 * @return the relative weights of the operations
+	 */
+	public Map<Operation, Integer> getMix() {
+		return mix;
+	}
+
+	/**
+	 * @return whether the requests arrive at random times
+	 */
+	public boolean isPoisson() {
+		return poisson;
+	}
+
+	/**
+	 * @return the highest p99 allowed in milliseconds, 0 for no threshold
+	 */
+	public double getMaxP99() {
+		return maxP99;
+	}
+
+	/**
+	 * @return the lowest throughput allowed, 0 for no threshold
+	 */
+	public double getMinThroughput() {
+		return minThroughput;
+	}
+
+	/**
+	 * @return the highest ratio of failed requests allowed
+	 */
+	public double getMaxErrorRate() {
+		return maxErrorRate;
+	}
+
+	/**
+	 * @return the result of a previous run to compare with, null for none
+	 */
+	public String getBaseline() {
+		return baseline;
+	}
+
+	/**
+	 * @return the ratio the p99 may grow and the throughput may fall from the baseline
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * @return the file the results are written to
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the properties of the application
+	 */
+	public Map<String, String> getProperties() {
+		return properties;
+	}
+}
@@ -0,0 +1,534 @@
+package practice.benchmarks.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.App;
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+import practice.utils.DateCodec;
+
+/**
+ * Load test of the REST API. It boots the application on a random port against a scratch SQLite file,
+ * fills the table and sends a mix of requests at a fixed rate for a while.
+ * <p>
+ * The load follows an open model: the requests start at their scheduled times whatever the time the
+ * previous ones take, and their latency is measured from the scheduled time, not from the time they
+ * could be sent. A slow server makes the next requests wait and that wait is part of their latency,
+ * so the percentiles are free of coordinated omission. The latencies are recorded in HdrHistogram
+ * histograms with three significant digits.
+ * <p>
+ * The results are printed, written as JSON (target/load-result.json) and the whole distribution as an
+ * .hgrm file next to it. The exit code is 0 if the thresholds are met, 1 if any is not and 2 if the
+ * test could not run.
+ * <p>
+ * Options, as --name=value:
+ * <ul>
+ * <li>rate: requests started per second (200).</li>
+ * <li>duration: seconds measured (30), after warmup seconds not recorded (5).</li>
+ * <li>concurrency: maximum requests in flight (64), the rest wait for a connection.</li>
+ * <li>users: users in the table before the test starts (1000).</li>
+ * <li>mix: relative weights of the operations getall, get, create, update and remove
+ * (getall=1,get=60,create=15,update=19,remove=5).</li>
+ * <li>arrivals: poisson, at random times, or uniform, at a fixed interval (poisson).</li>
+ * <li>max-p99: highest p99 of all the requests in milliseconds.</li>
+ * <li>min-throughput: lowest requests completed per second.</li>
+ * <li>max-error-rate: highest ratio of failed requests, the answers other than 2xx and 304.</li>
+ * <li>baseline: result of a previous run, the run fails if its p99 grows or its throughput falls by
+ * more than the tolerance (0.1).</li>
+ * <li>result: the JSON file of the results.</li>
+ * <li>Any dotted name is a property of the application, such as --practice.provider=memory.</li>
+ * </ul>
+ * Example: java -cp target/benchmarks.jar practice.benchmarks.load.LoadTest --rate=500 --max-p99=50
+ */
+public class LoadTest {
+
+	private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final LoadOptions options;
+
+	/**
+	 * The operations, each repeated as many times as its weight, to be picked at random.
+	 */
+	private final Operation[] wheel;
+
+	/**
+	 * Latencies of each operation and of all of them, in nanoseconds.
+	 */
+	private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+
+	private final Histogram all = new ConcurrentHistogram(3);
+
+	/**
+	 * Failed requests of each operation.
+	 */
+	private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+	/**
+	 * Requests by status of the response, -1 for the requests that failed to be sent.
+	 */
+	private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentSkipListMap<>();
+
+	/**
+	 * The time the last measured request finished.
+	 */
+	private final AtomicLong lastCompletion = new AtomicLong();
+
+	/**
+	 * Seconds from the start of the measure to the end of the last measured request.
+	 */
+	private double measuredSeconds;
+
+	/**
+	 * Counter for the names of the users.
+	 */
+	private final AtomicInteger names = new AtomicInteger();
+
+	/**
+	 * Ids of the users read and updated, never removed.
+	 */
+	private int[] readIds;
+
+	/**
+	 * Ids of the users that can be removed.
+	 */
+	private final ConcurrentLinkedQueue<Integer> removable = new ConcurrentLinkedQueue<>();
+
+	private String baseUrl;
+
+	public LoadTest(LoadOptions options) {
+
+		this.options = options;
+
+		List<Operation> operations = new ArrayList<>();
+		options.getMix().forEach((operation, weight) -> {
+			for (int i = 0; i < weight; i++) {
+				operations.add(operation);
+			}
+		});
+		this.wheel = operations.toArray(new Operation[operations.size()]);
+
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new ConcurrentHistogram(3));
+			errors.put(operation, new LongAdder());
+		}
+	}
+
+	public static void main(String[] args) {
+
+		LoadOptions options;
+		try {
+			options = LoadOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("See the options in the documentation of " + LoadTest.class.getName());
+			System.exit(2);
+			return;
+		}
+
+		// keep a connection alive for each request in flight
+		System.setProperty("http.maxConnections", String.valueOf(options.getConcurrency()));
+
+		int status;
+		try {
+			status = new LoadTest(options).run();
+		} catch (Exception e) {
+			e.printStackTrace();
+			status = 2;
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Runs the test.
+	 * @return 0 if the thresholds are met, 1 otherwise.
+	 */
+	public int run() throws Exception {
+
+		Path database = Files.createTempFile("practice-load", ".db");
+
+		// given as command line arguments, so they override application.properties
+		List<String> arguments = new ArrayList<>();
+		arguments.add("--server.port=0");
+		arguments.add("--practice.datasource.url=jdbc:sqlite:" + database.toAbsolutePath());
+		arguments.add("--logging.level.root=WARN");
+		options.getProperties().forEach((name, value) -> arguments.add("--" + name + "=" + value));
+
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(App.class)
+				.bannerMode(Banner.Mode.OFF)
+				.run(arguments.toArray(new String[arguments.size()]));
+
+		try {
+			baseUrl = "http://localhost:"
+					+ ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort() + "/api/user/";
+			fill(context.getBean(IUserProvider.class));
+			drive();
+		} finally {
+			context.close();
+			Files.deleteIfExists(database);
+			Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-wal"));
+			Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-shm"));
+		}
+
+		return report();
+	}
+
+	/**
+	 * Fills the table with the users read and updated, and with the users the test will remove.
+	 */
+	private void fill(IUserProvider provider) {
+
+		int removeWeight = options.getMix().getOrDefault(Operation.REMOVE, 0);
+		int totalWeight = options.getMix().values().stream().mapToInt(Integer::intValue).sum();
+		long removals = (long) Math.ceil(options.getRate() * (options.getWarmup() + options.getDuration())
+				* removeWeight / totalWeight * 1.2);
+
+		int existing = provider.findAll().size();
+		List<UserDb> chunk = new ArrayList<>();
+		for (long i = existing; i < options.getUsers() + removals; i++) {
+			chunk.add(new UserDb(0, "User " + i, randomBirthdate().toEpochDay()));
+			if (chunk.size() == 1000) {
+				provider.insertAll(chunk);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			provider.insertAll(chunk);
+		}
+
+		int[] ids = provider.findAll().stream().mapToInt(UserDb::getId).sorted().toArray();
+		readIds = new int[Math.min(options.getUsers(), ids.length)];
+		System.arraycopy(ids, 0, readIds, 0, readIds.length);
+		for (int i = readIds.length; i < ids.length; i++) {
+			removable.add(ids[i]);
+		}
+	}
+
+	/**
+	 * Starts the requests at their scheduled times, through the warmup and the measured time, and waits
+	 * for them to finish.
+	 */
+	private void drive() throws InterruptedException {
+
+		AtomicInteger threads = new AtomicInteger();
+		ThreadPoolExecutor clients = new ThreadPoolExecutor(options.getConcurrency(), options.getConcurrency(),
+				0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				runnable -> new Thread(runnable, "load-client-" + threads.incrementAndGet()));
+
+		double interval = SECOND / options.getRate();
+		long start = System.nanoTime();
+		long measureStart = start + options.getWarmup() * SECOND;
+		long end = measureStart + options.getDuration() * SECOND;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		System.out.printf("Sending %.0f requests per second for %d s after %d s of warmup...%n",
+				options.getRate(), options.getDuration(), options.getWarmup());
+
+		double next = start;
+		while (next < end) {
+
+			long scheduled = (long) next;
+			long wait;
+			while ((wait = scheduled - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			Operation operation = wheel[random.nextInt(wheel.length)];
+			boolean measured = scheduled >= measureStart;
+			clients.execute(() -> call(operation, scheduled, measured));
+
+			next += options.isPoisson() ? -Math.log(1 - random.nextDouble()) * interval : interval;
+		}
+
+		clients.shutdown();
+		if (!clients.awaitTermination(2, TimeUnit.MINUTES)) {
+			System.err.printf("%d requests did not finish in time and were left out%n", clients.shutdownNow().size());
+		}
+
+		long elapsed = Math.max(lastCompletion.get(), end) - measureStart;
+		measuredSeconds = elapsed / (double) SECOND;
+	}
+
+	/**
+	 * Sends a request and records its latency from the scheduled time.
+	 */
+	private void call(Operation operation, long scheduled, boolean measured) {
+
+		int status;
+		try {
+			status = send(operation);
+		} catch (IOException e) {
+			status = -1;
+		}
+
+		long finished = System.nanoTime();
+
+		if (measured) {
+			latencies.get(operation).recordValue(finished - scheduled);
+			all.recordValue(finished - scheduled);
+			if (!(status >= 200 && status < 300) && status != 304) {
+				errors.get(operation).increment();
+			}
+			statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+			lastCompletion.accumulateAndGet(finished, Math::max);
+		}
+	}
+
+	/**
+	 * Sends the request of an operation.
+	 * @return The status of the response, -1 if there was no request to send.
+	 */
+	private int send(Operation operation) throws IOException {
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		switch (operation) {
+		case GETALL:
+			return request("GET", "getall", null).status;
+		case GET:
+			return request("GET", "get/" + readIds[random.nextInt(readIds.length)], null).status;
+		case CREATE:
+			Response created = request("POST", "create", userJson(0));
+			Matcher matcher = ID.matcher(created.body);
+			if (created.status == 200 && matcher.find()) {
+				removable.add(Integer.valueOf(matcher.group(1)));
+			}
+			return created.status;
+		case UPDATE:
+			return request("POST", "update", userJson(readIds[random.nextInt(readIds.length)])).status;
+		case REMOVE:
+			Integer id = removable.poll();
+			return id == null ? -1 : request("GET", "remove/" + id, null).status;
+		default:
+			throw new IllegalArgumentException(operation.getName());
+		}
+	}
+
+	/**
+	 * @return the JSON of a new user, or of an update of a user if the id is given
+	 */
+	private String userJson(int id) {
+
+		return (id > 0 ? "{\"id\":" + id + "," : "{") + "\"name\":\"Load " + names.incrementAndGet()
+				+ "\",\"birthdate\":\"" + DateCodec.format(randomBirthdate()) + "\"}";
+	}
+
+	private static LocalDate randomBirthdate() {
+		return LocalDate.of(1900, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(40000));
+	}
+
+	/**
+	 * Sends a request, reading the whole response so the connection is kept alive.
+	 */
+	private Response request(String method, String path, String json) throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Accept", "application/json");
+
+		if (json != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(json.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		int status = connection.getResponseCode();
+		InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		if (in != null) {
+			try (InputStream stream = in) {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = stream.read(buffer)) >= 0) {
+					// only the body of the creations is needed
+					if (json != null) {
+						body.write(buffer, 0, read);
+					}
+				}
+			}
+		}
+
+		return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Prints and writes the results, and checks them against the thresholds.
+	 * @return 0 if the thresholds are met, 1 otherwise.
+	 */
+	private int report() throws IOException {
+
+		long totalErrors = errors.values().stream().mapToLong(LongAdder::sum).sum();
+		double throughput = all.getTotalCount() / measuredSeconds;
+		double errorRate = all.getTotalCount() == 0 ? 0 : totalErrors / (double) all.getTotalCount();
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("rate", options.getRate());
+		result.put("duration", options.getDuration());
+		result.put("concurrency", options.getConcurrency());
+		result.put("users", options.getUsers());
+		result.put("properties", options.getProperties());
+		result.put("throughput", throughput);
+		result.put("errorRate", errorRate);
+		result.put("all", summary(all, totalErrors));
+
+		Map<String, Long> statusCounts = new LinkedHashMap<>();
+		statuses.forEach((status, count) -> statusCounts.put(String.valueOf(status), count.sum()));
+		result.put("statuses", statusCounts);
+
+		Map<String, Object> operations = new LinkedHashMap<>();
+		result.put("operations", operations);
+
+		System.out.printf("%n%-8s %9s %7s %9s %9s %9s %9s %9s %9s%n", "", "requests", "errors",
+				"mean ms", "p50", "p90", "p99", "p99.9", "max");
+
+		for (Operation operation : Operation.values()) {
+			Histogram histogram = latencies.get(operation);
+			if (histogram.getTotalCount() > 0) {
+				operations.put(operation.getName(), summary(histogram, errors.get(operation).sum()));
+				print(operation.getName(), histogram, errors.get(operation).sum());
+			}
+		}
+		print("all", all, totalErrors);
+		System.out.printf("%nThroughput %.1f requests per second, %.2f%% errors, statuses %s%n", throughput,
+				errorRate * 100, statusCounts);
+
+		File resultFile = new File(options.getResult());
+		if (resultFile.getAbsoluteFile().getParentFile() != null) {
+			resultFile.getAbsoluteFile().getParentFile().mkdirs();
+		}
+		new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(resultFile, result);
+		try (PrintStream out = new PrintStream(new File(resultFile.getPath().replaceAll("\\.json$", "") + ".hgrm"), "UTF-8")) {
+			all.outputPercentileDistribution(out, 1e6);
+		}
+		System.out.println("Results written to " + resultFile.getPath());
+
+		List<String> failures = check(throughput, errorRate);
+		if (failures.isEmpty()) {
+			System.out.println("PASSED");
+			return 0;
+		}
+
+		failures.forEach(failure -> System.out.println("FAILED: " + failure));
+		return 1;
+	}
+
+	/**
+	 * Checks the results against the thresholds and the baseline.
+	 * @return The thresholds not met.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> check(double throughput, double errorRate) throws IOException {
+
+		List<String> failures = new ArrayList<>();
+		double p99 = millis(all.getValueAtPercentile(99));
+
+		if (options.getMaxP99() > 0 && p99 > options.getMaxP99()) {
+			failures.add(String.format("p99 of %.2f ms is over %.2f ms", p99, options.getMaxP99()));
+		}
+		if (options.getMinThroughput() > 0 && throughput < options.getMinThroughput()) {
+			failures.add(String.format("throughput of %.1f/s is under %.1f/s", throughput, options.getMinThroughput()));
+		}
+		if (errorRate > options.getMaxErrorRate()) {
+			failures.add(String.format("error rate of %.4f is over %.4f", errorRate, options.getMaxErrorRate()));
+		}
+
+		if (options.getBaseline() != null) {
+
+			Map<String, Object> baseline = new ObjectMapper().readValue(new File(options.getBaseline()), Map.class);
+			double baselineP99 = ((Number) ((Map<String, Object>) baseline.get("all")).get("p99")).doubleValue();
+			double baselineThroughput = ((Number) baseline.get("throughput")).doubleValue();
+
+			if (p99 > baselineP99 * (1 + options.getTolerance())) {
+				failures.add(String.format("p99 of %.2f ms regressed from %.2f ms", p99, baselineP99));
+			}
+			if (throughput < baselineThroughput * (1 - options.getTolerance())) {
+				failures.add(String.format("throughput of %.1f/s regressed from %.1f/s", throughput, baselineThroughput));
+			}
+		}
+
+		return failures;
+	}
+
+	private static Map<String, Object> summary(Histogram histogram, long errors) {
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("requests", histogram.getTotalCount());
+		summary.put("errors", errors);
+		summary.put("mean", histogram.getMean() / 1e6);
+		summary.put("p50", millis(histogram.getValueAtPercentile(50)));
+		summary.put("p90", millis(histogram.getValueAtPercentile(90)));
+		summary.put("p99", millis(histogram.getValueAtPercentile(99)));
+		summary.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+		summary.put("max", millis(histogram.getMaxValue()));
+		return summary;
+	}
+
+	private static void print(String name, Histogram histogram, long errors) {
+
+		System.out.printf("%-8s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), errors,
+				histogram.getMean() / 1e6, millis(histogram.getValueAtPercentile(50)),
+				millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)),
+				millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Status and body of a response.
+	 */
+	private static final class Response {
+
+		private final int status;
+
+		private final String body;
+
+		private Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+}
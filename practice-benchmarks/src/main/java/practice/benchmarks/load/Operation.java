@@ -0,0 +1,63 @@
+package practice.benchmarks.load;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Requests of the load test, on the endpoints of the user controller.
+ */
+public enum Operation {
+
+	/**
+	 * Streams all the users, GET /api/user/getall.
+	 */
+	GETALL,
+
+	/**
+	 * Reads a user of the initial table, GET /api/user/get/{id}.
+	 */
+	GET,
+
+	/**
+	 * Creates a user, POST /api/user/create. The new user may be removed later on.
+	 */
+	CREATE,
+
+	/**
+	 * Renames a user of the initial table, POST /api/user/update.
+	 */
+	UPDATE,
+
+	/**
+	 * Removes a user created for it on setup or by the test, GET /api/user/remove/{id}.
+	 */
+	REMOVE;
+
+	/**
+	 * @return the name of the operation in the options and the results
+	 */
+	public String getName() {
+		return name().toLowerCase();
+	}
+
+	/**
+	 * @param name The name of an operation.
+	 * @return The operation, null if there is none with that name.
+	 */
+	public static Operation forName(String name) {
+
+		for (Operation operation : values()) {
+			if (operation.getName().equals(name.trim())) {
+				return operation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the names of the operations
+	 */
+	public static String names() {
+		return Arrays.stream(values()).map(Operation::getName).collect(Collectors.joining(", "));
+	}
+}
@@ -1,25 +1,34 @@
 package practice;
 
-import java.util.Arrays;
-import java.util.List;
+import java.sql.SQLException;
 import java.util.concurrent.Executor;
-import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
 
-import org.apache.log4j.Logger;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncConfigurerSupport;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import practice.executor.AdaptiveLimit;
+import practice.executor.AdmissionControlledExecutor;
+import practice.executor.ControlledExecutor;
+import practice.executor.ExecutorSettings;
+import practice.executor.VirtualThreadTaskExecutor;
+import practice.metrics.StartupReport;
+import practice.provider.DataAccess;
+import practice.provider.DataSourceSettings;
+import practice.provider.DataSourceSettings.Mode;
+import practice.provider.SchemaMigrations;
 
 @SpringBootApplication
 @EnableAsync
@@ -27,9 +36,22 @@ public class App extends AsyncConfigurerSupport implements CommandLineRunner {
 
 	
 	@Autowired
-	private JdbcTemplate jdbcTemplate;
+	private SchemaMigrations schemaMigrations;
 	
-	private static final Logger logger = Logger.getLogger(App.class);
+	@Autowired
+	private DataSourceSettings dataSourceSettings;
+	
+	@Autowired
+	private StartupReport startupReport;
+	
+	@Autowired
+	private ExecutorSettings executorSettings;
+	
+	/**
+	 * The threads running the tasks: platform threads from the pools, or a virtual thread per task.
+	 */
+	@Value("${practice.threads:platform}")
+	private String threads;
 	
 	public static void main(String[] args) {
 		SpringApplication.run(App.class, args);
@@ -37,49 +59,119 @@ public class App extends AsyncConfigurerSupport implements CommandLineRunner {
 	
 	@Override
 	public Executor getAsyncExecutor() {
+		
+		return readExecutor();
+	}
+	
+	/**
+	 * The executor for the {@link Async} service reads, the default one.
+	 * @return The {@link ControlledExecutor}
+	 */
+	@Bean
+	public ControlledExecutor readExecutor() {
 
-		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-		executor.setCorePoolSize(2);
-		executor.setMaxPoolSize(10);
-		executor.setQueueCapacity(500);
-		executor.setThreadNamePrefix("rest-practice-");
-		executor.initialize();
-		return executor;
+		return executor("read", executorSettings.getRead(), adaptiveLimit());
 	}
 	
-	@Override
-	public void run(String... arg0) throws Exception {
+	/**
+	 * The executor for the {@link Async} service writes, so a burst of writes waiting for the database
+	 * does not hold back the reads.
+	 * @return The {@link ControlledExecutor}
+	 */
+	@Bean
+	public ControlledExecutor writeExecutor() {
+
+		return executor("write", executorSettings.getWrite(), adaptiveLimit());
+	}
+	
+	/**
+	 * The executor used by the web layer to write the streamed responses, which hold a thread for the whole 
+	 * transfer. It has no adaptive limit, since their time depends on the size of the response and the client.
+	 * @return The {@link ControlledExecutor}
+	 */
+	@Bean
+	public ControlledExecutor streamExecutor() {
 
-		logger.info("Creating database.");
+		return executor("stream", executorSettings.getStream(), null);
+	}
+	
+	/**
+	 * The executor running the imports, which hold a thread while the upload is read, so they do not take
+	 * the threads of the short service writes. It has no adaptive limit, for the same reason as the stream one.
+	 * @return The {@link ControlledExecutor}
+	 */
+	@Bean
+	public ControlledExecutor importExecutor() {
+
+		return executor("import", executorSettings.getImports(), null);
+	}
+	
+	/**
+	 * @return a new executor, a thread pool or a virtual thread per task depending on the threads mode
+	 */
+	private ControlledExecutor executor(String poolName, ExecutorSettings.Pool pool, AdaptiveLimit limit) {
+		
+		if ("virtual".equalsIgnoreCase(threads)) {
+			return new VirtualThreadTaskExecutor(poolName, limit);
+		}
 		
-		jdbcTemplate.execute("drop table if exists users");
-		jdbcTemplate.execute("create table users(id integer primary key asc not null, name text not null, birthdate text not null)");
+		return new AdmissionControlledExecutor(poolName, pool, executorSettings.getMaxQueueWait(), limit);
+	}
+	
+	/**
+	 * @return a new {@link AdaptiveLimit} for an executor, null if it is disabled
+	 */
+	private AdaptiveLimit adaptiveLimit() {
 		
-		List<Object[]> list = Arrays.asList(
-				"Frodo/28-01-1981",
-				"Aragorn/20-10-1958",
-				"Legolas/13-01-1977",
-				"Gandalf/25-05-1939",
-				"Samsagaz/10-02-1971",
-				"Meriadoc/08-12-1976",
-				"Peregrin/28-08-1968",
-				//"Boromir/17-04-1959", will be added later
-				"Gimli/05-05-1944")
-			.stream()
-			.map(data -> data.split("/"))
-			.collect(Collectors.toList());
+		ExecutorSettings.Limit limit = executorSettings.getAdaptiveLimit();
+		return limit.isEnabled() ? new AdaptiveLimit(limit.getInitial(), limit.getMin(), limit.getMax()) : null;
+	}
+	
+	/**
+	 * Brings the schema of the database up to date before the users are read.
+	 */
+	@Override
+	public void run(String... arg0) throws Exception {
+
+		long start = System.nanoTime();
 		
-		jdbcTemplate.batchUpdate("insert into users(name, birthdate) values(?, ?)", list);
+		schemaMigrations.migrate(dataSourceSettings.getSchema());
 		
-		logger.info("Database created.");
+		startupReport.record("migrations", System.nanoTime() - start);
 	}
 	
+	/**
+	 * The application data source. In WAL mode it is the single writer connection, 
+	 * reads are served by the pool in {@link DataAccess}.
+	 * Its first connection is opened here, so the startup report tells the time the database takes to open.
+	 * @param dataSourceSettings The data access settings.
+	 * @param startupReport The report of the startup times.
+	 * @return The {@link DataSource}
+	 * @throws SQLException If the database cannot be opened.
+	 */
 	@Bean
-	public DataSource dataSource() {
-		DataSourceBuilder dataSourceBuilder = DataSourceBuilder.create();
-		dataSourceBuilder.driverClassName("org.sqlite.JDBC");
-		dataSourceBuilder.url("jdbc:sqlite:practiceDB");
-		return dataSourceBuilder.build();
+	@Primary
+	public DataSource dataSource(DataSourceSettings dataSourceSettings, StartupReport startupReport) throws SQLException {
+		
+		long start = System.nanoTime();
+		DataSource dataSource;
+		
+		if (dataSourceSettings.getMode() == Mode.WAL) {
+			
+			dataSource = DataAccess.writerDataSource(dataSourceSettings);
+			
+		} else {
+			
+			DataSourceBuilder dataSourceBuilder = DataSourceBuilder.create();
+			dataSourceBuilder.driverClassName("org.sqlite.JDBC");
+			dataSourceBuilder.url(dataSourceSettings.getUrl());
+			dataSource = dataSourceBuilder.build();
+		}
+		
+		dataSource.getConnection().close();
+		startupReport.record("datasource", System.nanoTime() - start);
+		
+		return dataSource;
 	}
 	
 	@Bean
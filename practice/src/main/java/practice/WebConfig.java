@@ -0,0 +1,93 @@
+package practice;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.catalina.Lifecycle;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import practice.executor.VirtualThreads;
+
+/**
+ * Web layer configuration.
+ */
+@Configuration
+public class WebConfig extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	@Qualifier("streamExecutor")
+	private AsyncTaskExecutor streamExecutor;
+	
+	/**
+	 * Time in milliseconds a streamed response may take before it is timed out.
+	 */
+	@Value("${practice.async.stream-timeout:600000}")
+	private long streamTimeout;
+
+	/**
+	 * Streamed responses are written from the stream executor instead of a new thread per request.
+	 */
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		
+		configurer.setTaskExecutor(streamExecutor);
+		configurer.setDefaultTimeout(streamTimeout);
+	}
+	
+	/**
+	 * In the virtual thread mode Tomcat handles each request in a new virtual thread instead of its pool, 
+	 * so the number of requests blocked on the database is only bounded by the connections accepted.
+	 * Tomcat only stops the executors it creates, so this one is shut down once the connector has stopped.
+	 * @return The {@link EmbeddedServletContainerCustomizer} setting the executor of the connector.
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "practice", name = "threads", havingValue = "virtual")
+	public EmbeddedServletContainerCustomizer virtualThreadsCustomizer() {
+		
+		return container -> {
+			if (container instanceof TomcatEmbeddedServletContainerFactory) {
+				((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+					ProtocolHandler protocol = connector.getProtocolHandler();
+					if (protocol instanceof AbstractProtocol) {
+						ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+						((AbstractProtocol<?>) protocol).setExecutor(executor);
+						connector.addLifecycleListener(event -> {
+							if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+								executor.shutdown();
+							}
+						});
+					}
+				});
+			}
+		};
+	}
+	
+	/**
+	 * Lets the clients upgrade their cleartext connections to HTTP/2 (h2c), so many small requests, such as 
+	 * get/{id}, are multiplexed over a single connection instead of queueing behind each other.
+	 * @return The {@link EmbeddedServletContainerCustomizer} adding the HTTP/2 upgrade to the connector.
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "practice.http2", name = "enabled", havingValue = "true")
+	public EmbeddedServletContainerCustomizer http2Customizer() {
+		
+		return container -> {
+			if (container instanceof TomcatEmbeddedServletContainerFactory) {
+				((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> 
+						connector.addUpgradeProtocol(new Http2Protocol()));
+			}
+		};
+	}
+}
@@ -0,0 +1,22 @@
+package practice.compression;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler method whose responses are compressed when the client accepts it, with the settings of
+ * its endpoint (see {@link CompressionSettings}).
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compressed {
+
+	/**
+	 * @return the name of the endpoint in the practice.compression.endpoints properties
+	 */
+	String value();
+}
@@ -0,0 +1,361 @@
+package practice.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Response compressing its body once it is activated with the encoding negotiated for the request.
+ * The first bytes are held until they reach the minimum size: a shorter body is sent as it is, with its
+ * length, and a longer one is compressed as it is written, so a streamed body is never held whole.
+ * The body is not compressed if the handler encodes it itself (setting the Content-Encoding header),
+ * or if its status has no body or is a partial content.
+ * The end of the compressed data is written by {@link #finish()} when the request is done.
+ */
+public class CompressingResponse extends HttpServletResponseWrapper {
+
+	/**
+	 * The encoding, null while the response is not compressed.
+	 */
+	private ContentEncoding encoding;
+
+	private int minSize;
+
+	private int level;
+
+	/**
+	 * The content length set by the handler, -1 if none, passed on only if the body is not compressed.
+	 */
+	private long contentLength = -1;
+
+	/**
+	 * The stream given to the handler, null until it asks for it.
+	 */
+	private CompressingStream stream;
+
+	private PrintWriter writer;
+
+	/**
+	 * Constructor.
+	 * @param response The response wrapped.
+	 */
+	public CompressingResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	/**
+	 * Finds the compressing response among the wrappers of a response.
+	 * @param response The response.
+	 * @return The {@link CompressingResponse}, null if the response is not compressed by the filter.
+	 */
+	public static CompressingResponse of(HttpServletResponse response) {
+		return WebUtils.getNativeResponse(response, CompressingResponse.class);
+	}
+
+	/**
+	 * Compresses the body from now on, unless the handler has already started writing it.
+	 * @param encoding The encoding negotiated.
+	 * @param minSize Bodies shorter than this number of bytes are sent as they are.
+	 * @param level The compression level.
+	 */
+	public void activate(ContentEncoding encoding, int minSize, int level) {
+
+		if (this.encoding == null && stream == null && !isCommitted()) {
+			this.encoding = encoding;
+			this.minSize = minSize;
+			this.level = level;
+		}
+	}
+
+	/**
+	 * Chooses the encoding of a body the handler already has compressed, so it is sent as it is.
+	 * @param length The length of the body before compression.
+	 * @return The encoding to send, null if the body should be sent uncompressed.
+	 */
+	public ContentEncoding encodingFor(long length) {
+		return encoding != null && stream == null && length >= minSize ? encoding : null;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+
+		if (encoding == null) {
+			return super.getOutputStream();
+		}
+		if (stream == null) {
+			stream = new CompressingStream();
+		}
+		return stream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+
+		if (encoding == null) {
+			return super.getWriter();
+		}
+		if (writer == null) {
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int length) {
+		setContentLengthLong(length);
+	}
+
+	@Override
+	public void setContentLengthLong(long length) {
+
+		if (encoding == null) {
+			super.setContentLengthLong(length);
+		} else {
+			contentLength = length;
+		}
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+
+		if (!header(name, value)) {
+			super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+
+		if (!header(name, value)) {
+			super.addHeader(name, value);
+		}
+	}
+
+	/**
+	 * Keeps the content length while the body may be compressed, and stops compressing once the handler
+	 * encodes the body itself.
+	 * @return Whether the header is kept instead of being set.
+	 */
+	private boolean header(String name, String value) {
+
+		if (encoding == null) {
+			return false;
+		}
+		if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			contentLength = Long.parseLong(value);
+			return true;
+		}
+		if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) && stream == null) {
+			deactivate();
+		}
+		return false;
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+
+		if (writer != null) {
+			writer.flush();
+		}
+		if (stream != null) {
+			stream.flush();
+		}
+		// while the first bytes are held the headers cannot be sent yet
+		if (stream == null || stream.out != null) {
+			super.flushBuffer();
+		}
+	}
+
+	@Override
+	public void resetBuffer() {
+
+		super.resetBuffer();
+		if (stream != null && stream.out == null) {
+			stream.buffer.reset();
+		}
+	}
+
+	@Override
+	public void reset() {
+
+		super.reset();
+		if (stream != null && stream.out == null) {
+			stream.buffer.reset();
+		}
+		contentLength = -1;
+	}
+
+	@Override
+	public void sendError(int status) throws IOException {
+		discard();
+		super.sendError(status);
+	}
+
+	@Override
+	public void sendError(int status, String message) throws IOException {
+		discard();
+		super.sendError(status, message);
+	}
+
+	/**
+	 * Sends the body held, or the end of the compressed data. It is called once the last dispatch of the
+	 * request is done, and does nothing if the body is not compressed or has already been finished.
+	 * @throws IOException If the body cannot be written.
+	 */
+	public void finish() throws IOException {
+
+		if (writer != null) {
+			writer.flush();
+		}
+		if (stream != null) {
+			stream.finish();
+		}
+	}
+
+	/**
+	 * Sends the body as it is from now on, with the content length set by the handler.
+	 */
+	private void deactivate() {
+
+		if (stream == null) {
+			encoding = null;
+			if (contentLength >= 0) {
+				super.setContentLengthLong(contentLength);
+			}
+		}
+	}
+
+	/**
+	 * Drops the bytes held, since the error page replaces the body.
+	 */
+	private void discard() {
+
+		if (stream != null && stream.out == null) {
+			stream.buffer.reset();
+			stream.finished = true;
+		}
+		deactivate();
+	}
+
+	/**
+	 * @return whether the body can be compressed, according to the response so far
+	 */
+	private boolean compressible() {
+
+		int status = getStatus();
+		return !isCommitted() && getHeader(HttpHeaders.CONTENT_ENCODING) == null && status != HttpStatus.NO_CONTENT.value()
+				&& status != HttpStatus.NOT_MODIFIED.value() && status != HttpStatus.PARTIAL_CONTENT.value();
+	}
+
+	/**
+	 * The stream of the body: it holds the first bytes, and then writes them to the response compressed or
+	 * as they are.
+	 */
+	private final class CompressingStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(minSize, 8192));
+
+		/**
+		 * Where the body goes once the choice is made, null while the first bytes are held.
+		 */
+		private OutputStream out;
+
+		private boolean finished;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+
+			if (finished) {
+				throw new IOException("The response has already been finished");
+			}
+			if (out == null && buffer.size() + length < minSize) {
+				buffer.write(bytes, offset, length);
+				return;
+			}
+			if (out == null) {
+				start(true);
+			}
+			out.write(bytes, offset, length);
+		}
+
+		/**
+		 * Chooses where the body goes and writes the bytes held.
+		 */
+		private void start(boolean compress) throws IOException {
+
+			ServletOutputStream target = CompressingResponse.super.getOutputStream();
+
+			if (compress && compressible()) {
+				CompressingResponse.super.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+				out = encoding.wrap(target, level);
+			} else {
+				if (contentLength >= 0 || !compress) {
+					CompressingResponse.super.setContentLengthLong(contentLength >= 0 ? contentLength : buffer.size());
+				}
+				out = target;
+			}
+
+			buffer.writeTo(out);
+			buffer.reset();
+		}
+
+		@Override
+		public void flush() throws IOException {
+
+			// the bytes held are kept until there are enough of them to decide
+			if (out != null) {
+				out.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+		}
+
+		private void finish() throws IOException {
+
+			if (finished) {
+				return;
+			}
+			finished = true;
+
+			if (out == null) {
+				start(false);
+			}
+			if (out instanceof DeflaterOutputStream) {
+				// writes the end of the compressed data and releases the compressor
+				out.close();
+			} else {
+				out.flush();
+			}
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			throw new UnsupportedOperationException("Non-blocking writes are not supported by the compressed responses");
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package practice.compression;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Configuration of the response compression, negotiated per endpoint instead of by the connector, so each
+ * endpoint has its own settings and the bodies compressed in advance are not compressed again.
+ */
+@Configuration
+public class CompressionConfig extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private CompressionInterceptor compressionInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(compressionInterceptor).addPathPatterns("/api/**");
+	}
+
+	/**
+	 * @param compressionFilter The filter compressing the responses.
+	 * @return the registration of the filter for the API requests, and their asynchronous dispatches
+	 */
+	@Bean
+	public FilterRegistrationBean compressionFilterRegistration(CompressionFilter compressionFilter) {
+
+		FilterRegistrationBean registration = new FilterRegistrationBean(compressionFilter);
+		registration.addUrlPatterns("/api/*");
+		registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+		return registration;
+	}
+}
@@ -0,0 +1,42 @@
+package practice.compression;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Wraps the responses in a {@link CompressingResponse}, which compresses the body once
+ * {@link CompressionInterceptor} activates it for an endpoint marked with {@link Compressed}.
+ * The end of the compressed data is written when the request is done: after the handler returns, or after
+ * the last dispatch of an asynchronous request, which goes through the filter again with the same response.
+ */
+@Component
+public class CompressionFilter extends OncePerRequestFilter {
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		CompressingResponse compressing = CompressingResponse.of(response);
+		if (compressing == null) {
+			compressing = new CompressingResponse(response);
+		}
+
+		filterChain.doFilter(request, compressing);
+
+		if (!request.isAsyncStarted()) {
+			compressing.finish();
+		}
+	}
+}
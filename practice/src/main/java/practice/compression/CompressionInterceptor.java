@@ -0,0 +1,56 @@
+package practice.compression;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Negotiates the content encoding of the responses of the handler methods marked with {@link Compressed},
+ * and activates the {@link CompressingResponse} with the settings of their endpoint.
+ */
+@Component
+public class CompressionInterceptor extends HandlerInterceptorAdapter {
+
+	private final CompressionSettings settings;
+
+	/**
+	 * Constructor.
+	 * @param settings The compression settings.
+	 */
+	@Autowired
+	public CompressionInterceptor(CompressionSettings settings) {
+		this.settings = settings;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+
+		if (!(handler instanceof HandlerMethod)) {
+			return true;
+		}
+
+		Compressed compressed = ((HandlerMethod) handler).getMethodAnnotation(Compressed.class);
+		if (compressed == null || !settings.isEnabled(compressed.value())) {
+			return true;
+		}
+
+		// caches must keep a copy per encoding, even of the responses sent uncompressed
+		if (!response.containsHeader(HttpHeaders.VARY)) {
+			response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		}
+
+		CompressingResponse compressing = CompressingResponse.of(response);
+		ContentEncoding encoding = ContentEncoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING), settings.getEncodings());
+
+		if (compressing != null && encoding != null) {
+			compressing.activate(encoding, settings.getMinSize(compressed.value()), settings.getLevel());
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,180 @@
+package practice.compression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the response compression, bound from the practice.compression.* properties.
+ * The endpoints marked with {@link Compressed} use the general settings, unless their own ones are set
+ * under practice.compression.endpoints.(name).
+ */
+@Component
+@ConfigurationProperties(prefix = "practice.compression")
+public class CompressionSettings {
+
+	/**
+	 * Whether the responses of the endpoints are compressed.
+	 */
+	private boolean enabled = true;
+
+	/**
+	 * Responses shorter than this number of bytes are sent as they are.
+	 */
+	private int minSize = 2048;
+
+	/**
+	 * Compression level, from 1 (fastest) to 9 (smallest), -1 for the default.
+	 */
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * The encodings offered, by preference.
+	 */
+	private List<ContentEncoding> encodings = new ArrayList<>(Arrays.asList(ContentEncoding.GZIP, ContentEncoding.DEFLATE));
+
+	/**
+	 * The settings of each endpoint, by name.
+	 */
+	private Map<String, Endpoint> endpoints = new HashMap<>();
+
+	/**
+	 * @param endpoint The name of the endpoint.
+	 * @return whether the responses of the endpoint are compressed
+	 */
+	public boolean isEnabled(String endpoint) {
+
+		Endpoint settings = endpoints.get(endpoint);
+		return settings == null || settings.enabled == null ? enabled : settings.enabled;
+	}
+
+	/**
+	 * @param endpoint The name of the endpoint.
+	 * @return the length of the shortest response of the endpoint that is compressed
+	 */
+	public int getMinSize(String endpoint) {
+
+		Endpoint settings = endpoints.get(endpoint);
+		return settings == null || settings.minSize == null ? minSize : settings.minSize;
+	}
+
+	/**
+	 * @return the enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled the enabled to set
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return the minimum size
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @param minSize the minimum size to set
+	 */
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	/**
+	 * @return the level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @param level the level to set
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	/**
+	 * @return the encodings
+	 */
+	public List<ContentEncoding> getEncodings() {
+		return encodings;
+	}
+
+	/**
+	 * @param encodings the encodings to set
+	 */
+	public void setEncodings(List<ContentEncoding> encodings) {
+		this.encodings = encodings;
+	}
+
+	/**
+	 * @return the endpoints
+	 */
+	public Map<String, Endpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * @param endpoints the endpoints to set
+	 */
+	public void setEndpoints(Map<String, Endpoint> endpoints) {
+		this.endpoints = endpoints;
+	}
+
+	/**
+	 * Settings of an endpoint, the general ones apply to those not set.
+	 */
+	public static class Endpoint {
+
+		/**
+		 * Whether the responses of the endpoint are compressed.
+		 */
+		private Boolean enabled;
+
+		/**
+		 * Responses of the endpoint shorter than this number of bytes are sent as they are.
+		 */
+		private Integer minSize;
+
+		/**
+		 * @return the enabled
+		 */
+		public Boolean getEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * @param enabled the enabled to set
+		 */
+		public void setEnabled(Boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @return the minimum size
+		 */
+		public Integer getMinSize() {
+			return minSize;
+		}
+
+		/**
+		 * @param minSize the minimum size to set
+		 */
+		public void setMinSize(Integer minSize) {
+			this.minSize = minSize;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package practice.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The content encodings the responses can be compressed with.
+ */
+public enum ContentEncoding {
+
+	/**
+	 * gzip (RFC 1952).
+	 */
+	GZIP("gzip"),
+
+	/**
+	 * deflate, which HTTP defines as the zlib format (RFC 1950), not the raw deflate stream.
+	 */
+	DEFLATE("deflate");
+
+	private final String token;
+
+	ContentEncoding(String token) {
+		this.token = token;
+	}
+
+	/**
+	 * @return the token of the encoding in the Accept-Encoding and Content-Encoding headers
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Wraps a stream with a compressor of this encoding. Closing the returned stream writes the end of the
+	 * compressed data, closes the wrapped stream and releases the compressor.
+	 * @param out The stream receiving the compressed bytes.
+	 * @param level The compression level, from 1 (fastest) to 9 (smallest), -1 for the default.
+	 * @return The compressing stream.
+	 * @throws IOException If the header cannot be written.
+	 */
+	public DeflaterOutputStream wrap(OutputStream out, int level) throws IOException {
+
+		if (this == GZIP) {
+			return new GZIPOutputStream(out, 8192) {
+				{
+					def.setLevel(level);
+				}
+			};
+		}
+
+		return new DeflaterOutputStream(out, new Deflater(level), 8192) {
+
+			@Override
+			public void close() throws IOException {
+				super.close();
+				// the deflater is not the default one, so it is not ended by the stream
+				def.end();
+			}
+		};
+	}
+
+	/**
+	 * Chooses the encoding of a response from the Accept-Encoding header of the request (RFC 7231): the
+	 * allowed encoding with the highest quality, the first allowed one between equals. An encoding with
+	 * quality 0 is refused, and * stands for the encodings not listed.
+	 * @param acceptEncoding The value of the header, null if it was not sent.
+	 * @param allowed The encodings allowed, by preference.
+	 * @return The encoding, null if the response should not be compressed.
+	 */
+	public static ContentEncoding negotiate(String acceptEncoding, List<ContentEncoding> allowed) {
+
+		if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+			return null;
+		}
+
+		ContentEncoding chosen = null;
+		double best = 0;
+
+		for (ContentEncoding encoding : allowed) {
+			double quality = quality(acceptEncoding, encoding.token);
+			if (quality > best) {
+				chosen = encoding;
+				best = quality;
+			}
+		}
+
+		return chosen;
+	}
+
+	/**
+	 * @return the quality of an encoding in the header, the one of * if it is not listed, 0 if neither is
+	 */
+	private static double quality(String acceptEncoding, String token) {
+
+		double wildcard = 0;
+
+		for (String element : acceptEncoding.split(",")) {
+
+			String[] parts = element.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+			double quality = 1;
+
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+
+			if (coding.equals(token)) {
+				return quality;
+			}
+			if (coding.equals("*")) {
+				wildcard = quality;
+			}
+		}
+
+		return wildcard;
+	}
+}
@@ -1,12 +1,13 @@
 package practice.controller;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
-import org.apache.log4j.Logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.MessageSource;
-import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import practice.exception.ProcessException;
+import practice.executor.ExecutorSettings;
 
 /**
  * Class to intercept exceptions in the processes.
@@ -24,29 +26,55 @@ import practice.exception.ProcessException;
 public class ExceptionHandlerAdvice {
 	
 	@Autowired
-	private MessageSource messageSource;
+	private MessageResolver messageResolver;
+	
+	/**
+	 * The settings of the executors, with the seconds the clients are told to wait before retrying a rejected request.
+	 */
+	@Autowired
+	private ExecutorSettings executorSettings;
 
 	/**
 	 * Class logger.
 	 */
-	private final Logger logger = Logger.getLogger(getClass());
+	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	/**
 	 * Method to handle the business {@link ProcessException}
+	 * The failures of the server are logged with their cause, the expected errors only at debug level.
 	 * @param pex
 	 * @return
 	 */
 	@ExceptionHandler(ProcessException.class)
 	public ResponseEntity<MessageResponse> handleProcessException(ProcessException pex) {
 		
-		if (pex.getCause() != null) {
+		if (pex.isFailure() && pex.getCause() != null) {
 			logger.error(pex.getMessage(), pex.getCause());
+		} else if (logger.isDebugEnabled()) {
+			logger.debug("{}: {}", pex.getHttpStatus(), pex.getMessage(), pex.getCause());
 		}
 		
 		MessageResponse messageResponse = createResponseMessage(pex.getMessage(), pex.getArgs());
 		return ResponseEntity.status(pex.getHttpStatus()).body(messageResponse);
 	}
 	
+	/**
+	 * Method to handle the tasks rejected by the overloaded executors, telling the client when to retry.
+	 * @param rex
+	 * @return
+	 */
+	@ExceptionHandler(RejectedExecutionException.class)
+	public ResponseEntity<MessageResponse> handleRejectedException(RejectedExecutionException rex) {
+		
+		logger.warn(rex.getMessage());
+		
+		MessageResponse messageResponse = createResponseMessage("error.overloaded");
+		
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(executorSettings.getRetryAfter()))
+				.body(messageResponse);
+	}
+	
 	/**
 	 * Method to handle general {@link RuntimeException}
 	 * @param pex
@@ -70,7 +98,7 @@ public class ExceptionHandlerAdvice {
 	@ExceptionHandler(HttpMessageNotReadableException.class)
 	public ResponseEntity<MessageResponse> handleHttpNotReadableException(HttpMessageNotReadableException nrex) {
 		
-		logger.error(nrex);
+		logger.debug("Unreadable request: {}", nrex.getMessage());
 		
 		MessageResponse messageResponse = createResponseMessage("error.input.unreadable");
 		
@@ -106,29 +134,13 @@ public class ExceptionHandlerAdvice {
 	
 	/**
 	 * Creates a {@link MessageResponse}.
-	 * @param msg The 
+	 * @param msg The message code, the text itself if it is not found.
 	 * @param args
 	 * @return
 	 */
 	private MessageResponse createResponseMessage(String msg, Object [] args) {
 		
-		MessageResponse messageResponse = null;
-		
-		if (msg == null) {
-			msg = "error.internal";
-		}
-		
-		String message = msg;
-		try {
-			message = messageSource.getMessage(msg, args, LocaleContextHolder.getLocale());
-		} catch (Exception e) {
-			Logger.getLogger(getClass()).warn(e.getMessage());
-		} finally {
-			messageResponse = new MessageResponse(message);
-		}
-		
-		
-		return messageResponse;
+		return new MessageResponse(messageResolver.resolve(msg, args));
 	}
 	
 }
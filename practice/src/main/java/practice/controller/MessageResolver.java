@@ -0,0 +1,135 @@
+package practice.controller;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Resolves the messages of the responses for the locale of the request.
+ * Each message of the bundles (messages/*.properties) is looked up once per locale, and its
+ * {@link MessageFormat} compiled once, so the error responses cost a map lookup and the formatting
+ * of the arguments. The messages follow the rules of the {@link MessageSource}: without arguments the
+ * text is returned as is. An unknown code is returned as the message, without throwing.
+ * The bundles are not reloaded while running, so the messages are kept for good. Only a few locales
+ * are kept, the rest are resolved by the {@link MessageSource} on each call.
+ */
+@Component
+public class MessageResolver {
+
+	/**
+	 * Maximum number of locales kept.
+	 */
+	private static final int MAX_LOCALES = 16;
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(MessageResolver.class);
+
+	private final MessageSource messageSource;
+
+	/**
+	 * The messages found, by locale and code.
+	 */
+	private final ConcurrentMap<Locale, ConcurrentMap<String, Message>> messages = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param messageSource The source of the messages.
+	 */
+	@Autowired
+	public MessageResolver(MessageSource messageSource) {
+		this.messageSource = messageSource;
+	}
+
+	/**
+	 * Resolves a message for the locale of the request.
+	 * @param code The message code, null for the internal error.
+	 * @param args The arguments for the message, if any.
+	 * @return The resolved message, the code if it is not found.
+	 */
+	public String resolve(String code, Object... args) {
+		return resolve(code == null ? "error.internal" : code, args, LocaleContextHolder.getLocale());
+	}
+
+	/**
+	 * Resolves a message.
+	 * @param code The message code.
+	 * @param args The arguments for the message, if any.
+	 * @param locale The locale of the message.
+	 * @return The resolved message, the code if it is not found.
+	 */
+	public String resolve(String code, Object[] args, Locale locale) {
+
+		ConcurrentMap<String, Message> localeMessages = messages.get(locale);
+		if (localeMessages == null) {
+			if (messages.size() >= MAX_LOCALES) {
+				return messageSource.getMessage(code, args, code, locale);
+			}
+			localeMessages = messages.computeIfAbsent(locale, key -> new ConcurrentHashMap<>());
+		}
+
+		Message message = localeMessages.get(code);
+		if (message == null) {
+
+			String text = messageSource.getMessage(code, null, null, locale);
+			if (text == null) {
+				// free texts, such as the messages of unexpected exceptions, are not kept
+				logger.debug("No message {} for locale {}", code, locale);
+				return code;
+			}
+
+			message = new Message(text, locale);
+			localeMessages.putIfAbsent(code, message);
+		}
+
+		return message.format(args);
+	}
+
+	/**
+	 * A message of the bundles, with its format compiled.
+	 */
+	private static final class Message {
+
+		private final String text;
+
+		/**
+		 * The format of the text, null if it is not a valid pattern. It is not thread-safe, so the
+		 * formatting is synchronized on it.
+		 */
+		private final MessageFormat format;
+
+		private Message(String text, Locale locale) {
+
+			this.text = text;
+
+			MessageFormat compiled = null;
+			try {
+				compiled = new MessageFormat(text, locale);
+			} catch (IllegalArgumentException e) {
+				logger.warn("Message \"{}\" is not a valid pattern: {}", text, e.getMessage());
+			}
+			this.format = compiled;
+		}
+
+		private String format(Object[] args) {
+
+			if (ObjectUtils.isEmpty(args) || format == null) {
+				return text;
+			}
+
+			synchronized (format) {
+				return format.format(args);
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package practice.controller;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+
+/**
+ * Controller exposing the application metrics to be scraped in Prometheus text format, created on the
+ * first scrape.
+ */
+@RestController
+@Lazy
+public class MetricsController {
+
+	@Autowired
+	private CollectorRegistry registry;
+
+	@GetMapping("/metrics")
+	public void metrics(HttpServletResponse response) throws IOException {
+
+		response.setContentType(TextFormat.CONTENT_TYPE_004);
+
+		try (Writer writer = response.getWriter()) {
+			TextFormat.write004(writer, registry.metricFamilySamples());
+		}
+	}
+}
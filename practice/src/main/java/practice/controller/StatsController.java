@@ -0,0 +1,53 @@
+package practice.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import practice.metrics.StartupReport;
+import practice.model.CacheStatistics;
+import practice.model.GroupCommitStatistics;
+import practice.provider.GroupCommitter;
+import practice.service.UserCache;
+
+/**
+ * Controller exposing the runtime counters of the application, created on its first request.
+ */
+@RestController
+@Lazy
+@RequestMapping("/api/stats")
+public class StatsController {
+
+	@Autowired
+	private UserCache userCache;
+
+	@Autowired
+	private GroupCommitter groupCommitter;
+
+	@Autowired
+	private StartupReport startupReport;
+
+	@GetMapping(value = "cache", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<CacheStatistics> cache() {
+
+		return ResponseEntity.ok(userCache.getStatistics());
+	}
+
+	@GetMapping(value = "groupcommit", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<GroupCommitStatistics> groupCommit() {
+
+		return ResponseEntity.ok(groupCommitter.getStatistics());
+	}
+
+	@GetMapping(value = "startup", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Map<String, Long>> startup() {
+
+		return ResponseEntity.ok(startupReport.getPhases());
+	}
+}
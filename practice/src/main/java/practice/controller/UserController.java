@@ -1,15 +1,40 @@
 package practice.controller;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
-import org.apache.log4j.Logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -18,12 +43,32 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import practice.compression.Compressed;
+import practice.compression.CompressingResponse;
+import practice.compression.ContentEncoding;
+import practice.controller.serialization.JsonArrayStreamer;
+import practice.controller.serialization.UserImportReader;
 import practice.exception.ProcessException;
+import practice.model.BatchItemResult;
+import practice.model.ImportSummary;
 import practice.model.User;
+import practice.model.UserPage;
+import practice.model.UserSearchPage;
+import practice.service.UserExporter;
 import practice.service.UserService;
+import practice.service.UserSnapshot;
+import practice.utils.ByteRange;
+import practice.utils.DateCodec;
 
 /**
  * User Controller for User
@@ -35,50 +80,308 @@ public class UserController {
 	@Autowired
 	private UserService service;
 
-	private static final Logger logger = Logger.getLogger(UserController.class);
+	private static final Logger logger = LoggerFactory.getLogger(UserController.class);
+
+	/**
+	 * Media types of the import files.
+	 */
+	private static final String TEXT_CSV_VALUE = "text/csv";
+
+	private static final MediaType TEXT_CSV = MediaType.valueOf(TEXT_CSV_VALUE);
+
+	private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	/**
+	 * Request attributes of the sendfile support of Tomcat: whether the connector supports it, and the file
+	 * and the range to send once the request is processed.
+	 */
+	private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
 
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	/**
+	 * Maximum number of users that can be requested in a single page.
+	 */
+	@Value("${practice.user.max-page-size:1000}")
+	private int maxPageSize;
+	
+	/**
+	 * Time in milliseconds to wait for an asynchronous service call before answering with an error.
+	 */
+	@Value("${practice.async.timeout:30000}")
+	private long asyncTimeout;
+	
+	/**
+	 * Maximum number of items in a batch request.
+	 */
+	@Value("${practice.batch.max-size:1000}")
+	private int maxBatchSize;
+	
+	/**
+	 * Number of users created in each transaction of an import.
+	 */
+	@Value("${practice.import.batch-size:500}")
+	private int importBatchSize;
+	
+	/**
+	 * Maximum number of characters of a line of an import.
+	 */
+	@Value("${practice.import.max-line-length:4096}")
+	private int importMaxLineLength;
+	
+	/**
+	 * Maximum number of rejected lines listed in the summary of an import.
+	 */
+	@Value("${practice.import.max-errors:100}")
+	private int importMaxErrors;
+	
+	/**
+	 * Time in milliseconds an import may take before it is answered with an error.
+	 */
+	@Value("${practice.import.timeout:600000}")
+	private long importTimeout;
+	
+	/**
+	 * Seconds a client is told to wait while an export is written.
+	 */
+	@Value("${practice.export.retry-after:1}")
+	private int exportRetryAfter;
+	
+	@Autowired
+	private Validator validator;
+	
+	@Autowired
+	private MessageResolver messageResolver;
+	
+	@Autowired
+	@Qualifier("importExecutor")
+	private AsyncTaskExecutor importExecutor;
+
+	/**
+	 * Streams all the users as a JSON array, writing them to the response as they are read.
+	 * The response is written from the async executor, so the request thread is released at once.
+	 * If the users have not changed since the tag the client has, it answers 304 (not modified) 
+	 * without reading them, and 204 (no content) if there are no users.
+	 * If the snapshot of the users is enabled and fresh enough, it is written at once instead, in its
+	 * variant compressed with the encoding negotiated for the request, if any.
+	 * @param ifNoneMatch The tags the client has, if any.
+	 * @param response The response to write to.
+	 * @return The {@link StreamingResponseBody} writing the users, null if the snapshot was written.
+	 * @throws IOException If the snapshot cannot be written.
+	 */
+	@Compressed("getall")
 	@GetMapping(value = "getall", produces = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<List<User>> getAll() {
+	public ResponseEntity<StreamingResponseBody> getAll(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch, 
+			HttpServletResponse response) throws IOException {
 
 		logger.info("Received getall request");
+		
+		String eTag = eTag(service.getAllTag());
+		if (matches(ifNoneMatch, eTag)) {
+			logger.info("Users not modified");
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+		}
+		
+		UserSnapshot.Snapshot snapshot = service.getAllSnapshot();
+		if (snapshot != null) {
+			writeSnapshot(snapshot, ifNoneMatch, response);
+			return null;
+		}
 
-		List<User> users = new ArrayList<>();
+		if (!service.hasUsers()) {
+			logger.info("Returning 0 users");
+			return ResponseEntity.noContent().eTag(eTag).build();
+		}
 
-		Future<List<User>> futureUsers = service.findAll();
+		StreamingResponseBody body = outputStream -> {
+			
+			JsonArrayStreamer<User> streamer = new JsonArrayStreamer<>(outputStream, objectMapper);
 
-		while (!futureUsers.isDone()) {
+			int count = 0;
 			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-				logger.warn("Wait interrupted.");
+				count = service.streamAll(streamer);
+			} catch (RuntimeException e) {
+				if (!streamer.isStarted()) {
+					throw e;
+				}
+				// the response is already committed, so it is cut short instead of being replaced by an error
+				logger.error("Error streaming users, response truncated.", e);
+				return;
 			}
+
+			streamer.close();
+
+			logger.info("Returning {} users", count);
+		};
+		
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).eTag(eTag).body(body);
+	}
+
+	/**
+	 * Writes the snapshot of all the users straight to the response, or 304 (not modified) if the client
+	 * already has its version.
+	 */
+	private void writeSnapshot(UserSnapshot.Snapshot snapshot, String ifNoneMatch, HttpServletResponse response) 
+			throws IOException {
+		
+		String eTag = eTag(snapshot.getTag());
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		
+		if (matches(ifNoneMatch, eTag)) {
+			logger.info("Users not modified");
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
 		}
-		try {
-			users.addAll(futureUsers.get());
-		} catch (InterruptedException | ExecutionException e) {
-			ProcessException pex = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
-			throw pex;
+		
+		if (snapshot.getCount() == 0) {
+			response.setStatus(HttpStatus.NO_CONTENT.value());
+			return;
+		}
+		
+		// the variant compressed in advance is sent instead of compressing the same bytes again
+		CompressingResponse compressing = CompressingResponse.of(response);
+		ContentEncoding encoding = compressing == null ? null : compressing.encodingFor(snapshot.getJson().length);
+		byte[] body = encoding == null ? snapshot.getJson() : snapshot.getEncoded(encoding);
+		
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		if (encoding != null) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+		}
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+		
+		logger.info("Returning {} users", snapshot.getCount());
+	}
+	
+	/**
+	 * Returns a page of users using keyset pagination.
+	 * @param after The id of the last user in the previous page, 0 for the first page.
+	 * @param limit The maximum number of users in the page.
+	 * @param ifNoneMatch The tags the client has, if any.
+	 * @return The {@link UserPage} with the cursor for the next page.
+	 */
+	@Compressed("getall-page")
+	@GetMapping(value = "getall", params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<UserPage>> getPage(@RequestParam(value = "after", defaultValue = "0") int after,
+			@RequestParam("limit") int limit, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+		if (after < 0) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.page.after");
+		}
+		if (limit <= 0 || limit > maxPageSize) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.page.limit", String.valueOf(maxPageSize));
+		}
+
+		logger.info("Received getall page request");
+		
+		String eTag = eTag(service.getAllTag());
+		if (matches(ifNoneMatch, eTag)) {
+			logger.info("Users not modified");
+			DeferredResult<ResponseEntity<UserPage>> result = new DeferredResult<>();
+			result.setResult(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+			return result;
+		}
+
+		return defer(service.findPage(after, limit), page -> {
+			
+			logger.info("Returning {} users", page.getUsers().size());
+			
+			return page.getUsers().isEmpty() ? ResponseEntity.noContent().eTag(eTag).build() : ResponseEntity.ok().eTag(eTag).body(page);
+		}, "error.user.retrieveall");
+	}
+
+	/**
+	 * Searches the users born within a range of dates, served by the index on the birth date.
+	 * @param bornAfter The date the users were born after, exclusive, with dd-MM-yyyy format.
+	 * @param bornBefore The date the users were born before, exclusive, with dd-MM-yyyy format.
+	 * @param limit The maximum number of users to return.
+	 * @return The users found, ordered by birth date.
+	 */
+	@Compressed("search")
+	@GetMapping(value = "search", produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<List<User>>> search(@RequestParam(value = "bornAfter", required = false) String bornAfter,
+			@RequestParam(value = "bornBefore", required = false) String bornBefore,
+			@RequestParam(value = "limit", defaultValue = "100") int limit) {
+
+		if (bornAfter == null && bornBefore == null) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.search.criteria");
 		}
+		if (limit <= 0 || limit > maxPageSize) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.page.limit", String.valueOf(maxPageSize));
+		}
+
+		LocalDate after = bornAfter == null ? LocalDate.MIN : parseSearchDate(bornAfter);
+		LocalDate before = bornBefore == null ? LocalDate.MAX : parseSearchDate(bornBefore);
+
+		logger.info("Received search users request");
 
-		logger.info(String.format("Returning %d users", users.size()));
+		return defer(service.findBornBetween(after, before, limit), users -> {
 
-		return users.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(users);
+			logger.info("Returning {} users", users.size());
+
+			return users.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(users);
+		}, "error.user.search");
+	}
+
+	/**
+	 * Searches the users by name, matching whole names, prefixes, parts and misspellings.
+	 * The search is served from an in-memory index, so its cost does not depend on the number of users.
+	 * @param name The text to search.
+	 * @param offset The number of ranked matches to skip.
+	 * @param limit The maximum number of users in the page.
+	 * @return The {@link UserSearchPage} with the best matches first and the offset of the next page.
+	 */
+	@Compressed("search")
+	@GetMapping(value = "search", params = "name", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<UserSearchPage> searchByName(@RequestParam("name") String name,
+			@RequestParam(value = "offset", defaultValue = "0") int offset,
+			@RequestParam(value = "limit", defaultValue = "20") int limit) {
+
+		if (offset < 0) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.page.after");
+		}
+		if (limit <= 0 || limit > maxPageSize) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.page.limit", String.valueOf(maxPageSize));
+		}
+
+		logger.info("Received search users by name request");
+
+		UserSearchPage page = service.searchByName(name, offset, limit);
+
+		logger.info("Returning {} users", page.getUsers().size());
+
+		return page.getUsers().isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(page);
 	}
 
 	@GetMapping("get/{id}")
-	public ResponseEntity<User> get(@PathVariable("id") int id) {
+	public ResponseEntity<User> get(@PathVariable("id") int id, 
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		
 		if (id <= 0) {
 			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.id.minsize");
 		}
 
 		logger.info("Received get user request");
+		
+		String eTag = eTag(service.getTag(id));
+		if (matches(ifNoneMatch, eTag)) {
+			logger.info("User not modified");
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+		}
 
 		User user = service.find(id);
 
-		logger.info(String.format("Returning %d users", user == null ? 0 : 1));
+		logger.info("Returning {} users", user == null ? 0 : 1);
 
-		return user == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(user);
+		return user == null ? ResponseEntity.notFound().build() : ResponseEntity.ok().eTag(eTag).body(user);
 	}
 
 	@PostMapping(value = "create", consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -90,7 +393,7 @@ public class UserController {
 
 		user = service.create(data);
 
-		logger.info(String.format("Returning %d users", user == null ? 0 : 1));
+		logger.info("Returning {} users", user == null ? 0 : 1);
 		return ResponseEntity.status(user == null ? HttpStatus.NOT_FOUND : HttpStatus.OK).body(user);
 	}
 
@@ -103,40 +406,472 @@ public class UserController {
 
 		user = service.update(data);
 
-		logger.info(String.format("Returning %d users", user == null ? 0 : 1));
+		logger.info("Returning {} users", user == null ? 0 : 1);
 
 		return ResponseEntity.status(user == null ? HttpStatus.NOT_FOUND : HttpStatus.OK).body(user);
 	}
 
+	/**
+	 * Creates several users in a single transaction.
+	 * @param data The users to create.
+	 * @return The result of each user, in the same order. Invalid users are not created.
+	 */
+	@PostMapping(value = "create/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<List<BatchItemResult>> createBatch(@RequestBody List<User> data) {
+
+		checkBatchSize(data);
+
+		logger.info("Received create users batch request");
+
+		BatchItemResult[] results = new BatchItemResult[data.size()];
+		List<Integer> valid = validate(data, User.CreationValidation.class, results);
+
+		if (!valid.isEmpty()) {
+			
+			List<User> created = service.createAll(valid.stream().map(data::get).collect(Collectors.toList()));
+			
+			for (int i = 0; i < valid.size(); i++) {
+				results[valid.get(i)] = new BatchItemResult(valid.get(i), HttpStatus.OK.value(), created.get(i), null);
+			}
+		}
+
+		logger.info("Returning {} results", results.length);
+
+		return ResponseEntity.ok(Arrays.asList(results));
+	}
+
+	/**
+	 * Updates several users in a single transaction.
+	 * @param data The users to update.
+	 * @return The result of each user, in the same order. Invalid users are not updated.
+	 */
+	@PostMapping(value = "update/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<List<BatchItemResult>> updateBatch(@RequestBody List<User> data) {
+
+		checkBatchSize(data);
+
+		logger.info("Received update users batch request");
+
+		BatchItemResult[] results = new BatchItemResult[data.size()];
+		List<Integer> valid = validate(data, User.DefaultValidation.class, results);
+
+		if (!valid.isEmpty()) {
+			
+			List<User> updated = service.updateAll(valid.stream().map(data::get).collect(Collectors.toList()));
+			
+			for (int i = 0; i < valid.size(); i++) {
+				int index = valid.get(i);
+				User user = updated.get(i);
+				results[index] = user == null 
+						? new BatchItemResult(index, HttpStatus.NOT_FOUND.value(), null, 
+								resolveMessage("error.user.notfound", String.valueOf(data.get(index).getId())))
+						: new BatchItemResult(index, HttpStatus.OK.value(), user, null);
+			}
+		}
+
+		logger.info("Returning {} results", results.length);
+
+		return ResponseEntity.ok(Arrays.asList(results));
+	}
+
+	/**
+	 * Removes several users in a single transaction.
+	 * @param ids The ids of the users to remove.
+	 * @return The result of each id, in the same order.
+	 */
+	@PostMapping(value = "remove/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<List<BatchItemResult>> removeBatch(@RequestBody List<Integer> ids) {
+
+		checkBatchSize(ids);
+
+		logger.info("Received remove users batch request");
+
+		BatchItemResult[] results = new BatchItemResult[ids.size()];
+		List<Integer> valid = new ArrayList<>(ids.size());
+
+		for (int i = 0; i < ids.size(); i++) {
+			if (ids.get(i) == null || ids.get(i) <= 0) {
+				results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST.value(), null, resolveMessage("error.id.minsize"));
+			} else {
+				valid.add(i);
+			}
+		}
+
+		if (!valid.isEmpty()) {
+			
+			List<Boolean> removed = service.removeAll(valid.stream().map(ids::get).collect(Collectors.toList()));
+			
+			for (int i = 0; i < valid.size(); i++) {
+				int index = valid.get(i);
+				results[index] = removed.get(i) 
+						? new BatchItemResult(index, HttpStatus.OK.value(), null, null)
+						: new BatchItemResult(index, HttpStatus.NOT_FOUND.value(), null, 
+								resolveMessage("error.user.notfound", String.valueOf(ids.get(index))));
+			}
+		}
+
+		logger.info("Returning {} results", results.length);
+
+		return ResponseEntity.ok(Arrays.asList(results));
+	}
+
+	/**
+	 * Creates the users of a file streamed in the body, as CSV (text/csv) or NDJSON (application/x-ndjson),
+	 * with a user per line (see {@link UserImportReader}). The file is read a line at a time and the valid
+	 * users are created in batched transactions; the next lines are only read once a batch is written, so
+	 * a slow database slows the upload down instead of filling the memory.
+	 * The file is read and written from the import executor, so the request thread is released at once,
+	 * and the write executor is left to the short service writes.
+	 * If a batch cannot be written the import stops, answering with the status of the error and the summary
+	 * so far, with the first line of the failed batch: the batches written before are kept, and the file can
+	 * be imported again from that line.
+	 * @param request The request with the file.
+	 * @return The {@link WebAsyncTask} answering the {@link ImportSummary}, with the lines that were rejected
+	 * and the reason.
+	 */
+	@PostMapping(value = "import", consumes = { TEXT_CSV_VALUE, APPLICATION_NDJSON_VALUE })
+	public WebAsyncTask<ResponseEntity<ImportSummary>> importUsers(HttpServletRequest request) {
+
+		MediaType contentType = MediaType.parseMediaType(request.getContentType());
+		UserImportReader.Format format = contentType.isCompatibleWith(TEXT_CSV) 
+				? UserImportReader.Format.CSV : UserImportReader.Format.NDJSON;
+		Charset charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+
+		logger.info("Received import users request");
+
+		WebAsyncTask<ResponseEntity<ImportSummary>> task = new WebAsyncTask<>(importTimeout, importExecutor, 
+				() -> importUsers(new UserImportReader(new BufferedReader(new InputStreamReader(request.getInputStream(), charset)), 
+						format, objectMapper, importMaxLineLength)));
+		
+		task.onTimeout(() -> {
+			throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.timeout");
+		});
+		
+		return task;
+	}
+
+	/**
+	 * Reads the lines of an import and creates their users in batches.
+	 * @param reader The reader of the file.
+	 * @return The {@link ImportSummary}, with the status of the error if a batch could not be written.
+	 * @throws IOException If the body cannot be read.
+	 */
+	private ResponseEntity<ImportSummary> importUsers(UserImportReader reader) throws IOException {
+
+		ImportSummary summary = new ImportSummary(importMaxErrors);
+		List<User> batch = new ArrayList<>(importBatchSize);
+		int batchLine = 0;
+
+		try {
+
+			UserImportReader.Line line;
+			while ((line = reader.next()) != null) {
+
+				summary.read();
+
+				if (line.getError() != null) {
+					summary.rejected(line.getNumber(), resolveMessage(line.getError(), line.getArgs()));
+					continue;
+				}
+
+				Set<ConstraintViolation<User>> violations = validator.validate(line.getUser(), User.CreationValidation.class);
+				if (!violations.isEmpty()) {
+					summary.rejected(line.getNumber(), resolveMessage(violations.iterator().next().getMessage()));
+					continue;
+				}
+
+				if (batch.isEmpty()) {
+					batchLine = line.getNumber();
+				}
+				batch.add(line.getUser());
+				if (batch.size() == importBatchSize) {
+					summary.created(service.createAll(batch).size());
+					batch.clear();
+				}
+			}
+
+			if (!batch.isEmpty()) {
+				summary.created(service.createAll(batch).size());
+			}
+
+		} catch (ProcessException e) {
+
+			if (e.isFailure()) {
+				logger.error(e.getMessage(), e.getCause());
+			}
+			logger.warn("Import stopped at line {}, {} users imported", batchLine, summary.getCreated());
+
+			summary.failed(batchLine, resolveMessage(e.getMessage(), e.getArgs()));
+			return ResponseEntity.status(e.getHttpStatus()).body(summary);
+		}
+
+		logger.info("Imported {} users, {} rejected", summary.getCreated(), summary.getRejected());
+
+		return ResponseEntity.ok(summary);
+	}
+
+	/**
+	 * Downloads all the users as a file, in NDJSON (the default) or CSV, gzipped if requested.
+	 * The file is written in the background once per version of the users (see {@link UserExporter}), so the
+	 * repeated downloads cost no database work until they change. While it is written the last file is sent,
+	 * with its own tag, if it was outdated only recently; otherwise the request is answered with 202
+	 * (accepted) and a Retry-After header. If the last attempt to write it failed, it is answered with 503
+	 * (service unavailable) and a Retry-After header telling when it is tried again.
+	 * A single byte range is answered with 206 (partial content), so a broken download can be resumed; with
+	 * an If-Range header the range is only applied if the file still has that tag. The file is sent by the
+	 * connector with sendfile when it supports it, and otherwise copied with {@link FileChannel#transferTo},
+	 * so it is never read into the heap.
+	 * @param format The format of the file, ndjson or csv.
+	 * @param gzip Whether the file is gzipped.
+	 * @param ifNoneMatch The tags the client has, if any.
+	 * @param range The range of bytes requested, if any.
+	 * @param ifRange The tag the range applies to, if any.
+	 * @param request The request, used to check the sendfile support.
+	 * @param response The response to write to.
+	 * @throws IOException If the file cannot be sent.
+	 */
+	@GetMapping("export")
+	public void export(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+			@RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+			@RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+		logger.info("Received export request");
+
+		UserExporter.Format exportFormat;
+		try {
+			exportFormat = UserExporter.Format.valueOf(format.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.export.format", format);
+		}
+
+		String eTag = eTag(service.getAllTag());
+		if (matches(ifNoneMatch, eTag)) {
+			logger.info("Users not modified");
+			response.setHeader(HttpHeaders.ETAG, eTag);
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
+		}
+
+		UserExporter.Export export = service.getExport(exportFormat, gzip);
+		if (export == null) {
+			long retryDelay = service.getExportRetryDelay(exportFormat, gzip);
+			if (retryDelay > 0) {
+				// the client is not told to poll for an export that is not being written
+				response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(retryDelay + 999)));
+				throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.export.failed");
+			}
+			logger.info("Export being written");
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(exportRetryAfter));
+			response.setStatus(HttpStatus.ACCEPTED.value());
+			return;
+		}
+
+		// the last export may be served while the next one is written, and the client may have it already
+		eTag = eTag(export.getTag());
+		if (matches(ifNoneMatch, eTag)) {
+			logger.info("Export not modified");
+			response.setHeader(HttpHeaders.ETAG, eTag);
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
+		}
+
+		long length = export.getLength();
+		ByteRange byteRange = ifRange == null || ifRange.trim().equals(eTag) ? ByteRange.parse(range, length) : null;
+
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		if (byteRange == ByteRange.UNSATISFIABLE) {
+			response.setHeader(HttpHeaders.CONTENT_RANGE, byteRange.contentRange(length));
+			response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+			return;
+		}
+
+		long first = byteRange == null ? 0 : byteRange.getFirst();
+		long count = byteRange == null ? length : byteRange.getLength();
+
+		String fileName = "users." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+		response.setContentType(gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+		if (byteRange != null) {
+			response.setHeader(HttpHeaders.CONTENT_RANGE, byteRange.contentRange(length));
+			response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+		}
+		response.setContentLengthLong(count);
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+			request.setAttribute(SENDFILE_FILENAME, export.getFile().toString());
+			request.setAttribute(SENDFILE_START, first);
+			request.setAttribute(SENDFILE_END, first + count);
+			logger.info("Sending {} bytes of {} with sendfile", count, fileName);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(export.getFile(), StandardOpenOption.READ)) {
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			for (long sent = 0; sent < count; ) {
+				sent += channel.transferTo(first + sent, count - sent, out);
+			}
+		}
+
+		logger.info("Sent {} bytes of {}", count, fileName);
+	}
+
 	@GetMapping("remove/{id}")
-	public ResponseEntity<Void> remove(@Validated @NotNull @Min(1) @PathVariable("id") int id) {
+	public DeferredResult<ResponseEntity<Void>> remove(@Validated @NotNull @Min(1) @PathVariable("id") int id) {
 
 		if (id <= 0) {
 			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.id.minsize");
 		}
 		
 		logger.info("Received remove user request");
-		Future<Boolean> futureRemoval = service.remove(id);
+		return defer(service.remove(id), removed -> {
+			
+			HttpStatus s = removed.booleanValue() ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR;
+			ResponseEntity<Void> d = new ResponseEntity<Void>(s);
+			return d;
+		}, "error.user.deletion", String.valueOf(id));
+	}
 
-		while (!futureRemoval.isDone()) {
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-				logger.warn("Wait interrupted.");
+	/**
+	 * Adapts the result of an asynchronous service call to a {@link DeferredResult}, so the request 
+	 * thread is released while the call is in progress.
+	 * A timeout answers with 503 (service unavailable), and failures are handed to the
+	 * {@link ExceptionHandlerAdvice} as {@link ProcessException}.
+	 * @param future The pending result.
+	 * @param mapper Generates the response from the result.
+	 * @param message The error message key if the call fails.
+	 * @param args The arguments for the error message.
+	 * @return The {@link DeferredResult} set when the call completes.
+	 */
+	private <T, R> DeferredResult<ResponseEntity<R>> defer(CompletableFuture<T> future, 
+			Function<T, ResponseEntity<R>> mapper, String message, String... args) {
+
+		DeferredResult<ResponseEntity<R>> result = new DeferredResult<>(asyncTimeout);
+		
+		result.onTimeout(() -> result.setErrorResult(new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.timeout")));
+		
+		future.whenComplete((value, ex) -> {
+			
+			if (ex == null) {
+				result.setResult(mapper.apply(value));
+				return;
+			}
+			
+			Throwable cause = ex;
+			if ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			
+			result.setErrorResult(cause instanceof ProcessException ? cause 
+					: new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, cause, message, args));
+		});
+		
+		return result;
+	}
+
+	/**
+	 * @param tag A version tag of the service.
+	 * @return the strong entity tag of the version
+	 */
+	private static String eTag(String tag) {
+		
+		return "\"" + tag + "\"";
+	}
+	
+	/**
+	 * Checks whether an entity tag is among the ones of an If-None-Match header, using the weak
+	 * comparison the header requires.
+	 * @param ifNoneMatch The value of the header, null if it was not sent.
+	 * @param eTag The current entity tag.
+	 * @return Whether the client already has the current version.
+	 */
+	private static boolean matches(String ifNoneMatch, String eTag) {
+		
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(eTag)) {
+				return true;
 			}
 		}
+		
+		return false;
+	}
+
+	/**
+	 * Checks that a batch request is within the allowed size.
+	 * @param items The items of the batch.
+	 */
+	private void checkBatchSize(List<?> items) {
+
+		if (items.size() > maxBatchSize) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.batch.maxsize", String.valueOf(maxBatchSize));
+		}
+	}
+
+	/**
+	 * Parses a date of a search request.
+	 * @param date The date with dd-MM-yyyy format.
+	 * @return The parsed date.
+	 * @throws ProcessException with 400 status if the date is not valid.
+	 */
+	private LocalDate parseSearchDate(String date) {
 
-		Boolean removed = Boolean.FALSE;
 		try {
-			removed = futureRemoval.get();
-		} catch (InterruptedException | ExecutionException e) {
-			ProcessException pex = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.deletion",
-					String.valueOf(id));
-			throw pex;
+			return DateCodec.parse(date);
+		} catch (ProcessException e) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, e, "error.search.birthdate", date);
 		}
-		
-		HttpStatus s = removed.booleanValue() ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR;
-		ResponseEntity<Void> d = new ResponseEntity<Void>(s);
-		return d;
+	}
+
+	/**
+	 * Validates each user of a batch, setting the result of the invalid ones.
+	 * @param data The users of the batch.
+	 * @param group The validation group to apply.
+	 * @param results The results of the batch, where the invalid users are set.
+	 * @return The positions of the valid users.
+	 */
+	private List<Integer> validate(List<User> data, Class<?> group, BatchItemResult[] results) {
+
+		List<Integer> valid = new ArrayList<>(data.size());
+
+		for (int i = 0; i < data.size(); i++) {
+
+			User user = data.get(i);
+
+			if (user == null) {
+				results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST.value(), null, resolveMessage("error.input.unreadable"));
+				continue;
+			}
+
+			Set<ConstraintViolation<User>> violations = validator.validate(user, group);
+
+			if (violations.isEmpty()) {
+				valid.add(i);
+			} else {
+				results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST.value(), null, 
+						resolveMessage(violations.iterator().next().getMessage()));
+			}
+		}
+
+		return valid;
+	}
+
+	/**
+	 * Resolves a message for the locale of the request.
+	 * @param message The message key.
+	 * @param args The arguments for the message.
+	 * @return The resolved message, the key if it is not found.
+	 */
+	private String resolveMessage(String message, String... args) {
+
+		return messageResolver.resolve(message, (Object[]) args);
 	}
 }
@@ -0,0 +1,84 @@
+package practice.controller.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the consumed objects as a JSON array directly to an output stream,
+ * so the whole array never has to be held in memory.
+ * The array is only started when the first element arrives, so nothing is written if the 
+ * elements cannot be read; if no element is written the array is written empty when the streamer is closed.
+ * @param <T> The class of the streamed objects.
+ */
+public class JsonArrayStreamer<T> implements Consumer<T>, AutoCloseable {
+
+	/**
+	 * The stream to write to.
+	 */
+	private final OutputStream outputStream;
+
+	/**
+	 * The mapper used to serialize each element.
+	 */
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * The generator over the output stream, null until the first element arrives.
+	 */
+	private JsonGenerator generator;
+
+	/**
+	 * Constructor.
+	 * @param outputStream The stream to write to, the body of the response.
+	 * @param objectMapper The mapper used to serialize each element.
+	 */
+	public JsonArrayStreamer(OutputStream outputStream, ObjectMapper objectMapper) {
+		this.outputStream = outputStream;
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public void accept(T element) {
+
+		try {
+
+			start();
+			generator.writeObject(element);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return whether the array has already been started
+	 */
+	public boolean isStarted() {
+		return generator != null;
+	}
+
+	/**
+	 * Closes the JSON array, empty if nothing was written.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		start();
+		generator.writeEndArray();
+		generator.close();
+	}
+
+	private void start() throws IOException {
+
+		if (generator == null) {
+			generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+			generator.writeStartArray();
+		}
+	}
+}
@@ -8,7 +8,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
-import practice.utils.Utils;
+import practice.utils.DateCodec;
 
 /**
  * Deserializer for java.time.LocalDate;
@@ -19,7 +19,7 @@ public class LocalDateDeserializer extends JsonDeserializer<LocalDate> {
 	public LocalDate deserialize(JsonParser parser, DeserializationContext context)
 			throws IOException, JsonProcessingException {
 
-		LocalDate localDate = Utils.stringToLocalDate(parser.getValueAsString());
+		LocalDate localDate = DateCodec.parse(parser.getValueAsString());
 		
 		return localDate;
 	}
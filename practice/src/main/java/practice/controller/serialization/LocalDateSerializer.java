@@ -8,7 +8,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
-import practice.utils.Utils;
+import practice.utils.DateCodec;
 
 /**
  * Serializer for java.time.LocalDate
@@ -19,7 +19,7 @@ public class LocalDateSerializer extends JsonSerializer<LocalDate> {
 	public void serialize(LocalDate localDate, JsonGenerator gen, SerializerProvider provider)
 			throws IOException, JsonProcessingException {
 
-		gen.writeString(Utils.localDateToString(localDate));
+		gen.writeString(DateCodec.format(localDate));
 	}
 
 }
@@ -0,0 +1,273 @@
+package practice.controller.serialization;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.exception.ProcessException;
+import practice.model.User;
+import practice.utils.DateCodec;
+
+/**
+ * Reads the users of an import file one line at a time, so only the current line is held in memory.
+ * Each line is a user, with its name and its birth date with dd-MM-yyyy format:
+ * <ul>
+ * <li>In {@link Format#CSV} as two comma separated values, the name in double quotes if it has commas or
+ * quotes (doubled inside). A first line with the column names (name,birthdate) is skipped.</li>
+ * <li>In {@link Format#NDJSON} as a JSON object with the name and birthdate fields, like the body of
+ * the create requests. Other fields are ignored.</li>
+ * </ul>
+ * Blank lines are skipped. The lines that cannot be read are returned with the message of the error,
+ * and the reading goes on with the next one.
+ */
+public class UserImportReader {
+
+	/**
+	 * Formats of the import files.
+	 */
+	public enum Format {
+
+		/**
+		 * Comma separated values, text/csv.
+		 */
+		CSV,
+
+		/**
+		 * A JSON object per line, application/x-ndjson.
+		 */
+		NDJSON
+	}
+
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+	private final Reader reader;
+
+	private final Format format;
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * Maximum number of characters of a line, the rest of a longer line is skipped.
+	 */
+	private final int maxLineLength;
+
+	/**
+	 * The current line.
+	 */
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Number of the last line read.
+	 */
+	private int number;
+
+	/**
+	 * Whether the end of the input has been reached.
+	 */
+	private boolean ended;
+
+	/**
+	 * Constructor.
+	 * @param reader The input, buffered.
+	 * @param format The format of the input.
+	 * @param objectMapper The mapper used to read the NDJSON lines.
+	 * @param maxLineLength Maximum number of characters of a line.
+	 */
+	public UserImportReader(Reader reader, Format format, ObjectMapper objectMapper, int maxLineLength) {
+		this.reader = reader;
+		this.format = format;
+		this.objectMapper = objectMapper;
+		this.maxLineLength = maxLineLength;
+	}
+
+	/**
+	 * Reads the next user.
+	 * @return The next line with a user or an error, null at the end of the input.
+	 * @throws IOException If the input cannot be read.
+	 */
+	public Line next() throws IOException {
+
+		while (!ended) {
+
+			boolean tooLong = !readLine();
+			String line = text.toString().trim();
+
+			if (number == 1 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+				line = line.substring(1).trim();
+			}
+
+			if (tooLong) {
+				return new Line(number, null, "error.import.linelength", String.valueOf(maxLineLength));
+			}
+			if (line.isEmpty() || (number == 1 && format == Format.CSV && isHeader(line))) {
+				continue;
+			}
+
+			return format == Format.CSV ? parseCsv(line) : parseJson(line);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads the next line into the text, without the line break.
+	 * @return Whether the line fits in the maximum length, the rest of it is skipped otherwise.
+	 */
+	private boolean readLine() throws IOException {
+
+		text.setLength(0);
+		number++;
+
+		boolean fits = true;
+		int c;
+		while ((c = reader.read()) >= 0 && c != '\n') {
+			if (text.length() < maxLineLength) {
+				text.append((char) c);
+			} else {
+				fits = false;
+			}
+		}
+
+		if (c < 0) {
+			ended = true;
+		}
+		if (text.length() > 0 && text.charAt(text.length() - 1) == '\r') {
+			text.setLength(text.length() - 1);
+		}
+
+		return fits;
+	}
+
+	private static boolean isHeader(String line) {
+		return line.replace(" ", "").replace("\"", "").equalsIgnoreCase("name,birthdate");
+	}
+
+	private Line parseCsv(String line) {
+
+		List<String> values = new ArrayList<>(2);
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+
+		for (int i = 0; i < line.length(); i++) {
+
+			char c = line.charAt(i);
+
+			if (quoted) {
+				if (c != '"') {
+					value.append(c);
+				} else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					value.append('"');
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"' && value.toString().trim().isEmpty()) {
+				value.setLength(0);
+				quoted = true;
+			} else if (c == ',') {
+				values.add(value.toString().trim());
+				value.setLength(0);
+			} else {
+				value.append(c);
+			}
+		}
+		values.add(value.toString().trim());
+
+		if (quoted || values.size() != 2) {
+			return new Line(number, null, "error.import.columns");
+		}
+
+		return user(values.get(0), values.get(1));
+	}
+
+	private Line parseJson(String line) {
+
+		JsonNode node;
+		try {
+			node = objectMapper.readTree(line);
+		} catch (IOException e) {
+			return new Line(number, null, "error.input.unreadable");
+		}
+
+		if (node == null || !node.isObject()) {
+			return new Line(number, null, "error.input.unreadable");
+		}
+
+		JsonNode name = node.get("name");
+		JsonNode birthdate = node.get("birthdate");
+
+		return user(name == null || name.isNull() ? null : name.asText(),
+				birthdate == null || birthdate.isNull() ? null : birthdate.asText());
+	}
+
+	/**
+	 * @return the line with the user, or with the error if the birth date is not valid
+	 */
+	private Line user(String name, String birthdate) {
+
+		LocalDate date = null;
+		if (birthdate != null && !birthdate.isEmpty()) {
+			try {
+				date = DateCodec.parse(birthdate);
+			} catch (ProcessException e) {
+				return new Line(number, null, "error.import.birthdate", birthdate);
+			}
+		}
+
+		return new Line(number, new User(0, name, date), null);
+	}
+
+	/**
+	 * A line of the input, with a user or with the error that prevented reading it.
+	 */
+	public static class Line {
+
+		private final int number;
+
+		private final User user;
+
+		private final String error;
+
+		private final String[] args;
+
+		private Line(int number, User user, String error, String... args) {
+			this.number = number;
+			this.user = user;
+			this.error = error;
+			this.args = args;
+		}
+
+		/**
+		 * @return the number of the line, from 1
+		 */
+		public int getNumber() {
+			return number;
+		}
+
+		/**
+		 * @return the user read, not validated yet, null if the line could not be read
+		 */
+		public User getUser() {
+			return user;
+		}
+
+		/**
+		 * @return the message code of the error, null if the user was read
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * @return the arguments of the error message
+		 */
+		public String[] getArgs() {
+			return args;
+		}
+	}
+}
@@ -4,6 +4,9 @@ import org.springframework.http.HttpStatus;
 
 /**
  * Exception thrown in any stage of the process.
+ * Only the failures of the server keep a stack trace. The errors of the clients (4xx) and the requests
+ * shed under load (503) are expected and come in bursts, so they skip filling it, which is most of the
+ * cost of throwing. Their cause, if any, keeps its own.
  */
 @SuppressWarnings("serial")
 public class ProcessException extends RuntimeException  {
@@ -16,7 +19,7 @@ public class ProcessException extends RuntimeException  {
 	private String [] args;
 	
 	public ProcessException(HttpStatus httpStatus, Throwable cause, String message) {
-		super(message, cause);
+		super(message, cause, true, isFailure(httpStatus));
 		this.httpStatus = httpStatus;
 	}
 	
@@ -26,8 +29,7 @@ public class ProcessException extends RuntimeException  {
 	}
 	
 	public ProcessException(HttpStatus httpStatus, String message) {
-		super(message);
-		this.httpStatus = httpStatus;
+		this(httpStatus, (Throwable) null, message);
 	}
 
 	public ProcessException(HttpStatus httpStatus, String message, String... args) {
@@ -35,6 +37,20 @@ public class ProcessException extends RuntimeException  {
 		this.args = args;
 	}
 	
+	/**
+	 * Whether an error status is a failure of the server, worth a stack trace.
+	 */
+	private static boolean isFailure(HttpStatus httpStatus) {
+		return httpStatus == null || (httpStatus.is5xxServerError() && httpStatus != HttpStatus.SERVICE_UNAVAILABLE);
+	}
+	
+	/**
+	 * @return whether the exception is a failure of the server, with a stack trace
+	 */
+	public boolean isFailure() {
+		return isFailure(httpStatus);
+	}
+	
 	/**
 	 * @return the httpStatus
 	 */
@@ -0,0 +1,151 @@
+package practice.executor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that tunes itself from the observed latency, in the style of the gradient algorithms.
+ * It keeps a long-term average of the latency as the latency without load. While the tasks take about
+ * that long the limit grows by its square root, leaving room for a small queue. When they take longer
+ * the limit shrinks by the ratio of both latencies, down to half of it per sample. The changes are
+ * smoothed, so a single slow task barely moves it.
+ * Samples taken with less than half of the limit in use say nothing about it and only feed the average.
+ */
+public class AdaptiveLimit {
+
+	/**
+	 * Weight of each new limit in the smoothed one.
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	/**
+	 * Number of samples averaged in the long-term latency.
+	 */
+	private static final int LONG_WINDOW = 600;
+
+	/**
+	 * Lower bound of the ratio between the long-term latency and a sample.
+	 */
+	private static final double MIN_GRADIENT = 0.5;
+
+	private final int min;
+
+	private final int max;
+
+	/**
+	 * Tasks admitted and not finished yet.
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * The limit in force, the integer part of the estimate.
+	 */
+	private volatile int limit;
+
+	/**
+	 * The smoothed limit, guarded by this object.
+	 */
+	private double estimate;
+
+	/**
+	 * Long-term average latency in nanoseconds, 0 until the first sample. Guarded by this object.
+	 */
+	private double longLatency;
+
+	/**
+	 * Constructor.
+	 * @param initial The limit before the first samples.
+	 * @param min The lowest limit.
+	 * @param max The highest limit.
+	 */
+	public AdaptiveLimit(int initial, int min, int max) {
+		this.min = min;
+		this.max = max;
+		this.estimate = Math.max(min, Math.min(max, initial));
+		this.limit = (int) estimate;
+	}
+
+	/**
+	 * Admits a task if the limit allows it. An admitted task must be released once it finishes.
+	 * @return Whether the task is admitted.
+	 */
+	public boolean tryAcquire() {
+
+		for (;;) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases an admitted task.
+	 */
+	public void release() {
+		inFlight.decrementAndGet();
+	}
+
+	/**
+	 * Runs an admitted task, updating the limit with the time it takes and releasing it once it finishes.
+	 * @param task The task.
+	 */
+	public void run(Runnable task) {
+
+		int inFlightAtStart = inFlight.get();
+		long start = System.nanoTime();
+		try {
+			task.run();
+		} finally {
+			sample(System.nanoTime() - start, inFlightAtStart);
+			release();
+		}
+	}
+
+	/**
+	 * Updates the limit with the latency of a finished task.
+	 * @param latencyNanos The time the task took.
+	 * @param inFlightAtStart The tasks in flight when it started.
+	 */
+	public synchronized void sample(long latencyNanos, int inFlightAtStart) {
+
+		double latency = Math.max(latencyNanos, 1);
+
+		if (longLatency == 0) {
+			longLatency = latency;
+		} else {
+			longLatency += (latency - longLatency) / LONG_WINDOW;
+		}
+
+		// once the load goes away the average recovers faster than its window
+		if (longLatency > latency * 2) {
+			longLatency *= 0.95;
+		}
+
+		if (inFlightAtStart < estimate / 2) {
+			return;
+		}
+
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longLatency / latency));
+		double next = estimate * gradient + Math.sqrt(estimate);
+
+		estimate = Math.max(min, Math.min(max, estimate * (1 - SMOOTHING) + next * SMOOTHING));
+		limit = (int) estimate;
+	}
+
+	/**
+	 * @return the limit in force
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the tasks admitted and not finished yet
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+}
@@ -0,0 +1,196 @@
+package practice.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import practice.metrics.RejectionCounter;
+
+/**
+ * Thread pool that sheds load before its queue turns into latency.
+ * A task is rejected at once, with a {@link TaskRejectedException}, when:
+ * <ul>
+ * <li>The oldest task in the queue has already waited longer than the allowed time, since a new one
+ * would wait at least as long.</li>
+ * <li>The optional {@link AdaptiveLimit} of tasks in flight is reached, the limit being tuned from the
+ * time the tasks of this pool take to run.</li>
+ * <li>The queue is full.</li>
+ * </ul>
+ */
+public class AdmissionControlledExecutor extends ThreadPoolTaskExecutor implements ControlledExecutor {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Name of the pool, for the threads and the metrics.
+	 */
+	private final String poolName;
+
+	/**
+	 * Time in nanoseconds the oldest queued task may have waited before new tasks are rejected.
+	 */
+	private final long maxQueueWaitNanos;
+
+	/**
+	 * The limit of tasks in flight, null if it is not applied.
+	 */
+	private final transient AdaptiveLimit limit;
+
+	/**
+	 * Counts the tasks rejected by the full queue.
+	 */
+	private final transient RejectionCounter rejections = new RejectionCounter();
+
+	/**
+	 * Number of tasks rejected by the admission control.
+	 */
+	private final transient LongAdder shed = new LongAdder();
+
+	/**
+	 * Constructor.
+	 * @param poolName Name of the pool, for the threads and the metrics.
+	 * @param pool Size of the pool.
+	 * @param maxQueueWait Time in milliseconds the oldest queued task may have waited before new tasks are rejected.
+	 * @param limit The limit of tasks in flight, null not to apply any.
+	 */
+	public AdmissionControlledExecutor(String poolName, ExecutorSettings.Pool pool, long maxQueueWait, AdaptiveLimit limit) {
+
+		this.poolName = poolName;
+		this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWait);
+		this.limit = limit;
+
+		setCorePoolSize(pool.getCoreSize());
+		setMaxPoolSize(pool.getMaxSize());
+		setQueueCapacity(pool.getQueueCapacity());
+		setThreadNamePrefix("rest-practice-" + poolName + "-");
+		setRejectedExecutionHandler(rejections);
+		setTaskDecorator(QueuedTask::new);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		admitted(() -> {
+			super.execute(task);
+			return null;
+		});
+	}
+
+	@Override
+	public void execute(Runnable task, long startTimeout) {
+		admitted(() -> {
+			super.execute(task, startTimeout);
+			return null;
+		});
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		return admitted(() -> super.submit(task));
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		return admitted(() -> super.submit(task));
+	}
+
+	@Override
+	public ListenableFuture<?> submitListenable(Runnable task) {
+		return admitted(() -> super.submitListenable(task));
+	}
+
+	@Override
+	public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+		return admitted(() -> super.submitListenable(task));
+	}
+
+	/**
+	 * Hands a task to the pool if it is admitted.
+	 */
+	private <T> T admitted(Supplier<T> submission) {
+
+		if (getQueueWaitNanos() > maxQueueWaitNanos) {
+			shed.increment();
+			throw new TaskRejectedException(String.format("The %s pool queue is too slow", poolName));
+		}
+
+		if (limit != null && !limit.tryAcquire()) {
+			shed.increment();
+			throw new TaskRejectedException(String.format("The %s pool limit of %d tasks is reached", poolName, limit.getLimit()));
+		}
+
+		try {
+			return submission.get();
+		} catch (TaskRejectedException e) {
+			if (limit != null) {
+				limit.release();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public int getQueueSize() {
+		return getThreadPoolExecutor().getQueue().size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return getQueueSize() + getThreadPoolExecutor().getQueue().remainingCapacity();
+	}
+
+	@Override
+	public long getQueueWaitNanos() {
+
+		Runnable head = getThreadPoolExecutor().getQueue().peek();
+		return head instanceof QueuedTask ? System.nanoTime() - ((QueuedTask) head).queued : 0;
+	}
+
+	@Override
+	public String getPoolName() {
+		return poolName;
+	}
+
+	@Override
+	public AdaptiveLimit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the number of tasks rejected, by the admission control or by the full queue
+	 */
+	@Override
+	public long getRejections() {
+		return shed.sum() + rejections.getRejections();
+	}
+
+	/**
+	 * A task with the time it was queued, feeding the limit with the time it takes to run.
+	 */
+	private class QueuedTask implements Runnable {
+
+		private final Runnable task;
+
+		private final long queued = System.nanoTime();
+
+		private QueuedTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+
+			if (limit == null) {
+				task.run();
+			} else {
+				limit.run(task);
+			}
+		}
+	}
+}
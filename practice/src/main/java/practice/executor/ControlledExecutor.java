@@ -0,0 +1,54 @@
+package practice.executor;
+
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+
+/**
+ * An executor of the application, with the figures the metrics report about it.
+ */
+public interface ControlledExecutor extends AsyncListenableTaskExecutor {
+
+	/**
+	 * @return the name of the pool, for the threads and the metrics
+	 */
+	String getPoolName();
+
+	/**
+	 * @return the number of threads running a task
+	 */
+	int getActiveCount();
+
+	/**
+	 * @return the number of threads
+	 */
+	int getPoolSize();
+
+	/**
+	 * @return the maximum number of threads
+	 */
+	int getMaxPoolSize();
+
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	int getQueueSize();
+
+	/**
+	 * @return the maximum number of tasks waiting for a thread
+	 */
+	int getQueueCapacity();
+
+	/**
+	 * @return the time in nanoseconds the oldest queued task has waited, 0 if the queue is empty
+	 */
+	long getQueueWaitNanos();
+
+	/**
+	 * @return the limit of tasks in flight, null if it is not applied
+	 */
+	AdaptiveLimit getLimit();
+
+	/**
+	 * @return the number of tasks rejected
+	 */
+	long getRejections();
+}
@@ -0,0 +1,299 @@
+package practice.executor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the asynchronous executors, bound from the practice.async.* properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "practice.async")
+public class ExecutorSettings {
+
+	/**
+	 * Pool running the asynchronous reads of the service.
+	 */
+	private Pool read = new Pool(2, 10, 500);
+
+	/**
+	 * Pool running the asynchronous writes of the service.
+	 */
+	private Pool write = new Pool(1, 4, 500);
+
+	/**
+	 * Pool writing the streamed responses.
+	 */
+	private Pool stream = new Pool(2, 10, 100);
+
+	/**
+	 * Pool running the imports, which hold a thread for the whole upload.
+	 */
+	private Pool imports = new Pool(2, 2, 0);
+
+	/**
+	 * Milliseconds the oldest queued task of a pool may have waited before new tasks are rejected.
+	 */
+	private long maxQueueWait = 500;
+
+	/**
+	 * Seconds the clients are told to wait before retrying a rejected request.
+	 */
+	private int retryAfter = 1;
+
+	/**
+	 * Adaptive limit of the tasks in the read and write pools.
+	 */
+	private Limit adaptiveLimit = new Limit();
+
+	/**
+	 * @return the read pool
+	 */
+	public Pool getRead() {
+		return read;
+	}
+
+	/**
+	 * @param read the read pool to set
+	 */
+	public void setRead(Pool read) {
+		this.read = read;
+	}
+
+	/**
+	 * @return the write pool
+	 */
+	public Pool getWrite() {
+		return write;
+	}
+
+	/**
+	 * @param write the write pool to set
+	 */
+	public void setWrite(Pool write) {
+		this.write = write;
+	}
+
+	/**
+	 * @return the stream pool
+	 */
+	public Pool getStream() {
+		return stream;
+	}
+
+	/**
+	 * @param stream the stream pool to set
+	 */
+	public void setStream(Pool stream) {
+		this.stream = stream;
+	}
+
+	/**
+	 * @return the imports pool
+	 */
+	public Pool getImports() {
+		return imports;
+	}
+
+	/**
+	 * @param imports the imports pool to set
+	 */
+	public void setImports(Pool imports) {
+		this.imports = imports;
+	}
+
+	/**
+	 * @return the max queue wait
+	 */
+	public long getMaxQueueWait() {
+		return maxQueueWait;
+	}
+
+	/**
+	 * @param maxQueueWait the max queue wait to set
+	 */
+	public void setMaxQueueWait(long maxQueueWait) {
+		this.maxQueueWait = maxQueueWait;
+	}
+
+	/**
+	 * @return the retry after
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	/**
+	 * @param retryAfter the retry after to set
+	 */
+	public void setRetryAfter(int retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return the adaptive limit
+	 */
+	public Limit getAdaptiveLimit() {
+		return adaptiveLimit;
+	}
+
+	/**
+	 * @param adaptiveLimit the adaptive limit to set
+	 */
+	public void setAdaptiveLimit(Limit adaptiveLimit) {
+		this.adaptiveLimit = adaptiveLimit;
+	}
+
+	/**
+	 * Size of a pool.
+	 */
+	public static class Pool {
+
+		/**
+		 * Threads kept in the pool.
+		 */
+		private int coreSize;
+
+		/**
+		 * Maximum threads of the pool, started once the queue is full.
+		 */
+		private int maxSize;
+
+		/**
+		 * Maximum tasks waiting for a thread.
+		 */
+		private int queueCapacity;
+
+		public Pool() {
+		}
+
+		public Pool(int coreSize, int maxSize, int queueCapacity) {
+			this.coreSize = coreSize;
+			this.maxSize = maxSize;
+			this.queueCapacity = queueCapacity;
+		}
+
+		/**
+		 * @return the core size
+		 */
+		public int getCoreSize() {
+			return coreSize;
+		}
+
+		/**
+		 * @param coreSize the core size to set
+		 */
+		public void setCoreSize(int coreSize) {
+			this.coreSize = coreSize;
+		}
+
+		/**
+		 * @return the max size
+		 */
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		/**
+		 * @param maxSize the max size to set
+		 */
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * @return the queue capacity
+		 */
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		/**
+		 * @param queueCapacity the queue capacity to set
+		 */
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+	}
+
+	/**
+	 * Bounds of an adaptive limit.
+	 */
+	public static class Limit {
+
+		/**
+		 * Whether the limit is applied.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Tasks allowed before the first latencies are observed.
+		 */
+		private int initial = 20;
+
+		/**
+		 * Lowest limit, however high the latency gets.
+		 */
+		private int min = 2;
+
+		/**
+		 * Highest limit, however low the latency gets.
+		 */
+		private int max = 500;
+
+		/**
+		 * @return whether it is enabled
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * @param enabled whether it is enabled
+		 */
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		/**
+		 * @return the initial limit
+		 */
+		public int getInitial() {
+			return initial;
+		}
+
+		/**
+		 * @param initial the initial limit to set
+		 */
+		public void setInitial(int initial) {
+			this.initial = initial;
+		}
+
+		/**
+		 * @return the min limit
+		 */
+		public int getMin() {
+			return min;
+		}
+
+		/**
+		 * @param min the min limit to set
+		 */
+		public void setMin(int min) {
+			this.min = min;
+		}
+
+		/**
+		 * @return the max limit
+		 */
+		public int getMax() {
+			return max;
+		}
+
+		/**
+		 * @param max the max limit to set
+		 */
+		public void setMax(int max) {
+			this.max = max;
+		}
+	}
+}
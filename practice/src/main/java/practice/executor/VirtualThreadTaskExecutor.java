@@ -0,0 +1,183 @@
+package practice.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Executor starting a new virtual thread for each task, used instead of the thread pools in the virtual
+ * thread mode. A blocked task does not hold a platform thread, so there is no pool to size and no queue
+ * to wait in: the only admission control left is the optional {@link AdaptiveLimit} of tasks in flight.
+ */
+public class VirtualThreadTaskExecutor implements ControlledExecutor, DisposableBean {
+
+	/**
+	 * Name of the executor, for the threads and the metrics.
+	 */
+	private final String poolName;
+
+	/**
+	 * The limit of tasks in flight, null if it is not applied.
+	 */
+	private final AdaptiveLimit limit;
+
+	/**
+	 * The virtual thread per task executor.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Adapts the executor to the Spring task executor interfaces.
+	 */
+	private final TaskExecutorAdapter adapter;
+
+	/**
+	 * Number of tasks running.
+	 */
+	private final AtomicInteger running = new AtomicInteger();
+
+	/**
+	 * Number of tasks rejected by the limit.
+	 */
+	private final LongAdder rejections = new LongAdder();
+
+	/**
+	 * Constructor.
+	 * @param poolName Name of the executor, for the threads and the metrics.
+	 * @param limit The limit of tasks in flight, null not to apply any.
+	 * @throws IllegalStateException If the JDK has no virtual threads.
+	 */
+	public VirtualThreadTaskExecutor(String poolName, AdaptiveLimit limit) {
+
+		this.poolName = poolName;
+		this.limit = limit;
+		this.executor = VirtualThreads.newThreadPerTaskExecutor("rest-practice-" + poolName + "-");
+		this.adapter = new TaskExecutorAdapter(executor);
+		this.adapter.setTaskDecorator(task -> () -> {
+			running.incrementAndGet();
+			try {
+				if (limit == null) {
+					task.run();
+				} else {
+					limit.run(task);
+				}
+			} finally {
+				running.decrementAndGet();
+			}
+		});
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		admitted(() -> {
+			adapter.execute(task);
+			return null;
+		});
+	}
+
+	@Override
+	public void execute(Runnable task, long startTimeout) {
+		admitted(() -> {
+			adapter.execute(task, startTimeout);
+			return null;
+		});
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		return admitted(() -> adapter.submit(task));
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		return admitted(() -> adapter.submit(task));
+	}
+
+	@Override
+	public ListenableFuture<?> submitListenable(Runnable task) {
+		return admitted(() -> adapter.submitListenable(task));
+	}
+
+	@Override
+	public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+		return admitted(() -> adapter.submitListenable(task));
+	}
+
+	/**
+	 * Starts a task if the limit admits it.
+	 */
+	private <T> T admitted(Supplier<T> submission) {
+
+		if (limit != null && !limit.tryAcquire()) {
+			rejections.increment();
+			throw new TaskRejectedException(String.format("The %s pool limit of %d tasks is reached", poolName, limit.getLimit()));
+		}
+
+		try {
+			return submission.get();
+		} catch (TaskRejectedException e) {
+			if (limit != null) {
+				limit.release();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public String getPoolName() {
+		return poolName;
+	}
+
+	@Override
+	public int getActiveCount() {
+		return running.get();
+	}
+
+	@Override
+	public int getPoolSize() {
+		return running.get();
+	}
+
+	@Override
+	public int getMaxPoolSize() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int getQueueSize() {
+		return 0;
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return 0;
+	}
+
+	@Override
+	public long getQueueWaitNanos() {
+		return 0;
+	}
+
+	@Override
+	public AdaptiveLimit getLimit() {
+		return limit;
+	}
+
+	@Override
+	public long getRejections() {
+		return rejections.sum();
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+}
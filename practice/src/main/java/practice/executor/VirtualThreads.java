@@ -0,0 +1,57 @@
+package practice.executor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of the JDK 21 and later. The application is built for Java 8, so they
+ * are reached by reflection, and the virtual thread mode fails on start when the JDK has none.
+ */
+public final class VirtualThreads {
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return whether the running JDK has virtual threads
+	 */
+	public static boolean isSupported() {
+
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates an executor starting a new virtual thread for each task.
+	 * @param namePrefix The prefix of the names of the threads, followed by a counter.
+	 * @return The {@link ExecutorService}
+	 * @throws IllegalStateException If the JDK has no virtual threads.
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+
+		if (!isSupported()) {
+			throw new IllegalStateException(String.format("Virtual threads need JDK 21 or later, running on %s",
+					System.getProperty("java.version")));
+		}
+
+		try {
+
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+			Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) newExecutor.invoke(null, factory);
+
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Error creating the virtual thread executor", e);
+		}
+	}
+}
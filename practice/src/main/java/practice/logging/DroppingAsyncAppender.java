@@ -0,0 +1,43 @@
+package practice.logging;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Asynchronous appender that counts the events it drops.
+ * The events go to a bounded ring buffer emptied by a single worker thread writing to the attached
+ * appenders, so the logging threads never wait for the console. Once the buffer is filled above the
+ * discarding threshold the events up to INFO are dropped, and with never block set the events of any
+ * level are dropped while it is full.
+ * The full buffer is checked before handing the event over, so a drop racing with other threads may go
+ * uncounted.
+ */
+public class DroppingAsyncAppender extends AsyncAppender {
+
+	/**
+	 * Number of events dropped.
+	 */
+	private final LongAdder dropped = new LongAdder();
+
+	@Override
+	protected void append(ILoggingEvent event) {
+
+		int remaining = getRemainingCapacity();
+
+		if ((remaining < getDiscardingThreshold() && isDiscardable(event)) || (remaining == 0 && isNeverBlock())) {
+			dropped.increment();
+			return;
+		}
+
+		super.append(event);
+	}
+
+	/**
+	 * @return the number of events dropped
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+}
@@ -0,0 +1,109 @@
+package practice.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Keeps one in so many events of the given loggers, and their children, up to a level.
+ * It runs before the event is created, so the events left out cost neither formatting nor a place in
+ * the asynchronous buffer. The events of higher levels always pass, and so do the level checks of the
+ * loggers, so a guarded call is sampled only once.
+ * The events are sampled at random, which needs no shared counter between the request threads.
+ * The one-off events of a sampled logger, such as those of the startup, are marked {@link #ALWAYS} to pass.
+ * Declare a filter for each group of loggers sampled at the same rate.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+	/**
+	 * Marker of the events never sampled out.
+	 */
+	public static final Marker ALWAYS = MarkerFactory.getMarker("ALWAYS");
+
+	/**
+	 * Names of the sampled loggers.
+	 */
+	private final List<String> loggers = new ArrayList<>();
+
+	/**
+	 * One in so many events is kept.
+	 */
+	private int rate = 1;
+
+	/**
+	 * The highest level sampled.
+	 */
+	private Level level = Level.INFO;
+
+	/**
+	 * Number of events left out.
+	 */
+	private final LongAdder sampledOut = new LongAdder();
+
+	@Override
+	public FilterReply decide(Marker marker, Logger logger, Level eventLevel, String format, Object[] params, Throwable t) {
+
+		if (!isStarted() || rate <= 1 || format == null || eventLevel.toInt() > level.toInt() || !isSampled(logger.getName())
+				|| (marker != null && marker.contains(ALWAYS))) {
+			return FilterReply.NEUTRAL;
+		}
+
+		if (ThreadLocalRandom.current().nextInt(rate) == 0) {
+			return FilterReply.NEUTRAL;
+		}
+
+		sampledOut.increment();
+		return FilterReply.DENY;
+	}
+
+	/**
+	 * Whether a logger is one of the sampled loggers or a child of one.
+	 */
+	private boolean isSampled(String name) {
+
+		for (int i = 0; i < loggers.size(); i++) {
+			String sampled = loggers.get(i);
+			if (name.startsWith(sampled) && (name.length() == sampled.length() || name.charAt(sampled.length()) == '.')) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param logger Name of a logger to sample, with its children.
+	 */
+	public void addLogger(String logger) {
+		loggers.add(logger.trim());
+	}
+
+	/**
+	 * @param rate One in so many events is kept, 1 keeps them all.
+	 */
+	public void setRate(int rate) {
+		this.rate = rate;
+	}
+
+	/**
+	 * @param level The highest level sampled, INFO by default.
+	 */
+	public void setLevel(String level) {
+		this.level = Level.toLevel(level, Level.INFO);
+	}
+
+	/**
+	 * @return the number of events left out
+	 */
+	public long getSampledOut() {
+		return sampledOut.sum();
+	}
+}
@@ -0,0 +1,81 @@
+package practice.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+import practice.logging.DroppingAsyncAppender;
+import practice.logging.SamplingTurboFilter;
+
+/**
+ * Counters of the asynchronous logging, read from the logback configuration when the metrics are scraped,
+ * since it is reloaded apart from the application context.
+ */
+@Component
+public class LoggingMetricsCollector extends Collector {
+
+	private static final List<String> APPENDER_LABEL = Collections.singletonList("appender");
+
+	/**
+	 * Constructor.
+	 * @param registry The registry of the application metrics.
+	 */
+	@Autowired
+	public LoggingMetricsCollector(CollectorRegistry registry) {
+		register(registry);
+	}
+
+	@Override
+	public List<MetricFamilySamples> collect() {
+
+		CounterMetricFamily dropped = new CounterMetricFamily("practice_logging_dropped_events_total",
+				"Log events dropped by the asynchronous appender.", APPENDER_LABEL);
+		GaugeMetricFamily queued = new GaugeMetricFamily("practice_logging_queued_events",
+				"Log events waiting in the asynchronous appender.", APPENDER_LABEL);
+		long sampledOut = 0;
+
+		ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+		if (factory instanceof LoggerContext) {
+
+			LoggerContext context = (LoggerContext) factory;
+
+			Iterator<Appender<ILoggingEvent>> appenders = context.getLogger(Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+			while (appenders.hasNext()) {
+				Appender<ILoggingEvent> appender = appenders.next();
+				if (appender instanceof DroppingAsyncAppender) {
+
+					DroppingAsyncAppender async = (DroppingAsyncAppender) appender;
+					List<String> labels = Collections.singletonList(async.getName());
+
+					dropped.addMetric(labels, async.getDropped());
+					queued.addMetric(labels, async.isStarted() ? async.getNumberOfElementsInQueue() : 0);
+				}
+			}
+
+			for (TurboFilter filter : context.getTurboFilterList()) {
+				if (filter instanceof SamplingTurboFilter) {
+					sampledOut += ((SamplingTurboFilter) filter).getSampledOut();
+				}
+			}
+		}
+
+		return Arrays.asList(dropped, queued, new CounterMetricFamily("practice_logging_sampled_out_events_total",
+				"Per-request log events left out by the sampling.", sampledOut));
+	}
+}
@@ -0,0 +1,37 @@
+package practice.metrics;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.prometheus.client.CollectorRegistry;
+
+/**
+ * Configuration of the application metrics, exposed in Prometheus text format by
+ * {@link practice.controller.MetricsController}.
+ * The metrics are kept in their own registry instead of the global one, so several
+ * application contexts can live in the same JVM.
+ */
+@Configuration
+public class MetricsConfig {
+
+	/**
+	 * @return the registry of the application metrics
+	 */
+	@Bean
+	public CollectorRegistry metricsRegistry() {
+		return new CollectorRegistry(true);
+	}
+
+	/**
+	 * @param requestMetricsFilter The filter timing the requests.
+	 * @return the registration of the filter for the API requests
+	 */
+	@Bean
+	public FilterRegistrationBean requestMetricsFilterRegistration(RequestMetricsFilter requestMetricsFilter) {
+
+		FilterRegistrationBean registration = new FilterRegistrationBean(requestMetricsFilter);
+		registration.addUrlPatterns("/api/*");
+		return registration;
+	}
+}
@@ -0,0 +1,77 @@
+package practice.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.RootClassFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+
+import practice.provider.IProvider;
+
+/**
+ * Wraps the {@link IProvider} beans with a timer of each of their methods, recorded in a histogram
+ * labelled by the provider class and the method name.
+ */
+@Component
+public class ProviderMetricsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 * @param registry The registry of the application metrics.
+	 */
+	@Autowired
+	public ProviderMetricsPostProcessor(CollectorRegistry registry) {
+
+		Histogram latency = Histogram.build()
+				.name("practice_provider_call_duration_seconds")
+				.help("Latency of the provider methods.")
+				.labelNames("provider", "method")
+				.buckets(0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+				.register(registry);
+
+		this.advisor = new DefaultPointcutAdvisor(new ComposablePointcut(new RootClassFilter(IProvider.class)),
+				new TimingInterceptor(latency));
+		setBeforeExistingAdvisors(true);
+	}
+
+	/**
+	 * Times the invocations, resolving the child of the histogram of each provider method only once.
+	 */
+	private static class TimingInterceptor implements MethodInterceptor {
+
+		private final Histogram latency;
+
+		private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Histogram.Child>> timers = new ConcurrentHashMap<>();
+
+		private TimingInterceptor(Histogram latency) {
+			this.latency = latency;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+
+			Class<?> provider = invocation.getThis().getClass();
+			Histogram.Child timer = timers.computeIfAbsent(provider, key -> new ConcurrentHashMap<>())
+					.computeIfAbsent(invocation.getMethod(), method -> latency.labels(provider.getSimpleName(), method.getName()));
+
+			long start = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} finally {
+				timer.observe((System.nanoTime() - start) / 1e9);
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package practice.metrics;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejection policy of an executor that counts the rejected tasks before aborting them.
+ */
+public class RejectionCounter implements RejectedExecutionHandler {
+
+	/**
+	 * The policy applied after counting.
+	 */
+	private final RejectedExecutionHandler delegate = new ThreadPoolExecutor.AbortPolicy();
+
+	/**
+	 * Number of rejected tasks.
+	 */
+	private final LongAdder rejections = new LongAdder();
+
+	@Override
+	public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+
+		rejections.increment();
+		delegate.rejectedExecution(runnable, executor);
+	}
+
+	/**
+	 * @return the number of rejected tasks
+	 */
+	public long getRejections() {
+		return rejections.sum();
+	}
+}
@@ -0,0 +1,98 @@
+package practice.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+
+/**
+ * Records the latency of each request in a histogram labelled by the method, the mapping pattern
+ * of the handler and the response status, so the percentiles of each endpoint can be computed.
+ * Asynchronous requests are recorded when they complete, not when the request thread is released.
+ */
+@Component
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+	/**
+	 * Label of the requests not handled by any mapping, keeping the number of series bounded.
+	 */
+	private static final String UNMAPPED = "unmapped";
+
+	/**
+	 * The latency histogram.
+	 */
+	private final Histogram latency;
+
+	/**
+	 * Constructor.
+	 * @param registry The registry of the application metrics.
+	 */
+	@Autowired
+	public RequestMetricsFilter(CollectorRegistry registry) {
+
+		this.latency = Histogram.build()
+				.name("practice_http_request_duration_seconds")
+				.help("Latency of the HTTP requests by method, mapping and status.")
+				.labelNames("method", "uri", "status")
+				.buckets(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+				.register(registry);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		long start = System.nanoTime();
+
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new AsyncListener() {
+
+					@Override
+					public void onComplete(AsyncEvent event) {
+						record(request, response, start);
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) {
+					}
+
+					@Override
+					public void onError(AsyncEvent event) {
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) {
+					}
+				});
+			} else {
+				record(request, response, start);
+			}
+		}
+	}
+
+	/**
+	 * Records the latency of a finished request.
+	 */
+	private void record(HttpServletRequest request, HttpServletResponse response, long start) {
+
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+
+		latency.labels(request.getMethod(), pattern == null ? UNMAPPED : pattern.toString(), String.valueOf(response.getStatus()))
+				.observe((System.nanoTime() - start) / 1e9);
+	}
+}
@@ -0,0 +1,129 @@
+package practice.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+import practice.executor.ControlledExecutor;
+import practice.provider.DataAccess;
+
+/**
+ * Gauges of the async executors and the JDBC connections.
+ * They are read from the resources when the metrics are scraped, so they add nothing to the request path.
+ */
+@Component
+public class ResourceMetricsCollector extends Collector {
+
+	private static final List<String> POOL_LABEL = Collections.singletonList("pool");
+
+	private final List<ControlledExecutor> executors;
+
+	private final DataSource dataSource;
+
+	private final DataAccess dataAccess;
+
+	/**
+	 * Constructor.
+	 * @param registry The registry of the application metrics.
+	 * @param executors The executors of the asynchronous calls and the streamed responses.
+	 * @param dataSource The application data source.
+	 * @param dataAccess Access to the database, with the read pool and the writer queue.
+	 */
+	@Autowired
+	public ResourceMetricsCollector(CollectorRegistry registry,
+			List<ControlledExecutor> executors, DataSource dataSource, DataAccess dataAccess) {
+
+		this.executors = executors;
+		this.dataSource = dataSource;
+		this.dataAccess = dataAccess;
+		register(registry);
+	}
+
+	@Override
+	public List<MetricFamilySamples> collect() {
+
+		List<MetricFamilySamples> samples = new ArrayList<>();
+
+		GaugeMetricFamily activeThreads = new GaugeMetricFamily("practice_async_executor_active_threads",
+				"Threads of the async executor running a task.", POOL_LABEL);
+		GaugeMetricFamily poolSize = new GaugeMetricFamily("practice_async_executor_pool_size",
+				"Threads of the async executor.", POOL_LABEL);
+		GaugeMetricFamily maxPoolSize = new GaugeMetricFamily("practice_async_executor_max_pool_size",
+				"Maximum threads of the async executor.", POOL_LABEL);
+		GaugeMetricFamily queueSize = new GaugeMetricFamily("practice_async_executor_queue_size",
+				"Tasks waiting in the queue of the async executor.", POOL_LABEL);
+		GaugeMetricFamily queueCapacity = new GaugeMetricFamily("practice_async_executor_queue_capacity",
+				"Capacity of the queue of the async executor.", POOL_LABEL);
+		GaugeMetricFamily queueWait = new GaugeMetricFamily("practice_async_executor_queue_wait_seconds",
+				"Time the oldest task in the queue of the async executor has waited.", POOL_LABEL);
+		GaugeMetricFamily limit = new GaugeMetricFamily("practice_async_executor_limit",
+				"Adaptive limit of the tasks in flight of the async executor.", POOL_LABEL);
+		CounterMetricFamily rejected = new CounterMetricFamily("practice_async_executor_rejected_total",
+				"Tasks rejected by the async executor.", POOL_LABEL);
+
+		for (ControlledExecutor executor : executors) {
+
+			List<String> labels = Collections.singletonList(executor.getPoolName());
+
+			activeThreads.addMetric(labels, executor.getActiveCount());
+			poolSize.addMetric(labels, executor.getPoolSize());
+			maxPoolSize.addMetric(labels, executor.getMaxPoolSize());
+			queueSize.addMetric(labels, executor.getQueueSize());
+			queueCapacity.addMetric(labels, executor.getQueueCapacity());
+			queueWait.addMetric(labels, executor.getQueueWaitNanos() / 1e9);
+			if (executor.getLimit() != null) {
+				limit.addMetric(labels, executor.getLimit().getLimit());
+			}
+			rejected.addMetric(labels, executor.getRejections());
+		}
+
+		samples.addAll(Arrays.asList(activeThreads, poolSize, maxPoolSize, queueSize, queueCapacity, queueWait, limit, rejected));
+
+		GaugeMetricFamily active = new GaugeMetricFamily("practice_jdbc_connections_active",
+				"JDBC connections in use.", POOL_LABEL);
+		GaugeMetricFamily idle = new GaugeMetricFamily("practice_jdbc_connections_idle",
+				"Idle JDBC connections.", POOL_LABEL);
+		GaugeMetricFamily max = new GaugeMetricFamily("practice_jdbc_connections_max",
+				"Maximum JDBC connections.", POOL_LABEL);
+		GaugeMetricFamily waiting = new GaugeMetricFamily("practice_jdbc_connections_waiting",
+				"Threads waiting for a JDBC connection.", POOL_LABEL);
+
+		addPool("application", dataSource, active, idle, max, waiting);
+		addPool("readers", dataAccess.getReadPool(), active, idle, max, waiting);
+
+		samples.addAll(Arrays.asList(active, idle, max, waiting));
+		samples.add(new GaugeMetricFamily("practice_jdbc_pending_writes",
+				"Writes waiting for the writer connection.", dataAccess.getPendingWrites()));
+
+		return samples;
+	}
+
+	/**
+	 * Adds the samples of a connection pool, if the data source is pooled.
+	 */
+	private void addPool(String name, DataSource pool, GaugeMetricFamily active, GaugeMetricFamily idle,
+			GaugeMetricFamily max, GaugeMetricFamily waiting) {
+
+		if (pool instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+
+			org.apache.tomcat.jdbc.pool.DataSource tomcatPool = (org.apache.tomcat.jdbc.pool.DataSource) pool;
+			List<String> labels = Collections.singletonList(name);
+
+			active.addMetric(labels, tomcatPool.getActive());
+			idle.addMetric(labels, tomcatPool.getIdle());
+			max.addMetric(labels, tomcatPool.getMaxActive());
+			waiting.addMetric(labels, tomcatPool.getWaitCount());
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package practice.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Times the phases of the startup, logged once the application is ready and exposed as gauges:
+ * <ul>
+ * <li>context: from the start of the JVM until the context is refreshed, with all the eager beans created
+ * and the connector started.</li>
+ * <li>datasource: part of the context, creating the application data source and opening its first
+ * connection.</li>
+ * <li>migrations: bringing the schema up to date (see {@link practice.provider.SchemaMigrations}).</li>
+ * <li>ready: from the refresh until the application is ready for the first request, with the migrations
+ * and the in-memory structures built from the users.</li>
+ * </ul>
+ */
+@Component
+public class StartupReport extends Collector {
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(StartupReport.class);
+
+	/**
+	 * Order of the listeners of the ready event building the in-memory structures from the users.
+	 */
+	public static final int BUILD_ORDER = Ordered.LOWEST_PRECEDENCE - 100;
+
+	/**
+	 * Order of the report, once the structures are built.
+	 */
+	public static final int REPORT_ORDER = BUILD_ORDER + 1;
+
+	/**
+	 * Milliseconds of each phase, in the order they were timed. Guarded by this object.
+	 */
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+
+	/**
+	 * Milliseconds since the start of the JVM when the context was refreshed, 0 until then.
+	 */
+	private volatile long refreshed;
+
+	/**
+	 * Constructor.
+	 * @param registry The registry of the application metrics.
+	 */
+	@Autowired
+	public StartupReport(CollectorRegistry registry) {
+		register(registry);
+	}
+
+	/**
+	 * Records the time of a phase.
+	 * @param phase The name of the phase.
+	 * @param nanos The time it took in nanoseconds.
+	 */
+	public synchronized void record(String phase, long nanos) {
+		phases.put(phase, nanos / 1000000);
+	}
+
+	@EventListener(ContextRefreshedEvent.class)
+	public void refreshed() {
+
+		if (refreshed == 0) {
+			refreshed = ManagementFactory.getRuntimeMXBean().getUptime();
+			synchronized (this) {
+				phases.put("context", refreshed);
+			}
+		}
+	}
+
+	/**
+	 * Logs the report once the application is ready, after the listeners of the event building the in-memory
+	 * structures, which are ordered with {@link #BUILD_ORDER}.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(REPORT_ORDER)
+	public void ready() {
+
+		long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+
+		String report;
+		synchronized (this) {
+			phases.put("ready", uptime - refreshed);
+			report = phases.entrySet().stream()
+					.map(phase -> phase.getKey() + " " + phase.getValue() + " ms")
+					.collect(Collectors.joining(", "));
+		}
+
+		logger.info("Started in {} ms since the JVM start: {}.", uptime, report);
+	}
+
+	/**
+	 * @return the milliseconds of each phase timed so far, in the order they were timed
+	 */
+	public synchronized Map<String, Long> getPhases() {
+		return new LinkedHashMap<>(phases);
+	}
+
+	@Override
+	public List<MetricFamilySamples> collect() {
+
+		GaugeMetricFamily seconds = new GaugeMetricFamily("practice_startup_phase_seconds",
+				"Time taken by each phase of the startup.", Collections.singletonList("phase"));
+		getPhases().forEach((phase, millis) -> seconds.addMetric(Collections.singletonList(phase), millis / 1e3));
+
+		return Collections.singletonList(seconds);
+	}
+}
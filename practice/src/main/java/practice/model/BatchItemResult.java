@@ -0,0 +1,73 @@
+package practice.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Result of a single item of a batch request.
+ */
+@JsonInclude(Include.NON_NULL)
+public class BatchItemResult {
+
+	/**
+	 * Position of the item in the request.
+	 */
+	private int index;
+
+	/**
+	 * HTTP status code the item would have had as a single request.
+	 */
+	private int status;
+
+	/**
+	 * The resulting user, if any.
+	 */
+	private User user;
+
+	/**
+	 * The error message, if the item failed.
+	 */
+	private String message;
+
+	/**
+	 * Constructor with fields.
+	 * @param index Position of the item in the request.
+	 * @param status HTTP status code of the item.
+	 * @param user The resulting user, if any.
+	 * @param message The error message, if the item failed.
+	 */
+	public BatchItemResult(int index, int status, User user, String message) {
+		this.index = index;
+		this.status = status;
+		this.user = user;
+		this.message = message;
+	}
+
+	/**
+	 * @return the index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the status
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the user
+	 */
+	public User getUser() {
+		return user;
+	}
+
+	/**
+	 * @return the message
+	 */
+	public String getMessage() {
+		return message;
+	}
+}
@@ -0,0 +1,91 @@
+package practice.model;
+
+/**
+ * Counters of a cache.
+ */
+public class CacheStatistics {
+
+	/**
+	 * Whether the cache is enabled.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Approximate number of entries in the cache.
+	 */
+	private long size;
+
+	/**
+	 * Number of lookups answered from the cache.
+	 */
+	private long hits;
+
+	/**
+	 * Number of lookups that had to be loaded.
+	 */
+	private long misses;
+
+	/**
+	 * Number of entries evicted to keep the cache within its size.
+	 */
+	private long evictions;
+
+	/**
+	 * Constructor with fields.
+	 * @param enabled Whether the cache is enabled.
+	 * @param size Approximate number of entries.
+	 * @param hits Number of hits.
+	 * @param misses Number of misses.
+	 * @param evictions Number of evictions.
+	 */
+	public CacheStatistics(boolean enabled, long size, long hits, long misses, long evictions) {
+		this.enabled = enabled;
+		this.size = size;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+	}
+
+	/**
+	 * @return whether the cache is enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the size
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the evictions
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the ratio of lookups answered from the cache
+	 */
+	public double getHitRate() {
+		long requests = hits + misses;
+		return requests == 0 ? 1.0 : (double) hits / requests;
+	}
+}
@@ -0,0 +1,98 @@
+package practice.model;
+
+/**
+ * Counters of the group commit of single writes.
+ */
+public class GroupCommitStatistics {
+
+	/**
+	 * Whether the writes are grouped.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Number of committed groups.
+	 */
+	private long groups;
+
+	/**
+	 * Number of writes in the committed groups.
+	 */
+	private long writes;
+
+	/**
+	 * Average number of writes per group.
+	 */
+	private double averageGroupSize;
+
+	/**
+	 * Average time in microseconds from the submission of a write to its commit.
+	 */
+	private long averageLatencyMicros;
+
+	/**
+	 * Maximum time in microseconds from the submission of a write to its commit.
+	 */
+	private long maxLatencyMicros;
+
+	/**
+	 * Constructor with fields.
+	 * @param enabled Whether the writes are grouped.
+	 * @param groups Number of committed groups.
+	 * @param writes Number of writes in the committed groups.
+	 * @param averageGroupSize Average number of writes per group.
+	 * @param averageLatencyMicros Average latency of a write in microseconds.
+	 * @param maxLatencyMicros Maximum latency of a write in microseconds.
+	 */
+	public GroupCommitStatistics(boolean enabled, long groups, long writes, double averageGroupSize,
+			long averageLatencyMicros, long maxLatencyMicros) {
+		this.enabled = enabled;
+		this.groups = groups;
+		this.writes = writes;
+		this.averageGroupSize = averageGroupSize;
+		this.averageLatencyMicros = averageLatencyMicros;
+		this.maxLatencyMicros = maxLatencyMicros;
+	}
+
+	/**
+	 * @return whether the writes are grouped
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the number of groups
+	 */
+	public long getGroups() {
+		return groups;
+	}
+
+	/**
+	 * @return the number of writes
+	 */
+	public long getWrites() {
+		return writes;
+	}
+
+	/**
+	 * @return the average group size
+	 */
+	public double getAverageGroupSize() {
+		return averageGroupSize;
+	}
+
+	/**
+	 * @return the average latency in microseconds
+	 */
+	public long getAverageLatencyMicros() {
+		return averageLatencyMicros;
+	}
+
+	/**
+	 * @return the maximum latency in microseconds
+	 */
+	public long getMaxLatencyMicros() {
+		return maxLatencyMicros;
+	}
+}
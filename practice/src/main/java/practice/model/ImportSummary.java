@@ -0,0 +1,160 @@
+package practice.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of an import of users.
+ */
+public class ImportSummary {
+
+	/**
+	 * Number of users read, blank lines and the CSV header apart.
+	 */
+	private int read;
+
+	/**
+	 * Number of users created.
+	 */
+	private int created;
+
+	/**
+	 * Number of lines rejected.
+	 */
+	private int rejected;
+
+	/**
+	 * The first rejected lines, with the reason.
+	 */
+	private final List<LineError> errors = new ArrayList<>();
+
+	/**
+	 * The first line of the batch that could not be written, with the reason, null if the import completed.
+	 */
+	private LineError failure;
+
+	/**
+	 * Maximum number of rejected lines listed, the rest are only counted.
+	 */
+	private final int maxErrors;
+
+	/**
+	 * Constructor.
+	 * @param maxErrors Maximum number of rejected lines listed.
+	 */
+	public ImportSummary(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Counts a user read.
+	 */
+	public void read() {
+		read++;
+	}
+
+	/**
+	 * Counts the users created.
+	 * @param count The number of users created.
+	 */
+	public void created(int count) {
+		created += count;
+	}
+
+	/**
+	 * Counts a rejected line, listing it if there is room.
+	 * @param line The number of the line.
+	 * @param message The reason it was rejected.
+	 */
+	public void rejected(int line, String message) {
+
+		rejected++;
+		if (errors.size() < maxErrors) {
+			errors.add(new LineError(line, message));
+		}
+	}
+
+	/**
+	 * Records the batch that stopped the import.
+	 * @param line The number of the first line of the batch.
+	 * @param message The reason it could not be written.
+	 */
+	public void failed(int line, String message) {
+		failure = new LineError(line, message);
+	}
+
+	/**
+	 * @return the number of users read
+	 */
+	public int getRead() {
+		return read;
+	}
+
+	/**
+	 * @return the number of users created
+	 */
+	public int getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return the number of lines rejected
+	 */
+	public int getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * @return the first rejected lines
+	 */
+	public List<LineError> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return the batch that stopped the import, null if it completed
+	 */
+	public LineError getFailure() {
+		return failure;
+	}
+
+	/**
+	 * A rejected line.
+	 */
+	public static class LineError {
+
+		/**
+		 * Number of the line in the file, from 1.
+		 */
+		private final int line;
+
+		/**
+		 * The reason it was rejected.
+		 */
+		private final String message;
+
+		/**
+		 * Constructor with fields.
+		 * @param line Number of the line in the file.
+		 * @param message The reason it was rejected.
+		 */
+		public LineError(int line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+
+		/**
+		 * @return the line
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * @return the message
+		 */
+		public String getMessage() {
+			return message;
+		}
+	}
+}
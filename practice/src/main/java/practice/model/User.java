@@ -1,7 +1,6 @@
 package practice.model;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
@@ -14,6 +13,7 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import practice.controller.serialization.LocalDateDeserializer;
 import practice.controller.serialization.LocalDateSerializer;
+import practice.utils.DateCodec;
 
 /**
  * User object representation.
@@ -120,7 +120,7 @@ public class User {
 		if (this.birthdate == null) {
 			sb.append("null");
 		} else {
-			sb.append(this.birthdate.format(DateTimeFormatter.ofPattern("dd-MM-yyyy")));
+			sb.append(DateCodec.format(this.birthdate));
 		}
 		
 		sb.append(" ] ");
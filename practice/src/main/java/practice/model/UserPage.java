@@ -0,0 +1,63 @@
+package practice.model;
+
+import java.util.List;
+
+/**
+ * A page of users retrieved with keyset pagination.
+ */
+public class UserPage {
+
+	/**
+	 * The users in the page, ordered by id.
+	 */
+	private List<User> users;
+
+	/**
+	 * The cursor to request the next page, null if this is the last one.
+	 */
+	private Integer next;
+
+	/**
+	 * Constructor.
+	 */
+	public UserPage() {
+	}
+
+	/**
+	 * Constructor with fields.
+	 * @param users The users in the page.
+	 * @param next The cursor for the next page, null if this is the last one.
+	 */
+	public UserPage(List<User> users, Integer next) {
+		this.users = users;
+		this.next = next;
+	}
+
+	/**
+	 * @return the users
+	 */
+	public List<User> getUsers() {
+		return users;
+	}
+
+	/**
+	 * @param users the users to set
+	 */
+	public void setUsers(List<User> users) {
+		this.users = users;
+	}
+
+	/**
+	 * @return the next page cursor
+	 */
+	public Integer getNext() {
+		return next;
+	}
+
+	/**
+	 * @param next the next page cursor to set
+	 */
+	public void setNext(Integer next) {
+		this.next = next;
+	}
+}
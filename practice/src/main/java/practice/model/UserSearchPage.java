@@ -0,0 +1,84 @@
+package practice.model;
+
+import java.util.List;
+
+/**
+ * A page of the users matching a search, ranked by relevance.
+ */
+public class UserSearchPage {
+
+	/**
+	 * The users in the page, the best matches first.
+	 */
+	private List<User> users;
+
+	/**
+	 * The total number of matches.
+	 */
+	private int total;
+
+	/**
+	 * The offset to request the next page, null if this is the last one.
+	 */
+	private Integer next;
+
+	/**
+	 * Constructor.
+	 */
+	public UserSearchPage() {
+	}
+
+	/**
+	 * Constructor with fields.
+	 * @param users The users in the page.
+	 * @param total The total number of matches.
+	 * @param next The offset of the next page, null if this is the last one.
+	 */
+	public UserSearchPage(List<User> users, int total, Integer next) {
+		this.users = users;
+		this.total = total;
+		this.next = next;
+	}
+
+	/**
+	 * @return the users
+	 */
+	public List<User> getUsers() {
+		return users;
+	}
+
+	/**
+	 * @param users the users to set
+	 */
+	public void setUsers(List<User> users) {
+		this.users = users;
+	}
+
+	/**
+	 * @return the total number of matches
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param total the total number of matches to set
+	 */
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	/**
+	 * @return the next page offset
+	 */
+	public Integer getNext() {
+		return next;
+	}
+
+	/**
+	 * @param next the next page offset to set
+	 */
+	public void setNext(Integer next) {
+		this.next = next;
+	}
+}
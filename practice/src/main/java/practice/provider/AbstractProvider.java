@@ -1,8 +1,12 @@
 package practice.provider;
 
-import org.apache.log4j.Logger;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
  * Abstract class to provide basic attributes for implementing classes.
@@ -13,12 +17,33 @@ public abstract class AbstractProvider<T> implements IProvider<T> {
 	/**
 	 * The class logger.
 	 */
-	protected final Logger logger = Logger.getLogger(getClass());
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
 	
 	/**
-	 * JDBC template providing simple access the database.
+	 * Access to the database, with separate templates for reads and writes.
 	 */
 	@Autowired
-	protected JdbcTemplate jdbcTemplate;
+	protected DataAccess dataAccess;
+	
+	/**
+	 * Listeners of the changes made through the provider.
+	 */
+	@Autowired(required = false)
+	private List<ChangeListener<T>> listeners = Collections.emptyList();
+	
+	/**
+	 * Notifies a change to all the listeners. A failing listener does not affect the others nor the change.
+	 * @param notification The notification to send to each listener.
+	 */
+	protected void notifyListeners(Consumer<ChangeListener<T>> notification) {
+		
+		for (ChangeListener<T> listener : listeners) {
+			try {
+				notification.accept(listener);
+			} catch (RuntimeException e) {
+				logger.error("Change listener {} failed", listener.getClass().getSimpleName(), e);
+			}
+		}
+	}
 
 }
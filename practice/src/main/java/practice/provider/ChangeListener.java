@@ -0,0 +1,31 @@
+package practice.provider;
+
+/**
+ * Listener of the changes made through a provider.
+ * Listeners are notified from the write path, after the change is applied and in the order
+ * the changes are made, so they must be quick and must not write to the database.
+ * @param <T> The database object class related.
+ */
+public interface ChangeListener<T> {
+
+	/**
+	 * Notifies a new record.
+	 * @param data The created record, with its key.
+	 */
+	default void inserted(T data) {
+	}
+
+	/**
+	 * Notifies an updated record.
+	 * @param data The new values of the record.
+	 */
+	default void updated(T data) {
+	}
+
+	/**
+	 * Notifies a deleted record.
+	 * @param key The key of the deleted record.
+	 */
+	default void deleted(int key) {
+	}
+}
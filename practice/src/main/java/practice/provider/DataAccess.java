@@ -0,0 +1,290 @@
+package practice.provider;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+
+import practice.exception.ProcessException;
+import practice.logging.SamplingTurboFilter;
+import practice.provider.DataSourceSettings.Mode;
+
+/**
+ * Entry point of the providers to the database, separating reads from writes.
+ * SQLite only allows one writer at a time, so every write goes through a single lane:
+ * <ul>
+ * <li>In {@link Mode#DEFAULT} mode reads and writes share the application data source,
+ * and writes are serialized with a lock.</li>
+ * <li>In {@link Mode#WAL} mode reads use a bounded pool of read-only connections, and writes are queued
+ * to a single thread owning the writer connection, so readers and writers never block each other.</li>
+ * </ul>
+ */
+@Component
+public class DataAccess implements DisposableBean {
+
+	/**
+	 * The class logger.
+	 */
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Template over the application data source, the writer connection in WAL mode.
+	 */
+	private final JdbcTemplate writer;
+
+	/**
+	 * Runs the transactional writes on the application data source.
+	 */
+	private final TransactionTemplate transactionTemplate;
+
+	/**
+	 * Template for reads.
+	 */
+	private final JdbcTemplate reader;
+
+	/**
+	 * Pool of read-only connections, null in default mode.
+	 */
+	private final org.apache.tomcat.jdbc.pool.DataSource readPool;
+
+	/**
+	 * Single thread running the queued writes, null in default mode.
+	 */
+	private final ThreadPoolExecutor writerLane;
+
+	/**
+	 * Serializes the writes in default mode.
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	/**
+	 * The thread of the writer lane.
+	 */
+	private volatile Thread writerThread;
+
+	/**
+	 * Constructor.
+	 * @param jdbcTemplate Template over the application data source.
+	 * @param transactionManager Transaction manager of the application data source.
+	 * @param settings The data access settings.
+	 */
+	@Autowired
+	public DataAccess(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, DataSourceSettings settings) {
+		this("sqlite", jdbcTemplate, transactionManager, settings);
+	}
+
+	/**
+	 * Constructor.
+	 * @param name The prefix of the names of the read pool and the writer thread.
+	 * @param jdbcTemplate Template over the data source, the writer connection in WAL mode.
+	 * @param transactionManager Transaction manager of the data source.
+	 * @param settings The data access settings.
+	 */
+	public DataAccess(String name, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, DataSourceSettings settings) {
+
+		this.writer = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+		if (settings.getMode() == Mode.WAL) {
+
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			config.setBusyTimeout(String.valueOf(settings.getBusyTimeout()));
+
+			PoolProperties poolProperties = new PoolProperties();
+			poolProperties.setName(name + "-readers");
+			poolProperties.setDriverClassName("org.sqlite.JDBC");
+			poolProperties.setUrl(settings.getUrl());
+			poolProperties.setDbProperties(config.toProperties());
+			poolProperties.setInitialSize(0);
+			poolProperties.setMinIdle(0);
+			poolProperties.setMaxIdle(settings.getReaders());
+			poolProperties.setMaxActive(settings.getReaders());
+			poolProperties.setMaxWait(settings.getBusyTimeout());
+
+			this.readPool = new org.apache.tomcat.jdbc.pool.DataSource(poolProperties);
+			this.reader = new JdbcTemplate(readPool);
+
+			this.writerLane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(settings.getWriterQueueCapacity()), runnable -> {
+						Thread thread = new Thread(runnable, name + "-writer");
+						thread.setDaemon(true);
+						writerThread = thread;
+						return thread;
+					});
+
+			logger.info(SamplingTurboFilter.ALWAYS, "Data access {} in WAL mode with {} readers.", name,
+					settings.getReaders());
+
+		} else {
+
+			this.readPool = null;
+			this.reader = jdbcTemplate;
+			this.writerLane = null;
+		}
+	}
+
+	/**
+	 * Creates the single writer connection of a database in WAL mode.
+	 * @param settings The data access settings of the database.
+	 * @return The data source of the connection, which is closed when it is destroyed.
+	 */
+	public static SingleConnectionDataSource writerDataSource(DataSourceSettings settings) {
+
+		SQLiteConfig config = new SQLiteConfig();
+		config.setJournalMode(JournalMode.WAL);
+		config.setSynchronous(settings.getSynchronous());
+		config.setBusyTimeout(String.valueOf(settings.getBusyTimeout()));
+
+		SingleConnectionDataSource writer = new SingleConnectionDataSource(settings.getUrl(), true);
+		writer.setDriverClassName("org.sqlite.JDBC");
+		writer.setConnectionProperties(config.toProperties());
+		return writer;
+	}
+
+	/**
+	 * @return the template for reads
+	 */
+	public JdbcTemplate reader() {
+		return reader;
+	}
+
+	/**
+	 * @return the pool of read-only connections, null in default mode
+	 */
+	public org.apache.tomcat.jdbc.pool.DataSource getReadPool() {
+		return readPool;
+	}
+
+	/**
+	 * @return the number of writes waiting for the writer, always 0 in default mode
+	 */
+	public int getPendingWrites() {
+		return writerLane == null ? writeLock.getQueueLength() : writerLane.getQueue().size();
+	}
+
+	/**
+	 * Runs a write in the writer lane and waits for its result.
+	 * Writes issued from the lane itself run directly, so they can be nested.
+	 * @param work The write, receiving the template of the writer.
+	 * @return The result of the write.
+	 * @throws ProcessException with 503 status if the writer queue is full.
+	 */
+	public <R> R write(Function<JdbcTemplate, R> work) {
+		return await(submit(work));
+	}
+
+	/**
+	 * Runs several writes as a single transaction in the writer lane and waits for the result.
+	 * @param work The writes, receiving the template of the writer.
+	 * @param afterCommit Receives the result once the transaction is committed, still in the writer lane.
+	 * @return The result of the writes.
+	 * @throws ProcessException with 503 status if the writer queue is full.
+	 */
+	public <R> R writeInTransaction(Function<JdbcTemplate, R> work, Consumer<R> afterCommit) {
+		return await(submitInTransaction(work, afterCommit));
+	}
+
+	/**
+	 * Queues a write to the writer lane without waiting for it, so the writes of several databases can run
+	 * at once. In default mode, or from the lane itself, the write runs before returning.
+	 * @param work The write, receiving the template of the writer.
+	 * @return The result of the write, to be read with {@link #await(Future)}.
+	 * @throws ProcessException with 503 status if the writer queue is full.
+	 */
+	public <R> Future<R> submit(Function<JdbcTemplate, R> work) {
+
+		if (writerLane == null) {
+			writeLock.lock();
+			try {
+				return CompletableFuture.completedFuture(work.apply(writer));
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		if (Thread.currentThread() == writerThread) {
+			return CompletableFuture.completedFuture(work.apply(writer));
+		}
+
+		try {
+			return writerLane.submit(() -> work.apply(writer));
+		} catch (RejectedExecutionException e) {
+			throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, e, "error.write.rejected");
+		}
+	}
+
+	/**
+	 * Queues several writes as a single transaction without waiting for them.
+	 * @param work The writes, receiving the template of the writer.
+	 * @param afterCommit Receives the result once the transaction is committed, still in the writer lane.
+	 * @return The result of the writes, to be read with {@link #await(Future)}.
+	 * @throws ProcessException with 503 status if the writer queue is full.
+	 */
+	public <R> Future<R> submitInTransaction(Function<JdbcTemplate, R> work, Consumer<R> afterCommit) {
+
+		return submit(jdbcTemplate -> {
+			R result = transactionTemplate.execute(status -> work.apply(jdbcTemplate));
+			afterCommit.accept(result);
+			return result;
+		});
+	}
+
+	/**
+	 * Waits for a queued write, rethrowing its exception.
+	 * @param future The result of the write.
+	 * @return The result of the write.
+	 */
+	public static <R> R await(Future<R> future) {
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e.getCause(), "error.internal");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.internal");
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+
+		if (writerLane != null) {
+			writerLane.shutdown();
+			if (!writerLane.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.warn("Writer lane did not finish the pending writes.");
+			}
+		}
+
+		if (readPool != null) {
+			readPool.close();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package practice.provider;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+
+/**
+ * Settings of the SQLite data access, bound from the practice.datasource.* properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "practice.datasource")
+public class DataSourceSettings {
+
+	/**
+	 * Data access modes.
+	 */
+	public enum Mode {
+
+		/**
+		 * A single pool of connections in rollback journal mode, shared by reads and writes.
+		 */
+		DEFAULT,
+
+		/**
+		 * Write-ahead log mode, with a pool of read-only connections and a single writer connection.
+		 */
+		WAL
+	}
+
+	/**
+	 * What happens to the schema on boot.
+	 */
+	public enum Schema {
+
+		/**
+		 * The users table is dropped and created again with the initial users, so every run starts the same.
+		 */
+		RECREATE,
+
+		/**
+		 * The users are kept, only the migrations missing from the database are applied.
+		 */
+		PERSISTENT
+	}
+
+	/**
+	 * JDBC url of the database.
+	 */
+	private String url = "jdbc:sqlite:practiceDB";
+
+	/**
+	 * The data access mode.
+	 */
+	private Mode mode = Mode.DEFAULT;
+
+	/**
+	 * What happens to the schema on boot.
+	 */
+	private Schema schema = Schema.RECREATE;
+
+	/**
+	 * Maximum number of read-only connections in WAL mode.
+	 */
+	private int readers = 4;
+
+	/**
+	 * Milliseconds a connection waits on a locked database before failing with SQLITE_BUSY.
+	 */
+	private int busyTimeout = 5000;
+
+	/**
+	 * Synchronous level of the writer connection in WAL mode.
+	 */
+	private SynchronousMode synchronous = SynchronousMode.NORMAL;
+
+	/**
+	 * Maximum number of writes waiting for the writer connection in WAL mode.
+	 */
+	private int writerQueueCapacity = 1000;
+
+	/**
+	 * @return the url
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @param url the url to set
+	 */
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * @return the mode
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @param mode the mode to set
+	 */
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * @return the schema
+	 */
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @param schema the schema to set
+	 */
+	public void setSchema(Schema schema) {
+		this.schema = schema;
+	}
+
+	/**
+	 * @return the readers
+	 */
+	public int getReaders() {
+		return readers;
+	}
+
+	/**
+	 * @param readers the readers to set
+	 */
+	public void setReaders(int readers) {
+		this.readers = readers;
+	}
+
+	/**
+	 * @return the busy timeout
+	 */
+	public int getBusyTimeout() {
+		return busyTimeout;
+	}
+
+	/**
+	 * @param busyTimeout the busy timeout to set
+	 */
+	public void setBusyTimeout(int busyTimeout) {
+		this.busyTimeout = busyTimeout;
+	}
+
+	/**
+	 * @return the synchronous level
+	 */
+	public SynchronousMode getSynchronous() {
+		return synchronous;
+	}
+
+	/**
+	 * @param synchronous the synchronous level to set
+	 */
+	public void setSynchronous(SynchronousMode synchronous) {
+		this.synchronous = synchronous;
+	}
+
+	/**
+	 * @return the writer queue capacity
+	 */
+	public int getWriterQueueCapacity() {
+		return writerQueueCapacity;
+	}
+
+	/**
+	 * @param writerQueueCapacity the writer queue capacity to set
+	 */
+	public void setWriterQueueCapacity(int writerQueueCapacity) {
+		this.writerQueueCapacity = writerQueueCapacity;
+	}
+
+	/**
+	 * Copies the settings for another database.
+	 * @param url The JDBC url of the database.
+	 * @param mode The data access mode.
+	 * @return The new settings.
+	 */
+	public DataSourceSettings copy(String url, Mode mode) {
+
+		DataSourceSettings copy = new DataSourceSettings();
+		copy.url = url;
+		copy.mode = mode;
+		copy.schema = schema;
+		copy.readers = readers;
+		copy.busyTimeout = busyTimeout;
+		copy.synchronous = synchronous;
+		copy.writerQueueCapacity = writerQueueCapacity;
+		return copy;
+	}
+}
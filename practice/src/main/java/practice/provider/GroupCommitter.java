@@ -0,0 +1,404 @@
+package practice.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import practice.exception.ProcessException;
+import practice.logging.SamplingTurboFilter;
+import practice.model.GroupCommitStatistics;
+
+/**
+ * Optional group commit stage for single writes.
+ * When it is enabled, the writes submitted by concurrent callers within a short window (or up to
+ * a maximum number of them) are executed in a single transaction, so they share one commit and one
+ * sync of the database file. Each caller still gets its own result, once the shared commit lands.
+ * Each write runs within a savepoint, rolled back if it fails, so a failing write only fails its own caller
+ * and the rest of the group is committed. If the whole transaction is lost instead (SQLite rolls it back
+ * on errors such as a full disk or an I/O error), each write of the group is run again in its own transaction.
+ * Once the committer is stopped the new writes are refused, and those still queued are failed.
+ * When it is disabled every write is run on its own through {@link DataAccess#write(Function)}.
+ */
+@Component
+public class GroupCommitter implements DisposableBean {
+
+	/**
+	 * The class logger.
+	 */
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Access to the database.
+	 */
+	private final DataAccess dataAccess;
+
+	/**
+	 * Whether the writes are grouped.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * Time in nanoseconds the first write of a group waits for others to join.
+	 */
+	private final long windowNanos;
+
+	/**
+	 * Maximum number of writes in a group.
+	 */
+	private final int maxSize;
+
+	/**
+	 * Milliseconds a caller waits for the commit of its write.
+	 */
+	private final long timeoutMillis;
+
+	/**
+	 * Writes waiting for the next group. Writes are only added while running, checked under its lock.
+	 */
+	private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+
+	/**
+	 * Queued once the committer is stopped, so the flusher does not wait for more writes.
+	 */
+	private final PendingWrite<Object> stop = new PendingWrite<>(jdbcTemplate -> null, result -> { });
+
+	/**
+	 * Thread collecting and committing the groups, null if disabled.
+	 */
+	private final Thread flusher;
+
+	/**
+	 * Number of groups run.
+	 */
+	private final LongAdder groups = new LongAdder();
+
+	/**
+	 * Number of writes in the groups run.
+	 */
+	private final LongAdder writes = new LongAdder();
+
+	/**
+	 * Accumulated time in nanoseconds from the submission of each write to its commit.
+	 */
+	private final LongAdder latency = new LongAdder();
+
+	/**
+	 * Maximum time in nanoseconds from the submission of a write to its commit.
+	 */
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	/**
+	 * Whether the flusher keeps running.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor.
+	 * @param dataAccess Access to the database.
+	 * @param enabled Whether the writes are grouped.
+	 * @param windowMicros Time in microseconds the first write of a group waits for others.
+	 * @param maxSize Maximum number of writes in a group.
+	 * @param timeoutMillis Milliseconds a caller waits for the commit of its write.
+	 */
+	@Autowired
+	public GroupCommitter(DataAccess dataAccess,
+			@Value("${practice.group-commit.enabled:false}") boolean enabled,
+			@Value("${practice.group-commit.window-micros:2000}") long windowMicros,
+			@Value("${practice.group-commit.max-size:100}") int maxSize,
+			@Value("${practice.group-commit.timeout-millis:30000}") long timeoutMillis) {
+
+		this.dataAccess = dataAccess;
+		this.enabled = enabled;
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxSize = maxSize;
+		this.timeoutMillis = timeoutMillis;
+
+		if (enabled) {
+			flusher = new Thread(this::flush, "group-commit");
+			flusher.setDaemon(true);
+			flusher.start();
+			logger.info(SamplingTurboFilter.ALWAYS, "Group commit enabled with a window of {} us and up to {} writes.",
+					windowMicros, maxSize);
+		} else {
+			flusher = null;
+		}
+	}
+
+	/**
+	 * Runs a single write, grouped with the concurrent ones if group commit is enabled, and waits for its commit.
+	 * @param work The write, receiving the template of the writer.
+	 * @param afterCommit Receives the result once it is committed, in commit order.
+	 * @return The result of the write.
+	 * @throws ProcessException with 503 status if the committer is stopped or the write waited too long
+	 * to be run, with 500 status if it is still being committed once the caller stops waiting.
+	 */
+	public <R> R write(Function<JdbcTemplate, R> work, Consumer<R> afterCommit) {
+
+		if (!enabled) {
+			return dataAccess.write(jdbcTemplate -> {
+				R result = work.apply(jdbcTemplate);
+				afterCommit.accept(result);
+				return result;
+			});
+		}
+
+		PendingWrite<R> pendingWrite = new PendingWrite<>(work, afterCommit);
+
+		synchronized (queue) {
+			if (!running) {
+				throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.write.rejected");
+			}
+			queue.add(pendingWrite);
+		}
+
+		try {
+			return pendingWrite.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e.getCause(), "error.internal");
+		} catch (TimeoutException e) {
+			if (queue.remove(pendingWrite)) {
+				// it never ran, so it is refused like a write the writer lane has no room for
+				throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, e, "error.write.rejected");
+			}
+			logger.error("Write not committed after {} ms, its outcome is unknown to the caller.", timeoutMillis);
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.internal");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.internal");
+		}
+	}
+
+	/**
+	 * Collects the pending writes in groups and commits them, until the committer is stopped.
+	 * The writes still queued then are failed.
+	 */
+	private void flush() {
+
+		List<PendingWrite<?>> group = new ArrayList<>(maxSize);
+
+		try {
+
+			while (running) {
+
+				PendingWrite<?> first = queue.take();
+				if (first == stop) {
+					break;
+				}
+
+				group.add(first);
+				long deadline = System.nanoTime() + windowNanos;
+
+				while (group.size() < maxSize) {
+					long wait = deadline - System.nanoTime();
+					PendingWrite<?> next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null || next == stop) {
+						break;
+					}
+					group.add(next);
+				}
+
+				try {
+					commit(group);
+				} catch (RuntimeException e) {
+					logger.error("Group commit failed.", e);
+					group.forEach(pendingWrite -> pendingWrite.fail(e));
+				}
+				group.clear();
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			failPending(group);
+		}
+	}
+
+	/**
+	 * Commits a group of writes in a single transaction, or each of them in its own if the transaction of
+	 * a group of several is lost, and completes them. A lone write whose transaction is lost is failed
+	 * with it, not run again, since its caller is already told it failed.
+	 * @param group The writes to commit.
+	 */
+	private void commit(List<PendingWrite<?>> group) {
+
+		groups.increment();
+		writes.add(group.size());
+
+		if (!commitTogether(group) && group.size() > 1) {
+			logger.warn("Transaction of a group of {} writes rolled back, committing them one by one.", group.size());
+			group.forEach(pendingWrite -> commitTogether(Collections.singletonList(pendingWrite)));
+		}
+
+		long now = System.nanoTime();
+		for (PendingWrite<?> pendingWrite : group) {
+			long elapsed = now - pendingWrite.submitted;
+			latency.add(elapsed);
+			maxLatency.accumulateAndGet(elapsed, Math::max);
+		}
+	}
+
+	/**
+	 * Runs writes in a single transaction and completes each one once it is committed.
+	 * @param writes The writes.
+	 * @return Whether the transaction was committed. If it was not, a single write is failed, 
+	 * and several ones are left to be run again.
+	 */
+	private boolean commitTogether(List<PendingWrite<?>> writes) {
+
+		try {
+
+			dataAccess.writeInTransaction(jdbcTemplate -> {
+				writes.forEach(pendingWrite -> pendingWrite.run(jdbcTemplate));
+				return writes;
+			}, committed -> committed.forEach(PendingWrite::complete));
+
+			return true;
+
+		} catch (RuntimeException e) {
+			if (writes.size() == 1) {
+				writes.get(0).fail(e);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Fails the writes not committed once the committer is stopped.
+	 * @param group The writes taken from the queue but not committed.
+	 */
+	private void failPending(List<PendingWrite<?>> group) {
+
+		ProcessException stopped = new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.write.rejected");
+
+		group.forEach(pendingWrite -> pendingWrite.future.completeExceptionally(stopped));
+
+		PendingWrite<?> pendingWrite;
+		while ((pendingWrite = queue.poll()) != null) {
+			pendingWrite.future.completeExceptionally(stopped);
+		}
+	}
+
+	/**
+	 * @return the counters of the group commit
+	 */
+	public GroupCommitStatistics getStatistics() {
+
+		long groupCount = groups.sum();
+		long writeCount = writes.sum();
+
+		return new GroupCommitStatistics(enabled, groupCount, writeCount,
+				groupCount == 0 ? 0 : (double) writeCount / groupCount,
+				writeCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(latency.sum() / writeCount),
+				TimeUnit.NANOSECONDS.toMicros(maxLatency.get()));
+	}
+
+	@Override
+	public void destroy() throws Exception {
+
+		synchronized (queue) {
+			running = false;
+			queue.add(stop);
+		}
+
+		if (flusher != null) {
+			// the group being committed is finished, the writes queued after it are failed
+			flusher.join(TimeUnit.SECONDS.toMillis(10));
+			if (flusher.isAlive()) {
+				logger.warn("Group commit did not finish, failing the queued writes.");
+			}
+		}
+
+		failPending(Collections.emptyList());
+	}
+
+	/**
+	 * A write waiting for its group to be committed.
+	 * @param <R> The class of the result of the write.
+	 */
+	private static class PendingWrite<R> {
+
+		private final Function<JdbcTemplate, R> work;
+
+		private final Consumer<R> afterCommit;
+
+		private final CompletableFuture<R> future = new CompletableFuture<>();
+
+		private final long submitted = System.nanoTime();
+
+		private R result;
+
+		private RuntimeException error;
+
+		private PendingWrite(Function<JdbcTemplate, R> work, Consumer<R> afterCommit) {
+			this.work = work;
+			this.afterCommit = afterCommit;
+		}
+
+		/**
+		 * Runs the write inside the transaction of the group within a savepoint, keeping its failure for the
+		 * caller. The statements of a failing write are rolled back; if the transaction itself was rolled
+		 * back, the savepoint is gone and the group fails.
+		 */
+		private void run(JdbcTemplate jdbcTemplate) {
+
+			result = null;
+			error = null;
+
+			jdbcTemplate.execute("savepoint pending_write");
+			try {
+				result = work.apply(jdbcTemplate);
+			} catch (RuntimeException e) {
+				error = e;
+				jdbcTemplate.execute("rollback to pending_write");
+			}
+			jdbcTemplate.execute("release pending_write");
+		}
+
+		/**
+		 * Completes the caller once the transaction of the group is committed.
+		 */
+		private void complete() {
+
+			if (error != null) {
+				future.completeExceptionally(error);
+				return;
+			}
+
+			try {
+				afterCommit.accept(result);
+				future.complete(result);
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+
+		/**
+		 * Fails the caller with the failure of its own write, or else with the failure of its transaction.
+		 */
+		private void fail(RuntimeException e) {
+			future.completeExceptionally(error != null ? error : e);
+		}
+	}
+}
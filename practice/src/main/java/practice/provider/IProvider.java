@@ -1,6 +1,7 @@
 package practice.provider;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Providers interface.
@@ -14,6 +15,22 @@ public interface IProvider<T> {
 	 */
 	public List<T> findAll();
 	
+	/**
+	 * Retrieves a page of records whose key is greater than the given one, ordered by key.
+	 * @param key The last key of the previous page, 0 to start from the beginning.
+	 * @param limit The maximum number of records to retrieve.
+	 * @return The list of retrieved records.
+	 */
+	public List<T> findAfter(int key, int limit);
+	
+	/**
+	 * Reads all the records in the related table, ordered by key, handing them one by one 
+	 * to the consumer instead of keeping them in memory.
+	 * @param consumer The consumer of the records.
+	 * @return The number of records read.
+	 */
+	public int streamAll(Consumer<T> consumer);
+	
 	/**
 	 * Retrieves a single record from the related table.
 	 * @param key The key value for the query.
@@ -35,6 +52,27 @@ public interface IProvider<T> {
 	 */
 	public T update(T data);
 	
+	/**
+	 * Adds several new records to the related table in a single transaction.
+	 * @param data The values for the new records.
+	 * @return The created objects with generated keys, in the same order.
+	 */
+	public List<T> insertAll(List<T> data);
+	
+	/**
+	 * Updates several existing records in the related table in a single transaction.
+	 * @param data The values to update.
+	 * @return The updated objects in the same order, null for the records that were not found.
+	 */
+	public List<T> updateAll(List<T> data);
+	
+	/**
+	 * Deletes several existing records in a single transaction.
+	 * @param keys The keys of the records to delete.
+	 * @return Whether each deletion was successful or not, in the same order.
+	 */
+	public List<Boolean> deleteAll(List<Integer> keys);
+	
 	/**
 	 * Deletes an existing record.
 	 * @param key The key of the record to delete.
@@ -0,0 +1,18 @@
+package practice.provider;
+
+import java.util.List;
+
+/**
+ * Providers interface for the users table.
+ */
+public interface IUserProvider extends IProvider<UserDb> {
+
+	/**
+	 * Retrieves the users born within a range of dates, ordered by birth date and id.
+	 * @param after The epoch day the users were born after, exclusive.
+	 * @param before The epoch day the users were born before, exclusive.
+	 * @param limit The maximum number of users to retrieve.
+	 * @return The list of retrieved users.
+	 */
+	public List<UserDb> findBornBetween(long after, long before, int limit);
+}
@@ -0,0 +1,547 @@
+package practice.provider;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import practice.exception.ProcessException;
+import practice.logging.SamplingTurboFilter;
+import practice.metrics.StartupReport;
+import practice.utils.IntMap;
+
+/**
+ * In-memory store of the users, active with practice.provider=memory.
+ * All the users are held in an {@link IntMap} keyed by id, and in sets sorted by id and by birth date, so
+ * every read is answered from memory without locks or sorting. Changes are applied to memory one at a time and
+ * queued to a single thread that writes them to the users table in batched transactions, in the same order,
+ * so the table is a journal the store is reloaded from once the application is ready after boot.
+ * A batch that fails to be written is retried, backing off, until it is written; meanwhile the changes are
+ * refused with 503, so memory never gets further ahead of the table than the changes already queued.
+ * The returned {@link UserDb} instances are shared, so they must not be modified.
+ */
+@Repository("usersProvider")
+@ConditionalOnProperty(prefix = "practice", name = "provider", havingValue = "memory")
+public class MemoryUserProvider extends AbstractProvider<UserDb> implements IUserProvider, DisposableBean {
+
+	/**
+	 * Orders the users by id.
+	 */
+	private static final Comparator<UserDb> BY_ID = Comparator.comparingInt(UserDb::getId);
+
+	/**
+	 * Orders the users by birth date and id.
+	 */
+	private static final Comparator<UserDb> BY_BIRTHDATE = Comparator.comparingLong(UserDb::getBirthdate).thenComparing(BY_ID);
+
+	/**
+	 * First and maximum wait before writing again a batch that failed, in milliseconds.
+	 */
+	private static final long MIN_RETRY_DELAY = 100;
+
+	private static final long MAX_RETRY_DELAY = 5000;
+
+	/**
+	 * The users by id, null until they are loaded.
+	 */
+	private volatile IntMap<UserDb> users;
+
+	/**
+	 * The same users sorted by id, changed along with the map, to walk them in order whatever the gaps
+	 * left by the removed ids.
+	 */
+	private final NavigableSet<UserDb> byId = new ConcurrentSkipListSet<>(BY_ID);
+
+	/**
+	 * The same users sorted by birth date and id, changed along with the map.
+	 */
+	private final NavigableSet<UserDb> byBirthdate = new ConcurrentSkipListSet<>(BY_BIRTHDATE);
+
+	/**
+	 * The greatest id in use.
+	 */
+	private final AtomicInteger lastId = new AtomicInteger();
+
+	/**
+	 * Serializes the changes, so they are applied, journaled and notified in the same order.
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	/**
+	 * Changes waiting to be written to the table.
+	 */
+	private final BlockingQueue<Consumer<JdbcTemplate>> journal;
+
+	/**
+	 * Maximum number of changes written in a single transaction.
+	 */
+	private final int batchSize;
+
+	/**
+	 * Thread writing the changes to the table.
+	 */
+	private final Thread journalWriter;
+
+	/**
+	 * Whether the journal writer keeps running.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * The error writing the batch being retried, null while the journal is written.
+	 */
+	private volatile RuntimeException failure;
+
+	/**
+	 * Constructor.
+	 * @param capacity Maximum number of changes waiting to be written, further changes wait for room.
+	 * @param batchSize Maximum number of changes written in a single transaction.
+	 */
+	public MemoryUserProvider(@Value("${practice.memory.journal-capacity:10000}") int capacity,
+			@Value("${practice.memory.journal-batch-size:500}") int batchSize) {
+
+		this.journal = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.journalWriter = new Thread(this::writeJournal, "user-journal");
+		this.journalWriter.setDaemon(true);
+		this.journalWriter.start();
+	}
+
+	@Override
+	public List<UserDb> findAll() {
+
+		List<UserDb> userDbs = new ArrayList<>(users().size());
+		forEachById(userDbs::add);
+
+		logger.info("Returning {} users.", userDbs.size());
+
+		return userDbs;
+	}
+
+	/**
+	 * Retrieves a page of users from the users sorted by id.
+	 * @param id The last id of the previous page, 0 to start from the first user.
+	 * @param limit The maximum number of users to retrieve.
+	 * @return The list of {@link UserDb} ordered by id.
+	 */
+	@Override
+	public List<UserDb> findAfter(int id, int limit) {
+
+		List<UserDb> userDbs = new ArrayList<>(Math.min(limit, users().size()));
+
+		for (UserDb userDb : byId.tailSet(new UserDb(id, null, 0), false)) {
+			if (userDbs.size() == limit) {
+				break;
+			}
+			userDbs.add(userDb);
+		}
+
+		logger.info("Returning {} users after id {}.", userDbs.size(), id);
+
+		return userDbs;
+	}
+
+	@Override
+	public int streamAll(Consumer<UserDb> consumer) {
+
+		int count = forEachById(consumer);
+
+		logger.info("Streamed {} users.", count);
+
+		return count;
+	}
+
+	/**
+	 * Retrieves the users born within a range of dates, from the users sorted by birth date.
+	 * @param after The epoch day the users were born after, exclusive.
+	 * @param before The epoch day the users were born before, exclusive.
+	 * @param limit The maximum number of users to retrieve.
+	 * @return The list of {@link UserDb} ordered by birth date and id.
+	 */
+	@Override
+	public List<UserDb> findBornBetween(long after, long before, int limit) {
+
+		users();
+
+		List<UserDb> page = new ArrayList<>();
+		if (after < before) {
+			// the users born on the bounds are left out whatever their id
+			for (UserDb userDb : byBirthdate.subSet(new UserDb(Integer.MAX_VALUE, null, after), false,
+					new UserDb(Integer.MIN_VALUE, null, before), false)) {
+				if (page.size() == limit) {
+					break;
+				}
+				page.add(userDb);
+			}
+		}
+
+		logger.info("Returning {} users.", page.size());
+
+		return page;
+	}
+
+	@Override
+	public UserDb find(int id) {
+
+		UserDb userDb = users().get(id);
+
+		logger.info("Returning {} users.", (userDb == null ? 0 : 1));
+
+		return userDb;
+	}
+
+	@Override
+	public UserDb insert(UserDb dataDb) {
+
+		return change(() -> {
+			UserDb created = add(dataDb);
+			notifyListeners(listener -> listener.inserted(created));
+			return created;
+		});
+	}
+
+	@Override
+	public UserDb update(UserDb dataDb) {
+
+		return change(() -> {
+			UserDb updated = replace(dataDb);
+			if (updated != null) {
+				notifyListeners(listener -> listener.updated(updated));
+			}
+			return updated;
+		});
+	}
+
+	@Override
+	public boolean delete(int id) {
+
+		return change(() -> {
+			boolean removed = remove(id);
+			if (removed) {
+				notifyListeners(listener -> listener.deleted(id));
+			}
+			return removed;
+		});
+	}
+
+	@Override
+	public List<UserDb> insertAll(List<UserDb> dataDbs) {
+
+		List<UserDb> created = change(() -> {
+			List<UserDb> result = new ArrayList<>(dataDbs.size());
+			for (UserDb dataDb : dataDbs) {
+				result.add(add(dataDb));
+			}
+			result.forEach(userDb -> notifyListeners(listener -> listener.inserted(userDb)));
+			return result;
+		});
+
+		logger.info("Created {} users", created.size());
+
+		return created;
+	}
+
+	@Override
+	public List<UserDb> updateAll(List<UserDb> dataDbs) {
+
+		List<UserDb> updated = change(() -> {
+			List<UserDb> result = new ArrayList<>(dataDbs.size());
+			for (UserDb dataDb : dataDbs) {
+				result.add(replace(dataDb));
+			}
+			result.stream()
+					.filter(userDb -> userDb != null)
+					.forEach(userDb -> notifyListeners(listener -> listener.updated(userDb)));
+			return result;
+		});
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Updated {} users", updated.stream().filter(userDb -> userDb != null).count());
+		}
+
+		return updated;
+	}
+
+	@Override
+	public List<Boolean> deleteAll(List<Integer> ids) {
+
+		return change(() -> {
+			List<Boolean> result = new ArrayList<>(ids.size());
+			for (int id : ids) {
+				boolean removed = remove(id);
+				result.add(removed);
+				if (removed) {
+					notifyListeners(listener -> listener.deleted(id));
+				}
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Adds a user with the id after the greatest one and journals it, with the write lock held.
+	 */
+	private UserDb add(UserDb dataDb) {
+
+		UserDb created = new UserDb(lastId.incrementAndGet(), dataDb.getName(), dataDb.getBirthdate());
+		users.put(created.getId(), created);
+		byId.add(created);
+		byBirthdate.add(created);
+
+		journal(jdbcTemplate -> jdbcTemplate.update("insert into users(id, name, birthdate) values(?, ?, ?)",
+				created.getId(), created.getName(), created.getBirthdate()));
+
+		return created;
+	}
+
+	/**
+	 * Replaces an existing user and journals it, with the write lock held.
+	 * @return the stored user, null if it does not exist
+	 */
+	private UserDb replace(UserDb dataDb) {
+
+		UserDb previous = users.get(dataDb.getId());
+		if (previous == null) {
+			return null;
+		}
+
+		UserDb updated = new UserDb(dataDb.getId(), dataDb.getName(), dataDb.getBirthdate());
+		users.put(updated.getId(), updated);
+		byId.remove(previous);
+		byId.add(updated);
+		byBirthdate.remove(previous);
+		byBirthdate.add(updated);
+
+		journal(jdbcTemplate -> jdbcTemplate.update("update users set name = ?, birthdate = ? where id = ?",
+				updated.getName(), updated.getBirthdate(), updated.getId()));
+
+		return updated;
+	}
+
+	/**
+	 * Removes a user and journals it, with the write lock held.
+	 * @return whether the user existed
+	 */
+	private boolean remove(int id) {
+
+		UserDb removed = users.remove(id);
+		if (removed == null) {
+			return false;
+		}
+		byId.remove(removed);
+		byBirthdate.remove(removed);
+
+		// like the table, the next user takes the id after the greatest remaining one
+		lastId.set(byId.isEmpty() ? 0 : byId.last().getId());
+
+		journal(jdbcTemplate -> jdbcTemplate.update("delete from users where id = ?", id));
+
+		return true;
+	}
+
+	/**
+	 * Runs a change with the write lock held, once the users are loaded.
+	 * @throws ProcessException with 503 status if the provider is stopping, or the journal cannot be
+	 * written to the table.
+	 */
+	private <R> R change(Supplier<R> work) {
+
+		users();
+
+		writeLock.lock();
+		try {
+
+			if (!running) {
+				throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.write.rejected");
+			}
+			RuntimeException failure = this.failure;
+			if (failure != null) {
+				throw new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, failure, "error.write.rejected");
+			}
+
+			return work.get();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Queues a change to be written to the table, waiting for room if the journal is full.
+	 */
+	private void journal(Consumer<JdbcTemplate> write) {
+
+		try {
+			journal.put(write);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.internal");
+		}
+	}
+
+	/**
+	 * Writes the queued changes to the table in batched transactions, until the provider is destroyed
+	 * and the journal is empty.
+	 * A batch that fails is written again, waiting longer each time, and no change is taken meanwhile;
+	 * the failure is logged once, when it starts, and the recovery when the batch is finally written.
+	 * Once the provider is stopping, a failing batch is not retried and the changes left are reported lost.
+	 */
+	private void writeJournal() {
+
+		List<Consumer<JdbcTemplate>> batch = new ArrayList<>(batchSize);
+		long delay = 0;
+
+		while (running || !journal.isEmpty() || !batch.isEmpty()) {
+
+			try {
+
+				if (batch.isEmpty()) {
+
+					Consumer<JdbcTemplate> first = journal.poll(100, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						continue;
+					}
+
+					batch.add(first);
+					journal.drainTo(batch, batchSize - 1);
+
+				} else if (running) {
+					Thread.sleep(delay);
+				}
+
+				dataAccess.writeInTransaction(jdbcTemplate -> {
+					batch.forEach(write -> write.accept(jdbcTemplate));
+					return batch.size();
+				}, written -> { });
+
+				batch.clear();
+				delay = 0;
+
+				if (failure != null) {
+					failure = null;
+					logger.warn("The changes of the users are written to the table again.");
+				}
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+
+				if (failure == null) {
+					logger.error("Error writing {} changes of the users to the table, the changes are refused until they are written.",
+							batch.size(), e);
+				}
+				failure = e;
+
+				if (!running) {
+					logger.error("{} changes of the users were not written to the table.", batch.size() + journal.size());
+					return;
+				}
+
+				delay = Math.min(Math.max(delay * 2, MIN_RETRY_DELAY), MAX_RETRY_DELAY);
+			}
+		}
+	}
+
+	/**
+	 * Loads the users from the table once the schema is up to date, before the listeners building the
+	 * in-memory structures from them, so the load is part of the startup and not of the first request.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(StartupReport.BUILD_ORDER - 1)
+	public void load() {
+		users();
+	}
+
+	/**
+	 * @return the users, loading them from the table if a request comes before the application is ready
+	 */
+	private IntMap<UserDb> users() {
+
+		IntMap<UserDb> current = users;
+		if (current != null) {
+			return current;
+		}
+
+		writeLock.lock();
+		try {
+
+			if (users == null) {
+
+				long start = System.nanoTime();
+				List<UserDb> loaded = new ArrayList<>();
+
+				try {
+					dataAccess.reader().query("select id, name, birthdate from users", rs -> {
+						loaded.add(new UserDb(rs.getInt("id"), rs.getString("name"), rs.getLong("birthdate")));
+					});
+				} catch (DataAccessException e) {
+					throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
+				}
+
+				IntMap<UserDb> map = new IntMap<>(loaded.size());
+				for (UserDb userDb : loaded) {
+					map.put(userDb.getId(), userDb);
+					lastId.accumulateAndGet(userDb.getId(), Math::max);
+				}
+				byId.addAll(loaded);
+				byBirthdate.addAll(loaded);
+				users = map;
+
+				logger.info(SamplingTurboFilter.ALWAYS, "Loaded {} users in memory in {} ms.", loaded.size(),
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			}
+
+			return users;
+
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Passes all the users to a consumer in id order.
+	 * @return the number of users
+	 */
+	private int forEachById(Consumer<UserDb> consumer) {
+
+		users();
+		int count = 0;
+
+		for (UserDb userDb : byId) {
+			consumer.accept(userDb);
+			count++;
+		}
+
+		return count;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+
+		running = false;
+		journalWriter.join(TimeUnit.SECONDS.toMillis(10));
+
+		if (journalWriter.isAlive() && !journal.isEmpty()) {
+			logger.warn("{} changes of the users were not written to the table.", journal.size());
+		}
+	}
+}
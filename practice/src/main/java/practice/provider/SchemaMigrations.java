@@ -0,0 +1,212 @@
+package practice.provider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import practice.logging.SamplingTurboFilter;
+import practice.utils.DateCodec;
+
+/**
+ * Versioned migrations of the schema of the application database.
+ * The versions applied are recorded in the schema_version table, and on boot only the missing ones run,
+ * each in a transaction of its own with its record, so a failed migration leaves the previous version.
+ * A database created before the versions were recorded is taken as being at the version its users table
+ * matches, without running anything.
+ * In {@link DataSourceSettings.Schema#RECREATE} mode the tables are dropped first, so all the migrations run
+ * and the users are the initial ones on every boot.
+ */
+@Component
+public class SchemaMigrations {
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(SchemaMigrations.class);
+
+	/**
+	 * The migrations, by version. A released migration must never change, changes go in a new one.
+	 */
+	private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+			new Migration(1, "Create the users table with the initial users", SchemaMigrations::createUsers),
+			new Migration(2, "Store the birth dates as indexed epoch days", SchemaMigrations::birthdateEpochDays)));
+
+	/**
+	 * Rows copied in each insert of the migrations copying a table.
+	 */
+	private static final int BATCH_SIZE = 1000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	/**
+	 * Constructor.
+	 * @param jdbcTemplate The template of the application database.
+	 * @param transactionManager The transaction manager of the application database.
+	 */
+	@Autowired
+	public SchemaMigrations(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Brings the schema up to the last version.
+	 * @param schema Whether the tables are recreated or kept.
+	 * @return The number of migrations applied.
+	 */
+	public int migrate(DataSourceSettings.Schema schema) {
+
+		if (schema == DataSourceSettings.Schema.RECREATE) {
+			jdbcTemplate.execute("drop table if exists users");
+			jdbcTemplate.execute("drop table if exists schema_version");
+		}
+
+		jdbcTemplate.execute("create table if not exists schema_version(version integer primary key not null, "
+				+ "description text not null, installed_on integer not null, execution_ms integer not null)");
+
+		int version = getVersion();
+		if (version == 0) {
+			version = baseline();
+		}
+
+		int applied = 0;
+		for (Migration migration : MIGRATIONS) {
+
+			if (migration.version <= version) {
+				continue;
+			}
+
+			long start = System.nanoTime();
+			transactionTemplate.execute(status -> {
+				migration.script.accept(jdbcTemplate);
+				jdbcTemplate.update("insert into schema_version(version, description, installed_on, execution_ms) values(?, ?, ?, ?)",
+						migration.version, migration.description, System.currentTimeMillis(), (System.nanoTime() - start) / 1000000);
+				return null;
+			});
+
+			logger.info(SamplingTurboFilter.ALWAYS, "Schema migrated to version {} ({}) in {} ms.", migration.version,
+					migration.description, (System.nanoTime() - start) / 1000000);
+			applied++;
+		}
+
+		if (applied == 0) {
+			logger.info(SamplingTurboFilter.ALWAYS, "Schema up to date at version {}.", version);
+		}
+
+		return applied;
+	}
+
+	/**
+	 * @return the last version applied, 0 if none is recorded
+	 */
+	public int getVersion() {
+		return jdbcTemplate.queryForObject("select coalesce(max(version), 0) from schema_version", Integer.class);
+	}
+
+	/**
+	 * @return the last version, the one {@link #migrate} brings the schema to
+	 */
+	public static int getLatestVersion() {
+		return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+	}
+
+	/**
+	 * Records the version of a database whose users table was created before the versions were recorded:
+	 * 1 if the birth dates are text, 2 if they are epoch days.
+	 * @return The version recorded, 0 if there is no users table.
+	 */
+	private int baseline() {
+
+		List<String> types = jdbcTemplate.query("pragma table_info(users)", (rs, row) -> rs.getString("name") + " " + rs.getString("type"));
+		if (types.isEmpty()) {
+			return 0;
+		}
+
+		int version = types.contains("birthdate text") ? 1 : 2;
+		for (Migration migration : MIGRATIONS.subList(0, version)) {
+			jdbcTemplate.update("insert into schema_version(version, description, installed_on, execution_ms) values(?, ?, ?, 0)",
+					migration.version, migration.description + " (baseline)", System.currentTimeMillis());
+		}
+
+		logger.info(SamplingTurboFilter.ALWAYS, "Existing users table taken as schema version {}.", version);
+		return version;
+	}
+
+	/**
+	 * Version 1: the users table as it was first released, with the birth dates as dd-MM-yyyy text.
+	 */
+	private static void createUsers(JdbcTemplate jdbcTemplate) {
+
+		jdbcTemplate.execute("create table users(id integer primary key asc not null, name text not null, birthdate text not null)");
+
+		List<Object[]> users = Arrays.asList(
+				"Frodo/28-01-1981",
+				"Aragorn/20-10-1958",
+				"Legolas/13-01-1977",
+				"Gandalf/25-05-1939",
+				"Samsagaz/10-02-1971",
+				"Meriadoc/08-12-1976",
+				"Peregrin/28-08-1968",
+				//"Boromir/17-04-1959", will be added later
+				"Gimli/05-05-1944")
+			.stream()
+			.map(data -> (Object[]) data.split("/"))
+			.collect(Collectors.toList());
+
+		jdbcTemplate.batchUpdate("insert into users(name, birthdate) values(?, ?)", users);
+	}
+
+	/**
+	 * Version 2: the birth dates as the number of days since 1970-01-01, indexed for the range searches.
+	 * SQLite cannot change the type of a column, so the table is copied into a new one.
+	 */
+	private static void birthdateEpochDays(JdbcTemplate jdbcTemplate) {
+
+		jdbcTemplate.execute("create table users_v2(id integer primary key asc not null, name text not null, birthdate integer not null)");
+
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		jdbcTemplate.query("select id, name, birthdate from users", rs -> {
+			batch.add(new Object[] { rs.getInt("id"), rs.getString("name"), DateCodec.parse(rs.getString("birthdate")).toEpochDay() });
+			if (batch.size() == BATCH_SIZE) {
+				jdbcTemplate.batchUpdate("insert into users_v2(id, name, birthdate) values(?, ?, ?)", batch);
+				batch.clear();
+			}
+		});
+		jdbcTemplate.batchUpdate("insert into users_v2(id, name, birthdate) values(?, ?, ?)", batch);
+
+		jdbcTemplate.execute("drop table users");
+		jdbcTemplate.execute("alter table users_v2 rename to users");
+		jdbcTemplate.execute("create index users_birthdate on users(birthdate)");
+	}
+
+	/**
+	 * A version of the schema and the script reaching it from the previous one.
+	 */
+	private static final class Migration {
+
+		private final int version;
+
+		private final String description;
+
+		private final Consumer<JdbcTemplate> script;
+
+		private Migration(int version, String description, Consumer<JdbcTemplate> script) {
+			this.version = version;
+			this.description = description;
+			this.script = script;
+		}
+	}
+}
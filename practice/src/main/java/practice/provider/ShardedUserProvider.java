@@ -0,0 +1,858 @@
+package practice.provider;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Repository;
+
+import practice.exception.ProcessException;
+import practice.logging.SamplingTurboFilter;
+import practice.provider.DataSourceSettings.Mode;
+import practice.utils.DateCodec;
+
+/**
+ * Users spread by id over several SQLite databases, active with practice.provider=sharded.
+ * SQLite allows a single writer per database, so each shard is a database of its own, in WAL mode with
+ * its own writer connection, writer lane and read pool (see {@link DataAccess}), and writes to different
+ * shards run in parallel. The user with id n lives in shard n mod practice.sharding.shards, and the ids are
+ * taken from a counter shared by all the shards, so they never collide.
+ * <ul>
+ * <li>{@link #find(int)}, {@link #update(UserDb)} and {@link #delete(int)} go to the shard of the id.</li>
+ * <li>The batches are split by shard, and each part is written in a transaction of its shard, in parallel,
+ * so a batch is atomic within each shard only.</li>
+ * <li>The queries over all the users run on every shard in parallel, each on the query threads of its shard
+ * and the last one on the calling thread, and the sorted results are merged in order.</li>
+ * </ul>
+ * The shards are filled from the users table of the application data source on the first access after boot.
+ * With the {@link DataSourceSettings.Schema#PERSISTENT} schema they are filled only once and kept on the next
+ * boots, as long as the number of shards does not change: from then on they hold the users, and the users
+ * table of the application data source is not written any more.
+ */
+@Repository("usersProvider")
+@ConditionalOnProperty(prefix = "practice", name = "provider", havingValue = "sharded")
+public class ShardedUserProvider extends AbstractProvider<UserDb> implements IUserProvider, DisposableBean {
+
+	/**
+	 * Maps a row of the users table to a {@link UserDb}.
+	 */
+	private static final RowMapper<UserDb> USER_DB_MAPPER =
+			(rs, row) -> new UserDb(rs.getInt("id"), rs.getString("name"), rs.getLong("birthdate"));
+
+	/**
+	 * Orders the users by id.
+	 */
+	private static final Comparator<UserDb> BY_ID = Comparator.comparingInt(UserDb::getId);
+
+	/**
+	 * Orders the users by birth date and id.
+	 */
+	private static final Comparator<UserDb> BY_BIRTHDATE = Comparator.comparingLong(UserDb::getBirthdate).thenComparing(BY_ID);
+
+	/**
+	 * Access to each shard.
+	 */
+	private final List<DataAccess> shards = new ArrayList<>();
+
+	/**
+	 * Writer connections of the shards, closed with the provider.
+	 */
+	private final List<SingleConnectionDataSource> dataSources = new ArrayList<>();
+
+	/**
+	 * Query threads of each shard, as many as its read connections, so the requests querying all the shards
+	 * are bounded by the connections of the shards and not by a pool shared by all of them.
+	 */
+	private final List<ThreadPoolExecutor> queries = new ArrayList<>();
+
+	/**
+	 * The greatest id given.
+	 */
+	private final AtomicInteger lastId = new AtomicInteger();
+
+	/**
+	 * What happens to the shards on boot.
+	 */
+	private final DataSourceSettings.Schema schema;
+
+	/**
+	 * Whether the shards are filled.
+	 */
+	private volatile boolean loaded;
+
+	/**
+	 * Number of rows fetched from each shard in each round trip while streaming.
+	 */
+	@Value("${practice.user.fetch-size:500}")
+	private int fetchSize;
+
+	/**
+	 * Constructor.
+	 * @param settings The data access settings, the url of each shard is the url of the application database
+	 * followed by -shard and the number of the shard.
+	 * @param count The number of shards.
+	 */
+	@Autowired
+	public ShardedUserProvider(DataSourceSettings settings, @Value("${practice.sharding.shards:4}") int count) {
+
+		if (count < 1) {
+			throw new IllegalArgumentException("The number of shards should be positive: " + count);
+		}
+
+		this.schema = settings.getSchema();
+
+		for (int i = 0; i < count; i++) {
+
+			DataSourceSettings shardSettings = settings.copy(settings.getUrl() + "-shard" + i, Mode.WAL);
+			SingleConnectionDataSource dataSource = DataAccess.writerDataSource(shardSettings);
+
+			dataSources.add(dataSource);
+			shards.add(new DataAccess("shard" + i, new JdbcTemplate(dataSource),
+					new DataSourceTransactionManager(dataSource), shardSettings));
+
+			String name = "shard" + i + "-query-";
+			AtomicInteger threads = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getReaders(), settings.getReaders(),
+					60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable, name + threads.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			queries.add(executor);
+		}
+
+		logger.info(SamplingTurboFilter.ALWAYS, "Users spread over {} shards.", count);
+	}
+
+	@Override
+	public List<UserDb> findAll() {
+
+		List<UserDb> userDbs = null;
+
+		try {
+
+			userDbs = merge(gather(shard -> shard.reader().query("select id, name, birthdate from users order by id",
+					USER_DB_MAPPER)), BY_ID, Integer.MAX_VALUE);
+
+			logger.info("Returning {} users.", userDbs.size());
+
+		} catch (DataAccessException e) {
+
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
+		}
+
+		return userDbs;
+	}
+
+	@Override
+	public List<UserDb> findAfter(int id, int limit) {
+
+		List<UserDb> userDbs = null;
+
+		try {
+
+			userDbs = merge(gather(shard -> shard.reader().query("select id, name, birthdate from users where id > ? "
+					+ "order by id limit ?", new Object[] { id, limit }, USER_DB_MAPPER)), BY_ID, limit);
+
+			logger.info("Returning {} users after id {}.", userDbs.size(), id);
+
+		} catch (DataAccessException e) {
+
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
+		}
+
+		return userDbs;
+	}
+
+	/**
+	 * Reads all the users merging pages of every shard, so only a page per shard is held in memory.
+	 * Each shard is read from the last id taken from it, and its next page is fetched once it is used up.
+	 * @param consumer The consumer of each {@link UserDb}, in id order.
+	 * @return The number of users read.
+	 */
+	@Override
+	public int streamAll(Consumer<UserDb> consumer) {
+
+		int count = 0;
+
+		try {
+
+			List<List<UserDb>> pages = gather(shard -> page(shard, 0));
+			PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparing(Cursor::current, BY_ID));
+			for (int i = 0; i < pages.size(); i++) {
+				if (!pages.get(i).isEmpty()) {
+					cursors.add(new Cursor(shards.get(i), pages.get(i)));
+				}
+			}
+
+			while (!cursors.isEmpty()) {
+
+				Cursor cursor = cursors.poll();
+				consumer.accept(cursor.current());
+				count++;
+
+				if (cursor.next()) {
+					cursors.add(cursor);
+				}
+			}
+
+			logger.info("Streamed {} users.", count);
+
+		} catch (DataAccessException e) {
+
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
+		}
+
+		return count;
+	}
+
+	@Override
+	public List<UserDb> findBornBetween(long after, long before, int limit) {
+
+		List<UserDb> userDbs = null;
+
+		try {
+
+			userDbs = merge(gather(shard -> shard.reader().query("select id, name, birthdate from users "
+					+ "where birthdate > ? and birthdate < ? order by birthdate, id limit ?",
+					new Object[] { after, before, limit }, USER_DB_MAPPER)), BY_BIRTHDATE, limit);
+
+			logger.info("Returning {} users.", userDbs.size());
+
+		} catch (DataAccessException e) {
+
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
+		}
+
+		return userDbs;
+	}
+
+	@Override
+	public UserDb find(int id) {
+
+		UserDb userDb = null;
+
+		try {
+
+			List<UserDb> list = shard(id).reader().query("select id, name, birthdate from users where id = ?",
+					new Object[] { id }, USER_DB_MAPPER);
+
+			if (!list.isEmpty()) {
+				userDb = list.get(0);
+			}
+
+			logger.info("Returning {} users.", (userDb == null ? 0 : 1));
+
+		} catch (DataAccessException e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieve", String.valueOf(id));
+		}
+
+		return userDb;
+	}
+
+	@Override
+	public UserDb insert(UserDb dataDb) {
+
+		UserDb userDb = null;
+
+		try {
+
+			shards();
+			UserDb created = new UserDb(lastId.incrementAndGet(), dataDb.getName(), dataDb.getBirthdate());
+
+			userDb = shard(created.getId()).write(jdbcTemplate -> {
+				jdbcTemplate.update("insert into users(id, name, birthdate) values(?, ?, ?)",
+						created.getId(), created.getName(), created.getBirthdate());
+				notifyListeners(listener -> listener.inserted(created));
+				return created;
+			});
+
+			logger.info("Created user with id {}", userDb.getId());
+
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.creation",
+					String.valueOf(dataDb.getName()), DateCodec.format(LocalDate.ofEpochDay(dataDb.getBirthdate())));
+		}
+
+		return userDb;
+	}
+
+	@Override
+	public UserDb update(UserDb dataDb) {
+
+		UserDb userDb = null;
+
+		try {
+
+			userDb = shard(dataDb.getId()).write(jdbcTemplate -> {
+
+				int affected = jdbcTemplate.update("update users set name = ?, birthdate = ? where id = ?",
+						dataDb.getName(), dataDb.getBirthdate(), dataDb.getId());
+				if (affected == 0) {
+					return null;
+				}
+
+				UserDb updated = new UserDb(dataDb.getId(), dataDb.getName(), dataDb.getBirthdate());
+				notifyListeners(listener -> listener.updated(updated));
+				return updated;
+			});
+
+			if (userDb != null) {
+				logger.info("Updated user with id {}", dataDb.getId());
+			} else {
+				logger.warn("User with id {} not found", dataDb.getId());
+			}
+
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.update",
+					String.valueOf(dataDb.getId()), String.valueOf(dataDb.getName()),
+					DateCodec.format(LocalDate.ofEpochDay(dataDb.getBirthdate())));
+		}
+
+		return userDb;
+	}
+
+	@Override
+	public boolean delete(int id) {
+
+		boolean deleted = false;
+
+		try {
+
+			int affected = shard(id).write(jdbcTemplate -> {
+				int rows = jdbcTemplate.update("delete from users where id = ?", id);
+				if (rows > 0) {
+					notifyListeners(listener -> listener.deleted(id));
+				}
+				return rows;
+			});
+
+			if (affected > 0) {
+				deleted = true;
+				releaseLastId(id);
+				logger.info("Removed user with id {}", id);
+			} else {
+				logger.warn("User with id {} not found", id);
+			}
+
+		} catch (DataAccessException e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.deletion", String.valueOf(id));
+		}
+
+		return deleted;
+	}
+
+	/**
+	 * Adds several users, taking a block of ids and writing the users of each shard as a batched transaction.
+	 * @param dataDbs The data to add.
+	 * @return The created {@link UserDb} with generated ids, in the same order.
+	 */
+	@Override
+	public List<UserDb> insertAll(List<UserDb> dataDbs) {
+
+		List<UserDb> userDbs = new ArrayList<>(dataDbs.size());
+
+		try {
+
+			shards();
+			int id = lastId.getAndAdd(dataDbs.size());
+			for (UserDb dataDb : dataDbs) {
+				userDbs.add(new UserDb(++id, dataDb.getName(), dataDb.getBirthdate()));
+			}
+
+			scatterWrites(userDbs, UserDb::getId, (jdbcTemplate, part) -> {
+
+				jdbcTemplate.batchUpdate("insert into users(id, name, birthdate) values(?, ?, ?)", part, part.size(),
+						(ps, userDb) -> {
+							ps.setInt(1, userDb.getId());
+							ps.setString(2, userDb.getName());
+							ps.setLong(3, userDb.getBirthdate());
+						});
+
+				return part;
+
+			}, (part, created) -> created.forEach(userDb -> notifyListeners(listener -> listener.inserted(userDb))));
+
+			logger.info("Created {} users", userDbs.size());
+
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.batch", String.valueOf(dataDbs.size()));
+		}
+
+		return userDbs;
+	}
+
+	@Override
+	public List<UserDb> updateAll(List<UserDb> dataDbs) {
+
+		List<UserDb> userDbs = null;
+
+		try {
+
+			userDbs = scatterWrites(dataDbs, UserDb::getId, (jdbcTemplate, part) -> {
+
+				int[][] affected = jdbcTemplate.batchUpdate("update users set name = ?, birthdate = ? where id = ?",
+						part, part.size(), (ps, dataDb) -> {
+							ps.setString(1, dataDb.getName());
+							ps.setLong(2, dataDb.getBirthdate());
+							ps.setInt(3, dataDb.getId());
+						});
+
+				List<UserDb> updated = new ArrayList<>(part.size());
+				for (int i = 0; i < part.size(); i++) {
+					UserDb dataDb = part.get(i);
+					updated.add(affected[0][i] > 0 ? new UserDb(dataDb.getId(), dataDb.getName(), dataDb.getBirthdate()) : null);
+				}
+
+				return updated;
+
+			}, (part, updated) -> updated.stream()
+					.filter(userDb -> userDb != null)
+					.forEach(userDb -> notifyListeners(listener -> listener.updated(userDb))));
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Updated {} users", userDbs.stream().filter(userDb -> userDb != null).count());
+			}
+
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.batch", String.valueOf(dataDbs.size()));
+		}
+
+		return userDbs;
+	}
+
+	@Override
+	public List<Boolean> deleteAll(List<Integer> ids) {
+
+		List<Boolean> deleted = null;
+
+		try {
+
+			deleted = scatterWrites(ids, id -> id, (jdbcTemplate, part) -> {
+
+				int[][] affected = jdbcTemplate.batchUpdate("delete from users where id = ?", part, part.size(),
+						(ps, id) -> ps.setInt(1, id));
+
+				List<Boolean> removed = new ArrayList<>(part.size());
+				for (int i = 0; i < part.size(); i++) {
+					removed.add(affected[0][i] > 0);
+				}
+
+				return removed;
+
+			}, (part, removed) -> {
+				for (int i = 0; i < part.size(); i++) {
+					int id = part.get(i);
+					if (removed.get(i)) {
+						notifyListeners(listener -> listener.deleted(id));
+					}
+				}
+			});
+
+			for (int i = 0; i < ids.size(); i++) {
+				if (deleted.get(i)) {
+					releaseLastId(ids.get(i));
+				}
+			}
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Removed {} users", deleted.stream().filter(removed -> removed).count());
+			}
+
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.batch", String.valueOf(ids.size()));
+		}
+
+		return deleted;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+
+		for (ThreadPoolExecutor executor : queries) {
+			executor.shutdown();
+		}
+		for (ThreadPoolExecutor executor : queries) {
+			if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.warn("Shard queries did not finish.");
+			}
+		}
+
+		for (DataAccess shard : shards) {
+			shard.destroy();
+		}
+		for (SingleConnectionDataSource dataSource : dataSources) {
+			dataSource.destroy();
+		}
+	}
+
+	/**
+	 * Like the table, the next user takes the id after the greatest remaining one: once the user with
+	 * the greatest id is deleted, the counter goes back to the greatest id left in the shards, unless
+	 * other ids were given meanwhile.
+	 * @param id The id of a deleted user.
+	 */
+	private void releaseLastId(int id) {
+
+		if (lastId.get() != id) {
+			return;
+		}
+
+		int remaining = gather(shard -> shard.reader().queryForObject("select coalesce(max(id), 0) from users", Integer.class))
+				.stream().mapToInt(Integer::intValue).max().orElse(0);
+		lastId.compareAndSet(id, remaining);
+	}
+
+	/**
+	 * @return the access to the shard of a user
+	 */
+	private DataAccess shard(int id) {
+		return shards().get(Math.floorMod(id, shards.size()));
+	}
+
+	/**
+	 * Reads a page of the users of a shard.
+	 */
+	private List<UserDb> page(DataAccess shard, int after) {
+		return shard.reader().query("select id, name, birthdate from users where id > ? order by id limit ?",
+				new Object[] { after, fetchSize }, USER_DB_MAPPER);
+	}
+
+	/**
+	 * Runs a query on every shard in parallel, on the query threads of each shard but the last one, which
+	 * is queried by the calling thread meanwhile.
+	 * @param query The query, receiving the access to a shard.
+	 * @return The results, in the order of the shards.
+	 */
+	private <R> List<R> gather(Function<DataAccess, R> query) {
+
+		int last = shards().size() - 1;
+
+		List<CompletableFuture<R>> futures = new ArrayList<>(last);
+		for (int i = 0; i < last; i++) {
+			DataAccess shard = shards.get(i);
+			futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), queries.get(i)));
+		}
+
+		R lastResult = query.apply(shards.get(last));
+
+		List<R> results = new ArrayList<>(shards.size());
+		for (CompletableFuture<R> future : futures) {
+			results.add(join(future));
+		}
+		results.add(lastResult);
+		return results;
+	}
+
+	/**
+	 * Splits a batch by shard and queues each part as a transaction to the writer lane of its shard, so the
+	 * parts are written in parallel.
+	 * @param items The items of the batch.
+	 * @param key Gives the id of an item.
+	 * @param work The writes of a part, receiving the template of the writer and the items of the shard,
+	 * returning a result per item.
+	 * @param afterCommit Receives the items and the results of a part once its transaction is committed,
+	 * in the writer lane of the shard.
+	 * @return The results, in the order of the items.
+	 */
+	private <T, R> List<R> scatterWrites(List<T> items, Function<T, Integer> key,
+			PartWriter<T, R> work, BiConsumer<List<T>, List<R>> afterCommit) {
+
+		int count = shards().size();
+
+		List<List<Integer>> positions = new ArrayList<>(count);
+		List<List<T>> parts = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			positions.add(new ArrayList<>());
+			parts.add(new ArrayList<>());
+		}
+
+		for (int i = 0; i < items.size(); i++) {
+			int shard = Math.floorMod(key.apply(items.get(i)), count);
+			positions.get(shard).add(i);
+			parts.get(shard).add(items.get(i));
+		}
+
+		List<Future<List<R>>> futures = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+
+			List<T> part = parts.get(i);
+
+			futures.add(part.isEmpty() ? CompletableFuture.completedFuture(Collections.emptyList())
+					: shards.get(i).submitInTransaction(jdbcTemplate -> work.write(jdbcTemplate, part),
+							results -> afterCommit.accept(part, results)));
+		}
+
+		List<R> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+		for (int i = 0; i < count; i++) {
+			List<R> partResults = DataAccess.await(futures.get(i));
+			for (int j = 0; j < partResults.size(); j++) {
+				results.set(positions.get(i).get(j), partResults.get(j));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Waits for the result of a shard, rethrowing its exception.
+	 */
+	private static <R> R join(CompletableFuture<R> future) {
+
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e.getCause(), "error.internal");
+		}
+	}
+
+	/**
+	 * Merges the sorted results of the shards, taking the next user from a heap of the shards by their
+	 * current user, so only the users kept are compared and the rest are never looked at.
+	 * @param results The results of each shard, sorted.
+	 * @param order The order of the results.
+	 * @param limit The maximum number of users to keep.
+	 * @return The first users of all the shards, sorted.
+	 */
+	private static List<UserDb> merge(List<List<UserDb>> results, Comparator<UserDb> order, int limit) {
+
+		int total = 0;
+		int[] positions = new int[results.size()];
+		PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, results.size()),
+				(a, b) -> order.compare(results.get(a).get(positions[a]), results.get(b).get(positions[b])));
+		for (int i = 0; i < results.size(); i++) {
+			if (!results.get(i).isEmpty()) {
+				heads.add(i);
+				total += results.get(i).size();
+			}
+		}
+
+		List<UserDb> merged = new ArrayList<>(Math.min(total, limit));
+		while (merged.size() < limit && !heads.isEmpty()) {
+
+			// the position of a shard only moves while it is out of the heap
+			int shard = heads.poll();
+			merged.add(results.get(shard).get(positions[shard]++));
+
+			if (positions[shard] < results.get(shard).size()) {
+				heads.add(shard);
+			}
+		}
+
+		return merged;
+	}
+
+	/**
+	 * @return the shards, filling them from the users table of the application data source on the first access,
+	 * unless they are kept from the previous boot
+	 */
+	private List<DataAccess> shards() {
+
+		if (loaded) {
+			return shards;
+		}
+
+		synchronized (this) {
+
+			if (!loaded) {
+
+				long start = System.nanoTime();
+
+				if (schema == DataSourceSettings.Schema.PERSISTENT && kept()) {
+
+					int total = 0;
+					for (DataAccess shard : shards) {
+						total += shard.reader().queryForObject("select count(*) from users", Integer.class);
+						lastId.accumulateAndGet(shard.reader().queryForObject("select coalesce(max(id), 0) from users", Integer.class),
+								Math::max);
+					}
+
+					loaded = true;
+
+					logger.info(SamplingTurboFilter.ALWAYS, "Kept {} users in {} shards, checked in {} ms.", total,
+							shards.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+					return shards;
+				}
+
+				List<List<UserDb>> parts = new ArrayList<>(shards.size());
+				shards.forEach(shard -> parts.add(new ArrayList<>()));
+
+				try {
+					dataAccess.reader().query("select id, name, birthdate from users", rs -> {
+						UserDb userDb = USER_DB_MAPPER.mapRow(rs, 0);
+						parts.get(Math.floorMod(userDb.getId(), shards.size())).add(userDb);
+						lastId.accumulateAndGet(userDb.getId(), Math::max);
+					});
+				} catch (DataAccessException e) {
+					throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e, "error.user.retrieveall");
+				}
+
+				List<Future<Integer>> futures = new ArrayList<>(shards.size());
+				for (int i = 0; i < shards.size(); i++) {
+					List<UserDb> part = parts.get(i);
+					int number = i;
+					futures.add(shards.get(i).submitInTransaction(
+							jdbcTemplate -> fill(jdbcTemplate, part, number, shards.size()), filled -> { }));
+				}
+				futures.forEach(DataAccess::await);
+
+				loaded = true;
+
+				logger.info(SamplingTurboFilter.ALWAYS, "Spread {} users over {} shards in {} ms.",
+						parts.stream().mapToInt(List::size).sum(), shards.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			}
+		}
+
+		return shards;
+	}
+
+	/**
+	 * @return whether every shard was filled for its place among the current number of shards, false if none
+	 * was filled yet
+	 */
+	private boolean kept() {
+
+		int filled = 0;
+		int matching = 0;
+		for (int i = 0; i < shards.size(); i++) {
+			try {
+				List<Integer> counts = shards.get(i).reader().queryForList("select count from shard where number = ?",
+						Integer.class, i);
+				filled++;
+				if (counts.size() == 1 && counts.get(0) == shards.size()) {
+					matching++;
+				}
+			} catch (DataAccessException e) {
+				// the shard has not been filled yet
+			}
+		}
+
+		if (filled != 0 && matching != shards.size()) {
+			// filling them again from the users table would lose the changes made since they were filled
+			logger.error("Only {} of the {} shards were filled for this number of shards, set it back to the one they were filled for.",
+					matching, shards.size());
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, "error.internal");
+		}
+
+		return filled != 0;
+	}
+
+	/**
+	 * Creates the users table of a shard with the given users, and records the place of the shard, so it can
+	 * be kept while the number of shards does not change.
+	 */
+	private static int fill(JdbcTemplate jdbcTemplate, List<UserDb> userDbs, int number, int count) {
+
+		jdbcTemplate.execute("drop table if exists users");
+		jdbcTemplate.execute("create table users(id integer primary key asc not null, name text not null, birthdate integer not null)");
+		jdbcTemplate.execute("create index users_birthdate on users(birthdate)");
+
+		jdbcTemplate.batchUpdate("insert into users(id, name, birthdate) values(?, ?, ?)", userDbs, userDbs.size(),
+				(ps, userDb) -> {
+					ps.setInt(1, userDb.getId());
+					ps.setString(2, userDb.getName());
+					ps.setLong(3, userDb.getBirthdate());
+				});
+
+		jdbcTemplate.execute("drop table if exists shard");
+		jdbcTemplate.execute("create table shard(number integer not null, count integer not null)");
+		jdbcTemplate.update("insert into shard(number, count) values(?, ?)", number, count);
+
+		return userDbs.size();
+	}
+
+	/**
+	 * Writes the part of a batch of a shard.
+	 * @param <T> The type of the items.
+	 * @param <R> The type of the result of each item.
+	 */
+	@FunctionalInterface
+	private interface PartWriter<T, R> {
+
+		/**
+		 * @param jdbcTemplate The template of the writer of the shard.
+		 * @param part The items of the shard.
+		 * @return The result of each item, in the same order.
+		 */
+		List<R> write(JdbcTemplate jdbcTemplate, List<T> part);
+	}
+
+	/**
+	 * Position of the streaming in a shard.
+	 */
+	private final class Cursor {
+
+		private final DataAccess shard;
+
+		private List<UserDb> page;
+
+		private int index;
+
+		private Cursor(DataAccess shard, List<UserDb> page) {
+			this.shard = shard;
+			this.page = page;
+		}
+
+		private UserDb current() {
+			return page.get(index);
+		}
+
+		/**
+		 * Moves to the next user of the shard, reading the next page if needed.
+		 * @return whether there is one
+		 */
+		private boolean next() {
+
+			if (++index < page.size()) {
+				return true;
+			}
+			if (page.size() < fetchSize) {
+				return false;
+			}
+
+			page = page(shard, page.get(page.size() - 1).getId());
+			index = 0;
+			return !page.isEmpty();
+		}
+	}
+}
@@ -16,9 +16,9 @@ public class UserDb {
 	private String name;
 	
 	/**
-	 * User birth date stored as a string.
+	 * User birth date stored as the number of days since 1970-01-01.
 	 */
-	private String birthdate;
+	private long birthdate;
 
 	/**
 	 * Constructor
@@ -32,7 +32,7 @@ public class UserDb {
 	 * @param name
 	 * @param birthdate
 	 */
-	public UserDb(int id, String name, String birthdate) {
+	public UserDb(int id, String name, long birthdate) {
 		super();
 		this.id = id;
 		this.name = name;
@@ -69,16 +69,16 @@ public class UserDb {
 	}
 
 	/**
-	 * @return the birthdate
+	 * @return the birthdate as epoch day
 	 */
-	public String getBirthdate() {
+	public long getBirthdate() {
 		return birthdate;
 	}
 
 	/**
-	 * @param birthdate the birthdate to set
+	 * @param birthdate the birthdate as epoch day to set
 	 */
-	public void setBirthdate(String birthdate) {
+	public void setBirthdate(long birthdate) {
 		this.birthdate = birthdate;
 	}
 
@@ -2,22 +2,50 @@ package practice.provider;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 
 import practice.exception.ProcessException;
+import practice.utils.DateCodec;
 
 /**
- * Repository to access the users table.
+ * Repository to access the users table, the default provider (practice.provider=sqlite).
  */
 @Repository("usersProvider")
-public class UserProvider extends AbstractProvider<UserDb> {
+@ConditionalOnProperty(prefix = "practice", name = "provider", havingValue = "sqlite", matchIfMissing = true)
+public class UserProvider extends AbstractProvider<UserDb> implements IUserProvider {
+	
+	/**
+	 * Maps a row of the users table to a {@link UserDb}.
+	 */
+	private static final RowMapper<UserDb> USER_DB_MAPPER = 
+			(rs, row) -> new UserDb(rs.getInt("id"), rs.getString("name"), rs.getLong("birthdate"));
+	
+	/**
+	 * Number of rows fetched from the database in each round trip while streaming.
+	 */
+	@Value("${practice.user.fetch-size:500}")
+	private int fetchSize;
+	
+	/**
+	 * Runs the single inserts and updates, grouping the concurrent ones in a transaction if it is enabled.
+	 */
+	@Autowired
+	private GroupCommitter groupCommitter;
 	
 	/**
 	 * Retrieves all the records in the users table.
@@ -31,10 +59,106 @@ public class UserProvider extends AbstractProvider<UserDb> {
 		
 		try {
 			
-			userDbs = jdbcTemplate.query("select id, name, birthdate from users", 
-					(rs, row) -> new UserDb(rs.getInt("id"), rs.getString("name"), rs.getString("birthdate")));
+			userDbs = dataAccess.reader().query("select id, name, birthdate from users order by id", USER_DB_MAPPER);
 			
-			logger.info(String.format("Returning %d users.", userDbs.size()));
+			logger.info("Returning {} users.", userDbs.size());
+			
+		} catch (DataAccessException e) {
+			
+			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
+					"error.user.retrieveall");
+			throw pe;
+		}
+		
+		return userDbs;
+	}
+	
+	/**
+	 * Retrieves a page of the users table using the id as cursor.
+	 * @param id The last id of the previous page, 0 to start from the first user.
+	 * @param limit The maximum number of users to retrieve.
+	 * @return The list of {@link UserDb} ordered by id.
+	 * @throws Exception if an error occurs.
+	 */
+	@Override
+	public List<UserDb> findAfter(int id, int limit) {
+		
+		List<UserDb> userDbs = null;
+		
+		try {
+			
+			userDbs = dataAccess.reader().query("select id, name, birthdate from users where id > ? order by id limit ?", 
+					new Object[] { id, limit }, USER_DB_MAPPER);
+			
+			logger.info("Returning {} users after id {}.", userDbs.size(), id);
+			
+		} catch (DataAccessException e) {
+			
+			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
+					"error.user.retrieveall");
+			throw pe;
+		}
+		
+		return userDbs;
+	}
+	
+	/**
+	 * Reads the whole users table through a forward-only cursor with a fixed fetch size, so only
+	 * the rows of the current fetch are held in memory.
+	 * @param consumer The consumer of each {@link UserDb}, in id order.
+	 * @return The number of users read.
+	 * @throws Exception if an error occurs.
+	 */
+	@Override
+	public int streamAll(Consumer<UserDb> consumer) {
+		
+		int[] count = { 0 };
+		
+		try {
+			
+			PreparedStatementCreator preparedStatementCreator = con -> {
+				PreparedStatement preparedStatement = con.prepareStatement("select id, name, birthdate from users order by id", 
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				preparedStatement.setFetchSize(fetchSize);
+				return preparedStatement;
+			};
+			
+			dataAccess.reader().query(preparedStatementCreator, rs -> {
+				consumer.accept(USER_DB_MAPPER.mapRow(rs, count[0]));
+				count[0]++;
+			});
+			
+			logger.info("Streamed {} users.", count[0]);
+			
+		} catch (DataAccessException e) {
+			
+			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
+					"error.user.retrieveall");
+			throw pe;
+		}
+		
+		return count[0];
+	}
+	
+	/**
+	 * Retrieves the users born within a range of dates, using the index on the birth date.
+	 * @param after The epoch day the users were born after, exclusive.
+	 * @param before The epoch day the users were born before, exclusive.
+	 * @param limit The maximum number of users to retrieve.
+	 * @return The list of {@link UserDb} ordered by birth date and id.
+	 * @throws Exception if an error occurs.
+	 */
+	@Override
+	public List<UserDb> findBornBetween(long after, long before, int limit) {
+		
+		List<UserDb> userDbs = null;
+		
+		try {
+			
+			userDbs = dataAccess.reader().query("select id, name, birthdate from users where birthdate > ? and birthdate < ? "
+					+ "order by birthdate, id limit ?", new Object[] { after, before, limit }, USER_DB_MAPPER);
+			
+			logger.info("Returning {} users.", userDbs.size());
 			
 		} catch (DataAccessException e) {
 			
@@ -58,8 +182,8 @@ public class UserProvider extends AbstractProvider<UserDb> {
 		
 		try {
 			
-			List<UserDb> list = jdbcTemplate.query("select id, name, birthdate from users where id = ?", new Object[] { id }, 
-					(rs, row) -> new UserDb(rs.getInt("id"), rs.getString("name"), rs.getString("birthdate")));
+			List<UserDb> list = dataAccess.reader().query("select id, name, birthdate from users where id = ?", new Object[] { id }, 
+					USER_DB_MAPPER);
 			
 			if (!list.isEmpty()) {
 				userDb = list.get(0);
@@ -67,7 +191,7 @@ public class UserProvider extends AbstractProvider<UserDb> {
 			
 //			userDb = jdbcTemplate.queryForObject("select id, name, birthdate from users where id = ?", new Object[] { id }, 
 //					(rs, row) -> new UserDb(rs.getInt("id"), rs.getString("name"), rs.getString("birthdate")));
-			logger.info(String.format("Returning %d users.", (userDb == null ? 0 : 1)));
+			logger.info("Returning {} users.", (userDb == null ? 0 : 1));
 			
 		} catch (DataAccessException e) {
 			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
@@ -80,6 +204,7 @@ public class UserProvider extends AbstractProvider<UserDb> {
 	
 	/**
 	 * Adds a new record to the users table.
+	 * The created user is built from the data and the generated id, without a follow-up query.
 	 * @param dataDb The data to add.
 	 * @return The created {@link UserDb} with generated id.
 	 * @throws Exception if an error occurs.
@@ -90,33 +215,42 @@ public class UserProvider extends AbstractProvider<UserDb> {
 		
 		try {
 			
-			GeneratedKeyHolder holder = new GeneratedKeyHolder();
-			
 			PreparedStatementCreator preparedStatementCreator = new PreparedStatementCreator() {
 				
 				@Override
 				public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
 					PreparedStatement preparedStatement = con.prepareStatement("insert into users(name, birthdate) values(?, ?)");
 					preparedStatement.setString(1, dataDb.getName());
-					preparedStatement.setString(2, dataDb.getBirthdate());
+					preparedStatement.setLong(2, dataDb.getBirthdate());
 					return preparedStatement;
 				}
 			};
 			
-			jdbcTemplate.update(preparedStatementCreator, holder);
-			
-			Number generatedKey = holder.getKey();
-			
-			if (generatedKey != null) {
+			userDb = groupCommitter.write(jdbcTemplate -> {
 				
-				logger.info(String.format("Created user with id %d", generatedKey.intValue()));
-				userDb = find(generatedKey.intValue());
-			}
+				// a new holder on each run, since the group committer may run the write again
+				GeneratedKeyHolder holder = new GeneratedKeyHolder();
+				jdbcTemplate.update(preparedStatementCreator, holder);
+				
+				Number generatedKey = holder.getKey();
+				return generatedKey == null ? null : new UserDb(generatedKey.intValue(), dataDb.getName(), dataDb.getBirthdate());
+				
+			}, created -> {
+				if (created != null) {
+					notifyListeners(listener -> listener.inserted(created));
+				}
+			});
 			
+			if (userDb != null) {
+				logger.info("Created user with id {}", userDb.getId());
+			}
 			
+		} catch (ProcessException e) {
+			throw e;
 		} catch (Exception e) {
 			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
-					"error.user.creation", String.valueOf(dataDb.getName()), String.valueOf(dataDb.getBirthdate()));
+					"error.user.creation", String.valueOf(dataDb.getName()), 
+					DateCodec.format(LocalDate.ofEpochDay(dataDb.getBirthdate())));
 			throw pe;
 		}
 		
@@ -125,6 +259,7 @@ public class UserProvider extends AbstractProvider<UserDb> {
 	
 	/**
 	 * Updates an existing user in the users table.
+	 * The updated user is built from the values, without a follow-up query.
 	 * @param dataDb The values to update.
 	 * @return The updated {@link UserDb}.
 	 * @throws Exception if an error occurs.
@@ -134,22 +269,34 @@ public class UserProvider extends AbstractProvider<UserDb> {
 		UserDb userDb = null;
 		try {
 			
-			int affected = jdbcTemplate.update("update users set name = ?, birthdate = ? where id = ?", dataDb.getName(), dataDb.getBirthdate(), dataDb.getId());
+			userDb = groupCommitter.write(jdbcTemplate -> {
+				
+				int affected = jdbcTemplate.update("update users set name = ?, birthdate = ? where id = ?", 
+						dataDb.getName(), dataDb.getBirthdate(), dataDb.getId());
+				
+				return affected > 0 ? new UserDb(dataDb.getId(), dataDb.getName(), dataDb.getBirthdate()) : null;
+				
+			}, updated -> {
+				if (updated != null) {
+					notifyListeners(listener -> listener.updated(updated));
+				}
+			});
 			
-			if (affected > 0) {
+			if (userDb != null) {
 				
-				logger.info(String.format("Updated user with id %d", dataDb.getId()));
-				userDb = find(dataDb.getId());
+				logger.info("Updated user with id {}", dataDb.getId());
 			} else {
 				
-				logger.warn(String.format("User with id %d not found", dataDb.getId()));
+				logger.warn("User with id {} not found", dataDb.getId());
 			}
 			
+		} catch (ProcessException e) {
+			throw e;
 		} catch (Exception e) {
 			
 			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
 					"error.user.update", String.valueOf(dataDb.getId()), String.valueOf(dataDb.getName()),
-					String.valueOf(dataDb.getBirthdate()));
+					DateCodec.format(LocalDate.ofEpochDay(dataDb.getBirthdate())));
 			throw pe;
 
 		}
@@ -157,6 +304,151 @@ public class UserProvider extends AbstractProvider<UserDb> {
 		return userDb;
 	}
 	
+	/**
+	 * Adds several users to the users table as a single batched transaction.
+	 * The ids are assigned in the transaction, after the greatest existing one, so no follow-up query is needed.
+	 * @param dataDbs The data to add.
+	 * @return The created {@link UserDb} with generated ids, in the same order.
+	 * @throws Exception if an error occurs.
+	 */
+	@Override
+	public List<UserDb> insertAll(List<UserDb> dataDbs) {
+		
+		List<UserDb> userDbs = null;
+		
+		try {
+			
+			userDbs = dataAccess.writeInTransaction(jdbcTemplate -> {
+				
+				int id = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from users", Integer.class);
+				
+				List<UserDb> created = new ArrayList<>(dataDbs.size());
+				for (UserDb dataDb : dataDbs) {
+					created.add(new UserDb(++id, dataDb.getName(), dataDb.getBirthdate()));
+				}
+				
+				jdbcTemplate.batchUpdate("insert into users(id, name, birthdate) values(?, ?, ?)", created, created.size(), 
+						(ps, userDb) -> {
+							ps.setInt(1, userDb.getId());
+							ps.setString(2, userDb.getName());
+							ps.setLong(3, userDb.getBirthdate());
+						});
+				
+				return created;
+				
+			}, created -> created.forEach(userDb -> notifyListeners(listener -> listener.inserted(userDb))));
+			
+			logger.info("Created {} users", userDbs.size());
+			
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
+					"error.user.batch", String.valueOf(dataDbs.size()));
+			throw pe;
+		}
+		
+		return userDbs;
+	}
+	
+	/**
+	 * Updates several users in the users table as a single batched transaction.
+	 * @param dataDbs The values to update.
+	 * @return The updated {@link UserDb} in the same order, null for the users that were not found.
+	 * @throws Exception if an error occurs.
+	 */
+	@Override
+	public List<UserDb> updateAll(List<UserDb> dataDbs) {
+		
+		List<UserDb> userDbs = null;
+		
+		try {
+			
+			userDbs = dataAccess.writeInTransaction(jdbcTemplate -> {
+				
+				int[][] affected = jdbcTemplate.batchUpdate("update users set name = ?, birthdate = ? where id = ?", 
+						dataDbs, dataDbs.size(), (ps, dataDb) -> {
+							ps.setString(1, dataDb.getName());
+							ps.setLong(2, dataDb.getBirthdate());
+							ps.setInt(3, dataDb.getId());
+						});
+				
+				List<UserDb> updated = new ArrayList<>(dataDbs.size());
+				for (int i = 0; i < dataDbs.size(); i++) {
+					UserDb dataDb = dataDbs.get(i);
+					updated.add(affected[0][i] > 0 ? new UserDb(dataDb.getId(), dataDb.getName(), dataDb.getBirthdate()) : null);
+				}
+				
+				return updated;
+				
+			}, updated -> updated.stream()
+					.filter(userDb -> userDb != null)
+					.forEach(userDb -> notifyListeners(listener -> listener.updated(userDb))));
+			
+			if (logger.isInfoEnabled()) {
+				logger.info("Updated {} users", userDbs.stream().filter(userDb -> userDb != null).count());
+			}
+			
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
+					"error.user.batch", String.valueOf(dataDbs.size()));
+			throw pe;
+		}
+		
+		return userDbs;
+	}
+	
+	/**
+	 * Deletes several users as a single batched transaction.
+	 * @param ids The ids of the users to delete.
+	 * @return Whether each user was deleted, in the same order.
+	 * @throws Exception if an error occurs.
+	 */
+	@Override
+	public List<Boolean> deleteAll(List<Integer> ids) {
+		
+		List<Boolean> deleted = null;
+		
+		try {
+			
+			deleted = dataAccess.writeInTransaction(jdbcTemplate -> {
+				
+				int[][] affected = jdbcTemplate.batchUpdate("delete from users where id = ?", ids, ids.size(), 
+						(ps, id) -> ps.setInt(1, id));
+				
+				List<Boolean> removed = new ArrayList<>(ids.size());
+				for (int i = 0; i < ids.size(); i++) {
+					removed.add(affected[0][i] > 0);
+				}
+				
+				return removed;
+				
+			}, removed -> {
+				for (int i = 0; i < ids.size(); i++) {
+					int id = ids.get(i);
+					if (removed.get(i)) {
+						notifyListeners(listener -> listener.deleted(id));
+					}
+				}
+			});
+			
+			if (logger.isInfoEnabled()) {
+				logger.info("Removed {} users", deleted.stream().filter(removed -> removed).count());
+			}
+			
+		} catch (ProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			ProcessException pe = new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, e,  
+					"error.user.batch", String.valueOf(ids.size()));
+			throw pe;
+		}
+		
+		return deleted;
+	}
+	
 	/**
 	 * Deletes an existing user.
 	 * @param id The id of the user to delete.
@@ -168,16 +460,22 @@ public class UserProvider extends AbstractProvider<UserDb> {
 		
 		try {
 			
-			int affected = jdbcTemplate.update("delete from users where id = ?", String.valueOf(id));
+			int affected = dataAccess.write(jdbcTemplate -> {
+				int rows = jdbcTemplate.update("delete from users where id = ?", String.valueOf(id));
+				if (rows > 0) {
+					notifyListeners(listener -> listener.deleted(id));
+				}
+				return rows;
+			});
 			
 			if (affected > 0) {
 				
 				deleted = true;
-				logger.info(String.format("Removed user with id %d", id));
+				logger.info("Removed user with id {}", id);
 				
 			} else {
 				
-				logger.warn(String.format("User with id %d not found", id));
+				logger.warn("User with id {} not found", id);
 			}
 			
 		} catch (DataAccessException e) {
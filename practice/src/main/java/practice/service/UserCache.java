@@ -0,0 +1,111 @@
+package practice.service;
+
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import practice.model.CacheStatistics;
+import practice.model.User;
+import practice.provider.ChangeListener;
+import practice.provider.UserDb;
+
+/**
+ * Size-bounded read-through cache of ready-made {@link User} objects, keyed by id.
+ * It is kept coherent by listening to the changes made through the provider: updated and
+ * deleted users are invalidated. An invalidation waits for a load of the same id in progress,
+ * so a stale value cannot be stored after the change.
+ * It is notified before the other listeners, so nothing derived from a change can be seen while
+ * the previous value is still cached.
+ * The cached instances are shared, so they must not be modified.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class UserCache implements ChangeListener<UserDb> {
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+	/**
+	 * The cache, null if it is disabled.
+	 */
+	private final Cache<Integer, User> cache;
+
+	/**
+	 * Constructor.
+	 * @param enabled Whether the cache is enabled.
+	 * @param maxSize Maximum number of users in the cache.
+	 */
+	public UserCache(@Value("${practice.cache.enabled:false}") boolean enabled, 
+			@Value("${practice.cache.max-size:10000}") long maxSize) {
+
+		if (enabled) {
+			cache = Caffeine.newBuilder()
+					.maximumSize(maxSize)
+					.recordStats()
+					.build();
+			logger.info("User cache enabled with {} entries.", maxSize);
+		} else {
+			cache = null;
+		}
+	}
+
+	/**
+	 * Returns the user with the given id, loading it if it is not in the cache.
+	 * @param id The user id.
+	 * @param loader Loads the user when it is not cached, returning null if it does not exist.
+	 * @return The {@link User}, null if it does not exist.
+	 */
+	public User get(int id, IntFunction<User> loader) {
+
+		if (cache == null) {
+			return loader.apply(id);
+		}
+
+		return cache.get(id, key -> loader.apply(key));
+	}
+
+	@Override
+	public void updated(UserDb data) {
+		invalidate(data.getId());
+	}
+
+	@Override
+	public void deleted(int key) {
+		invalidate(key);
+	}
+
+	/**
+	 * Removes a user from the cache.
+	 * @param id The user id.
+	 */
+	private void invalidate(int id) {
+
+		if (cache != null) {
+			cache.invalidate(id);
+		}
+	}
+
+	/**
+	 * @return the counters of the cache
+	 */
+	public CacheStatistics getStatistics() {
+
+		if (cache == null) {
+			return new CacheStatistics(false, 0, 0, 0, 0);
+		}
+
+		CacheStats stats = cache.stats();
+		return new CacheStatistics(true, cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+	}
+}
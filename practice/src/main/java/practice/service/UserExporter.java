@@ -0,0 +1,473 @@
+package practice.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+import practice.service.transformer.UserDbTransformer;
+import practice.utils.DateCodec;
+
+/**
+ * Exports all the users to files, so the full dumps are downloaded from disk instead of reading and
+ * serializing the table for every request.
+ * An export is written in the background to a file named after the tag of the table, streamed from the
+ * provider in a single query, so it holds the users as they were at a single point. The file is kept
+ * and served as long as the tag does not change, so repeated downloads cost no database work; the first
+ * request after a change starts the next export. While it is written the last export is still served, under
+ * its own tag, for up to practice.export.max-staleness from the first request that found it outdated, so the
+ * downloads keep working while the users change faster than they are exported. A replaced file is kept until
+ * the next one replaces it too, so the downloads that just got it can still open it.
+ * The files of an older boot are deleted on the first export, since their tags are not valid any more.
+ * An export that fails is not tried again before a delay, doubled on each failure in a row up to a minute,
+ * so the requests meanwhile do not start a full scan each; the error is only logged in full once.
+ */
+@Component
+@Lazy
+public class UserExporter implements DisposableBean {
+
+	/**
+	 * Formats of the exports.
+	 */
+	public enum Format {
+
+		/**
+		 * A JSON object per line, like the users of getall.
+		 */
+		NDJSON("ndjson", "application/x-ndjson"),
+
+		/**
+		 * Comma separated values, with a header line.
+		 */
+		CSV("csv", "text/csv");
+
+		private final String extension;
+
+		private final String contentType;
+
+		Format(String extension, String contentType) {
+			this.extension = extension;
+			this.contentType = contentType;
+		}
+
+		/**
+		 * @return the extension of the files
+		 */
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * @return the media type of the files, before compression
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+	}
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(UserExporter.class);
+
+	private static final String PREFIX = "users-";
+
+	private static final String TEMPORARY_PREFIX = "export-";
+
+	/**
+	 * Maximum time in milliseconds between the attempts of a failing export.
+	 */
+	private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * The provider the users are read from, resolved lazily like in the other components reading all of them.
+	 */
+	private final IUserProvider provider;
+
+	/**
+	 * The versions the tags of the exports are taken from.
+	 */
+	private final UserVersions versions;
+
+	/**
+	 * The mapper used to serialize the users.
+	 */
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * The UserDb -> User transformer
+	 */
+	private final UserDbTransformer userDbTransformer = new UserDbTransformer();
+
+	/**
+	 * The directory of the files.
+	 */
+	private final Path directory;
+
+	/**
+	 * Thread writing the exports, one at a time.
+	 */
+	private final ExecutorService writer;
+
+	/**
+	 * The last export of each variant, by format and then not compressed (0) or gzipped (1).
+	 * Guarded by this object.
+	 */
+	private final Map<Format, Export[]> exports = new EnumMap<>(Format.class);
+
+	/**
+	 * The export being written of each variant, if any. Guarded by this object.
+	 */
+	private final Map<Format, CompletableFuture<?>[]> running = new EnumMap<>(Format.class);
+
+	/**
+	 * The export replaced by the last one of each variant, deleted when that one is replaced too.
+	 * Guarded by this object.
+	 */
+	private final Map<Format, Export[]> retired = new EnumMap<>(Format.class);
+
+	/**
+	 * When the last export of each variant was first found outdated, 0 if it was not. Guarded by this object.
+	 */
+	private final Map<Format, long[]> staleSince = new EnumMap<>(Format.class);
+
+	/**
+	 * Number of exports of each variant failed in a row. Guarded by this object.
+	 */
+	private final Map<Format, int[]> failures = new EnumMap<>(Format.class);
+
+	/**
+	 * When the export of each variant may be tried again after a failure. Guarded by this object.
+	 */
+	private final Map<Format, long[]> retryAt = new EnumMap<>(Format.class);
+
+	/**
+	 * Time the last export is served once it is found outdated.
+	 */
+	private final long maxStalenessNanos;
+
+	/**
+	 * Time in milliseconds before an export is tried again after its first failure.
+	 */
+	private final long retryDelay;
+
+	/**
+	 * Constructor.
+	 * @param directory The directory of the files.
+	 * @param provider The provider the users are read from.
+	 * @param versions The versions the tags of the exports are taken from.
+	 * @param objectMapper The mapper used to serialize the users.
+	 * @param maxStaleness Time in milliseconds the last export is served once it is found outdated, 0 to never
+	 * serve an outdated export.
+	 * @param retryDelay Time in milliseconds before an export is tried again after its first failure.
+	 * @throws IOException If the directory cannot be created or cleaned.
+	 */
+	@Autowired
+	public UserExporter(@Value("${practice.export.directory:exports}") String directory, @Lazy IUserProvider provider,
+			UserVersions versions, ObjectMapper objectMapper,
+			@Value("${practice.export.max-staleness:60000}") long maxStaleness,
+			@Value("${practice.export.retry-delay:1000}") long retryDelay) throws IOException {
+
+		this.provider = provider;
+		this.versions = versions;
+		this.objectMapper = objectMapper;
+		this.directory = Files.createDirectories(Paths.get(directory)).toAbsolutePath();
+		this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStaleness);
+		this.retryDelay = retryDelay;
+
+		for (Format format : Format.values()) {
+			exports.put(format, new Export[2]);
+			running.put(format, new CompletableFuture<?>[2]);
+			retired.put(format, new Export[2]);
+			staleSince.put(format, new long[2]);
+			failures.put(format, new int[2]);
+			retryAt.put(format, new long[2]);
+		}
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "{" + PREFIX + "," + TEMPORARY_PREFIX + "}*")) {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+		}
+
+		this.writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "user-export");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the export of the current users, starting it in the background if it is not written yet.
+	 * Meanwhile the last export is returned, as long as it was found outdated less than the allowed time ago.
+	 * After a failed export the next one is only started once its retry delay is over.
+	 * @param format The format of the export.
+	 * @param gzip Whether the export is gzipped.
+	 * @return The {@link Export}, null if it is being written, or waiting to be tried again, and there is none
+	 * recent enough.
+	 */
+	public synchronized Export get(Format format, boolean gzip) {
+
+		String tag = versions.tableTag();
+		int variant = gzip ? 1 : 0;
+
+		Export export = exports.get(format)[variant];
+		if (export != null && export.getTag().equals(tag)) {
+			return export;
+		}
+
+		CompletableFuture<?>[] writing = running.get(format);
+		if (writing[variant] == null && getRetryDelay(format, gzip) == 0) {
+			writing[variant] = CompletableFuture.runAsync(() -> write(format, gzip), writer);
+		}
+
+		if (export == null || maxStalenessNanos == 0) {
+			return null;
+		}
+
+		long now = System.nanoTime();
+		long[] since = staleSince.get(format);
+		if (since[variant] == 0) {
+			since[variant] = now;
+		}
+
+		return now - since[variant] < maxStalenessNanos ? export : null;
+	}
+
+	/**
+	 * @param format The format of the export.
+	 * @param gzip Whether the export is gzipped.
+	 * @return the time in milliseconds before the export is tried again after a failure, 0 if the last one
+	 * did not fail or it may be tried already
+	 */
+	public synchronized long getRetryDelay(Format format, boolean gzip) {
+
+		int variant = gzip ? 1 : 0;
+		if (failures.get(format)[variant] == 0) {
+			return 0;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(retryAt.get(format)[variant] - System.nanoTime()));
+	}
+
+	/**
+	 * Writes an export and publishes it in place of the previous one of the same variant.
+	 */
+	private void write(Format format, boolean gzip) {
+
+		int variant = gzip ? 1 : 0;
+		Export export = null;
+		Exception error = null;
+
+		try {
+
+			long start = System.nanoTime();
+
+			// the tag is taken before reading, so the changes made meanwhile start another export
+			String tag = versions.tableTag();
+			Path file = directory.resolve(PREFIX + tag + "." + format.getExtension() + (gzip ? ".gz" : ""));
+			Path temporary = Files.createTempFile(directory, TEMPORARY_PREFIX, ".tmp");
+
+			int count;
+			try (OutputStream output = gzip ? new GZIPOutputStream(Files.newOutputStream(temporary), 65536)
+					: Files.newOutputStream(temporary);
+					Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 65536)) {
+
+				count = format == Format.CSV ? writeCsv(out) : writeNdjson(out);
+
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(temporary);
+				throw e;
+			}
+
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			export = new Export(file, Files.size(file), tag, format, gzip);
+
+			logger.info("Exported {} users to {} ({} bytes) in {} ms.", count, file.getFileName(), export.getLength(),
+					(System.nanoTime() - start) / 1000000);
+
+		} catch (IOException | RuntimeException e) {
+			error = e;
+		}
+
+		Export expired = null;
+		int failed;
+		long delay = 0;
+		synchronized (this) {
+			int[] inRow = failures.get(format);
+			if (export != null) {
+				expired = retired.get(format)[variant];
+				retired.get(format)[variant] = exports.get(format)[variant];
+				exports.get(format)[variant] = export;
+				staleSince.get(format)[variant] = 0;
+				failed = inRow[variant];
+				inRow[variant] = 0;
+			} else {
+				failed = ++inRow[variant];
+				delay = Math.min(Math.max(retryDelay, 1) << Math.min(failed - 1, 20), MAX_RETRY_DELAY);
+				retryAt.get(format)[variant] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+			}
+			running.get(format)[variant] = null;
+		}
+
+		if (export == null) {
+			if (failed == 1) {
+				logger.error("Error exporting the users to {}, retrying in {} ms at the earliest.", format, delay, error);
+			} else {
+				logger.debug("Error exporting the users to {} again, retrying in {} ms at the earliest: {}", format, delay,
+						error.toString());
+			}
+		} else if (failed > 0) {
+			logger.warn("Users exported to {} again after {} failed exports.", format, failed);
+		}
+
+		if (expired != null) {
+			try {
+				Files.deleteIfExists(expired.getFile());
+			} catch (IOException e) {
+				logger.warn("Could not delete the expired export {}: {}", expired.getFile(), e.getMessage());
+			}
+		}
+	}
+
+	private int writeNdjson(Writer out) throws IOException {
+
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		generator.setRootValueSeparator(null);
+
+		int count = provider.streamAll(userDb -> {
+			try {
+				generator.writeObject(userDbTransformer.transform(userDb));
+				generator.flush();
+				out.write('\n');
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		generator.close();
+		return count;
+	}
+
+	private int writeCsv(Writer out) throws IOException {
+
+		out.write("id,name,birthdate\n");
+
+		return provider.streamAll(userDb -> {
+			try {
+				out.write(Integer.toString(userDb.getId()));
+				out.write(',');
+				out.write(csvValue(userDb.getName()));
+				out.write(',');
+				out.write(DateCodec.format(LocalDate.ofEpochDay(userDb.getBirthdate())));
+				out.write('\n');
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * @return the value in double quotes if it has commas, quotes or line breaks, with the quotes doubled
+	 */
+	private static String csvValue(String value) {
+
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	@Override
+	public void destroy() {
+		writer.shutdownNow();
+	}
+
+	/**
+	 * A file with all the users.
+	 */
+	public static final class Export {
+
+		private final Path file;
+
+		private final long length;
+
+		private final String tag;
+
+		private final Format format;
+
+		private final boolean gzip;
+
+		private Export(Path file, long length, String tag, Format format, boolean gzip) {
+			this.file = file;
+			this.length = length;
+			this.tag = tag;
+			this.format = format;
+			this.gzip = gzip;
+		}
+
+		/**
+		 * @return the absolute path of the file
+		 */
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the length of the file in bytes
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the tag of the users in the file, without quotes
+		 */
+		public String getTag() {
+			return tag;
+		}
+
+		/**
+		 * @return the format of the file
+		 */
+		public Format getFormat() {
+			return format;
+		}
+
+		/**
+		 * @return whether the file is gzipped
+		 */
+		public boolean isGzip() {
+			return gzip;
+		}
+	}
+}
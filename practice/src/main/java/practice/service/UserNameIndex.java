@@ -0,0 +1,573 @@
+package practice.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import practice.exception.ProcessException;
+import practice.metrics.StartupReport;
+import practice.provider.ChangeListener;
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+
+/**
+ * In-memory index over the names of the users, so they can be searched without scanning the table.
+ * Names are normalized (lower case, without accents) and indexed in two structures:
+ * <ul>
+ * <li>A sorted map of the whole names and each of their words, answering prefix queries of any length.</li>
+ * <li>Posting lists of the trigrams of each name, answering substring queries and queries with typos
+ * from three characters on.</li>
+ * </ul>
+ * The matches are ranked: exact names first, then prefixes, substrings and finally similar names,
+ * by the share of trigrams of the query they contain.
+ * The posting lists are sorted arrays of primitive ids, merged in id order on each search.
+ * The index is built from the provider once the application is ready, and kept up to date by
+ * listening to the changes made through it.
+ */
+@Component
+public class UserNameIndex implements ChangeListener<UserDb> {
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(UserNameIndex.class);
+
+	/**
+	 * Marks the start and the end of a name in its trigrams, so prefixes and suffixes weigh more.
+	 */
+	private static final char START = '^';
+
+	private static final char END = '$';
+
+	/**
+	 * Share of the trigrams of the query a name must contain to be considered similar.
+	 */
+	private static final double MIN_SIMILARITY = 0.5;
+
+	private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	/**
+	 * Rank of each kind of match, lower first.
+	 */
+	private static final int EXACT = 0;
+
+	private static final int PREFIX = 1;
+
+	private static final int SUBSTRING = 2;
+
+	private static final int SIMILAR = 3;
+
+	/**
+	 * Order of the matches: by rank, the most similar first, then the shortest names and the lowest ids.
+	 */
+	private static final Comparator<Match> RANKING = Comparator.<Match>comparingInt(match -> match.rank)
+			.thenComparing(Comparator.<Match>comparingDouble(match -> match.similarity).reversed())
+			.thenComparingInt(match -> match.user.getName().length())
+			.thenComparingInt(match -> match.user.getId());
+
+	/**
+	 * The provider used to build the index, resolved lazily since it notifies this index.
+	 */
+	@Autowired
+	@Lazy
+	private IUserProvider provider;
+
+	/**
+	 * The current index, replaced once by the one built on startup. Guarded by the lock.
+	 */
+	private Index index = new Index();
+
+	/**
+	 * Changes notified while the index is built, null when it is not being built. Guarded by the lock.
+	 */
+	private List<Change> pending;
+
+	/**
+	 * Searches take the read lock, changes the write lock.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Builds the index with the existing users, once the database has been initialized.
+	 * The users are read into a new index without holding the lock, so the writes and searches go on
+	 * meanwhile; the changes notified during the scan are kept and applied on top of it in the same order.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(StartupReport.BUILD_ORDER)
+	public void build() {
+
+		lock.writeLock().lock();
+		try {
+			pending = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		long start = System.nanoTime();
+		Index built = new Index();
+
+		try {
+			provider.streamAll(built::add);
+		} catch (RuntimeException e) {
+			lock.writeLock().lock();
+			try {
+				pending = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+			throw e;
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			for (Change change : pending) {
+				built.change(change.id, change.data);
+			}
+			index = built;
+			pending = null;
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		logger.info("Name index built with {} users in {} ms.", built.entries.size(),
+				(System.nanoTime() - start) / 1000000);
+	}
+
+	@Override
+	public void inserted(UserDb data) {
+		change(data.getId(), data);
+	}
+
+	@Override
+	public void updated(UserDb data) {
+		change(data.getId(), data);
+	}
+
+	@Override
+	public void deleted(int key) {
+		change(key, null);
+	}
+
+	/**
+	 * Searches the users by name.
+	 * The ids of the words with the query as prefix and of the trigrams of the query are merged in id order,
+	 * counting the trigrams each one shares, and only the best offset + limit matches are kept ranked.
+	 * @param query The whole name, a prefix, a part or a misspelling of it.
+	 * @param offset The number of ranked matches to skip.
+	 * @param limit The maximum number of users to return.
+	 * @return The ranked matches in the page, and the total number of matches.
+	 */
+	public Hits search(String query, int offset, int limit) {
+
+		String normalized = normalize(query);
+		if (normalized.isEmpty()) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST, "error.search.name");
+		}
+
+		Set<String> queryTrigrams = trigrams(START + normalized);
+		int kept = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+
+		lock.readLock().lock();
+		try {
+
+			Index index = this.index;
+
+			List<Postings> prefixed = new ArrayList<>(index.words.subMap(normalized, true, normalized + Character.MAX_VALUE, true).values());
+			Postings prefixes = prefixed.size() == 1 ? prefixed.get(0) : Postings.union(prefixed);
+
+			List<Postings> lists = new ArrayList<>();
+			for (String trigram : queryTrigrams) {
+				Postings ids = index.trigrams.get(trigram);
+				if (ids != null) {
+					lists.add(ids);
+				}
+			}
+
+			// the worst of the kept matches on top, so it is the one replaced by a better one
+			PriorityQueue<Match> best = new PriorityQueue<>(Math.max(1, Math.min(kept, 1024)), RANKING.reversed());
+			int total = 0;
+
+			int[] positions = new int[lists.size()];
+			int prefixPosition = 0;
+
+			while (true) {
+
+				// the lowest id not merged yet, and the number of trigrams of the query it shares
+				int id = prefixPosition < prefixes.size ? prefixes.ids[prefixPosition] : Integer.MAX_VALUE;
+				for (int i = 0; i < lists.size(); i++) {
+					if (positions[i] < lists.get(i).size) {
+						id = Math.min(id, lists.get(i).ids[positions[i]]);
+					}
+				}
+				if (id == Integer.MAX_VALUE) {
+					break;
+				}
+
+				int shared = 0;
+				for (int i = 0; i < lists.size(); i++) {
+					if (positions[i] < lists.get(i).size && lists.get(i).ids[positions[i]] == id) {
+						positions[i]++;
+						shared++;
+					}
+				}
+				boolean prefix = prefixPosition < prefixes.size && prefixes.ids[prefixPosition] == id;
+				if (prefix) {
+					prefixPosition++;
+				}
+
+				Entry entry = index.entries.get(id);
+				double similarity = queryTrigrams.isEmpty() ? 1 : shared / (double) queryTrigrams.size();
+
+				int rank;
+				if (entry.name.equals(normalized)) {
+					rank = EXACT;
+				} else if (prefix) {
+					rank = PREFIX;
+				} else if (entry.name.contains(normalized)) {
+					rank = SUBSTRING;
+				} else if (similarity >= MIN_SIMILARITY) {
+					rank = SIMILAR;
+				} else {
+					continue;
+				}
+
+				total++;
+				if (kept == 0) {
+					continue;
+				}
+
+				Match match = new Match(entry.user, rank, similarity);
+				if (best.size() < kept) {
+					best.add(match);
+				} else if (RANKING.compare(match, best.peek()) < 0) {
+					best.poll();
+					best.add(match);
+				}
+			}
+
+			List<Match> ranked = new ArrayList<>(best);
+			ranked.sort(RANKING);
+
+			List<UserDb> page = new ArrayList<>();
+			for (int i = offset; i < ranked.size() && page.size() < limit; i++) {
+				page.add(ranked.get(i).user);
+			}
+
+			return new Hits(page, total);
+
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Applies a change to the index, and keeps it if the index is being built.
+	 * @param id The user id.
+	 * @param data The new values of the user, null if it was deleted.
+	 */
+	private void change(int id, UserDb data) {
+
+		lock.writeLock().lock();
+		try {
+			index.change(id, data);
+			if (pending != null) {
+				pending.add(new Change(id, data));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the text in lower case, without accents and with single spaces
+	 */
+	private static String normalize(String text) {
+
+		if (text == null) {
+			return "";
+		}
+
+		String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		String plain = ACCENTS.matcher(decomposed).replaceAll("");
+		return SPACES.matcher(plain.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return the distinct trigrams of the text
+	 */
+	private static Set<String> trigrams(String text) {
+
+		if (text.length() < 3) {
+			return Collections.emptySet();
+		}
+
+		Set<String> result = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= text.length(); i++) {
+			result.add(text.substring(i, i + 3));
+		}
+		return result;
+	}
+
+	/**
+	 * The structures of the index, changed with the write lock held or before being published.
+	 */
+	private static class Index {
+
+		/**
+		 * Indexed users by id.
+		 */
+		private final Map<Integer, Entry> entries = new HashMap<>();
+
+		/**
+		 * Ids of the users by normalized name and word of the name.
+		 */
+		private final NavigableMap<String, Postings> words = new TreeMap<>();
+
+		/**
+		 * Ids of the users by trigram of their normalized name.
+		 */
+		private final Map<String, Postings> trigrams = new HashMap<>();
+
+		/**
+		 * Replaces or removes a user.
+		 * @param id The user id.
+		 * @param data The new values of the user, null if it was deleted.
+		 */
+		private void change(int id, UserDb data) {
+			remove(id);
+			if (data != null) {
+				add(data);
+			}
+		}
+
+		private void add(UserDb data) {
+
+			Entry entry = new Entry(new UserDb(data.getId(), data.getName(), data.getBirthdate()));
+			entries.put(data.getId(), entry);
+
+			for (String word : entry.words) {
+				words.computeIfAbsent(word, key -> new Postings()).add(data.getId());
+			}
+			for (String trigram : entry.trigrams) {
+				trigrams.computeIfAbsent(trigram, key -> new Postings()).add(data.getId());
+			}
+		}
+
+		private void remove(int id) {
+
+			Entry entry = entries.remove(id);
+			if (entry == null) {
+				return;
+			}
+
+			for (String word : entry.words) {
+				removePosting(words, word, id);
+			}
+			for (String trigram : entry.trigrams) {
+				removePosting(trigrams, trigram, id);
+			}
+		}
+
+		private static void removePosting(Map<String, Postings> postings, String key, int id) {
+
+			Postings ids = postings.get(key);
+			if (ids != null && ids.remove(id) && ids.size == 0) {
+				postings.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * A posting list: the ids of the users with a key, sorted and without boxing.
+	 * The ids mostly come in ascending order, from the table scan and the inserts, so adding is usually
+	 * an append.
+	 */
+	private static class Postings {
+
+		private static final Postings EMPTY = new Postings();
+
+		private int[] ids = new int[2];
+
+		private int size;
+
+		private void add(int id) {
+
+			int position = size == 0 || ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+			if (position >= 0) {
+				return;
+			}
+
+			position = -position - 1;
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			ids[position] = id;
+			size++;
+		}
+
+		/**
+		 * @return true if the id was in the list
+		 */
+		private boolean remove(int id) {
+
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if (position < 0) {
+				return false;
+			}
+
+			System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+			size--;
+			return true;
+		}
+
+		/**
+		 * @return the distinct ids of all the lists, sorted
+		 */
+		private static Postings union(List<Postings> lists) {
+
+			if (lists.isEmpty()) {
+				return EMPTY;
+			}
+
+			int count = 0;
+			for (Postings list : lists) {
+				count += list.size;
+			}
+
+			int[] all = new int[count];
+			int position = 0;
+			for (Postings list : lists) {
+				System.arraycopy(list.ids, 0, all, position, list.size);
+				position += list.size;
+			}
+			Arrays.sort(all);
+
+			Postings union = new Postings();
+			union.ids = all;
+			for (int id : all) {
+				if (union.size == 0 || all[union.size - 1] != id) {
+					all[union.size++] = id;
+				}
+			}
+			return union;
+		}
+	}
+
+	/**
+	 * An indexed user, with the keys it is indexed by.
+	 */
+	private static class Entry {
+
+		private final UserDb user;
+
+		private final String name;
+
+		private final Set<String> words;
+
+		private final Set<String> trigrams;
+
+		private Entry(UserDb user) {
+
+			this.user = user;
+			this.name = normalize(user.getName());
+			this.words = new HashSet<>();
+			this.words.add(name);
+			for (String word : SPACES.split(name)) {
+				words.add(word);
+			}
+			this.trigrams = trigrams(START + name + END);
+		}
+	}
+
+	/**
+	 * A ranked match.
+	 */
+	private static class Match {
+
+		private final UserDb user;
+
+		private final int rank;
+
+		private final double similarity;
+
+		private Match(UserDb user, int rank, double similarity) {
+			this.user = user;
+			this.rank = rank;
+			this.similarity = similarity;
+		}
+	}
+
+	/**
+	 * A change notified while the index is built.
+	 */
+	private static class Change {
+
+		private final int id;
+
+		private final UserDb data;
+
+		private Change(int id, UserDb data) {
+			this.id = id;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * A page of the matches of a search.
+	 */
+	public static class Hits {
+
+		private final List<UserDb> users;
+
+		private final int total;
+
+		private Hits(List<UserDb> users, int total) {
+			this.users = users;
+			this.total = total;
+		}
+
+		/**
+		 * @return the matches in the page, ranked
+		 */
+		public List<UserDb> getUsers() {
+			return users;
+		}
+
+		/**
+		 * @return the total number of matches
+		 */
+		public int getTotal() {
+			return total;
+		}
+	}
+}
@@ -1,19 +1,23 @@
 package practice.service;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import org.apache.log4j.Logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 
 import practice.model.User;
+import practice.model.UserPage;
+import practice.model.UserSearchPage;
 import practice.provider.UserDb;
-import practice.provider.UserProvider;
+import practice.provider.IUserProvider;
 import practice.service.transformer.UserDbTransformer;
 import practice.service.transformer.UserTransformer;
 
@@ -24,7 +28,29 @@ import practice.service.transformer.UserTransformer;
 public class UserService {
 	
 	@Autowired
-	private UserProvider provider;
+	private IUserProvider provider;
+	
+	@Autowired
+	private UserCache cache;
+	
+	@Autowired
+	private UserNameIndex nameIndex;
+	
+	@Autowired
+	private UserVersions versions;
+	
+	@Autowired
+	private UserSnapshot snapshot;
+	
+	@Autowired
+	private UserView view;
+	
+	/**
+	 * The exporter, created on the first export.
+	 */
+	@Autowired
+	@Lazy
+	private UserExporter exporter;
 	
 	/**
 	 * The User -> UserDb transformer
@@ -39,30 +65,170 @@ public class UserService {
 	/** 
 	 * The class logger.
 	 */
-	private static final Logger logger = Logger.getLogger(UserService.class);
+	private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 	
 	/**
-	 * Asynchronously retrieves all the existing users from the repository.
-	 * @return The list of all {@link User}
+	 * Asynchronously retrieves a page of users after the given id.
+	 * @param after The last id of the previous page, 0 to start from the first user.
+	 * @param limit The maximum number of users in the page.
+	 * @return The {@link UserPage}, with the cursor of the next page if there are more users.
 	 */
-	@Async
-	public Future<List<User>> findAll() {
+	@Async("readExecutor")
+	public CompletableFuture<UserPage> findPage(int after, int limit) {
+		
+		logger.info("Retrieving page of users");
 		
-		logger.info("Retrieving all users");
+		// one extra row tells whether there is a next page without a count query
+		List<UserDb> userDbs = provider.findAfter(after, limit + 1);
 		
-		List<User> users = new ArrayList<>();
+		Integer next = null;
+		if (userDbs.size() > limit) {
+			userDbs = userDbs.subList(0, limit);
+			next = userDbs.get(limit - 1).getId();
+		}
 		
-		users.addAll(provider
-				.findAll()
+		List<User> users = userDbs
 				.stream()
 				.map(userDb -> userDbTransformer.transform(userDb))
-				.collect(Collectors.toList()));
+				.collect(Collectors.toList());
+		
+		return CompletableFuture.completedFuture(new UserPage(users, next));
+	}
+	
+	/**
+	 * Asynchronously retrieves the users born within a range of dates.
+	 * @param after The date the users were born after, exclusive.
+	 * @param before The date the users were born before, exclusive.
+	 * @param limit The maximum number of users to retrieve.
+	 * @return The list of {@link User} ordered by birth date.
+	 */
+	@Async("readExecutor")
+	public CompletableFuture<List<User>> findBornBetween(LocalDate after, LocalDate before, int limit) {
+		
+		logger.info("Searching users by birth date");
+		
+		List<User> users = provider.findBornBetween(after.toEpochDay(), before.toEpochDay(), limit)
+				.stream()
+				.map(userDb -> userDbTransformer.transform(userDb))
+				.collect(Collectors.toList());
+		
+		return CompletableFuture.completedFuture(users);
+	}
+	
+	/**
+	 * Returns the entity tag of all the users, changed by every creation, update and removal.
+	 * It must be taken before reading the users it describes.
+	 * @return The tag, without quotes.
+	 */
+	public String getAllTag() {
+		
+		return versions.tableTag();
+	}
+	
+	/**
+	 * Returns the entity tag of a user, changed by every update or removal of the user.
+	 * It must be taken before reading the user it describes.
+	 * @param id The user id.
+	 * @return The tag, without quotes.
+	 */
+	public String getTag(int id) {
+		
+		return versions.userTag(id);
+	}
+	
+	/**
+	 * Returns the serialized snapshot of all the users, if it is enabled and up to date enough to be served.
+	 * @return The {@link UserSnapshot.Snapshot}, null if all the users must be streamed from the repository.
+	 */
+	public UserSnapshot.Snapshot getAllSnapshot() {
 		
-		return new AsyncResult<List<User>>(users);
+		return snapshot.get();
 	}
 	
 	/**
-	 * Retrieves an existing user from the repository and returns it.
+	 * Returns the file with all the current users, starting to write it in the background if it is not
+	 * written yet.
+	 * @param format The format of the file.
+	 * @param gzip Whether the file is gzipped.
+	 * @return The {@link UserExporter.Export}, null if it is being written.
+	 */
+	public UserExporter.Export getExport(UserExporter.Format format, boolean gzip) {
+		
+		return exporter.get(format, gzip);
+	}
+	
+	/**
+	 * Returns the time before the file with all the users is tried again after it could not be written.
+	 * @param format The format of the file.
+	 * @param gzip Whether the file is gzipped.
+	 * @return The time in milliseconds, 0 if the last attempt did not fail or it may be tried already.
+	 */
+	public long getExportRetryDelay(UserExporter.Format format, boolean gzip) {
+		
+		return exporter.getRetryDelay(format, gzip);
+	}
+	
+	/**
+	 * Retrieves all the existing users one by one: from the current version of the users view if it is
+	 * enabled and built, without accessing the repository, otherwise from the repository without holding
+	 * them in memory.
+	 * @param consumer The consumer of each {@link User}, in id order.
+	 * @return The number of users retrieved.
+	 */
+	public int streamAll(Consumer<User> consumer) {
+		
+		UserView.Version version = view.get();
+		if (version != null) {
+			
+			logger.info("Streaming all users from version {} of the view", version.getNumber());
+			
+			return version.forEach(userDb -> consumer.accept(userDbTransformer.transform(userDb)));
+		}
+		
+		logger.info("Streaming all users");
+		
+		return provider.streamAll(userDb -> consumer.accept(userDbTransformer.transform(userDb)));
+	}
+	
+	/**
+	 * Tells whether there is any user, from the current version of the users view if it is enabled and built,
+	 * otherwise reading a single row from the repository.
+	 * @return Whether there is at least one user.
+	 */
+	public boolean hasUsers() {
+		
+		UserView.Version version = view.get();
+		if (version != null) {
+			return version.size() > 0;
+		}
+		
+		return !provider.findAfter(0, 1).isEmpty();
+	}
+	
+	/**
+	 * Searches the users by name in the name index, without accessing the repository.
+	 * @param name The whole name, a prefix, a part or a misspelling of it.
+	 * @param offset The number of ranked matches to skip.
+	 * @param limit The maximum number of users in the page.
+	 * @return The {@link UserSearchPage} with the best matches first.
+	 */
+	public UserSearchPage searchByName(String name, int offset, int limit) {
+		
+		logger.info("Searching users by name");
+		
+		UserNameIndex.Hits hits = nameIndex.search(name, offset, limit);
+		
+		List<User> users = hits.getUsers().stream()
+				.map(userDb -> userDbTransformer.transform(userDb))
+				.collect(Collectors.toList());
+		
+		int next = offset + users.size();
+		
+		return new UserSearchPage(users, hits.getTotal(), next < hits.getTotal() && !users.isEmpty() ? next : null);
+	}
+	
+	/**
+	 * Retrieves an existing user from the cache, or from the repository if it is not cached, and returns it.
 	 * @param id The user id to retrieve.
 	 * @return A {@link User} if it is found, null otherwise.
 	 * @throws Exception
@@ -71,15 +237,7 @@ public class UserService {
 		
 		logger.info("Retrieving user");
 
-		User user = null;
-
-		UserDb userDb = provider.find(id);
-		
-		if (userDb != null) {
-			user = userDbTransformer.transform(userDb);
-		}
-
-		return user;
+		return cache.get(id, key -> userDbTransformer.transform(provider.find(key)));
 	}
 	
 	/**
@@ -111,7 +269,6 @@ public class UserService {
 	public User update(User data) {
 
 		logger.info("Updating user");
-		logger.info("UserService " + this.toString());
 		
 		UserDb dataDb = userTransformer.transform(data);
 		UserDb createdUserDb = provider.update(dataDb);
@@ -124,17 +281,65 @@ public class UserService {
 		return user;
 	}
 	
+	/**
+	 * Creates several users in the repository as a single transaction.
+	 * @param data The user data for the new users.
+	 * @return The created users, in the same order.
+	 */
+	public List<User> createAll(List<User> data) {
+		
+		logger.info("Creating users");
+		
+		List<UserDb> dataDbs = data.stream()
+				.map(user -> userTransformer.transform(user))
+				.collect(Collectors.toList());
+		
+		return provider.insertAll(dataDbs).stream()
+				.map(userDb -> userDbTransformer.transform(userDb))
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Updates several existing users in the repository as a single transaction.
+	 * @param data The user data to update. The ids must be provided.
+	 * @return The updated users in the same order, null for the users that were not found.
+	 */
+	public List<User> updateAll(List<User> data) {
+		
+		logger.info("Updating users");
+		
+		List<UserDb> dataDbs = data.stream()
+				.map(user -> userTransformer.transform(user))
+				.collect(Collectors.toList());
+		
+		return provider.updateAll(dataDbs).stream()
+				.map(userDb -> userDbTransformer.transform(userDb))
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Removes several users from the repository as a single transaction.
+	 * @param ids The ids of the users to remove.
+	 * @return Whether each user was removed, in the same order.
+	 */
+	public List<Boolean> removeAll(List<Integer> ids) {
+		
+		logger.info("Removing users");
+		
+		return provider.deleteAll(ids);
+	}
+	
 	/**
 	 * Asynchronously removes the user with the given id from the repository.
 	 * @param id The id of the user to remove.
 	 * @throws Exception
 	 */
-	@Async
-	public Future<Boolean> remove(int id) {
+	@Async("writeExecutor")
+	public CompletableFuture<Boolean> remove(int id) {
 		
 		logger.info("Removing user");
 		boolean deleted = provider.delete(id);
 		
-		return new AsyncResult<Boolean>(Boolean.valueOf(deleted));
+		return CompletableFuture.completedFuture(Boolean.valueOf(deleted));
 	}
 }
@@ -0,0 +1,415 @@
+package practice.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.compression.ContentEncoding;
+import practice.metrics.StartupReport;
+import practice.provider.ChangeListener;
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+import practice.service.transformer.UserDbTransformer;
+
+/**
+ * Optional snapshot of the getall response: the JSON array of all the users, serialized once to UTF-8 bytes
+ * and compressed once in each content encoding, so it can be written as is to every request without touching
+ * the database, Jackson or the compressor.
+ * It is rebuilt by a background thread a short delay after a change, so a burst of changes costs a single
+ * rebuild, and it is kept up to date by listening to the changes made through the provider.
+ * The staleness is bounded: once the snapshot misses a change for longer than the allowed time it is not
+ * served any more, and getall falls back to streaming from the database until the rebuild is published.
+ * A rebuild that fails is retried backing off, up to a minute apart, and the error is only logged in full once.
+ * It is notified after the other listeners but before the versions are bumped, so the snapshot is already
+ * stale when the tag of a change can be read. A snapshot whose tag is not the current one is stale as well,
+ * since a rebuild can take its tag after a change is notified and before its version is bumped.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class UserSnapshot implements ChangeListener<UserDb>, DisposableBean {
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(UserSnapshot.class);
+
+	/**
+	 * Maximum time in milliseconds between the retries of a failing rebuild.
+	 */
+	private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * The provider the users are read from, resolved lazily since it notifies this snapshot.
+	 */
+	private final IUserProvider provider;
+
+	/**
+	 * The versions the tag of the snapshot is taken from.
+	 */
+	private final UserVersions versions;
+
+	/**
+	 * The mapper used to serialize the users.
+	 */
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * The UserDb -> User transformer
+	 */
+	private final UserDbTransformer userDbTransformer = new UserDbTransformer();
+
+	/**
+	 * Time in milliseconds a change waits for others before the rebuild.
+	 */
+	private final long rebuildDelay;
+
+	/**
+	 * Time in nanoseconds the snapshot can be served while it misses a change.
+	 */
+	private final long maxStalenessNanos;
+
+	/**
+	 * Thread rebuilding the snapshot, null if it is disabled.
+	 */
+	private final ScheduledExecutorService rebuilder;
+
+	/**
+	 * The last snapshot built, null until the first one is.
+	 */
+	private volatile Snapshot current;
+
+	/**
+	 * Time of the oldest change missing from the current snapshot, 0 if it has all of them.
+	 */
+	private volatile long staleSince;
+
+	/**
+	 * Number of changes notified, guarded by this object.
+	 */
+	private long changes;
+
+	/**
+	 * Whether a rebuild is waiting to run, guarded by this object.
+	 */
+	private boolean scheduled;
+
+	/**
+	 * Number of rebuilds failed in a row, guarded by this object.
+	 */
+	private int failures;
+
+	/**
+	 * Constructor.
+	 * @param enabled Whether the snapshot is built and served.
+	 * @param rebuildDelay Time in milliseconds a change waits for others before the rebuild.
+	 * @param maxStaleness Time in milliseconds the snapshot can be served while it misses a change.
+	 * @param provider The provider the users are read from.
+	 * @param versions The versions the tag of the snapshot is taken from.
+	 * @param objectMapper The mapper used to serialize the users.
+	 */
+	@Autowired
+	public UserSnapshot(@Value("${practice.snapshot.enabled:false}") boolean enabled,
+			@Value("${practice.snapshot.rebuild-delay:100}") long rebuildDelay,
+			@Value("${practice.snapshot.max-staleness:1000}") long maxStaleness,
+			@Lazy IUserProvider provider, UserVersions versions, ObjectMapper objectMapper) {
+
+		this.provider = provider;
+		this.versions = versions;
+		this.objectMapper = objectMapper;
+		this.rebuildDelay = rebuildDelay;
+		this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStaleness);
+
+		if (enabled) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "user-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+			rebuilder = executor;
+			logger.info("Getall snapshot enabled, served up to {} ms after a change.", maxStaleness);
+		} else {
+			rebuilder = null;
+		}
+	}
+
+	/**
+	 * Builds the first snapshot in the background, once the database has been initialized.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(StartupReport.BUILD_ORDER)
+	public void start() {
+
+		if (rebuilder != null) {
+			rebuilder.execute(this::rebuild);
+		}
+	}
+
+	@Override
+	public void inserted(UserDb data) {
+		changed();
+	}
+
+	@Override
+	public void updated(UserDb data) {
+		changed();
+	}
+
+	@Override
+	public void deleted(int key) {
+		changed();
+	}
+
+	/**
+	 * Returns the snapshot if it can be served.
+	 * @return The {@link Snapshot}, null if it is disabled, not built yet or too stale.
+	 */
+	public Snapshot get() {
+
+		Snapshot snapshot = current;
+		if (snapshot == null) {
+			return null;
+		}
+
+		long since = staleSince;
+		if (since == 0 && !snapshot.getTag().equals(versions.tableTag())) {
+			since = missed(snapshot);
+		}
+
+		if (since != 0 && System.nanoTime() - since >= maxStalenessNanos) {
+			return null;
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Reads all the users and publishes the new snapshot. The tag is taken before the users are read, and the
+	 * changes made while they are read keep the snapshot stale from the start of the rebuild.
+	 */
+	public void rebuild() {
+
+		long generation;
+		long started;
+		String tag;
+
+		synchronized (this) {
+			scheduled = false;
+			generation = changes;
+			started = System.nanoTime();
+			tag = versions.tableTag();
+		}
+
+		Snapshot snapshot;
+		try {
+			snapshot = build(tag);
+		} catch (RuntimeException e) {
+			failed(e);
+			return;
+		}
+
+		synchronized (this) {
+			current = snapshot;
+			staleSince = changes == generation ? 0 : started;
+			if (failures > 0) {
+				logger.warn("Getall snapshot built again after {} failed rebuilds.", failures);
+				failures = 0;
+			}
+		}
+
+		logger.debug("Getall snapshot of {} users built in {} ms.", snapshot.getCount(),
+				(System.nanoTime() - started) / 1000000);
+	}
+
+	/**
+	 * Marks the snapshot as stale and schedules its rebuild, unless one is already waiting.
+	 */
+	private synchronized void changed() {
+
+		changes++;
+		if (staleSince == 0) {
+			staleSince = System.nanoTime();
+		}
+
+		if (!scheduled) {
+			schedule(rebuildDelay);
+		}
+	}
+
+	/**
+	 * Marks as stale a snapshot published as fresh whose tag is older than the table, and schedules its
+	 * rebuild unless one is already waiting.
+	 * @return the time the current snapshot is stale since, which is 0 if a fresh one was published meanwhile
+	 */
+	private synchronized long missed(Snapshot snapshot) {
+
+		if (current != snapshot) {
+			return staleSince;
+		}
+
+		if (staleSince == 0) {
+			staleSince = System.nanoTime();
+		}
+		if (!scheduled) {
+			schedule(rebuildDelay);
+		}
+
+		return staleSince;
+	}
+
+	/**
+	 * Schedules the retry of a failed rebuild, doubling the delay on each failure in a row.
+	 * A change notified meanwhile does not bring the retry forward.
+	 */
+	private synchronized void failed(RuntimeException e) {
+
+		failures++;
+		long delay = Math.min(Math.max(rebuildDelay, 1) << Math.min(failures, 20), MAX_RETRY_DELAY);
+
+		if (failures == 1) {
+			logger.error("Error building the getall snapshot, retrying in {} ms.", delay, e);
+		} else {
+			logger.debug("Error building the getall snapshot again, retrying in {} ms: {}", delay, e.toString());
+		}
+
+		schedule(delay);
+	}
+
+	/**
+	 * Schedules a rebuild, with this object locked.
+	 */
+	private void schedule(long delay) {
+
+		if (rebuilder != null && !rebuilder.isShutdown()) {
+			scheduled = true;
+			rebuilder.schedule(this::rebuild, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Serializes all the users the same way getall streams them.
+	 */
+	private Snapshot build(String tag) {
+
+		try {
+
+			ByteArrayOutputStream json = new ByteArrayOutputStream(64 * 1024);
+			int count;
+
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json, JsonEncoding.UTF8)) {
+				generator.writeStartArray();
+				count = provider.streamAll(userDb -> {
+					try {
+						generator.writeObject(userDbTransformer.transform(userDb));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				generator.writeEndArray();
+			}
+
+			// compressed once for all the requests, so the smallest output is worth its time
+			Map<ContentEncoding, byte[]> encoded = new EnumMap<>(ContentEncoding.class);
+			for (ContentEncoding encoding : ContentEncoding.values()) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.size() / 4 + 64);
+				try (DeflaterOutputStream compressedStream = encoding.wrap(compressed, Deflater.BEST_COMPRESSION)) {
+					json.writeTo(compressedStream);
+				}
+				encoded.put(encoding, compressed.toByteArray());
+			}
+
+			return new Snapshot(json.toByteArray(), encoded, count, tag);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void destroy() {
+
+		if (rebuilder != null) {
+			rebuilder.shutdownNow();
+		}
+	}
+
+	/**
+	 * A serialized getall response.
+	 */
+	public static class Snapshot {
+
+		private final byte[] json;
+
+		private final Map<ContentEncoding, byte[]> encoded;
+
+		private final int count;
+
+		private final String tag;
+
+		private Snapshot(byte[] json, Map<ContentEncoding, byte[]> encoded, int count, String tag) {
+			this.json = json;
+			this.encoded = encoded;
+			this.count = count;
+			this.tag = tag;
+		}
+
+		/**
+		 * @return the JSON array in UTF-8, it must not be modified
+		 */
+		public byte[] getJson() {
+			return json;
+		}
+
+		/**
+		 * @return the gzipped JSON array, it must not be modified
+		 */
+		public byte[] getGzip() {
+			return encoded.get(ContentEncoding.GZIP);
+		}
+
+		/**
+		 * @param encoding The content encoding.
+		 * @return the JSON array compressed with the encoding, it must not be modified
+		 */
+		public byte[] getEncoded(ContentEncoding encoding) {
+			return encoded.get(encoding);
+		}
+
+		/**
+		 * @return the number of users in the array
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the entity tag of the users in the snapshot, without quotes
+		 */
+		public String getTag() {
+			return tag;
+		}
+	}
+}
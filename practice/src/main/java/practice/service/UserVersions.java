@@ -0,0 +1,78 @@
+package practice.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import practice.provider.ChangeListener;
+import practice.provider.UserDb;
+
+/**
+ * Versions of the users and of the whole users table, bumped on every change made through the provider,
+ * to build the entity tags of the responses.
+ * Every change takes the next value of the table version, and the changed user keeps it as its own version.
+ * The tags also carry the start time of the application, since the versions are not persisted.
+ * A tag must be read before the data it describes: a change in between makes the tag older than the data,
+ * so the client just gets the data again on its next request. For the same reason the versions are
+ * bumped after the other listeners, once the cached data has been invalidated.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class UserVersions implements ChangeListener<UserDb> {
+
+	/**
+	 * Identifies this run of the application.
+	 */
+	private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+	/**
+	 * Version of the table, the number of changes since the start.
+	 */
+	private final AtomicLong tableVersion = new AtomicLong();
+
+	/**
+	 * Version of the changed users, the users missing have not changed since the start.
+	 */
+	private final Map<Integer, Long> userVersions = new ConcurrentHashMap<>();
+
+	@Override
+	public void inserted(UserDb data) {
+		bump(data.getId());
+	}
+
+	@Override
+	public void updated(UserDb data) {
+		bump(data.getId());
+	}
+
+	@Override
+	public void deleted(int key) {
+		bump(key);
+	}
+
+	/**
+	 * @return the tag of the whole users table
+	 */
+	public String tableTag() {
+		return epoch + "-" + tableVersion.get();
+	}
+
+	/**
+	 * @param id The user id.
+	 * @return the tag of a single user
+	 */
+	public String userTag(int id) {
+		return epoch + "-" + id + "-" + userVersions.getOrDefault(id, 0L);
+	}
+
+	/**
+	 * Assigns the next version to a changed user.
+	 */
+	private void bump(int id) {
+		userVersions.put(id, tableVersion.incrementAndGet());
+	}
+}
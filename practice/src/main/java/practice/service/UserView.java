@@ -0,0 +1,229 @@
+package practice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import practice.metrics.StartupReport;
+import practice.provider.ChangeListener;
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+import practice.utils.PersistentIntMap;
+
+/**
+ * Optional in-memory view of all the users, so getall is read without touching the database and
+ * without competing with the writes for its locks.
+ * The view is an immutable {@link Version}: every change notified by the provider derives a new version
+ * sharing all but a few nodes with the previous one (see {@link PersistentIntMap}) and publishes it with
+ * an atomic swap. Readers take the current version and iterate it as long as they need, always seeing
+ * all the users as they were at a single point, while the writers go on.
+ * The view is built from the provider once the application is ready; the changes made meanwhile are
+ * kept and applied on top of it in the same order, so none is lost.
+ */
+@Component
+public class UserView implements ChangeListener<UserDb> {
+
+	/**
+	 * The class logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(UserView.class);
+
+	/**
+	 * The provider the view is built from, resolved lazily since it notifies this view.
+	 */
+	@Autowired
+	@Lazy
+	private IUserProvider provider;
+
+	/**
+	 * Whether the view is built and served.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * The current version, null until the view is built.
+	 */
+	private final AtomicReference<Version> current = new AtomicReference<>();
+
+	/**
+	 * Changes notified while the view is built, null when it is not being built. Guarded by this object.
+	 */
+	private List<Change> pending;
+
+	/**
+	 * Constructor.
+	 * @param enabled Whether the view is built and served.
+	 */
+	public UserView(@Value("${practice.view.enabled:false}") boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Builds the view with the existing users, once the database has been initialized.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(StartupReport.BUILD_ORDER)
+	public void build() {
+
+		if (!enabled) {
+			return;
+		}
+
+		synchronized (this) {
+			pending = new ArrayList<>();
+		}
+
+		long start = System.nanoTime();
+		PersistentIntMap.Builder<UserDb> builder = new PersistentIntMap.Builder<>();
+
+		try {
+			provider.streamAll(userDb -> builder.put(userDb.getId(), userDb));
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				pending = null;
+			}
+			logger.error("Error building the users view, getall is read from the database.", e);
+			return;
+		}
+
+		synchronized (this) {
+
+			Version version = new Version(builder.build(), 0);
+			for (Change change : pending) {
+				version = version.with(change.id, change.data);
+			}
+			current.set(version);
+			pending = null;
+
+			logger.info("Users view built with {} users in {} ms.", version.size(),
+					(System.nanoTime() - start) / 1000000);
+		}
+	}
+
+	@Override
+	public void inserted(UserDb data) {
+		change(data.getId(), data);
+	}
+
+	@Override
+	public void updated(UserDb data) {
+		change(data.getId(), data);
+	}
+
+	@Override
+	public void deleted(int key) {
+		change(key, null);
+	}
+
+	/**
+	 * @return the current version of the view, null if it is disabled or not built yet
+	 */
+	public Version get() {
+		return current.get();
+	}
+
+	/**
+	 * Publishes a version with a change, or keeps the change for later while the view is being built.
+	 * @param id The id of the user.
+	 * @param data The user, null if it was deleted.
+	 */
+	private void change(int id, UserDb data) {
+
+		if (!enabled) {
+			return;
+		}
+
+		if (current.get() == null) {
+			synchronized (this) {
+				if (current.get() == null) {
+					// changes notified before the build starts are already in the table it reads
+					if (pending != null) {
+						pending.add(new Change(id, data));
+					}
+					return;
+				}
+			}
+		}
+
+		current.updateAndGet(version -> version.with(id, data));
+	}
+
+	/**
+	 * An immutable version of all the users.
+	 */
+	public static final class Version {
+
+		private final PersistentIntMap<UserDb> users;
+
+		private final long number;
+
+		private Version(PersistentIntMap<UserDb> users, long number) {
+			this.users = users;
+			this.number = number;
+		}
+
+		/**
+		 * @return a new version with the user set, or removed if it is null
+		 */
+		private Version with(int id, UserDb data) {
+			return new Version(data == null ? users.without(id) : users.with(id, data), number + 1);
+		}
+
+		/**
+		 * @return the number of changes applied since the view was built
+		 */
+		public long getNumber() {
+			return number;
+		}
+
+		/**
+		 * @param id The id of the user.
+		 * @return the user, null if it does not exist in this version
+		 */
+		public UserDb get(int id) {
+			return users.get(id);
+		}
+
+		/**
+		 * @return the number of users
+		 */
+		public int size() {
+			return users.size();
+		}
+
+		/**
+		 * @param consumer The consumer of each {@link UserDb}, in id order.
+		 * @return The number of users.
+		 */
+		public int forEach(Consumer<UserDb> consumer) {
+			users.forEachValue(consumer);
+			return users.size();
+		}
+	}
+
+	/**
+	 * A change notified while the view is built.
+	 */
+	private static final class Change {
+
+		private final int id;
+
+		private final UserDb data;
+
+		private Change(int id, UserDb data) {
+			this.id = id;
+			this.data = data;
+		}
+	}
+}
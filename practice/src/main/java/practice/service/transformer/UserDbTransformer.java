@@ -1,8 +1,9 @@
 package practice.service.transformer;
 
+import java.time.LocalDate;
+
 import practice.model.User;
 import practice.provider.UserDb;
-import practice.utils.Utils;
 
 /**
  * UserDb transformer. It generates a {@link User} from a {@link UserDb}.
@@ -16,7 +17,7 @@ public class UserDbTransformer implements ITransformer<UserDb, User> {
 		
 		if (source != null) {
 			user = new User(source.getId(), source.getName(), 
-					Utils.stringToLocalDate(source.getBirthdate()));
+					LocalDate.ofEpochDay(source.getBirthdate()));
 		}
 		
 		return user;
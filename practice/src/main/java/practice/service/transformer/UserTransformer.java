@@ -1,10 +1,13 @@
 package practice.service.transformer;
 
+import java.time.LocalDate;
+
+import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 
+import practice.exception.ProcessException;
 import practice.model.User;
 import practice.provider.UserDb;
-import practice.utils.Utils;
 
 /**
  * User transformer. It generates a {@link UserDb} from a {@link User}.
@@ -17,8 +20,13 @@ public class UserTransformer implements ITransformer<User, UserDb> {
 		UserDb userDb = null;
 		
 		if (source != null) {
-			userDb = new UserDb(source.getId(), source.getName(), 
-					Utils.localDateToString(source.getBirthdate()));
+			
+			if (source.getBirthdate() == null) {
+				throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, 
+						"error.conversion", LocalDate.class.getName(), Long.class.getName());
+			}
+			
+			userDb = new UserDb(source.getId(), source.getName(), source.getBirthdate().toEpochDay());
 		}
 		
 		return userDb;
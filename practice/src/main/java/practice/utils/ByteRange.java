@@ -0,0 +1,104 @@
+package practice.utils;
+
+/**
+ * A single range of bytes of a Range header (RFC 7233), resolved against the length of the entity.
+ * Only single byte ranges are served partially: a header with several ranges, another unit or a wrong
+ * syntax is ignored, so the whole entity is sent, as the RFC allows.
+ */
+public final class ByteRange {
+
+	private static final String BYTES_UNIT = "bytes=";
+
+	/**
+	 * A range starting beyond the end of the entity, answered with 416 (range not satisfiable).
+	 */
+	public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	/**
+	 * First byte, from 0.
+	 */
+	private final long first;
+
+	/**
+	 * Last byte, included.
+	 */
+	private final long last;
+
+	private ByteRange(long first, long last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * Parses the Range header of a request.
+	 * @param range The value of the header, null if it was not sent.
+	 * @param length The length of the entity.
+	 * @return The range, {@link #UNSATISFIABLE} if it cannot be served, null if the whole entity is sent.
+	 */
+	public static ByteRange parse(String range, long length) {
+
+		if (range == null || !range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+			return null;
+		}
+
+		String spec = range.substring(BYTES_UNIT.length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0 || spec.indexOf(',') >= 0) {
+			return null;
+		}
+
+		long first;
+		long last;
+		try {
+			if (dash == 0) {
+				// suffix range: the last N bytes
+				long suffix = Long.parseLong(spec.substring(1).trim());
+				if (suffix <= 0) {
+					return suffix == 0 ? UNSATISFIABLE : null;
+				}
+				first = Math.max(0, length - suffix);
+				last = length - 1;
+			} else {
+				first = Long.parseLong(spec.substring(0, dash).trim());
+				String end = spec.substring(dash + 1).trim();
+				last = end.isEmpty() ? length - 1 : Math.min(Long.parseLong(end), length - 1);
+				if (first < 0 || (!end.isEmpty() && Long.parseLong(end) < first)) {
+					return null;
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		return first >= length ? UNSATISFIABLE : new ByteRange(first, last);
+	}
+
+	/**
+	 * @return the first byte, from 0
+	 */
+	public long getFirst() {
+		return first;
+	}
+
+	/**
+	 * @return the last byte, included
+	 */
+	public long getLast() {
+		return last;
+	}
+
+	/**
+	 * @return the number of bytes of the range
+	 */
+	public long getLength() {
+		return last - first + 1;
+	}
+
+	/**
+	 * @param length The length of the entity.
+	 * @return the value of the Content-Range header of the range
+	 */
+	public String contentRange(long length) {
+		return this == UNSATISFIABLE ? "bytes */" + length : "bytes " + first + "-" + last + "/" + length;
+	}
+}
@@ -0,0 +1,184 @@
+package practice.utils;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.springframework.http.HttpStatus;
+
+import practice.exception.ProcessException;
+
+/**
+ * Thread-safe codec between {@link LocalDate} and its dd-MM-yyyy representation.
+ * The fixed layout is parsed and formatted by hand, without locks or {@link DateTimeFormatter},
+ * and the recently used dates are kept in a small direct-mapped cache, so the common dates
+ * are converted without allocating. Any input outside the fast path (years out of 1-9999,
+ * other lengths, invalid days) falls back to the formatter, keeping its exact behaviour.
+ */
+public final class DateCodec {
+
+	/**
+	 * The pattern of the representation.
+	 */
+	public static final String PATTERN = "dd-MM-yyyy";
+
+	/**
+	 * Length of the representation in the fast path.
+	 */
+	private static final int LENGTH = PATTERN.length();
+
+	/**
+	 * Number of slots of the cache, a power of two.
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	/**
+	 * The formatter for the inputs outside the fast path, it is immutable and thread-safe.
+	 */
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+
+	/**
+	 * Recently converted dates, indexed by a hash of year, month and day.
+	 * The entries are immutable, so the slots can be read and replaced without synchronization:
+	 * a race only costs a conversion.
+	 */
+	private static final Entry[] CACHE = new Entry[CACHE_SIZE];
+
+	private DateCodec() {
+	}
+
+	/**
+	 * Parses a date with dd-MM-yyyy format.
+	 * @param text The text to parse.
+	 * @return The parsed {@link LocalDate}.
+	 * @throws ProcessException with 400 status if the text is not a valid date, it comes from the clients.
+	 */
+	public static LocalDate parse(CharSequence text) {
+
+		if (text != null && text.length() == LENGTH && text.charAt(2) == '-' && text.charAt(5) == '-') {
+
+			int day = digits(text, 0, 2);
+			int month = digits(text, 3, 5);
+			int year = digits(text, 6, 10);
+
+			if (day > 0 && month > 0 && year > 0) {
+
+				int key = key(year, month, day);
+				Entry entry = CACHE[slot(key)];
+
+				if (entry != null && entry.key == key) {
+					return entry.date;
+				}
+
+				try {
+					LocalDate date = LocalDate.of(year, month, day);
+					CACHE[slot(key)] = new Entry(key, date, text.toString());
+					return date;
+				} catch (DateTimeException e) {
+					// out of range values are left to the formatter
+				}
+			}
+		}
+
+		try {
+			return LocalDate.parse(text, FORMATTER);
+		} catch (Exception e) {
+			throw new ProcessException(HttpStatus.BAD_REQUEST,
+					e, "error.conversion", String.class.getName(), LocalDate.class.getName());
+		}
+	}
+
+	/**
+	 * Generates the dd-MM-yyyy representation of a date.
+	 * @param date The date to format.
+	 * @return The generated {@link String}.
+	 * @throws ProcessException with 500 status if the date is null.
+	 */
+	public static String format(LocalDate date) {
+
+		if (date == null) {
+			throw new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR,
+					"error.conversion", LocalDate.class.getName(), String.class.getName());
+		}
+
+		int year = date.getYear();
+
+		if (year < 1 || year > 9999) {
+			return date.format(FORMATTER);
+		}
+
+		int month = date.getMonthValue();
+		int day = date.getDayOfMonth();
+		int key = key(year, month, day);
+		Entry entry = CACHE[slot(key)];
+
+		if (entry != null && entry.key == key) {
+			return entry.text;
+		}
+
+		char[] chars = new char[LENGTH];
+		chars[0] = (char) ('0' + day / 10);
+		chars[1] = (char) ('0' + day % 10);
+		chars[2] = '-';
+		chars[3] = (char) ('0' + month / 10);
+		chars[4] = (char) ('0' + month % 10);
+		chars[5] = '-';
+		chars[6] = (char) ('0' + year / 1000);
+		chars[7] = (char) ('0' + year / 100 % 10);
+		chars[8] = (char) ('0' + year / 10 % 10);
+		chars[9] = (char) ('0' + year % 10);
+
+		String text = new String(chars);
+		CACHE[slot(key)] = new Entry(key, date, text);
+		return text;
+	}
+
+	/**
+	 * Reads a number of ASCII digits.
+	 * @return The value of the digits, -1 if any of them is not a digit.
+	 */
+	private static int digits(CharSequence text, int from, int to) {
+
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * @return a unique key of a date with year within 1-9999
+	 */
+	private static int key(int year, int month, int day) {
+		return (year << 9) | (month << 5) | day;
+	}
+
+	/**
+	 * @return the slot of the cache for a key
+	 */
+	private static int slot(int key) {
+		return (key ^ (key >>> 12)) & (CACHE_SIZE - 1);
+	}
+
+	/**
+	 * A cached date with its representation.
+	 */
+	private static final class Entry {
+
+		private final int key;
+
+		private final LocalDate date;
+
+		private final String text;
+
+		private Entry(int key, LocalDate date, String text) {
+			this.key = key;
+			this.date = date;
+			this.text = text;
+		}
+	}
+}
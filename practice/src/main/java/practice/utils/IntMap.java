@@ -0,0 +1,221 @@
+package practice.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Hash map with primitive int keys, readable without locks while a single writer at a time changes it.
+ * It uses open addressing with linear probing over an array of immutable entries, so a reader always
+ * sees a whole entry, and removed entries are replaced by a tombstone to keep the probe chains.
+ * When the table fills up the writer rebuilds it and publishes the new one, readers still probing the
+ * old table finish on a consistent, if slightly outdated, view.
+ * The writes must be serialized by the caller, the reads can run at any time from any thread.
+ * @param <V> The class of the values, which should be immutable or at least not modified once stored.
+ */
+public class IntMap<V> {
+
+	/**
+	 * Marks a removed entry, so the lookups keep probing past it.
+	 */
+	private static final Entry<Object> TOMBSTONE = new Entry<>(0, null);
+
+	/**
+	 * Maximum share of the table used by entries and tombstones before it is rebuilt.
+	 */
+	private static final double LOAD_FACTOR = 0.5;
+
+	/**
+	 * The current table, its length is a power of two.
+	 */
+	private volatile AtomicReferenceArray<Entry<V>> table;
+
+	/**
+	 * Number of entries, only changed by the writer.
+	 */
+	private volatile int size;
+
+	/**
+	 * Number of tombstones in the table, only used by the writer.
+	 */
+	private int tombstones;
+
+	/**
+	 * Constructor.
+	 * @param expectedSize The number of entries expected, to size the table.
+	 */
+	public IntMap(int expectedSize) {
+		table = new AtomicReferenceArray<>(capacityFor(expectedSize));
+	}
+
+	/**
+	 * @param key The key.
+	 * @return the value of the key, null if it is not in the map
+	 */
+	public V get(int key) {
+
+		AtomicReferenceArray<Entry<V>> current = table;
+		int mask = current.length() - 1;
+
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			Entry<V> entry = current.get(i);
+			if (entry == null) {
+				return null;
+			}
+			if (entry != TOMBSTONE && entry.key == key) {
+				return entry.value;
+			}
+		}
+	}
+
+	/**
+	 * Stores the value of a key, replacing the previous one. Only to be called by the writer.
+	 * @param key The key.
+	 * @param value The value, not null.
+	 * @return the previous value, null if there was none
+	 */
+	public V put(int key, V value) {
+
+		if ((size + tombstones + 1) > table.length() * LOAD_FACTOR) {
+			rebuild(size + 1);
+		}
+
+		AtomicReferenceArray<Entry<V>> current = table;
+		int mask = current.length() - 1;
+		int free = -1;
+
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+
+			Entry<V> entry = current.get(i);
+
+			if (entry == null) {
+				if (free < 0) {
+					free = i;
+				} else {
+					tombstones--;
+				}
+				current.set(free, new Entry<>(key, value));
+				size++;
+				return null;
+			}
+
+			if (entry == TOMBSTONE) {
+				if (free < 0) {
+					free = i;
+				}
+			} else if (entry.key == key) {
+				current.set(i, new Entry<>(key, value));
+				return entry.value;
+			}
+		}
+	}
+
+	/**
+	 * Removes a key. Only to be called by the writer.
+	 * @param key The key.
+	 * @return the removed value, null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+
+		AtomicReferenceArray<Entry<V>> current = table;
+		int mask = current.length() - 1;
+
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+
+			Entry<V> entry = current.get(i);
+
+			if (entry == null) {
+				return null;
+			}
+
+			if (entry != TOMBSTONE && entry.key == key) {
+				current.set(i, (Entry<V>) TOMBSTONE);
+				tombstones++;
+				size--;
+				return entry.value;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Hands every value to the consumer, in no particular order.
+	 * @param consumer The consumer of the values.
+	 */
+	public void forEachValue(Consumer<V> consumer) {
+
+		AtomicReferenceArray<Entry<V>> current = table;
+
+		for (int i = 0; i < current.length(); i++) {
+			Entry<V> entry = current.get(i);
+			if (entry != null && entry != TOMBSTONE) {
+				consumer.accept(entry.value);
+			}
+		}
+	}
+
+	/**
+	 * Copies the entries to a new table sized for the given number of them, dropping the tombstones.
+	 */
+	private void rebuild(int expectedSize) {
+
+		AtomicReferenceArray<Entry<V>> current = table;
+		AtomicReferenceArray<Entry<V>> rebuilt = new AtomicReferenceArray<>(capacityFor(expectedSize));
+		int mask = rebuilt.length() - 1;
+
+		for (int i = 0; i < current.length(); i++) {
+			Entry<V> entry = current.get(i);
+			if (entry != null && entry != TOMBSTONE) {
+				int j = hash(entry.key) & mask;
+				while (rebuilt.get(j) != null) {
+					j = (j + 1) & mask;
+				}
+				rebuilt.set(j, entry);
+			}
+		}
+
+		tombstones = 0;
+		table = rebuilt;
+	}
+
+	/**
+	 * @return a power of two length keeping the load under the limit for the given number of entries
+	 */
+	private static int capacityFor(int expectedSize) {
+
+		int capacity = 16;
+		while (capacity * LOAD_FACTOR < Math.max(expectedSize, 1) * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Spreads sequential keys over the table.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * An immutable entry of the table.
+	 */
+	private static final class Entry<V> {
+
+		private final int key;
+
+		private final V value;
+
+		private Entry(int key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
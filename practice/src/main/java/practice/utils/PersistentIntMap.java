@@ -0,0 +1,255 @@
+package practice.utils;
+
+import java.util.function.Consumer;
+
+/**
+ * Immutable map with non-negative int keys, iterated in key order.
+ * It is a trie of 32-slot nodes indexed by 5 bits of the key each, so a change copies only the nodes on
+ * the path to its key (at most 7, usually 2 or 3) and shares all the others with the previous map.
+ * Every change returns a new map and leaves the previous one untouched, so the maps can be read from any
+ * thread without locks, and published with a simple reference swap.
+ * A {@link Builder} fills a new map in place, without the copies.
+ * @param <V> The class of the values, which should be immutable.
+ */
+public final class PersistentIntMap<V> {
+
+	private static final int BITS = 5;
+
+	private static final int WIDTH = 1 << BITS;
+
+	private static final int MASK = WIDTH - 1;
+
+	private static final PersistentIntMap<Object> EMPTY = new PersistentIntMap<>(null, 0, 0);
+
+	/**
+	 * The root node, null if the map is empty. The nodes hold child nodes, and the values at the last level.
+	 */
+	private final Object[] root;
+
+	/**
+	 * Bits of the key below the root level, 0 when the root holds the values.
+	 */
+	private final int shift;
+
+	private final int size;
+
+	private PersistentIntMap(Object[] root, int shift, int size) {
+		this.root = root;
+		this.shift = shift;
+		this.size = size;
+	}
+
+	/**
+	 * @return the empty map
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> PersistentIntMap<V> empty() {
+		return (PersistentIntMap<V>) EMPTY;
+	}
+
+	/**
+	 * @param key The key.
+	 * @return the value of the key, null if it is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+
+		if (key < 0 || !fits(key, shift)) {
+			return null;
+		}
+
+		Object[] node = root;
+		for (int level = shift; node != null && level > 0; level -= BITS) {
+			node = (Object[]) node[(key >>> level) & MASK];
+		}
+
+		return node == null ? null : (V) node[key & MASK];
+	}
+
+	/**
+	 * @param key The key, not negative.
+	 * @param value The value, not null.
+	 * @return a map with the value for the key
+	 */
+	public PersistentIntMap<V> with(int key, V value) {
+
+		checkKey(key);
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not allowed");
+		}
+
+		Object[] newRoot = root;
+		int newShift = shift;
+		while (!fits(key, newShift)) {
+			newRoot = newRoot == null ? null : grow(newRoot);
+			newShift += BITS;
+		}
+
+		boolean[] added = { false };
+		newRoot = with(newRoot, newShift, key, value, added);
+
+		return new PersistentIntMap<>(newRoot, newShift, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * @param key The key.
+	 * @return a map without the key, this map if it is not in it
+	 */
+	public PersistentIntMap<V> without(int key) {
+
+		if (get(key) == null) {
+			return this;
+		}
+
+		Object[] newRoot = without(root, shift, key);
+		return size == 1 ? empty() : new PersistentIntMap<>(newRoot, shift, size - 1);
+	}
+
+	/**
+	 * @return the number of keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param consumer The consumer of each value, in key order.
+	 */
+	public void forEachValue(Consumer<V> consumer) {
+
+		if (root != null) {
+			forEachValue(root, shift, consumer);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> void forEachValue(Object[] node, int level, Consumer<V> consumer) {
+
+		for (Object slot : node) {
+			if (slot != null) {
+				if (level == 0) {
+					consumer.accept((V) slot);
+				} else {
+					forEachValue((Object[]) slot, level - BITS, consumer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of the path to the key with the value set
+	 */
+	private static Object[] with(Object[] node, int level, int key, Object value, boolean[] added) {
+
+		Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+		int index = (key >>> level) & MASK;
+
+		if (level == 0) {
+			added[0] = copy[index] == null;
+			copy[index] = value;
+		} else {
+			copy[index] = with((Object[]) copy[index], level - BITS, key, value, added);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * @return a copy of the path to the key without it, null for the nodes left empty
+	 */
+	private static Object[] without(Object[] node, int level, int key) {
+
+		Object[] copy = node.clone();
+		int index = (key >>> level) & MASK;
+
+		copy[index] = level == 0 ? null : without((Object[]) copy[index], level - BITS, key);
+
+		for (Object slot : copy) {
+			if (slot != null) {
+				return copy;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return a root one level up, with the given one as its first child
+	 */
+	private static Object[] grow(Object[] root) {
+
+		Object[] node = new Object[WIDTH];
+		node[0] = root;
+		return node;
+	}
+
+	/**
+	 * @return whether the key can be reached from a root at the given level
+	 */
+	private static boolean fits(int key, int shift) {
+		return shift + BITS >= Integer.SIZE || (key >>> (shift + BITS)) == 0;
+	}
+
+	private static void checkKey(int key) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Negative keys are not allowed: " + key);
+		}
+	}
+
+	/**
+	 * Fills a new map in place. It must not be used once the map is built.
+	 * @param <V> The class of the values.
+	 */
+	public static final class Builder<V> {
+
+		private Object[] root;
+
+		private int shift;
+
+		private int size;
+
+		/**
+		 * Sets the value of a key.
+		 * @param key The key, not negative.
+		 * @param value The value, not null.
+		 * @return this builder
+		 */
+		public Builder<V> put(int key, V value) {
+
+			checkKey(key);
+			if (value == null) {
+				throw new IllegalArgumentException("Null values are not allowed");
+			}
+
+			while (!fits(key, shift)) {
+				root = root == null ? null : grow(root);
+				shift += BITS;
+			}
+			if (root == null) {
+				root = new Object[WIDTH];
+			}
+
+			Object[] node = root;
+			for (int level = shift; level > 0; level -= BITS) {
+				int index = (key >>> level) & MASK;
+				if (node[index] == null) {
+					node[index] = new Object[WIDTH];
+				}
+				node = (Object[]) node[index];
+			}
+
+			if (node[key & MASK] == null) {
+				size++;
+			}
+			node[key & MASK] = value;
+
+			return this;
+		}
+
+		/**
+		 * @return the map
+		 */
+		public PersistentIntMap<V> build() {
+			return size == 0 ? empty() : new PersistentIntMap<>(root, shift, size);
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package practice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.coyote.http2.HpackDecoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * The requests over a cleartext connection upgraded to HTTP/2 (h2c) through the connector, over a scratch
+ * database: the upgraded request, and then several requests multiplexed over the connection, answered
+ * synchronously, asynchronously and streamed.
+ * There is no HTTP/2 client among the dependencies, so the frames are written and read by hand, and the
+ * headers of the responses are decoded with the HPACK decoder of Tomcat.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "practice.http2.enabled=true", "practice.datasource.url=jdbc:sqlite:target/http2-test.db" })
+@DirtiesContext
+public class Http2RestApiTest {
+
+	private static final int DATA = 0x0;
+
+	private static final int HEADERS = 0x1;
+
+	private static final int RST_STREAM = 0x3;
+
+	private static final int SETTINGS = 0x4;
+
+	private static final int PING = 0x6;
+
+	private static final int GOAWAY = 0x7;
+
+	private static final int END_STREAM = 0x1;
+
+	private static final int ACK = 0x1;
+
+	private static final int END_HEADERS = 0x4;
+
+	@LocalServerPort
+	private int port;
+
+	private Socket socket;
+
+	private DataInputStream in;
+
+	private OutputStream out;
+
+	private HpackDecoder decoder;
+
+	/**
+	 * The headers of the header block being decoded.
+	 */
+	private Map<String, String> decoded;
+
+	/**
+	 * The responses of the streams read so far, by stream id.
+	 */
+	private final Map<Integer, Response> responses = new HashMap<>();
+
+	@Before
+	public void connect() throws Exception {
+
+		socket = new Socket("localhost", port);
+		socket.setSoTimeout(10000);
+		in = new DataInputStream(socket.getInputStream());
+		out = socket.getOutputStream();
+
+		//the decoder keeps the dynamic table of the connection, and hands the headers to a package-private emitter
+		decoder = new HpackDecoder();
+		Class<?> emitter = Class.forName("org.apache.coyote.http2.HpackDecoder$HeaderEmitter");
+		Method setEmitter = HpackDecoder.class.getDeclaredMethod("setHeaderEmitter", emitter);
+		setEmitter.setAccessible(true);
+		setEmitter.invoke(decoder, Proxy.newProxyInstance(emitter.getClassLoader(), new Class<?>[] { emitter }, (proxy, method, args) -> {
+			if (method.getName().equals("emitHeader")) {
+				decoded.put((String) args[0], (String) args[1]);
+			}
+			return null;
+		}));
+	}
+
+	@After
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	@Test
+	public void testUpgrade() throws Exception {
+
+		//the first request asks for the upgrade, with push disabled in its settings
+		out.write(("GET /api/user/get/1 HTTP/1.1\r\n"
+				+ "Host: localhost\r\n"
+				+ "Connection: Upgrade, HTTP2-Settings\r\n"
+				+ "Upgrade: h2c\r\n"
+				+ "HTTP2-Settings: AAIAAAAA\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+
+		String head = readHead();
+		assertThat(head, startsWith("HTTP/1.1 101"));
+
+		//the connection goes on with the preface of the client, and the upgraded request is answered on stream 1
+		out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+		writeFrame(SETTINGS, 0, 0, new byte[0]);
+
+		Response frodo = await(1);
+		assertEquals("200", frodo.headers.get(":status"));
+		assertEquals("Frodo", JsonPath.read(frodo.body(), "$.name"));
+
+		//then several requests at once over the same connection: streamed, asynchronous and written ones
+		request(3, "GET", "/api/user/getall", null);
+		request(5, "GET", "/api/user/search?bornAfter=01-01-1940&bornBefore=01-01-1972", null);
+		request(7, "GET", "/api/user/getall?limit=3", null);
+		request(9, "POST", "/api/user/create", "{ \"name\": \"Boromir\", \"birthdate\": \"17-04-1959\" }");
+		request(11, "GET", "/api/user/get/1000", null);
+
+		Response all = await(3);
+		assertEquals("200", all.headers.get(":status"));
+		assertNotNull(all.headers.get("etag"));
+		List<Integer> ids = JsonPath.read(all.body(), "$[*].id");
+		assertTrue(ids.containsAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8)));
+
+		Response born = await(5);
+		assertEquals("200", born.headers.get(":status"));
+		assertEquals(Arrays.asList("Gimli", "Aragorn", "Peregrin", "Samsagaz"), JsonPath.read(born.body(), "$[*].name"));
+
+		Response page = await(7);
+		assertEquals("200", page.headers.get(":status"));
+		assertEquals(Arrays.asList(1, 2, 3), JsonPath.read(page.body(), "$.users[*].id"));
+
+		Response created = await(9);
+		assertEquals("200", created.headers.get(":status"));
+		int id = JsonPath.read(created.body(), "$.id");
+
+		assertEquals("404", await(11).headers.get(":status"));
+
+		//the new user is read back, and removed, over the same connection
+		request(13, "GET", "/api/user/get/" + id, null);
+		assertEquals("Boromir", JsonPath.read(await(13).body(), "$.name"));
+
+		request(15, "GET", "/api/user/remove/" + id, null);
+		assertEquals("200", await(15).headers.get(":status"));
+	}
+
+	/**
+	 * Sends a request on a new stream, with its body in a data frame if it has one.
+	 */
+	private void request(int stream, String method, String path, String json) throws IOException {
+
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		header(block, ":method", method);
+		header(block, ":scheme", "http");
+		header(block, ":path", path);
+		header(block, ":authority", "localhost:" + port);
+
+		if (json == null) {
+			writeFrame(HEADERS, END_HEADERS | END_STREAM, stream, block.toByteArray());
+			return;
+		}
+
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		header(block, "content-type", "application/json;charset=UTF-8");
+		header(block, "content-length", String.valueOf(body.length));
+		writeFrame(HEADERS, END_HEADERS, stream, block.toByteArray());
+		writeFrame(DATA, END_STREAM, stream, body);
+	}
+
+	/**
+	 * Adds a header to a header block as a literal never indexed, with a literal name and no Huffman coding.
+	 */
+	private static void header(ByteArrayOutputStream block, String name, String value) {
+
+		block.write(0x10);
+		for (String string : new String[] { name, value }) {
+			byte[] bytes = string.getBytes(StandardCharsets.US_ASCII);
+			block.write(bytes.length);
+			block.write(bytes, 0, bytes.length);
+		}
+	}
+
+	private void writeFrame(int type, int flags, int stream, byte[] payload) throws IOException {
+
+		ByteBuffer frame = ByteBuffer.allocate(9 + payload.length);
+		frame.put((byte) (payload.length >>> 16)).put((byte) (payload.length >>> 8)).put((byte) payload.length);
+		frame.put((byte) type).put((byte) flags).putInt(stream).put(payload);
+		out.write(frame.array());
+		out.flush();
+	}
+
+	/**
+	 * Reads the frames of the connection until a stream is answered, answering the settings and pings of the
+	 * server meanwhile.
+	 * @return the response of the stream
+	 */
+	private Response await(int stream) throws Exception {
+
+		while (!responses.containsKey(stream) || !responses.get(stream).complete) {
+
+			int length = in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+			int type = in.readUnsignedByte();
+			int flags = in.readUnsignedByte();
+			int id = in.readInt() & Integer.MAX_VALUE;
+			byte[] payload = new byte[length];
+			in.readFully(payload);
+
+			switch (type) {
+			case HEADERS:
+				decoded = new HashMap<>();
+				decoder.decode(ByteBuffer.wrap(payload));
+				responses.computeIfAbsent(id, key -> new Response()).headers.putAll(decoded);
+				break;
+			case DATA:
+				responses.computeIfAbsent(id, key -> new Response()).data.write(payload);
+				break;
+			case SETTINGS:
+				if ((flags & ACK) == 0) {
+					writeFrame(SETTINGS, ACK, 0, new byte[0]);
+				}
+				break;
+			case PING:
+				if ((flags & ACK) == 0) {
+					writeFrame(PING, ACK, 0, payload);
+				}
+				break;
+			case RST_STREAM:
+			case GOAWAY:
+				fail("The server closed stream " + id + " with a frame of type " + type);
+				break;
+			default:
+				break;
+			}
+
+			if ((type == HEADERS || type == DATA) && (flags & END_STREAM) != 0) {
+				responses.get(id).complete = true;
+			}
+		}
+
+		return responses.get(stream);
+	}
+
+	/**
+	 * @return the status line and the headers of the answer to the upgrade
+	 */
+	private String readHead() throws IOException {
+
+		StringBuilder head = new StringBuilder();
+		while (head.length() < 4 || !head.substring(head.length() - 4).equals("\r\n\r\n")) {
+			head.append((char) in.readUnsignedByte());
+		}
+		return head.toString();
+	}
+
+	/**
+	 * The response of a stream.
+	 */
+	private static final class Response {
+
+		private final Map<String, String> headers = new HashMap<>();
+
+		private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+		private boolean complete;
+
+		private String body() {
+			return new String(data.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
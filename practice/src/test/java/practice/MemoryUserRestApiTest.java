@@ -0,0 +1,190 @@
+package practice;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.jayway.jsonpath.JsonPath;
+
+import practice.provider.DataAccess;
+
+/**
+ * The REST API with the users held in memory (practice.provider=memory) over a scratch database:
+ * reads answered from memory in the right order whatever the gaps in the ids, the changes journaled to
+ * the table, and the changes refused while the journal cannot be written.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "practice.provider=memory", "practice.datasource.url=jdbc:sqlite:target/memory-test.db" })
+@DirtiesContext
+public class MemoryUserRestApiTest {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private DataAccess dataAccess;
+
+	@Test
+	public void testReads() throws Exception {
+
+		//getall in id order
+		List<Integer> ids = JsonPath.read(restTemplate.getForObject("/api/user/getall", String.class), "$[*].id");
+		assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+
+		//the births in the range by date, leaving the bounds out
+		assertEquals(HttpStatus.NO_CONTENT, restTemplate.getForEntity(
+				"/api/user/search?bornAfter=13-01-1977&bornBefore=28-01-1981", String.class).getStatusCode());
+
+		String born = restTemplate.getForObject("/api/user/search?bornAfter=01-01-1940&bornBefore=01-01-1972", String.class);
+		assertEquals(Arrays.asList("Gimli", "Aragorn", "Peregrin", "Samsagaz"), JsonPath.read(born, "$[*].name"));
+
+		born = restTemplate.getForObject("/api/user/search?bornAfter=01-01-1940&bornBefore=01-01-1972&limit=2", String.class);
+		assertEquals(Arrays.asList("Gimli", "Aragorn"), JsonPath.read(born, "$[*].name"));
+
+		//the provider calls are recorded under the memory provider
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/user/get/3", String.class).getStatusCode());
+		assertThat(restTemplate.getForObject("/metrics", String.class),
+				containsString("practice_provider_call_duration_seconds_count{provider=\"MemoryUserProvider\",method=\"find\",}"));
+	}
+
+	@Test
+	public void testChanges() throws Exception {
+
+		ResponseEntity<String> created = create("Boromir", "17-04-1959");
+		assertEquals(HttpStatus.OK, created.getStatusCode());
+		int id = JsonPath.read(created.getBody(), "$.id");
+
+		//an update moves the user in the births order
+		assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/user/update",
+				json("{ \"id\": " + id + ", \"name\": \"Boromir\", \"birthdate\": \"17-04-1979\" }"), String.class).getStatusCode());
+		String born = restTemplate.getForObject("/api/user/search?bornAfter=01-01-1978&bornBefore=01-01-1980", String.class);
+		assertEquals(Arrays.asList("Boromir"), JsonPath.read(born, "$[*].name"));
+
+		//and every change reaches the table
+		awaitJournal();
+		Map<String, Object> row = dataAccess.reader().queryForMap("select name, birthdate from users where id = ?", id);
+		assertEquals("Boromir", row.get("name"));
+
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/user/remove/" + id, String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/api/user/get/" + id, String.class).getStatusCode());
+		awaitJournal();
+		assertEquals(0, (int) dataAccess.reader().queryForObject("select count(*) from users where id = ?", Integer.class, id));
+	}
+
+	@Test
+	public void testIdGaps() throws Exception {
+
+		int first = JsonPath.read(create("Celeborn", "02-02-1902").getBody(), "$.id");
+		int second = JsonPath.read(create("Haldir", "03-03-1903").getBody(), "$.id");
+		int third = JsonPath.read(create("Rumil", "04-04-1904").getBody(), "$.id");
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/user/remove/" + second, String.class).getStatusCode());
+
+		//the pages and getall skip the removed id
+		String page = restTemplate.getForObject("/api/user/getall?after=" + first + "&limit=1", String.class);
+		assertEquals(Arrays.asList(third), JsonPath.read(page, "$.users[*].id"));
+		List<Integer> ids = JsonPath.read(restTemplate.getForObject("/api/user/getall", String.class), "$[*].id");
+		assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+		assertThat(ids, hasItems(first, third));
+		assertThat(ids, not(hasItem(second)));
+
+		//and once the greatest id is removed, the next user takes the id after the greatest remaining one
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/user/remove/" + third, String.class).getStatusCode());
+		assertEquals(second, (int) JsonPath.read(create("Orophin", "05-05-1905").getBody(), "$.id"));
+	}
+
+	@Test
+	public void testJournalFailure() throws Exception {
+
+		//the table is taken away, so the journal cannot be written
+		dataAccess.write(jdbcTemplate -> {
+			jdbcTemplate.execute("alter table users rename to users_away");
+			return null;
+		});
+
+		try {
+
+			//the change is applied to memory, and once its batch fails the next ones are refused
+			assertEquals(HttpStatus.OK, create("Faramir", "01-03-1925").getStatusCode());
+
+			ResponseEntity<String> refused = null;
+			for (int i = 0; i < 100; i++) {
+				refused = create("Eowyn", "12-06-1920");
+				if (refused.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+					break;
+				}
+				Thread.sleep(50);
+			}
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, refused.getStatusCode());
+
+		} finally {
+			dataAccess.write(jdbcTemplate -> {
+				jdbcTemplate.execute("alter table users_away rename to users");
+				return null;
+			});
+		}
+
+		//the failed batch is written once the table is back, and the changes are accepted again
+		ResponseEntity<String> accepted = null;
+		for (int i = 0; i < 200; i++) {
+			accepted = create("Eomer", "03-03-1921");
+			if (accepted.getStatusCode() == HttpStatus.OK) {
+				break;
+			}
+			Thread.sleep(50);
+		}
+		assertEquals(HttpStatus.OK, accepted.getStatusCode());
+
+		awaitJournal();
+		assertEquals(1, (int) dataAccess.reader().queryForObject("select count(*) from users where name = 'Faramir'", Integer.class));
+	}
+
+	/**
+	 * Waits until the table holds the same users as memory.
+	 */
+	private void awaitJournal() throws InterruptedException {
+
+		int users = 0;
+		int rows = -1;
+		for (int i = 0; i < 100 && users != rows; i++) {
+			Thread.sleep(50);
+			users = JsonPath.read(restTemplate.getForObject("/api/user/getall", String.class), "$.length()");
+			rows = dataAccess.reader().queryForObject("select count(*) from users", Integer.class);
+		}
+		assertEquals(users, rows);
+	}
+
+	private ResponseEntity<String> create(String name, String birthdate) {
+		return restTemplate.postForEntity("/api/user/create",
+				json("{ \"name\": \"" + name + "\", \"birthdate\": \"" + birthdate + "\" }"), String.class);
+	}
+
+	private static HttpEntity<String> json(String body) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		return new HttpEntity<>(body, headers);
+	}
+}
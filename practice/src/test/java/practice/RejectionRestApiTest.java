@@ -0,0 +1,93 @@
+package practice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.jayway.jsonpath.JsonPath;
+
+import practice.controller.MessageResolver;
+import practice.executor.ControlledExecutor;
+
+/**
+ * The requests shed by an overloaded pool, through the connector: a read pool of a single thread and a
+ * single queued task, over a scratch database.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "practice.threads=platform",
+		"practice.async.read.core-size=1", "practice.async.read.max-size=1", "practice.async.read.queue-capacity=1",
+		"practice.async.retry-after=7", "practice.datasource.url=jdbc:sqlite:target/rejection-test.db" })
+@DirtiesContext
+public class RejectionRestApiTest {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	@Qualifier("readExecutor")
+	private ControlledExecutor readExecutor;
+
+	@Autowired
+	private MessageResolver messageResolver;
+
+	@Test
+	public void testOverloaded() throws Exception {
+
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		//the only thread is held busy and the only place in the queue is taken
+		readExecutor.execute(() -> {
+			running.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+		readExecutor.execute(() -> { });
+
+		try {
+
+			//so a read is answered 503 at once, telling when to retry
+			long rejections = readExecutor.getRejections();
+			ResponseEntity<String> response = restTemplate.getForEntity("/api/user/search?bornBefore=01-01-2100", String.class);
+
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+			assertEquals("7", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+			assertEquals(messageResolver.resolve("error.overloaded", null, Locale.ENGLISH), JsonPath.read(response.getBody(), "$.message"));
+			assertEquals(rejections + 1, readExecutor.getRejections());
+
+		} finally {
+			release.countDown();
+		}
+
+		//and served again once the pool is free
+		ResponseEntity<String> response = null;
+		for (int i = 0; i < 100; i++) {
+			response = restTemplate.getForEntity("/api/user/search?bornBefore=01-01-2100", String.class);
+			if (response.getStatusCode() != HttpStatus.SERVICE_UNAVAILABLE) {
+				break;
+			}
+			Thread.sleep(10);
+		}
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+	}
+}
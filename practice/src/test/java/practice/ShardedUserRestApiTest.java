@@ -0,0 +1,212 @@
+package practice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.jayway.jsonpath.JsonPath;
+
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+
+/**
+ * The REST API with the users spread over three shards (practice.provider=sharded) of a scratch database:
+ * each user read and written in the shard of its id, the reads over all the shards merged in order, and a
+ * batch failing in one shard only.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "practice.provider=sharded", "practice.sharding.shards=3",
+				"practice.datasource.url=jdbc:sqlite:target/sharded-test.db" })
+@DirtiesContext
+public class ShardedUserRestApiTest {
+
+	private static final int SHARDS = 3;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private IUserProvider provider;
+
+	@Test
+	public void testRouting() throws Exception {
+
+		//the initial users are spread by id
+		for (int id = 1; id <= 8; id++) {
+			int expected = id;
+			assertEquals(1, (int) inShard(id, jdbcTemplate -> jdbcTemplate.queryForObject(
+					"select count(*) from users where id = ?", Integer.class, expected)));
+		}
+		String legolas = restTemplate.getForObject("/api/user/get/3", String.class);
+		assertEquals("Legolas", JsonPath.read(legolas, "$.name"));
+
+		//a new user lands in the shard of its id, and only there
+		ResponseEntity<String> created = create("Boromir", "17-04-1929");
+		assertEquals(HttpStatus.OK, created.getStatusCode());
+		int id = JsonPath.read(created.getBody(), "$.id");
+		assertEquals("Boromir", name(id));
+		for (int shard = 0; shard < SHARDS; shard++) {
+			if (shard != id % SHARDS) {
+				assertEquals(0, (int) query(shard, jdbcTemplate -> jdbcTemplate.queryForObject(
+						"select count(*) from users where id = ?", Integer.class, id)));
+			}
+		}
+
+		//and is updated and removed there
+		assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/user/update",
+				json("{ \"id\": " + id + ", \"name\": \"Boromir\", \"birthdate\": \"17-04-1928\" }"), String.class).getStatusCode());
+		assertEquals(-15234L, (long) inShard(id, jdbcTemplate -> jdbcTemplate.queryForObject(
+				"select birthdate from users where id = ?", Long.class, id)));
+
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/user/remove/" + id, String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/api/user/get/" + id, String.class).getStatusCode());
+		assertEquals(null, name(id));
+	}
+
+	@Test
+	public void testOrder() throws Exception {
+
+		//getall, the pages and the provider read every shard and merge them in id order
+		List<Integer> ids = JsonPath.read(restTemplate.getForObject("/api/user/getall", String.class), "$[*].id");
+		assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+		assertTrue(ids.containsAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8)));
+
+		assertEquals(ids, provider.findAll().stream().map(UserDb::getId).collect(Collectors.toList()));
+
+		List<Integer> paged = new ArrayList<>();
+		Integer next = 0;
+		while (next != null) {
+			String page = restTemplate.getForObject("/api/user/getall?after=" + next + "&limit=3", String.class);
+			List<Integer> pageIds = JsonPath.read(page, "$.users[*].id");
+			assertTrue(pageIds.size() <= 3);
+			paged.addAll(pageIds);
+			next = JsonPath.read(page, "$.next");
+		}
+		assertEquals(ids, paged);
+
+		assertEquals(Arrays.asList(1, 2, 3), provider.findAfter(0, 3).stream().map(UserDb::getId).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+
+		//the births in the range of every shard, merged by date and cut to the limit
+		String born = restTemplate.getForObject("/api/user/search?bornAfter=01-01-1940&bornBefore=01-01-1972", String.class);
+		assertEquals(Arrays.asList("Gimli", "Aragorn", "Peregrin", "Samsagaz"), JsonPath.read(born, "$[*].name"));
+
+		born = restTemplate.getForObject("/api/user/search?bornAfter=01-01-1940&bornBefore=01-01-1972&limit=2", String.class);
+		assertEquals(Arrays.asList("Gimli", "Aragorn"), JsonPath.read(born, "$[*].name"));
+
+		assertEquals(HttpStatus.NO_CONTENT, restTemplate.getForEntity(
+				"/api/user/search?bornAfter=13-01-1977&bornBefore=28-01-1981", String.class).getStatusCode());
+
+		//the names of every shard
+		String named = restTemplate.getForObject("/api/user/search?name=legol", String.class);
+		assertEquals(Arrays.asList("Legolas"), JsonPath.read(named, "$.users[*].name"));
+	}
+
+	@Test
+	public void testBatchFailure() throws Exception {
+
+		//three new users take consecutive ids, one per shard, and the table of one shard is taken away
+		int failing = 1;
+		query(failing, jdbcTemplate -> {
+			jdbcTemplate.execute("alter table users rename to users_away");
+			return null;
+		});
+
+		ResponseEntity<String> failed;
+		try {
+			failed = restTemplate.postForEntity("/api/user/create/batch", json("[ { \"name\": \"Haldir\", \"birthdate\": \"01-01-1921\" }, "
+					+ "{ \"name\": \"Celeborn\", \"birthdate\": \"02-01-1921\" }, "
+					+ "{ \"name\": \"Galadriel\", \"birthdate\": \"03-01-1921\" } ]"), String.class);
+		} finally {
+			query(failing, jdbcTemplate -> {
+				jdbcTemplate.execute("alter table users_away rename to users");
+				return null;
+			});
+		}
+
+		//the batch fails, but it is atomic within each shard only: the parts of the other shards are written
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, failed.getStatusCode());
+
+		String users = restTemplate.getForObject("/api/user/getall", String.class);
+		List<Integer> written = JsonPath.read(users, "$[?(@.name in ['Haldir', 'Celeborn', 'Galadriel'])].id");
+		assertEquals(2, written.size());
+		for (int id : written) {
+			assertNotEquals(failing, id % SHARDS);
+			assertEquals(1, (int) inShard(id, jdbcTemplate -> jdbcTemplate.queryForObject(
+					"select count(*) from users where id = ?", Integer.class, id)));
+		}
+
+		//and the shard takes writes again
+		ResponseEntity<String> created = restTemplate.postForEntity("/api/user/create/batch",
+				json("[ { \"name\": \"Elrond\", \"birthdate\": \"04-01-1921\" }, { \"name\": \"Arwen\", \"birthdate\": \"05-01-1921\" }, "
+						+ "{ \"name\": \"Glorfindel\", \"birthdate\": \"06-01-1921\" } ]"), String.class);
+		assertEquals(HttpStatus.OK, created.getStatusCode());
+		assertEquals(Arrays.asList(200, 200, 200), JsonPath.read(created.getBody(), "$[*].status"));
+	}
+
+	/**
+	 * @return the name of a user read from its shard, null if it is not there
+	 */
+	private String name(int id) {
+		return inShard(id, jdbcTemplate -> jdbcTemplate.queryForList("select name from users where id = ?", String.class, id)
+				.stream().findFirst().orElse(null));
+	}
+
+	private <R> R inShard(int id, Function<JdbcTemplate, R> work) {
+		return query(id % SHARDS, work);
+	}
+
+	/**
+	 * Runs a statement on a shard through a connection of its own.
+	 */
+	private static <R> R query(int shard, Function<JdbcTemplate, R> work) {
+
+		SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:sqlite:target/sharded-test.db-shard" + shard, true);
+		dataSource.setDriverClassName("org.sqlite.JDBC");
+		try {
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			jdbcTemplate.execute("pragma busy_timeout = 5000");
+			return work.apply(jdbcTemplate);
+		} finally {
+			dataSource.destroy();
+		}
+	}
+
+	private ResponseEntity<String> create(String name, String birthdate) {
+		return restTemplate.postForEntity("/api/user/create",
+				json("{ \"name\": \"" + name + "\", \"birthdate\": \"" + birthdate + "\" }"), String.class);
+	}
+
+	private static HttpEntity<String> json(String body) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		return new HttpEntity<>(body, headers);
+	}
+}
@@ -0,0 +1,128 @@
+package practice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import practice.compression.ContentEncoding;
+import practice.service.UserSnapshot;
+
+/**
+ * Getall served from the snapshot (practice.snapshot.enabled=true) over a scratch database, through the
+ * connector: the variant of the negotiated encoding with its length, the Vary header and the 304 answers.
+ * The minimum size is lowered so the few test users are compressed.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "practice.snapshot.enabled=true",
+		"practice.compression.min-size=1", "practice.datasource.url=jdbc:sqlite:target/snapshot-test.db" })
+@DirtiesContext
+public class SnapshotUserRestApiTest {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private UserSnapshot userSnapshot;
+
+	@Before
+	public void init() throws InterruptedException {
+
+		for (int i = 0; i < 200 && userSnapshot.get() == null; i++) {
+			Thread.sleep(10);
+		}
+		assertNotNull(userSnapshot.get());
+	}
+
+	@Test
+	public void testEncodings() throws Exception {
+
+		UserSnapshot.Snapshot snapshot = userSnapshot.get();
+
+		//the variant of the encoding the client prefers is sent as it was compressed, with its own length
+		ResponseEntity<byte[]> response = getAll("gzip", null);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+		assertEquals(MediaType.APPLICATION_JSON_UTF8, response.getHeaders().getContentType());
+		assertEquals("\"" + snapshot.getTag() + "\"", response.getHeaders().getETag());
+		assertArrayEquals(snapshot.getEncoded(ContentEncoding.GZIP), response.getBody());
+		assertEquals(response.getBody().length, response.getHeaders().getContentLength());
+		assertArrayEquals(snapshot.getJson(), StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(response.getBody()))));
+
+		response = getAll("gzip;q=0.5, deflate", null);
+		assertEquals("deflate", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertArrayEquals(snapshot.getEncoded(ContentEncoding.DEFLATE), response.getBody());
+		assertEquals(response.getBody().length, response.getHeaders().getContentLength());
+		assertArrayEquals(snapshot.getJson(), StreamUtils.copyToByteArray(new InflaterInputStream(new ByteArrayInputStream(response.getBody()))));
+
+		//and the JSON itself to the clients accepting no encoding, varying all the same
+		for (String acceptEncoding : new String[] { null, "br" }) {
+			response = getAll(acceptEncoding, null);
+			assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+			assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+			assertArrayEquals(snapshot.getJson(), response.getBody());
+			assertEquals(snapshot.getJson().length, response.getHeaders().getContentLength());
+		}
+	}
+
+	@Test
+	public void testNotModified() throws Exception {
+
+		ResponseEntity<byte[]> response = getAll("gzip", null);
+		String eTag = response.getHeaders().getETag();
+
+		response = getAll("gzip", eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+		assertEquals(eTag, response.getHeaders().getETag());
+		assertNull(response.getBody());
+
+		//a change brings a new snapshot, with its own tag
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/user/create",
+				new HttpEntity<>("{ \"name\": \"Boromir\", \"birthdate\": \"17-04-1959\" }", headers), String.class).getStatusCode());
+
+		for (int i = 0; i < 200 && userSnapshot.get() != null && ("\"" + userSnapshot.get().getTag() + "\"").equals(eTag); i++) {
+			Thread.sleep(10);
+		}
+
+		response = getAll("gzip", eTag);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("\"" + userSnapshot.get().getTag() + "\"", response.getHeaders().getETag());
+		assertArrayEquals(userSnapshot.get().getEncoded(ContentEncoding.GZIP), response.getBody());
+	}
+
+	private ResponseEntity<byte[]> getAll(String acceptEncoding, String ifNoneMatch) {
+
+		HttpHeaders headers = new HttpHeaders();
+		if (acceptEncoding != null) {
+			headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		if (ifNoneMatch != null) {
+			headers.setIfNoneMatch(ifNoneMatch);
+		}
+		return restTemplate.exchange("/api/user/getall", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+	}
+}
@@ -0,0 +1,99 @@
+package practice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.jayway.jsonpath.JsonPath;
+
+import practice.service.UserView;
+
+/**
+ * The REST API without the users view (practice.view.enabled=false) over a scratch database: getall streams
+ * the users from the table a few rows per round trip, with its tag, and answers 204 once the table is empty.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "practice.view.enabled=false", "practice.user.fetch-size=3",
+				"practice.datasource.url=jdbc:sqlite:target/streamed-test.db" })
+@DirtiesContext
+public class StreamedUserRestApiTest {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private UserView view;
+
+	@Test
+	public void testGetAll() throws Exception {
+
+		//there is no view, so the users are read from the table
+		assertNull(view.get());
+
+		//all the users in id order, over several fetches
+		ResponseEntity<String> all = restTemplate.getForEntity("/api/user/getall", String.class);
+		assertEquals(HttpStatus.OK, all.getStatusCode());
+		List<Integer> ids = JsonPath.read(all.getBody(), "$[*].id");
+		assertEquals(IntStream.rangeClosed(1, 8).boxed().collect(Collectors.toList()), ids);
+		assertEquals("Frodo", JsonPath.read(all.getBody(), "$[0].name"));
+		assertEquals("28-01-1981", JsonPath.read(all.getBody(), "$[0].birthdate"));
+
+		//the tag is kept until a change
+		String eTag = all.getHeaders().getETag();
+		assertNotNull(eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED, getAll(eTag).getStatusCode());
+
+		ResponseEntity<String> created = restTemplate.postForEntity("/api/user/create",
+				json("{ \"name\": \"Boromir\", \"birthdate\": \"17-04-1959\" }"), String.class);
+		assertEquals(HttpStatus.OK, created.getStatusCode());
+		int id = JsonPath.read(created.getBody(), "$.id");
+
+		all = getAll(eTag);
+		assertEquals(HttpStatus.OK, all.getStatusCode());
+		assertNotEquals(eTag, all.getHeaders().getETag());
+		assertEquals(9, (int) JsonPath.read(all.getBody(), "$.length()"));
+		assertEquals("Boromir", JsonPath.read(all.getBody(), "$[8].name"));
+
+		//and an empty table is no content
+		List<Integer> everyone = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, id);
+		assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/user/remove/batch", json(everyone.toString()), String.class)
+				.getStatusCode());
+		assertEquals(HttpStatus.NO_CONTENT, restTemplate.getForEntity("/api/user/getall", String.class).getStatusCode());
+	}
+
+	private ResponseEntity<String> getAll(String eTag) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		return restTemplate.exchange("/api/user/getall", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	private static HttpEntity<String> json(String body) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		return new HttpEntity<>(body, headers);
+	}
+}
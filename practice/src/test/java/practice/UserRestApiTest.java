@@ -1,27 +1,90 @@
 package practice;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.embedded.LocalServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultHandler;
+import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+
+import practice.compression.CompressionSettings;
+import practice.compression.ContentEncoding;
+import practice.controller.MessageResolver;
+import practice.exception.ProcessException;
+import practice.executor.ControlledExecutor;
+import practice.provider.DataAccess;
+import practice.provider.DataSourceSettings;
+import practice.provider.IUserProvider;
+import practice.provider.SchemaMigrations;
+import practice.provider.UserDb;
+import practice.service.UserSnapshot;
+import practice.service.UserVersions;
+import practice.service.UserView;
+import practice.utils.DateCodec;
+
 @RunWith(SpringRunner.class)
-@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "practice.cache.enabled=true")
 public class UserRestApiTest {
 
 	@Autowired
@@ -29,16 +92,91 @@ public class UserRestApiTest {
 	
 	private MockMvc mockMvc;
 	
+	@Autowired
+	private TestRestTemplate restTemplate;
+	
+	@LocalServerPort
+	private int port;
+	
+	@Autowired
+	private IUserProvider provider;
+	
+	@Autowired
+	private UserVersions versions;
+	
+	@Autowired
+	private UserView view;
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Autowired
+	private MessageResolver messageResolver;
+	
+	@Autowired
+	private CompressionSettings compressionSettings;
+	
+	@Autowired
+	private DataAccess dataAccess;
+	
+	@Autowired
+	@Qualifier("importExecutor")
+	private ControlledExecutor importExecutor;
+	
 	@Before
 	public void init() {
 		this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
 	}
 	
+	/**
+	 * Performs a request answered asynchronously and dispatches its result.
+	 */
+	private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+		
+		MvcResult mvcResult = this.mockMvc.perform(requestBuilder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		
+		return this.mockMvc.perform(asyncDispatch(mvcResult));
+	}
+	
+	/**
+	 * Performs a request whose body is streamed asynchronously, waiting for the body to be written.
+	 */
+	private ResultActions performStreamed(RequestBuilder requestBuilder) throws Exception {
+		
+		MvcResult mvcResult = this.mockMvc.perform(requestBuilder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		
+		// the body is written to the original response, so the expectations are checked on it
+		mvcResult.getAsyncResult();
+		
+		return new ResultActions() {
+			
+			@Override
+			public ResultActions andExpect(ResultMatcher matcher) throws Exception {
+				matcher.match(mvcResult);
+				return this;
+			}
+			
+			@Override
+			public ResultActions andDo(ResultHandler handler) throws Exception {
+				handler.handle(mvcResult);
+				return this;
+			}
+			
+			@Override
+			public MvcResult andReturn() {
+				return mvcResult;
+			}
+		};
+	}
+	
 	@Test
 	public void testGetAllUsers() throws Exception {
 		
-		this.mockMvc
-				.perform(get("/api/user/getall").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+		performStreamed(get("/api/user/getall").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
 				.andExpect(jsonPath("$", hasSize(8)))
@@ -47,6 +185,147 @@ public class UserRestApiTest {
 				.andExpect(jsonPath("$[5].birthdate", is("08-12-1976")));
 	}
 	
+	@Test
+	public void testGetAllSnapshot() throws Exception {
+		
+		//a snapshot that cannot be served a moment after a change, rebuilt by hand
+		UserSnapshot snapshot = new UserSnapshot(false, 0, 0, provider, versions, objectMapper);
+		assertNull(snapshot.get());
+		
+		snapshot.rebuild();
+		
+		//it holds the same bytes getall streams, plain and compressed
+		byte[] streamed = performStreamed(get("/api/user/getall").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andReturn().getResponse().getContentAsByteArray();
+		
+		assertArrayEquals(streamed, snapshot.get().getJson());
+		assertArrayEquals(streamed, StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(snapshot.get().getGzip()))));
+		assertArrayEquals(streamed, StreamUtils.copyToByteArray(
+				new InflaterInputStream(new ByteArrayInputStream(snapshot.get().getEncoded(ContentEncoding.DEFLATE)))));
+		assertEquals(JsonPath.<Integer>read(new String(streamed, StandardCharsets.UTF_8), "$.length()").intValue(), snapshot.get().getCount());
+		
+		//a change makes it stale until it is rebuilt
+		snapshot.updated(provider.find(1));
+		assertNull(snapshot.get());
+		
+		snapshot.rebuild();
+		assertNotNull(snapshot.get());
+	}
+	
+	@Test
+	public void testUsersView() throws Exception {
+		
+		//the view holds the same users as the table
+		UserView.Version version = view.get();
+		assertNotNull(version);
+		
+		List<Integer> ids = new ArrayList<>();
+		version.forEach(userDb -> ids.add(userDb.getId()));
+		assertEquals(provider.findAll().stream().map(UserDb::getId).collect(Collectors.toList()), ids);
+		
+		//a change publishes a new version and leaves the previous one as it was
+		UserDb before = version.get(1);
+		UserDb updated = provider.update(new UserDb(before.getId(), before.getName(), before.getBirthdate()));
+		
+		UserView.Version next = view.get();
+		assertTrue(next.getNumber() > version.getNumber());
+		assertTrue(next.get(1) == updated);
+		assertTrue(version.get(1) == before);
+	}
+	
+	@Test
+	public void testGetUsersPage() throws Exception {
+		
+		//the first page returns the cursor for the next one
+		performAsync(get("/api/user/getall?limit=3").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(jsonPath("$.users", hasSize(3)))
+				.andExpect(jsonPath("$.users[0].id", is(1)))
+				.andExpect(jsonPath("$.users[2].id", is(3)))
+				.andExpect(jsonPath("$.next", is(3)));
+		
+		performAsync(get("/api/user/getall?after=3&limit=2").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.users", hasSize(2)))
+				.andExpect(jsonPath("$.users[0].id", is(4)))
+				.andExpect(jsonPath("$.next", is(5)));
+		
+		//past the last user there is nothing to return
+		performAsync(get("/api/user/getall?after=1000&limit=2").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isNoContent());
+		
+		//the limit must be within the allowed range
+		this.mockMvc
+				.perform(get("/api/user/getall?limit=0").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isBadRequest());
+	}
+	
+	@Test
+	public void testSearchUsersByBirthdate() throws Exception {
+
+		//the users born within the range are returned ordered by birth date
+		performAsync(get("/api/user/search?bornAfter=01-01-1976&bornBefore=01-01-1978").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].name", is("Meriadoc")))
+				.andExpect(jsonPath("$[0].birthdate", is("08-12-1976")))
+				.andExpect(jsonPath("$[1].name", is("Legolas")));
+
+		//a single bound leaves the range open on the other side
+		performAsync(get("/api/user/search?bornBefore=01-01-1945&limit=1").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].name", is("Gandalf")));
+
+		performAsync(get("/api/user/search?bornAfter=01-01-2100").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isNoContent());
+
+		//at least one valid bound is required
+		this.mockMvc
+				.perform(get("/api/user/search").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isBadRequest());
+
+		this.mockMvc
+				.perform(get("/api/user/search?bornAfter=1976-01-01").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void testSearchUsersByName() throws Exception {
+
+		//prefixes and parts of the name are found, ignoring case
+		this.mockMvc.perform(get("/api/user/search?name=ARA").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(jsonPath("$.users[0].name", is("Aragorn")))
+				.andExpect(jsonPath("$.users[0].birthdate", is("20-10-1958")));
+
+		this.mockMvc.perform(get("/api/user/search?name=gor").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.users[0].name", is("Aragorn")));
+
+		//misspelled names are found too, after the exact matches
+		this.mockMvc.perform(get("/api/user/search?name=Legols").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.users[0].name", is("Legolas")));
+
+		//the matches are paged
+		this.mockMvc.perform(get("/api/user/search?name=g&limit=1").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.users", hasSize(1)))
+				.andExpect(jsonPath("$.users[0].name", is("Gimli")))
+				.andExpect(jsonPath("$.total", is(2)))
+				.andExpect(jsonPath("$.next", is(1)));
+
+		this.mockMvc.perform(get("/api/user/search?name=zzzz").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isNoContent());
+
+		this.mockMvc.perform(get("/api/user/search").param("name", " ").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isBadRequest());
+	}
+
 	@Test
 	public void testGetOneUser() throws Exception {
 		
@@ -69,6 +348,63 @@ public class UserRestApiTest {
 		
 	}
 	
+	@Test
+	public void testErrorMessages() throws Exception {
+		
+		//the messages are resolved for the locale of the request, with their arguments
+		this.mockMvc.perform(get("/api/user/get/0").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message", is("The id value should be greater than 0")));
+		this.mockMvc.perform(get("/api/user/getall").param("limit", "0").locale(new Locale("es"))
+				.accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message", is("El límite de página debe estar entre 1 y 1000")));
+		
+		//an unknown code is returned as it is
+		assertEquals("Some failure", messageResolver.resolve("Some failure", null, Locale.ENGLISH));
+		
+		//only the failures of the server keep a stack trace
+		assertEquals(0, new ProcessException(HttpStatus.BAD_REQUEST, "error.id.minsize").getStackTrace().length);
+		assertEquals(0, new ProcessException(HttpStatus.SERVICE_UNAVAILABLE, "error.timeout").getStackTrace().length);
+		assertThat(new ProcessException(HttpStatus.INTERNAL_SERVER_ERROR, "error.internal").getStackTrace().length, greaterThan(0));
+	}
+	
+	@Test
+	public void testConditionalGets() throws Exception {
+		
+		//the current version of a user is answered with its tag, and not sent again while it does not change
+		String userTag = this.mockMvc.perform(get("/api/user/get/6").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, startsWith("\"")))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		
+		this.mockMvc.perform(get("/api/user/get/6").header(HttpHeaders.IF_NONE_MATCH, userTag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, userTag))
+				.andExpect(content().string(""));
+		
+		//the same holds for all the users
+		String allTag = performStreamed(get("/api/user/getall").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		
+		this.mockMvc.perform(get("/api/user/getall").header(HttpHeaders.IF_NONE_MATCH, allTag))
+				.andExpect(status().isNotModified());
+		
+		//a change of the user changes both tags
+		this.mockMvc.perform(post("/api/user/update").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+				.content("{ \"id\": 6, \"name\": \"Meriadoc\", \"birthdate\": \"08-12-1976\" }"))
+				.andExpect(status().isOk());
+		
+		this.mockMvc.perform(get("/api/user/get/6").header(HttpHeaders.IF_NONE_MATCH, userTag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, not(userTag)));
+		
+		performStreamed(get("/api/user/getall").header(HttpHeaders.IF_NONE_MATCH, allTag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, not(allTag)));
+	}
+	
 	@Test
 	public void testCreateUser() throws Exception {
 		
@@ -147,7 +483,7 @@ public class UserRestApiTest {
 				.andExpect(status().isBadRequest())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE));
 		
-		this.mockMvc.perform(get("/api/user/remove/7").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+		performAsync(get("/api/user/remove/7").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
 				.andExpect(status().isOk());
 		
 		//after removal, get user should return not found state
@@ -156,4 +492,443 @@ public class UserRestApiTest {
 		
 
 	}
+	
+	@Test
+	public void testCacheStatistics() throws Exception {
+		
+		//the second read of the same user is answered from the cache
+		this.mockMvc.perform(get("/api/user/get/1").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk());
+		this.mockMvc.perform(get("/api/user/get/1").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk());
+		
+		this.mockMvc.perform(get("/api/stats/cache").accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enabled", is(true)))
+				.andExpect(jsonPath("$.hits", greaterThan(0)));
+	}
+	
+	@Test
+	public void testMetrics() throws Exception {
+		
+		//the requests served by the server are recorded by mapping, along with the provider calls and the resources
+		assertEquals(HttpStatus.OK, this.restTemplate.getForEntity("/api/user/get/3", String.class).getStatusCode());
+		assertEquals(HttpStatus.OK, this.restTemplate.getForEntity("/api/user/getall", String.class).getStatusCode());
+		
+		ResponseEntity<String> metrics = this.restTemplate.getForEntity("/metrics", String.class);
+		
+		assertEquals(HttpStatus.OK, metrics.getStatusCode());
+		assertThat(metrics.getBody(), containsString(
+				"practice_http_request_duration_seconds_count{method=\"GET\",uri=\"/api/user/get/{id}\",status=\"200\",}"));
+		assertThat(metrics.getBody(), containsString(
+				"practice_http_request_duration_seconds_count{method=\"GET\",uri=\"/api/user/getall\",status=\"200\",}"));
+		assertThat(metrics.getBody(), containsString("practice_provider_call_duration_seconds_count{provider=\"UserProvider\",method=\"find\",}"));
+		assertThat(metrics.getBody(), containsString("practice_async_executor_queue_capacity{pool=\"read\",} 500.0"));
+		assertThat(metrics.getBody(), containsString("practice_jdbc_pending_writes"));
+		assertThat(metrics.getBody(), containsString("practice_logging_dropped_events_total{appender=\"ASYNC\",}"));
+		
+		//the info events of the requests are sampled, so more of them are left out with every request
+		double sampledOut = metric(metrics.getBody(), "practice_logging_sampled_out_events_total");
+		for (int i = 0; i < 20; i++) {
+			assertEquals(HttpStatus.OK, this.restTemplate.getForEntity("/api/user/getall", String.class).getStatusCode());
+		}
+		
+		metrics = this.restTemplate.getForEntity("/metrics", String.class);
+		assertThat(metric(metrics.getBody(), "practice_logging_sampled_out_events_total"), greaterThan(sampledOut));
+	}
+	
+	/**
+	 * @return the value of a metric without labels in the text exposition format
+	 */
+	private static double metric(String body, String name) {
+		
+		for (String line : body.split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return Double.parseDouble(line.substring(name.length() + 1).trim());
+			}
+		}
+		
+		fail("Metric " + name + " not found");
+		return 0;
+	}
+	
+	@Test
+	public void testBatchOperations() throws Exception {
+		
+		//invalid users are reported without preventing the creation of the valid ones
+		String jsonUsersToCreate = "[ { \"name\": \"Faramir\", \"birthdate\": \"01-03-1975\" }, "
+				+ "{ \"birthdate\": \"01-03-1975\" }, "
+				+ "{ \"name\": \"Eowyn\", \"birthdate\": \"12-06-1980\" } ]";
+		
+		MvcResult created = this.mockMvc.perform(post("/api/user/create/batch").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+				.content(jsonUsersToCreate))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(3)))
+				.andExpect(jsonPath("$[0].status", is(200)))
+				.andExpect(jsonPath("$[0].user.name", is("Faramir")))
+				.andExpect(jsonPath("$[1].status", is(400)))
+				.andExpect(jsonPath("$[2].status", is(200)))
+				.andExpect(jsonPath("$[2].user.birthdate", is("12-06-1980")))
+				.andReturn();
+		
+		int faramir = JsonPath.read(created.getResponse().getContentAsString(), "$[0].user.id");
+		int eowyn = JsonPath.read(created.getResponse().getContentAsString(), "$[2].user.id");
+		
+		String jsonUsersToUpdate = "[ { \"id\": " + faramir + ", \"name\": \"Faramir\", \"birthdate\": \"02-03-1975\" }, "
+				+ "{ \"id\": 500, \"name\": \"Nobody\", \"birthdate\": \"02-03-1975\" } ]";
+		
+		this.mockMvc.perform(post("/api/user/update/batch").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+				.content(jsonUsersToUpdate))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].status", is(200)))
+				.andExpect(jsonPath("$[0].user.birthdate", is("02-03-1975")))
+				.andExpect(jsonPath("$[1].status", is(404)));
+		
+		this.mockMvc.perform(post("/api/user/remove/batch").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+				.content("[ " + faramir + ", " + eowyn + ", 0 ]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].status", is(200)))
+				.andExpect(jsonPath("$[1].status", is(200)))
+				.andExpect(jsonPath("$[2].status", is(400)));
+		
+		this.mockMvc.perform(get("/api/user/get/" + faramir).accept(MediaType.APPLICATION_JSON_UTF8_VALUE))
+				.andExpect(status().isNotFound());
+	}
+	
+	@Test
+	public void testImportUsers() throws Exception {
+		
+		//a CSV file with its header, a quoted name, and lines with errors
+		String csv = "name,birthdate\r\n"
+				+ "Faramir,02-03-1975\r\n"
+				+ "\"Eomer, son of Eomund\",12-09-1972\r\n"
+				+ "\r\n"
+				+ "Denethor,1930-02-12\r\n"
+				+ ",01-01-1950\r\n"
+				+ "Theoden\r\n";
+		
+		performAsync(post("/api/user/import").contentType("text/csv").content(csv))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.read", is(5)))
+				.andExpect(jsonPath("$.created", is(2)))
+				.andExpect(jsonPath("$.rejected", is(3)))
+				.andExpect(jsonPath("$.errors[0].line", is(5)))
+				.andExpect(jsonPath("$.errors[0].message", containsString("1930-02-12")))
+				.andExpect(jsonPath("$.errors[1].line", is(6)))
+				.andExpect(jsonPath("$.errors[1].message", is("The name is required")))
+				.andExpect(jsonPath("$.errors[2].line", is(7)));
+		
+		//an NDJSON file with the same rules
+		String ndjson = "{ \"name\": \"Eowyn\", \"birthdate\": \"15-07-1977\" }\n"
+				+ "{ \"name\": \"Grima\" }\n"
+				+ "not json\n";
+		
+		performAsync(post("/api/user/import").contentType("application/x-ndjson").content(ndjson))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created", is(1)))
+				.andExpect(jsonPath("$.errors[0].line", is(2)))
+				.andExpect(jsonPath("$.errors[0].message", is("The birth date is required")))
+				.andExpect(jsonPath("$.errors[1].line", is(3)))
+				.andExpect(jsonPath("$.failure").doesNotExist());
+		
+		//the imported users exist, and are removed to leave the table as it was
+		List<Integer> ids = provider.findAll().stream()
+				.filter(userDb -> Arrays.asList("Faramir", "Eomer, son of Eomund", "Eowyn").contains(userDb.getName()))
+				.map(UserDb::getId)
+				.collect(Collectors.toList());
+		
+		assertEquals(3, ids.size());
+		assertTrue(provider.deleteAll(ids).stream().allMatch(removed -> removed));
+	}
+	
+	@Test
+	public void testImportFailure() throws Exception {
+		
+		//the table is taken away, so the batch cannot be written
+		dataAccess.write(jdbcTemplate -> {
+			jdbcTemplate.execute("alter table users rename to users_away");
+			return null;
+		});
+		
+		String csv = "name,birthdate\r\n"
+				+ ",01-01-1950\r\n"
+				+ "Faramir,02-03-1975\r\n"
+				+ "Eomer,12-09-1972\r\n";
+		
+		try {
+			
+			//the import stops with the error and the summary so far, from the first line of the failed batch
+			performAsync(post("/api/user/import").contentType("text/csv").content(csv))
+					.andExpect(status().isInternalServerError())
+					.andExpect(jsonPath("$.read", is(3)))
+					.andExpect(jsonPath("$.created", is(0)))
+					.andExpect(jsonPath("$.rejected", is(1)))
+					.andExpect(jsonPath("$.errors[0].line", is(2)))
+					.andExpect(jsonPath("$.failure.line", is(3)))
+					.andExpect(jsonPath("$.failure.message", is("Error processing a batch of 2 users")));
+			
+		} finally {
+			dataAccess.write(jdbcTemplate -> {
+				jdbcTemplate.execute("alter table users_away rename to users");
+				return null;
+			});
+		}
+		
+		assertTrue(provider.findAll().stream().noneMatch(userDb -> userDb.getName().equals("Faramir")));
+	}
+	
+	@Test
+	public void testRemoveDuringImport() throws Exception {
+		
+		//an import whose upload is held open, so it holds its thread waiting for the next lines
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/user/import").openConnection();
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, "text/csv");
+		connection.setDoOutput(true);
+		connection.setChunkedStreamingMode(0);
+		
+		OutputStream upload = connection.getOutputStream();
+		upload.write("name,birthdate\r\nFaramir,02-03-1975\r\n".getBytes(StandardCharsets.UTF_8));
+		upload.flush();
+		
+		for (int i = 0; i < 1000 && importExecutor.getActiveCount() == 0; i++) {
+			Thread.sleep(5);
+		}
+		assertEquals(1, importExecutor.getActiveCount());
+		
+		//a remove is not queued behind it, since the import runs on its own executor
+		UserDb boromir = provider.insert(new UserDb(0, "Boromir", DateCodec.parse("17-04-1959").toEpochDay()));
+		ResponseEntity<String> removed = restTemplate.getForEntity("/api/user/remove/" + boromir.getId(), String.class);
+		assertEquals(HttpStatus.OK, removed.getStatusCode());
+		assertNull(provider.find(boromir.getId()));
+		
+		//and the import ends once the upload does
+		upload.write("Eomer,12-09-1972\r\n".getBytes(StandardCharsets.UTF_8));
+		upload.close();
+		
+		assertEquals(HttpStatus.OK.value(), connection.getResponseCode());
+		String summary = StreamUtils.copyToString(connection.getInputStream(), StandardCharsets.UTF_8);
+		assertEquals(2, (int) JsonPath.<Integer>read(summary, "$.created"));
+		
+		List<Integer> ids = provider.findAll().stream()
+				.filter(userDb -> Arrays.asList("Faramir", "Eomer").contains(userDb.getName()))
+				.map(UserDb::getId)
+				.collect(Collectors.toList());
+		assertTrue(provider.deleteAll(ids).stream().allMatch(deleted -> deleted));
+	}
+	
+	@Test
+	public void testExportUsers() throws Exception {
+		
+		//the first request starts the export and is answered at once, the next ones get the file once written
+		ResponseEntity<byte[]> response = download("/api/user/export", new HttpHeaders());
+		
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION), containsString("users.ndjson"));
+		
+		byte[] file = response.getBody();
+		String[] lines = new String(file, StandardCharsets.UTF_8).split("\n");
+		assertEquals(provider.findAll().size(), lines.length);
+		assertEquals(1, (int) JsonPath.<Integer>read(lines[0], "$.id"));
+		
+		//a range of it, for a resumed download, and the tag of the same version
+		String eTag = response.getHeaders().getETag();
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RANGE, "bytes=10-");
+		headers.set(HttpHeaders.IF_RANGE, eTag);
+		response = download("/api/user/export", headers);
+		
+		assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+		assertEquals("bytes 10-" + (file.length - 1) + "/" + file.length, response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(Arrays.copyOfRange(file, 10, file.length), response.getBody());
+		
+		//the whole file if the range is for another version, and nothing if the client has this one
+		headers.set(HttpHeaders.IF_RANGE, "\"other\"");
+		assertEquals(HttpStatus.OK, download("/api/user/export", headers).getStatusCode());
+		
+		headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED, download("/api/user/export", headers).getStatusCode());
+		
+		headers = new HttpHeaders();
+		headers.set(HttpHeaders.RANGE, "bytes=" + file.length + "-");
+		response = download("/api/user/export", headers);
+		assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+		assertEquals("bytes */" + file.length, response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+		
+		//the same file copied to the response when the connector cannot send it by itself
+		this.mockMvc.perform(get("/api/user/export").header(HttpHeaders.RANGE, "bytes=-5"))
+				.andExpect(status().isPartialContent())
+				.andExpect(content().bytes(Arrays.copyOfRange(file, file.length - 5, file.length)));
+		
+		//the gzipped CSV file, with its header
+		response = download("/api/user/export?format=csv&gzip=true", new HttpHeaders());
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String csv = StreamUtils.copyToString(new GZIPInputStream(new ByteArrayInputStream(response.getBody())), StandardCharsets.UTF_8);
+		assertThat(csv, startsWith("id,name,birthdate\n1,"));
+		assertEquals(lines.length + 1, csv.split("\n").length);
+		
+		this.mockMvc.perform(get("/api/user/export").param("format", "xml"))
+				.andExpect(status().isBadRequest());
+	}
+	
+	@Test
+	public void testExportFailure() throws Exception {
+		
+		//the table is taken away, so the export cannot be written
+		dataAccess.write(jdbcTemplate -> {
+			jdbcTemplate.execute("alter table users rename to users_away");
+			return null;
+		});
+		
+		try {
+			
+			//the first request starts it, and once it failed the next ones are told when it is tried again
+			ResponseEntity<String> response = restTemplate.getForEntity("/api/user/export?format=csv", String.class);
+			for (int attempt = 0; attempt < 100 && response.getStatusCode() == HttpStatus.ACCEPTED; attempt++) {
+				Thread.sleep(50);
+				response = restTemplate.getForEntity("/api/user/export?format=csv", String.class);
+			}
+			
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+			assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+			assertEquals(messageResolver.resolve("error.export.failed", null, Locale.ENGLISH), JsonPath.read(response.getBody(), "$.message"));
+			
+		} finally {
+			dataAccess.write(jdbcTemplate -> {
+				jdbcTemplate.execute("alter table users_away rename to users");
+				return null;
+			});
+		}
+	}
+	
+	@Test
+	public void testCompression() throws Exception {
+		
+		//the encoding the client prefers among the offered ones
+		List<ContentEncoding> offered = Arrays.asList(ContentEncoding.GZIP, ContentEncoding.DEFLATE);
+		assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip", offered));
+		assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate", offered));
+		assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *", offered));
+		assertNull(ContentEncoding.negotiate("br, identity", offered));
+		assertNull(ContentEncoding.negotiate(null, offered));
+		
+		//the few test users are shorter than the minimum size, so they are sent as they are
+		byte[] plain = fetch("/api/user/getall", null);
+		ResponseEntity<byte[]> response = restTemplate.exchange("/api/user/getall", HttpMethod.GET, 
+				new HttpEntity<>(acceptEncoding("gzip")), byte[].class);
+		assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+		assertArrayEquals(plain, response.getBody());
+		
+		CompressionSettings.Endpoint endpoint = new CompressionSettings.Endpoint();
+		endpoint.setMinSize(1);
+		compressionSettings.getEndpoints().put("getall", endpoint);
+		compressionSettings.getEndpoints().put("search", endpoint);
+		
+		try {
+			
+			//compressed in the negotiated encoding once the endpoint allows it, streamed or not
+			assertArrayEquals(plain, StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(fetch("/api/user/getall", "gzip")))));
+			assertArrayEquals(plain, StreamUtils.copyToByteArray(new InflaterInputStream(new ByteArrayInputStream(fetch("/api/user/getall", "gzip;q=0.5, deflate")))));
+			assertArrayEquals(plain, fetch("/api/user/getall", null));
+			
+			String found = StreamUtils.copyToString(new GZIPInputStream(new ByteArrayInputStream(fetch("/api/user/search?name=ARA", "gzip"))), StandardCharsets.UTF_8);
+			assertThat((int) JsonPath.<Integer>read(found, "$.users.length()"), greaterThan(0));
+			
+			String born = StreamUtils.copyToString(new GZIPInputStream(new ByteArrayInputStream(fetch("/api/user/search?bornBefore=01-01-2100", "gzip"))), StandardCharsets.UTF_8);
+			assertEquals(provider.findAll().size(), (int) JsonPath.<Integer>read(born, "$.length()"));
+			
+			//not the endpoints which are not marked, nor those disabled
+			response = restTemplate.exchange("/api/user/get/3", HttpMethod.GET, new HttpEntity<>(acceptEncoding("gzip")), byte[].class);
+			assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+			
+			endpoint.setEnabled(false);
+			response = restTemplate.exchange("/api/user/getall", HttpMethod.GET, new HttpEntity<>(acceptEncoding("gzip")), byte[].class);
+			assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+			assertArrayEquals(plain, response.getBody());
+			
+		} finally {
+			compressionSettings.getEndpoints().clear();
+		}
+	}
+	
+	/**
+	 * Gets a response through the connector, checking it is encoded as requested.
+	 * @param acceptEncoding The encoding accepted, null for none.
+	 */
+	private byte[] fetch(String url, String acceptEncoding) {
+		
+		ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(acceptEncoding(acceptEncoding)), byte[].class);
+		
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String expected = acceptEncoding == null ? null : ContentEncoding.negotiate(acceptEncoding, compressionSettings.getEncodings()).getToken();
+		assertEquals(expected, response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		return response.getBody();
+	}
+	
+	private static HttpHeaders acceptEncoding(String acceptEncoding) {
+		
+		HttpHeaders headers = new HttpHeaders();
+		if (acceptEncoding != null) {
+			headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		return headers;
+	}
+	
+	@Test
+	public void testSchemaMigrations() throws Exception {
+		
+		//a database created before the schema versions were recorded, with the birth dates as text
+		File file = File.createTempFile("legacy", ".db");
+		SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + file.getPath(), true);
+		try {
+			
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			jdbcTemplate.execute("create table users(id integer primary key asc not null, name text not null, birthdate text not null)");
+			jdbcTemplate.update("insert into users(name, birthdate) values('Boromir', '17-04-1959')");
+			
+			//the persistent schema keeps the users and only converts the birth dates
+			SchemaMigrations migrations = new SchemaMigrations(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+			assertEquals(1, migrations.migrate(DataSourceSettings.Schema.PERSISTENT));
+			assertEquals(SchemaMigrations.getLatestVersion(), migrations.getVersion());
+			assertEquals(DateCodec.parse("17-04-1959").toEpochDay(), 
+					(long) jdbcTemplate.queryForObject("select birthdate from users where name = 'Boromir'", Long.class));
+			
+			//nothing runs on the next boot, and the recreated schema has the initial users
+			assertEquals(0, migrations.migrate(DataSourceSettings.Schema.PERSISTENT));
+			assertEquals(SchemaMigrations.getLatestVersion(), migrations.migrate(DataSourceSettings.Schema.RECREATE));
+			assertEquals(8, (int) jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+			
+		} finally {
+			dataSource.destroy();
+			file.delete();
+		}
+		
+		//the startup phases timed so far
+		this.mockMvc.perform(get("/api/stats/startup"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.datasource").isNumber())
+				.andExpect(jsonPath("$.context").isNumber())
+				.andExpect(jsonPath("$.migrations").isNumber());
+	}
+	
+	/**
+	 * Downloads an export, waiting while it is written.
+	 */
+	private ResponseEntity<byte[]> download(String url, HttpHeaders headers) throws InterruptedException {
+		
+		for (int attempt = 0; attempt < 100; attempt++) {
+			ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+			if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+				return response;
+			}
+			assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+			Thread.sleep(50);
+		}
+		
+		fail("The export was not written");
+		return null;
+	}
 }
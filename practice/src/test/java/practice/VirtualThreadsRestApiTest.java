@@ -0,0 +1,112 @@
+package practice;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.connector.Connector;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import com.jayway.jsonpath.JsonPath;
+
+import practice.executor.ControlledExecutor;
+import practice.executor.VirtualThreadTaskExecutor;
+import practice.executor.VirtualThreads;
+
+/**
+ * The application in the virtual thread mode (practice.threads=virtual) over a scratch database, skipped on
+ * JDKs without virtual threads: the requests served through the connector and the executors, all of them on
+ * virtual threads, and the executor of the connector shut down with the application.
+ * The application is started by the test itself, so the shutdown can be checked once it is closed.
+ */
+public class VirtualThreadsRestApiTest {
+
+	private static ConfigurableApplicationContext context;
+
+	private static Executor connectorExecutor;
+
+	private final RestTemplate restTemplate = new RestTemplate();
+
+	@BeforeClass
+	public static void start() {
+
+		Assume.assumeTrue("Virtual threads need JDK 21 or later", VirtualThreads.isSupported());
+
+		context = new SpringApplicationBuilder(App.class)
+				.run("--server.port=0", "--practice.threads=virtual", "--practice.datasource.url=jdbc:sqlite:target/virtual-test.db");
+
+		TomcatEmbeddedServletContainer container = (TomcatEmbeddedServletContainer)
+				((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer();
+		Connector connector = container.getTomcat().getService().findConnectors()[0];
+		connectorExecutor = connector.getProtocolHandler().getExecutor();
+	}
+
+	@AfterClass
+	public static void stop() {
+
+		if (context != null) {
+			context.close();
+			assertTrue(((ExecutorService) connectorExecutor).isShutdown());
+		}
+	}
+
+	@Test
+	public void testRequests() throws Exception {
+
+		//read, async read, streamed and write requests
+		assertEquals("Aragorn", JsonPath.read(restTemplate.getForObject(url("/api/user/get/2"), String.class), "$.name"));
+		assertEquals(8, (int) JsonPath.read(restTemplate.getForObject(url("/api/user/search?bornBefore=01-01-2100"), String.class), "$.length()"));
+		assertEquals(8, (int) JsonPath.read(restTemplate.getForObject(url("/api/user/getall"), String.class), "$.length()"));
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		assertEquals(HttpStatus.OK, restTemplate.postForEntity(url("/api/user/create"),
+				new HttpEntity<>("{ \"name\": \"Boromir\", \"birthdate\": \"17-04-1959\" }", headers), String.class).getStatusCode());
+		assertEquals(HttpStatus.OK, restTemplate.getForEntity(url("/api/user/remove/9"), String.class).getStatusCode());
+
+		//the executors have no queue
+		assertThat(restTemplate.getForObject(url("/metrics"), String.class),
+				containsString("practice_async_executor_queue_capacity{pool=\"read\",} 0.0"));
+	}
+
+	@Test
+	public void testVirtualThreads() throws Exception {
+
+		for (String name : new String[] { "readExecutor", "writeExecutor", "streamExecutor" }) {
+			ControlledExecutor executor = context.getBean(name, ControlledExecutor.class);
+			assertTrue(name, executor instanceof VirtualThreadTaskExecutor);
+			assertTrue(name, runsOnVirtualThread(executor));
+		}
+
+		assertTrue(runsOnVirtualThread(connectorExecutor));
+	}
+
+	private static boolean runsOnVirtualThread(Executor executor) throws Exception {
+
+		FutureTask<Boolean> task = new FutureTask<>(() -> (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+		executor.execute(task);
+		return task.get(10, TimeUnit.SECONDS);
+	}
+
+	private static String url(String path) {
+		return "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + path;
+	}
+}
@@ -0,0 +1,40 @@
+package practice.executor;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * The limit tuned from the latency samples, and the tasks admitted up to it.
+ */
+public class AdaptiveLimitTest {
+
+	@Test
+	public void testLimit() {
+
+		//the limit grows while the latency holds and shrinks when it rises
+		AdaptiveLimit limit = new AdaptiveLimit(10, 2, 100);
+		for (int i = 0; i < 20; i++) {
+			limit.sample(1000000, limit.getLimit());
+		}
+		int grown = limit.getLimit();
+		assertThat(grown, greaterThan(10));
+
+		for (int i = 0; i < 20; i++) {
+			limit.sample(10000000, limit.getLimit());
+		}
+		assertThat(limit.getLimit(), lessThan(grown));
+
+		//and admits tasks up to it
+		for (int i = 0; i < limit.getLimit(); i++) {
+			assertTrue(limit.tryAcquire());
+		}
+		assertFalse(limit.tryAcquire());
+		limit.release();
+		assertTrue(limit.tryAcquire());
+	}
+}
@@ -0,0 +1,121 @@
+package practice.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * The reasons a pool sheds a task: its queue waits too long, its limit of tasks in flight is reached or
+ * its queue is full. The only thread of the pool is held busy until each test releases it.
+ */
+public class AdmissionControlledExecutorTest {
+
+	private final CountDownLatch running = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private AdmissionControlledExecutor executor;
+
+	@After
+	public void close() {
+
+		release.countDown();
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testQueueWait() throws Exception {
+
+		executor = start(new ExecutorSettings.Pool(1, 1, 10), 1, null);
+		executor.execute(() -> { });
+
+		//once the queued task has waited longer than allowed, new ones are shed
+		for (int i = 0; i < 1000 && executor.getQueueWaitNanos() <= TimeUnit.MILLISECONDS.toNanos(1); i++) {
+			Thread.sleep(1);
+		}
+		assertRejected();
+		assertEquals(1, executor.getQueueSize());
+
+		//and admitted again once the queue moves
+		release.countDown();
+		awaitQueueEmpty();
+		executor.execute(() -> { });
+	}
+
+	@Test
+	public void testLimit() throws Exception {
+
+		executor = start(new ExecutorSettings.Pool(1, 1, 10), TimeUnit.MINUTES.toMillis(1), new AdaptiveLimit(1, 1, 1));
+
+		//the running task takes the only place
+		assertRejected();
+		assertEquals(0, executor.getQueueSize());
+
+		release.countDown();
+		for (int i = 0; i < 1000 && !executor.getLimit().tryAcquire(); i++) {
+			Thread.sleep(1);
+		}
+		executor.getLimit().release();
+		executor.execute(() -> { });
+	}
+
+	@Test
+	public void testFullQueue() throws Exception {
+
+		executor = start(new ExecutorSettings.Pool(1, 1, 1), TimeUnit.MINUTES.toMillis(1), null);
+		executor.execute(() -> { });
+
+		assertRejected();
+		assertEquals(1, executor.getQueueSize());
+		assertEquals(1, executor.getQueueCapacity());
+	}
+
+	/**
+	 * @return a started pool, with its only thread held by a task until the test releases it
+	 */
+	private AdmissionControlledExecutor start(ExecutorSettings.Pool pool, long maxQueueWait, AdaptiveLimit limit) throws InterruptedException {
+
+		AdmissionControlledExecutor executor = new AdmissionControlledExecutor("test", pool, maxQueueWait, limit);
+		executor.initialize();
+
+		executor.execute(() -> {
+			running.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+
+		return executor;
+	}
+
+	private void assertRejected() {
+
+		long rejections = executor.getRejections();
+		try {
+			executor.execute(() -> { });
+			fail("The task should have been rejected");
+		} catch (TaskRejectedException e) {
+			assertEquals(rejections + 1, executor.getRejections());
+		}
+	}
+
+	private void awaitQueueEmpty() throws InterruptedException {
+
+		for (int i = 0; i < 1000 && executor.getQueueSize() > 0; i++) {
+			Thread.sleep(1);
+		}
+		assertEquals(0, executor.getQueueSize());
+	}
+}
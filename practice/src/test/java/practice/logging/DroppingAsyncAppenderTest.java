@@ -0,0 +1,102 @@
+package practice.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+/**
+ * Drops of the asynchronous appender while its console is stuck: the events of any level are dropped and
+ * counted once the buffer is full, and the buffered ones are written once the console is back.
+ */
+public class DroppingAsyncAppenderTest {
+
+	private final LoggerContext context = new LoggerContext();
+
+	private final CountDownLatch writing = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	/**
+	 * Number of events written to the console.
+	 */
+	private final AtomicInteger written = new AtomicInteger();
+
+	private DroppingAsyncAppender appender;
+
+	@Before
+	public void init() {
+
+		//a console holding the worker on its first event
+		AppenderBase<ILoggingEvent> console = new AppenderBase<ILoggingEvent>() {
+
+			@Override
+			protected void append(ILoggingEvent event) {
+
+				writing.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				written.incrementAndGet();
+			}
+		};
+		console.setContext(context);
+		console.start();
+
+		appender = new DroppingAsyncAppender();
+		appender.setContext(context);
+		appender.setQueueSize(2);
+		appender.setDiscardingThreshold(0);
+		appender.setNeverBlock(true);
+		appender.addAppender(console);
+		appender.start();
+	}
+
+	@After
+	public void close() {
+
+		release.countDown();
+		appender.stop();
+	}
+
+	@Test
+	public void testDropped() throws Exception {
+
+		//the worker takes the first event and gets stuck on the console
+		appender.doAppend(event(Level.INFO));
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		assertEquals(0, appender.getDropped());
+
+		//the next two fill the buffer, and the rest are dropped whatever their level
+		appender.doAppend(event(Level.INFO));
+		appender.doAppend(event(Level.INFO));
+		appender.doAppend(event(Level.INFO));
+		appender.doAppend(event(Level.ERROR));
+		assertEquals(2, appender.getDropped());
+
+		//the buffered events are written once the console is back
+		release.countDown();
+		appender.stop();
+		assertEquals(3, written.get());
+		assertEquals(2, appender.getDropped());
+	}
+
+	private LoggingEvent event(Level level) {
+		return new LoggingEvent(getClass().getName(), context.getLogger("practice.provider.UserProvider"), level,
+				"Returning {} users", null, new Object[] { 8 });
+	}
+}
@@ -0,0 +1,94 @@
+package practice.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Sampling of the events of a package: the loggers matched, the events always passing and the count of the
+ * events left out.
+ */
+public class SamplingTurboFilterTest {
+
+	private final LoggerContext context = new LoggerContext();
+
+	private SamplingTurboFilter filter;
+
+	@Before
+	public void init() {
+
+		filter = new SamplingTurboFilter();
+		filter.setContext(context);
+		filter.addLogger("practice.provider");
+		filter.setRate(1000000);
+		filter.start();
+	}
+
+	@Test
+	public void testPackage() {
+
+		//the loggers of the package are sampled, a new one included, and each event left out is counted
+		assertEquals(FilterReply.DENY, decide("practice.provider.ShardedUserProvider", Level.INFO));
+		assertEquals(FilterReply.DENY, decide("practice.provider.UserProvider", Level.DEBUG));
+		assertEquals(FilterReply.DENY, decide("practice.provider", Level.INFO));
+		assertEquals(3, filter.getSampledOut());
+
+		//but not those of a package sharing its name
+		assertEquals(FilterReply.NEUTRAL, decide("practice.providers.UserProvider", Level.INFO));
+		assertEquals(FilterReply.NEUTRAL, decide("practice.service.UserService", Level.INFO));
+		assertEquals(3, filter.getSampledOut());
+	}
+
+	@Test
+	public void testPassing() {
+
+		Logger logger = context.getLogger("practice.provider.ShardedUserProvider");
+
+		//the events above the level, the level checks and the marked events always pass
+		assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.WARN, "Failed", null, null));
+		assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.INFO, null, null, null));
+		assertEquals(FilterReply.NEUTRAL,
+				filter.decide(SamplingTurboFilter.ALWAYS, logger, Level.INFO, "Users spread over {} shards.", null, null));
+
+		//as does a marker holding it
+		Marker marker = MarkerFactory.getDetachedMarker("STARTUP");
+		marker.add(SamplingTurboFilter.ALWAYS);
+		assertEquals(FilterReply.NEUTRAL, filter.decide(marker, logger, Level.INFO, "Started", null, null));
+
+		assertEquals(0, filter.getSampledOut());
+	}
+
+	@Test
+	public void testRate() {
+
+		filter.setRate(4);
+
+		//about one in four events is kept
+		int kept = 0;
+		for (int i = 0; i < 4000; i++) {
+			if (decide("practice.provider.UserProvider", Level.INFO) == FilterReply.NEUTRAL) {
+				kept++;
+			}
+		}
+
+		assertTrue("Kept " + kept, kept > 700 && kept < 1300);
+		assertEquals(4000 - kept, filter.getSampledOut());
+
+		//and a rate of one keeps them all
+		filter.setRate(1);
+		assertEquals(FilterReply.NEUTRAL, decide("practice.provider.UserProvider", Level.INFO));
+	}
+
+	private FilterReply decide(String logger, Level level) {
+		return filter.decide(null, context.getLogger(logger), level, "Returning {} users", null, null);
+	}
+}
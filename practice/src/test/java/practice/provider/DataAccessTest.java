@@ -0,0 +1,120 @@
+package practice.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import practice.provider.DataSourceSettings.Mode;
+
+/**
+ * Data access in WAL mode over a scratch database: the pragma applied to the connections, and the reads
+ * served from the read pool while the writer lane is busy.
+ */
+public class DataAccessTest {
+
+	private File database;
+
+	private SingleConnectionDataSource writerDataSource;
+
+	private DataAccess dataAccess;
+
+	@Before
+	public void init() throws Exception {
+
+		database = File.createTempFile("practice-data-access", ".db");
+
+		DataSourceSettings settings = new DataSourceSettings().copy("jdbc:sqlite:" + database.getAbsolutePath(), Mode.WAL);
+		writerDataSource = DataAccess.writerDataSource(settings);
+		dataAccess = new DataAccess("test", new JdbcTemplate(writerDataSource), new DataSourceTransactionManager(writerDataSource), settings);
+
+		dataAccess.write(jdbcTemplate -> {
+			jdbcTemplate.execute("create table users (id integer primary key, name text)");
+			return jdbcTemplate.update("insert into users (name) values ('Frodo')");
+		});
+	}
+
+	@After
+	public void close() throws Exception {
+
+		dataAccess.destroy();
+		writerDataSource.destroy();
+
+		for (String suffix : new String[] { "", "-wal", "-shm" }) {
+			new File(database.getPath() + suffix).delete();
+		}
+	}
+
+	@Test
+	public void testWalPragma() {
+
+		assertEquals("wal", dataAccess.write(jdbcTemplate -> jdbcTemplate.queryForObject("pragma journal_mode", String.class)));
+		assertEquals("wal", dataAccess.reader().queryForObject("pragma journal_mode", String.class));
+
+		//the readers cannot write
+		try {
+			dataAccess.reader().update("insert into users (name) values ('Pippin')");
+			fail("A reader wrote");
+		} catch (DataAccessException e) {
+			assertEquals(1, (int) dataAccess.reader().queryForObject("select count(*) from users", Integer.class));
+		}
+	}
+
+	@Test
+	public void testReadsDuringWrite() throws Exception {
+
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		//a transaction holding the writer lane with an uncommitted insert
+		CompletableFuture<Integer> write = CompletableFuture.supplyAsync(() -> dataAccess.writeInTransaction(jdbcTemplate -> {
+			int inserted = jdbcTemplate.update("insert into users (name) values ('Sam')");
+			writing.countDown();
+			await(release);
+			return inserted;
+		}, inserted -> { }));
+
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+		//a second write waits in the lane
+		CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(
+				() -> dataAccess.write(jdbcTemplate -> jdbcTemplate.update("insert into users (name) values ('Merry')")));
+		for (int i = 0; i < 100 && dataAccess.getPendingWrites() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, dataAccess.getPendingWrites());
+
+		//the reads go on meanwhile, and see the last committed state
+		CompletableFuture<Integer> read = CompletableFuture.supplyAsync(
+				() -> dataAccess.reader().queryForObject("select count(*) from users", Integer.class));
+		assertEquals(1, (int) read.get(5, TimeUnit.SECONDS));
+		assertFalse(write.isDone());
+
+		release.countDown();
+		assertEquals(1, (int) write.get(10, TimeUnit.SECONDS));
+		assertEquals(1, (int) queued.get(10, TimeUnit.SECONDS));
+		assertEquals(3, (int) dataAccess.reader().queryForObject("select count(*) from users", Integer.class));
+	}
+
+	private static void await(CountDownLatch latch) {
+
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
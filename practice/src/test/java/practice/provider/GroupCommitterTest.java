@@ -0,0 +1,303 @@
+package practice.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import practice.exception.ProcessException;
+import practice.provider.DataSourceSettings.Mode;
+
+/**
+ * Group commit over a scratch database: grouping, a failing write within a group, a group or a lone write
+ * whose transaction is lost, the wait of the callers and the shutdown.
+ */
+public class GroupCommitterTest {
+
+	private File database;
+
+	private SingleConnectionDataSource dataSource;
+
+	private DataAccess dataAccess;
+
+	private GroupCommitter groupCommitter;
+
+	/**
+	 * Number of writes whose commit was notified.
+	 */
+	private final AtomicInteger committed = new AtomicInteger();
+
+	@Before
+	public void init() throws Exception {
+
+		database = File.createTempFile("practice-group-commit", ".db");
+
+		DataSourceSettings settings = new DataSourceSettings().copy("jdbc:sqlite:" + database.getAbsolutePath(), Mode.DEFAULT);
+		dataSource = new SingleConnectionDataSource(settings.getUrl(), true);
+		dataSource.setDriverClassName("org.sqlite.JDBC");
+		dataAccess = new DataAccess("test", new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource), settings);
+
+		dataAccess.write(jdbcTemplate -> {
+			jdbcTemplate.execute("create table users (id integer primary key, name text)");
+			return jdbcTemplate.update("insert into users (id, name) values (1, 'Frodo')");
+		});
+	}
+
+	@After
+	public void close() throws Exception {
+
+		if (groupCommitter != null) {
+			groupCommitter.destroy();
+		}
+		dataAccess.destroy();
+		dataSource.destroy();
+		database.delete();
+	}
+
+	@Test
+	public void testGroups() throws Exception {
+
+		//a long window, so the group is closed by its size
+		groupCommitter = new GroupCommitter(dataAccess, true, TimeUnit.SECONDS.toMicros(10), 3, 10000);
+
+		List<CompletableFuture<Integer>> results = new ArrayList<>();
+		for (String name : new String[] { "Sam", "Merry", "Pippin" }) {
+			results.add(submit(insert(name)));
+		}
+
+		for (CompletableFuture<Integer> result : results) {
+			assertEquals(1, (int) result.get(10, TimeUnit.SECONDS));
+		}
+
+		assertEquals(1, groupCommitter.getStatistics().getGroups());
+		assertEquals(3, groupCommitter.getStatistics().getWrites());
+		assertEquals(3, committed.get());
+		assertEquals(4, count());
+	}
+
+	@Test
+	public void testFailingWrite() throws Exception {
+
+		groupCommitter = new GroupCommitter(dataAccess, true, TimeUnit.SECONDS.toMicros(10), 3, 10000);
+
+		//the failing write inserts a user before its duplicated id, which is rolled back with it
+		CompletableFuture<Integer> first = submit(insert("Sam"));
+		CompletableFuture<Integer> failing = submit(jdbcTemplate -> {
+			jdbcTemplate.update("insert into users (name) values ('Gollum')");
+			return jdbcTemplate.update("insert into users (id, name) values (1, 'Smeagol')");
+		});
+		CompletableFuture<Integer> last = submit(insert("Merry"));
+
+		assertEquals(1, (int) first.get(10, TimeUnit.SECONDS));
+		assertEquals(1, (int) last.get(10, TimeUnit.SECONDS));
+		assertTrue(cause(failing) instanceof DataAccessException);
+
+		assertEquals(1, groupCommitter.getStatistics().getGroups());
+		assertEquals(2, committed.get());
+		assertEquals(3, count());
+		assertEquals(0, (int) dataAccess.reader().queryForObject("select count(*) from users where name = 'Gollum'", Integer.class));
+	}
+
+	@Test
+	public void testLostTransaction() throws Exception {
+
+		groupCommitter = new GroupCommitter(dataAccess, true, TimeUnit.SECONDS.toMicros(10), 3, 10000);
+
+		//a write whose failure rolls back the whole transaction, as SQLite does on a full disk
+		IllegalStateException lost = new IllegalStateException("database or disk is full");
+		CompletableFuture<Integer> first = submit(insert("Sam"));
+		CompletableFuture<Integer> failing = submit(jdbcTemplate -> {
+			jdbcTemplate.execute("rollback");
+			throw lost;
+		});
+		CompletableFuture<Integer> last = submit(insert("Merry"));
+
+		//the others are committed again one by one, and the failing one gets its own failure
+		assertEquals(1, (int) first.get(10, TimeUnit.SECONDS));
+		assertEquals(1, (int) last.get(10, TimeUnit.SECONDS));
+		assertEquals(lost, cause(failing));
+
+		assertEquals(2, committed.get());
+		assertEquals(3, count());
+	}
+
+	@Test
+	public void testLostTransactionOfOne() throws Exception {
+
+		groupCommitter = new GroupCommitter(dataAccess, true, 0, 1, 10000);
+
+		//a lone write whose transaction is lost the first time, and which would be committed the next one
+		AtomicInteger runs = new AtomicInteger();
+		IllegalStateException lost = new IllegalStateException("database or disk is full");
+		CompletableFuture<Integer> failing = submit(jdbcTemplate -> {
+			if (runs.incrementAndGet() == 1) {
+				jdbcTemplate.execute("rollback");
+				throw lost;
+			}
+			return insert("Sam").apply(jdbcTemplate);
+		});
+
+		//it is failed with its transaction and not run again behind the back of its caller
+		assertEquals(lost, cause(failing));
+		assertEquals(1, (int) submit(insert("Merry")).get(10, TimeUnit.SECONDS));
+
+		assertEquals(1, runs.get());
+		assertEquals(1, committed.get());
+		assertEquals(2, count());
+		assertEquals(0, (int) dataAccess.reader().queryForObject("select count(*) from users where name = 'Sam'", Integer.class));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+
+		groupCommitter = new GroupCommitter(dataAccess, true, 0, 1, 200);
+
+		//a write holding the writer past the wait of the next one
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Integer> holding = submit(holding(running, release));
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+
+		//the next one is never run, so it is refused
+		CompletableFuture<Integer> waiting = submit(insert("Sam"));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ProcessException) cause(waiting)).getHttpStatus());
+
+		//the held one is past its wait too, while it is being committed
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ((ProcessException) cause(holding)).getHttpStatus());
+
+		release.countDown();
+		for (int i = 0; i < 100 && committed.get() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, committed.get());
+		assertEquals(2, count());
+	}
+
+	@Test
+	public void testStop() throws Exception {
+
+		groupCommitter = new GroupCommitter(dataAccess, true, 0, 1, 10000);
+
+		//a write being committed, and another one queued behind it
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Integer> holding = submit(holding(running, release));
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+
+		CompletableFuture<Integer> queued = new CompletableFuture<>();
+		Thread queuing = new Thread(() -> {
+			try {
+				queued.complete(groupCommitter.write(insert("Sam"), result -> committed.incrementAndGet()));
+			} catch (RuntimeException e) {
+				queued.completeExceptionally(e);
+			}
+		});
+		queuing.start();
+		awaitWaiting(queuing);
+
+		//the committer is stopped while the first write is being committed
+		Thread stopping = new Thread(() -> {
+			try {
+				groupCommitter.destroy();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		stopping.start();
+		awaitWaiting(stopping);
+
+		//the write being committed lands, the queued one is failed instead of waiting forever
+		release.countDown();
+		assertEquals(1, (int) holding.get(10, TimeUnit.SECONDS));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ProcessException) cause(queued)).getHttpStatus());
+		stopping.join(TimeUnit.SECONDS.toMillis(10));
+
+		//and new writes are refused at once
+		try {
+			groupCommitter.write(insert("Merry"), result -> committed.incrementAndGet());
+			fail("A write was accepted once stopped");
+		} catch (ProcessException e) {
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getHttpStatus());
+		}
+
+		assertEquals(1, committed.get());
+		assertEquals(2, count());
+		groupCommitter = null;
+	}
+
+	/**
+	 * Waits until a thread blocks in a timed wait: the caller of a write waiting for its commit, or the
+	 * committer waiting for its flusher to stop.
+	 */
+	private static void awaitWaiting(Thread thread) throws InterruptedException {
+
+		for (int i = 0; i < 1000 && thread.getState() != Thread.State.TIMED_WAITING; i++) {
+			Thread.sleep(5);
+		}
+		assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+	}
+
+	/**
+	 * Submits a write from another thread.
+	 */
+	private CompletableFuture<Integer> submit(Function<JdbcTemplate, Integer> work) {
+		return CompletableFuture.supplyAsync(() -> groupCommitter.write(work, result -> committed.incrementAndGet()));
+	}
+
+	private static Function<JdbcTemplate, Integer> insert(String name) {
+		return jdbcTemplate -> jdbcTemplate.update("insert into users (name) values (?)", name);
+	}
+
+	/**
+	 * @return a write inserting a user, which holds the writer until it is released
+	 */
+	private static Function<JdbcTemplate, Integer> holding(CountDownLatch running, CountDownLatch release) {
+
+		return jdbcTemplate -> {
+			running.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return jdbcTemplate.update("insert into users (name) values ('Pippin')");
+		};
+	}
+
+	/**
+	 * @return the failure of a write
+	 */
+	private static Throwable cause(CompletableFuture<?> result) throws Exception {
+
+		try {
+			result.get(10, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+
+		fail("The write did not fail");
+		return null;
+	}
+
+	private int count() {
+		return dataAccess.reader().queryForObject("select count(*) from users", Integer.class);
+	}
+}
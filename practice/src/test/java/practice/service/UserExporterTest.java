@@ -0,0 +1,191 @@
+package practice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+import practice.service.UserExporter.Export;
+import practice.service.UserExporter.Format;
+
+/**
+ * The exports over a stubbed provider whose reads can be held or failed: the last export is served while the
+ * next one is written, for a bounded time only, and a failed export is tried again only after a delay.
+ */
+public class UserExporterTest {
+
+	private final UserVersions versions = new UserVersions();
+
+	/**
+	 * Holds the reads of the provider until it is released, if set.
+	 */
+	private final AtomicReference<CountDownLatch> hold = new AtomicReference<>();
+
+	/**
+	 * Fails the reads of the provider while it is set.
+	 */
+	private final AtomicBoolean failing = new AtomicBoolean();
+
+	/**
+	 * Number of reads of the provider.
+	 */
+	private final AtomicInteger reads = new AtomicInteger();
+
+	private IUserProvider provider;
+
+	private Path directory;
+
+	private UserExporter exporter;
+
+	@Before
+	public void init() throws IOException {
+
+		provider = mock(IUserProvider.class);
+		doAnswer(invocation -> {
+			reads.incrementAndGet();
+			if (failing.get()) {
+				throw new IllegalStateException("database is locked");
+			}
+			CountDownLatch latch = hold.get();
+			if (latch != null) {
+				latch.await(10, TimeUnit.SECONDS);
+			}
+			@SuppressWarnings("unchecked")
+			Consumer<UserDb> consumer = (Consumer<UserDb>) invocation.getArguments()[0];
+			consumer.accept(new UserDb(1, "Frodo", LocalDate.of(1981, 1, 28).toEpochDay()));
+			return 1;
+		}).when(provider).streamAll(any());
+
+		directory = Files.createTempDirectory("practice-exports");
+	}
+
+	@After
+	public void close() {
+
+		if (hold.get() != null) {
+			hold.get().countDown();
+		}
+		exporter.destroy();
+		FileSystemUtils.deleteRecursively(directory.toFile());
+	}
+
+	@Test
+	public void testStaleServed() throws Exception {
+
+		exporter = new UserExporter(directory.toString(), provider, versions, new ObjectMapper(), 60000, 1000);
+		Export first = await();
+
+		//a change starts the next export, which is held, and the last one is served meanwhile with its own tag
+		CountDownLatch release = new CountDownLatch(1);
+		hold.set(release);
+		versions.inserted(new UserDb(2, "Sam", 0));
+
+		assertSame(first, exporter.get(Format.NDJSON, false));
+		assertSame(first, exporter.get(Format.NDJSON, false));
+		assertNotEquals(versions.tableTag(), first.getTag());
+
+		//until the next one is written
+		release.countDown();
+		Export next = await();
+		assertEquals(versions.tableTag(), next.getTag());
+		assertTrue(Files.exists(next.getFile()));
+	}
+
+	@Test
+	public void testStalenessBounded() throws Exception {
+
+		exporter = new UserExporter(directory.toString(), provider, versions, new ObjectMapper(), 100, 1000);
+		Export first = await();
+
+		//the last export is served only for a while after it was found outdated
+		hold.set(new CountDownLatch(1));
+		versions.updated(new UserDb(1, "Frodo", 0));
+
+		assertSame(first, exporter.get(Format.NDJSON, false));
+		Thread.sleep(200);
+		assertNull(exporter.get(Format.NDJSON, false));
+
+		//and never without an allowed time
+		exporter.destroy();
+		hold.get().countDown();
+		hold.set(null);
+		exporter = new UserExporter(directory.toString(), provider, versions, new ObjectMapper(), 0, 1000);
+		await();
+
+		hold.set(new CountDownLatch(1));
+		versions.deleted(1);
+		assertNull(exporter.get(Format.NDJSON, false));
+	}
+
+	@Test
+	public void testFailureBackedOff() throws Exception {
+
+		exporter = new UserExporter(directory.toString(), provider, versions, new ObjectMapper(), 60000, 300);
+
+		//the first export fails, and is not tried again by the requests before the delay is over
+		failing.set(true);
+		assertNull(exporter.get(Format.NDJSON, false));
+		for (int i = 0; i < 200 && exporter.getRetryDelay(Format.NDJSON, false) == 0; i++) {
+			Thread.sleep(5);
+		}
+		assertTrue(exporter.getRetryDelay(Format.NDJSON, false) > 0);
+
+		assertNull(exporter.get(Format.NDJSON, false));
+		assertNull(exporter.get(Format.NDJSON, false));
+		assertEquals(1, reads.get());
+
+		//the other variants are not held back by it
+		assertEquals(0, exporter.getRetryDelay(Format.CSV, false));
+
+		//once it is over the next request tries it again, and it is written if the provider is back
+		failing.set(false);
+		Thread.sleep(400);
+		Export export = await();
+		assertEquals(2, reads.get());
+		assertEquals(0, exporter.getRetryDelay(Format.NDJSON, false));
+		assertTrue(Files.exists(export.getFile()));
+	}
+
+	/**
+	 * Waits for the export of the current users.
+	 */
+	private Export await() throws InterruptedException {
+
+		for (int i = 0; i < 200; i++) {
+			Export export = exporter.get(Format.NDJSON, false);
+			if (export != null && export.getTag().equals(versions.tableTag())) {
+				return export;
+			}
+			Thread.sleep(10);
+		}
+
+		Export export = exporter.get(Format.NDJSON, false);
+		assertNotNull(export);
+		return export;
+	}
+}
@@ -0,0 +1,134 @@
+package practice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+
+/**
+ * The name index over a stubbed provider: ranking and paging of the matches, the posting lists kept
+ * through the changes, and the changes and searches made while the index is built.
+ */
+public class UserNameIndexTest {
+
+	private static final long BIRTHDATE = LocalDate.of(1958, 10, 20).toEpochDay();
+
+	private IUserProvider provider;
+
+	private UserNameIndex index;
+
+	@Before
+	public void init() {
+
+		provider = mock(IUserProvider.class);
+		index = new UserNameIndex();
+		ReflectionTestUtils.setField(index, "provider", provider);
+	}
+
+	@Test
+	public void testRanking() {
+
+		build("Aragorn", "Arwen", "Gimli", "Legolas", "Boromir", "Faramir", "Aragorn II");
+
+		//the exact name, then the prefixes by length, then the substrings
+		assertEquals("Aragorn", names("aragorn", 0, 10).get(0));
+		assertEquals("Aragorn II", names("aragorn", 0, 10).get(1));
+		assertEquals("Arwen", names("ar", 0, 10).get(0));
+		assertEquals("Faramir", names("ramir", 0, 10).get(0));
+		assertEquals("Legolas", names("legols", 0, 10).get(0));
+		assertEquals(2, index.search("mir", 0, 10).getTotal());
+
+		//the pages follow the same ranking, with the total of all the matches
+		List<String> all = names("ar", 0, 10);
+		assertEquals(all.subList(1, 3), names("ar", 1, 2));
+		assertEquals(all.size(), index.search("ar", 1, 2).getTotal());
+		assertEquals(0, index.search("ar", 0, 0).getUsers().size());
+		assertEquals(all.size(), index.search("ar", 0, 0).getTotal());
+		assertEquals(0, index.search("zzzz", 0, 10).getTotal());
+	}
+
+	@Test
+	public void testChanges() {
+
+		build("Aragorn", "Arwen");
+
+		index.inserted(new UserDb(3, "Gimli", BIRTHDATE));
+		//an id lower than the others, out of order
+		index.inserted(new UserDb(-1, "Arathorn", BIRTHDATE));
+		index.updated(new UserDb(1, "Elessar", BIRTHDATE));
+		index.deleted(2);
+
+		assertEquals(1, index.search("gimli", 0, 10).getTotal());
+		assertEquals("Arathorn", names("ara", 0, 10).get(0));
+		assertEquals(1, index.search("ara", 0, 10).getTotal());
+		assertEquals("Elessar", names("eless", 0, 10).get(0));
+		assertEquals(0, index.search("arwen", 0, 10).getTotal());
+	}
+
+	@Test
+	public void testChangesWhileBuilding() throws Exception {
+
+		CountDownLatch scanning = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		doAnswer(invocation -> {
+			@SuppressWarnings("unchecked")
+			Consumer<UserDb> consumer = (Consumer<UserDb>) invocation.getArguments()[0];
+			consumer.accept(new UserDb(1, "Aragorn", BIRTHDATE));
+			consumer.accept(new UserDb(2, "Arwen", BIRTHDATE));
+			scanning.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return 2;
+		}).when(provider).streamAll(any());
+
+		CompletableFuture<Void> building = CompletableFuture.runAsync(index::build);
+		assertTrue(scanning.await(10, TimeUnit.SECONDS));
+
+		//the scan does not hold the lock: changes and searches go on
+		index.inserted(new UserDb(3, "Gimli", BIRTHDATE));
+		index.deleted(2);
+		assertEquals(1, index.search("gimli", 0, 10).getTotal());
+
+		release.countDown();
+		building.get(10, TimeUnit.SECONDS);
+
+		//and are applied over what the scan read
+		assertEquals(1, index.search("gimli", 0, 10).getTotal());
+		assertEquals(0, index.search("arwen", 0, 10).getTotal());
+		assertEquals(1, index.search("aragorn", 0, 10).getTotal());
+	}
+
+	private void build(String... names) {
+
+		doAnswer(invocation -> {
+			@SuppressWarnings("unchecked")
+			Consumer<UserDb> consumer = (Consumer<UserDb>) invocation.getArguments()[0];
+			for (int i = 0; i < names.length; i++) {
+				consumer.accept(new UserDb(i + 1, names[i], BIRTHDATE));
+			}
+			return names.length;
+		}).when(provider).streamAll(any());
+
+		index.build();
+	}
+
+	private List<String> names(String query, int offset, int limit) {
+		return index.search(query, offset, limit).getUsers().stream().map(UserDb::getName).collect(Collectors.toList());
+	}
+}
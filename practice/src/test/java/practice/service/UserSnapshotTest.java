@@ -0,0 +1,113 @@
+package practice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import practice.provider.IUserProvider;
+import practice.provider.UserDb;
+
+/**
+ * The rebuilds of the snapshot over a stubbed provider failing for a while: the retries back off and the
+ * snapshot is published once the provider is back. Also a snapshot left behind the tag of the table.
+ */
+public class UserSnapshotTest {
+
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	private final AtomicBoolean failing = new AtomicBoolean(true);
+
+	private final UserVersions versions = new UserVersions();
+
+	private UserSnapshot snapshot;
+
+	@Before
+	public void init() {
+
+		IUserProvider provider = mock(IUserProvider.class);
+		doAnswer(invocation -> {
+			attempts.incrementAndGet();
+			if (failing.get()) {
+				throw new IllegalStateException("database is locked");
+			}
+			@SuppressWarnings("unchecked")
+			Consumer<UserDb> consumer = (Consumer<UserDb>) invocation.getArguments()[0];
+			consumer.accept(new UserDb(1, "Frodo", LocalDate.of(1981, 1, 28).toEpochDay()));
+			return 1;
+		}).when(provider).streamAll(any());
+
+		snapshot = new UserSnapshot(true, 10, 1000, provider, versions, new ObjectMapper());
+	}
+
+	@After
+	public void close() {
+		snapshot.destroy();
+	}
+
+	@Test
+	public void testFailedRebuild() throws Exception {
+
+		snapshot.start();
+		Thread.sleep(700);
+
+		//retried after 20, 40, 80, 160 and 320 ms, instead of every 10 ms
+		assertThat(attempts.get(), lessThan(10));
+		assertNull(snapshot.get());
+
+		//the next retry builds it once the provider is back
+		failing.set(false);
+		for (int i = 0; i < 200 && snapshot.get() == null; i++) {
+			Thread.sleep(10);
+		}
+		assertNotNull(snapshot.get());
+		assertEquals(1, snapshot.get().getCount());
+
+		//and the changes are rebuilt after the usual delay again
+		int built = attempts.get();
+		snapshot.inserted(new UserDb(2, "Sam", LocalDate.of(1980, 4, 6).toEpochDay()));
+		for (int i = 0; i < 100 && attempts.get() == built; i++) {
+			Thread.sleep(5);
+		}
+		assertEquals(built + 1, attempts.get());
+	}
+
+	@Test
+	public void testOlderTag() throws Exception {
+
+		failing.set(false);
+		snapshot.start();
+		for (int i = 0; i < 200 && snapshot.get() == null; i++) {
+			Thread.sleep(10);
+		}
+		assertNotNull(snapshot.get());
+		assertEquals(versions.tableTag(), snapshot.get().getTag());
+
+		//a version bumped without the snapshot being notified, as when the tag is taken between both
+		int built = attempts.get();
+		versions.inserted(new UserDb(2, "Sam", LocalDate.of(1980, 4, 6).toEpochDay()));
+
+		//it is stale, served within the allowed time and rebuilt with the new tag
+		assertNotNull(snapshot.get());
+		for (int i = 0; i < 100 && !versions.tableTag().equals(snapshot.get().getTag()); i++) {
+			Thread.sleep(5);
+		}
+		assertEquals(built + 1, attempts.get());
+		assertEquals(versions.tableTag(), snapshot.get().getTag());
+	}
+}
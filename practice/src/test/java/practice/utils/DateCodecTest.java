@@ -0,0 +1,83 @@
+package practice.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import practice.exception.ProcessException;
+
+/**
+ * The hand-made codec against the formatter it replaces: round trips, the dates around the limits of the
+ * fast path and the invalid inputs.
+ */
+public class DateCodecTest {
+
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(DateCodec.PATTERN);
+
+	@Test
+	public void testRoundTrip() {
+
+		//every day of three centuries, twice, so the second pass is served from the cache
+		for (int pass = 0; pass < 2; pass++) {
+			for (LocalDate date = LocalDate.of(1900, 1, 1); date.getYear() < 2200; date = date.plusDays(1)) {
+				String text = date.format(FORMATTER);
+				assertEquals(text, DateCodec.format(date));
+				assertEquals(date, DateCodec.parse(text));
+			}
+		}
+	}
+
+	@Test
+	public void testBoundaries() {
+
+		//pre-epoch dates, leap days and the limits of the four digits years
+		for (LocalDate date : new LocalDate[] { LocalDate.of(1969, 12, 31), LocalDate.of(1, 1, 1),
+				LocalDate.of(1600, 2, 29), LocalDate.of(2000, 2, 29), LocalDate.of(9999, 12, 31) }) {
+			assertEquals(date.format(FORMATTER), DateCodec.format(date));
+			assertEquals(date, DateCodec.parse(date.format(FORMATTER)));
+		}
+
+		//the years out of 1-9999 are left to the formatter, with its exact output
+		for (LocalDate date : new LocalDate[] { LocalDate.of(0, 6, 15), LocalDate.of(-44, 3, 15), LocalDate.of(10000, 1, 1) }) {
+			assertEquals(date.format(FORMATTER), DateCodec.format(date));
+		}
+		assertEquals(LocalDate.of(10000, 1, 1), DateCodec.parse(LocalDate.of(10000, 1, 1).format(FORMATTER)));
+
+		//a day past the end of the month is resolved by the formatter as it always was
+		assertEquals(LocalDate.parse("31-04-2017", FORMATTER), DateCodec.parse("31-04-2017"));
+		assertEquals(LocalDate.parse("29-02-1900", FORMATTER), DateCodec.parse("29-02-1900"));
+
+		//the same date from a cached slot is the same instance
+		LocalDate date = DateCodec.parse("02-01-1970");
+		assertSame(date, DateCodec.parse(new StringBuilder("02-01-1970")));
+		assertEquals(1, date.toEpochDay());
+	}
+
+	@Test
+	public void testInvalidInput() {
+
+		for (String text : new String[] { null, "", "1-1-2000", "01/01/2000", "01-01-00", "aa-bb-cccc", "01-01-20x0",
+				"00-01-2000", "01-00-2000", "32-01-2000", "01-13-2000", "01-01-0000", " 01-01-2000", "01-01-2000 " }) {
+			try {
+				DateCodec.parse(text);
+				fail("Parsed " + text);
+			} catch (ProcessException e) {
+				assertEquals(HttpStatus.BAD_REQUEST, e.getHttpStatus());
+				assertEquals("error.conversion", e.getMessage());
+			}
+		}
+
+		try {
+			DateCodec.format(null);
+			fail("Formatted null");
+		} catch (ProcessException e) {
+			assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getHttpStatus());
+		}
+	}
+}
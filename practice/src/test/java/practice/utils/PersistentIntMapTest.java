@@ -0,0 +1,108 @@
+package practice.utils;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * The persistent map: keys at any depth, the previous versions left untouched by the changes, the order of
+ * the values, and the keys and values refused.
+ */
+public class PersistentIntMapTest {
+
+	@Test
+	public void testChanges() {
+
+		//the versions share the nodes they do not change, at any depth of the keys
+		PersistentIntMap<String> map = new PersistentIntMap.Builder<String>().put(1, "a").put(40, "b").build();
+		PersistentIntMap<String> changed = map.with(Integer.MAX_VALUE, "c").with(2000, "d").without(40);
+
+		assertEquals(2, map.size());
+		assertEquals("b", map.get(40));
+		assertNull(map.get(Integer.MAX_VALUE));
+		assertEquals(3, changed.size());
+		assertNull(changed.get(40));
+
+		List<String> values = new ArrayList<>();
+		changed.forEachValue(values::add);
+		assertEquals(Arrays.asList("a", "d", "c"), values);
+		assertEquals(0, changed.without(1).without(2000).without(Integer.MAX_VALUE).size());
+
+		//a missing key leaves the map as it is, and a replaced one keeps the size
+		assertSame(map, map.without(7));
+		assertEquals(2, map.with(1, "e").size());
+		assertEquals("e", map.with(1, "e").get(1));
+		assertEquals("a", map.get(1));
+		assertNull(map.get(-1));
+		assertSame(PersistentIntMap.empty(), new PersistentIntMap.Builder<String>().build());
+	}
+
+	@Test
+	public void testVersions() {
+
+		//random changes over keys of every depth, each version checked against a sorted map after all of them
+		Random random = new Random(17);
+		List<PersistentIntMap<Integer>> versions = new ArrayList<>();
+		List<TreeMap<Integer, Integer>> expected = new ArrayList<>();
+
+		PersistentIntMap<Integer> map = PersistentIntMap.empty();
+		TreeMap<Integer, Integer> sorted = new TreeMap<>();
+		for (int i = 0; i < 2000; i++) {
+
+			int key = random.nextInt(4) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(300);
+			if (random.nextInt(3) == 0 && !sorted.isEmpty()) {
+				key = sorted.ceilingKey(key) == null ? sorted.firstKey() : sorted.ceilingKey(key);
+				map = map.without(key);
+				sorted.remove(key);
+			} else {
+				map = map.with(key, i);
+				sorted.put(key, i);
+			}
+
+			if (i % 100 == 0) {
+				versions.add(map);
+				expected.add(new TreeMap<>(sorted));
+			}
+		}
+
+		for (int i = 0; i < versions.size(); i++) {
+
+			PersistentIntMap<Integer> version = versions.get(i);
+			assertEquals(expected.get(i).size(), version.size());
+			expected.get(i).forEach((key, value) -> assertEquals(value, version.get(key)));
+
+			List<Integer> values = new ArrayList<>();
+			version.forEachValue(values::add);
+			assertEquals(new ArrayList<>(expected.get(i).values()), values);
+		}
+	}
+
+	@Test
+	public void testInvalid() {
+
+		try {
+			PersistentIntMap.<String>empty().with(-1, "a");
+			fail("A negative key was accepted");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("-1"));
+		}
+
+		try {
+			new PersistentIntMap.Builder<String>().put(1, null);
+			fail("A null value was accepted");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("Null"));
+		}
+	}
+}